@@ -0,0 +1,144 @@
+// === src/build/java/PermissionConstantsGenerator.java ===
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * PermissionConstantsGenerator is a build-time step (generate-sources)
+ * that turns the permission matrix into typed constants.
+ *
+ * It:
+ *   1. reads every permission key from RolePermissions.yaml (or a
+ *      directory of *.roles.yaml shards)
+ *   2. writes core/Permissions.java with one PermissionHandle per key,
+ *      each carrying a compiled int ID (keys are sorted, ID = position)
+ *   3. scans the given source roots for hasPermission("...") string
+ *      literals and fails the build if any key is not defined
+ *
+ * Usage (run by Maven in source-file mode):
+ *   java -cp snakeyaml.jar PermissionConstantsGenerator <policy> <outDir> [sourceRoot...]
+ */
+public class PermissionConstantsGenerator {
+
+    private static final Pattern LITERAL_CHECK =
+            Pattern.compile("hasPermission\\((?:[^()\";]*,)?\\s*\"([^\"]+)\"\\s*\\)");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PermissionConstantsGenerator <policy> <outDir> [sourceRoot...]");
+            System.exit(2);
+        }
+        TreeSet<String> keys = readKeys(Paths.get(args[0]));
+
+        List<String> unknown = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            scan(Paths.get(args[i]), keys, unknown);
+        }
+        if (!unknown.isEmpty()) {
+            System.err.println("❌ Permission keys used in code but not defined in " + args[0] + ":");
+            unknown.forEach(u -> System.err.println("  - " + u));
+            System.exit(1);
+        }
+
+        Map<String, String> names = new HashMap<>();
+        for (String key : keys) {
+            String clash = names.put(constantName(key), key);
+            if (clash != null) {
+                System.err.println("❌ Keys " + clash + " and " + key + " map to the same constant " + constantName(key));
+                System.exit(1);
+            }
+        }
+
+        Path out = Paths.get(args[1], "core", "Permissions.java");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, render(keys, args[0]), StandardCharsets.UTF_8);
+        System.out.println("✅ Generated " + keys.size() + " permission handles → " + out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeSet<String> readKeys(Path policy) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(policy)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(policy, "*.roles.yaml")) {
+                stream.forEach(files::add);
+            }
+        } else {
+            files.add(policy);
+        }
+        TreeSet<String> keys = new TreeSet<>();
+        for (Path file : files) {
+            try (InputStream in = Files.newInputStream(file)) {
+                Object data = new Yaml().load(in);
+                if (!(data instanceof Map)) continue;
+                for (Object perms : ((Map<String, Object>) data).values()) {
+                    if (!(perms instanceof Map)) continue;
+                    for (String key : ((Map<String, Object>) perms).keySet()) {
+                        keys.add(key.startsWith("!") ? key.substring(1) : key);   // explicit deny
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static void scan(Path root, TreeSet<String> keys, List<String> unknown) throws IOException {
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".java"))::iterator) {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                for (int n = 0; n < lines.size(); n++) {
+                    Matcher m = LITERAL_CHECK.matcher(lines.get(n));
+                    while (m.find()) {
+                        if (!keys.contains(m.group(1))) {
+                            unknown.add(file + ":" + (n + 1) + " \"" + m.group(1) + "\"");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static String render(TreeSet<String> keys, String source) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("// === generated from ").append(Paths.get(source).getFileName()).append(" by PermissionConstantsGenerator; do not edit ===\n\n");
+        sb.append("package core;\n\n");
+        sb.append("/**\n");
+        sb.append(" * Typed handles for every permission key defined in the policy.\n");
+        sb.append(" * Use these instead of string literals: a typo is a compile error and\n");
+        sb.append(" * a check is a bit test on the pre-resolved ID.\n");
+        sb.append(" */\n");
+        sb.append("public final class Permissions {\n\n");
+        int id = 0;
+        for (String key : keys) {
+            sb.append("    public static final PermissionHandle ").append(constantName(key))
+                    .append(" = new PermissionHandle(\"").append(key).append("\", ").append(id++).append(");\n");
+        }
+        sb.append("\n    /** All keys, indexed by ID. */\n");
+        sb.append("    static final String[] KEYS = {\n");
+        for (String key : keys) {
+            sb.append("            \"").append(key).append("\",\n");
+        }
+        sb.append("    };\n\n");
+        sb.append("    private Permissions() {\n    }\n}\n");
+        return sb.toString();
+    }
+
+    private static String constantName(String key) {
+        return key.toUpperCase().replaceAll("[^A-Z0-9]+", "_");
+    }
+}
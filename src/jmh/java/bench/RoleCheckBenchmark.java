@@ -0,0 +1,130 @@
+// === src/jmh/java/bench/RoleCheckBenchmark.java ===
+
+package bench;
+
+import audit.AuditLog;
+import context.ContextBuilder;
+import core.PermissionHandle;
+import core.PermissionIndex;
+import core.PermissionSet;
+import core.Permissions;
+import core.PermissionsManager;
+import core.SpecializedCheckers;
+import model.UserContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RoleCheckBenchmark compares one role's permission check along the
+ * table-driven paths with the generated checker of SpecializedCheckers:
+ *
+ *   matrix       PermissionsManager.hasPermission(role, key): two map lookups
+ *   table        role → PermissionSet map, then a bit test on the set's words
+ *   context      UserContext.hasPermission(handle) for a user holding the role
+ *   specialized  SpecializedCheckers.Cell.hasPermission(handle)
+ *
+ * Each invocation checks the next key of a fixed rotation, so no path can
+ * be folded to a constant. Runs on temporary copies of the config.
+ *
+ * Usage:
+ *   mvn -Pjmh compile exec:java -Djmh.args="bench.RoleCheckBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleCheckBenchmark {
+
+    private static final String ROLE = "admin";
+    private static final String USER = "alice";
+
+    private static final PermissionHandle[] HANDLES = {
+            Permissions.TRADER_SUBMIT_MANUAL_TRADE,
+            Permissions.REPORTER_VIEW_DAILY,
+            Permissions.TRADER_VIEW_PORTFOLIO,
+            Permissions.REPORTER_VIEW_MONTHLY,
+            Permissions.TRADER_EXPORT_DATA,
+            Permissions.REPORTER_VIEW_ATTRIBUTION,
+            Permissions.TRADER_VIEW_APPROVAL_STATUS,
+            Permissions.TRADER_SUBMIT_MANUAL_TRADE,
+    };
+
+    private PermissionsManager pm;
+    private SpecializedCheckers checkers;
+    private Map<String, PermissionSet> table;
+    private UserContext context;
+    private SpecializedCheckers.Cell cell;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("rbac-jmh");
+        Path perms = Files.copy(Path.of("config/RolePermissions.yaml"), dir.resolve("RolePermissions.yaml"));
+        Path users = Files.copy(Path.of("config/UserRegistry.yaml"), dir.resolve("UserRegistry.yaml"));
+        pm = new PermissionsManager(perms.toString());
+        UserRegistryManager urm = new UserRegistryManager(users.toString());
+        AuditLog audit = new AuditLog(dir.resolve("rbac.log").toString(), dir.resolve("rbac-audit").toString());
+        pm.setAuditLog(audit);
+        urm.setAuditLog(audit);
+
+        table = new HashMap<>();
+        for (String role : pm.getAllRoles()) {
+            table.put(role, PermissionSet.of(pm.getEffectivePermissions(List.of(role)), PermissionIndex.getDefault()));
+        }
+        context = new ContextBuilder(pm, urm).buildUserContext(USER);
+        checkers = new SpecializedCheckers(pm);
+        cell = checkers.forRole(ROLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        checkers.close();
+    }
+
+    private PermissionHandle nextHandle() {
+        PermissionHandle handle = HANDLES[next];
+        next = (next + 1) & (HANDLES.length - 1);
+        return handle;
+    }
+
+    @Benchmark
+    public boolean matrix() {
+        return pm.hasPermission(ROLE, nextHandle().getKey());
+    }
+
+    @Benchmark
+    public boolean table() {
+        return table.get(ROLE).contains(nextHandle().getId());
+    }
+
+    @Benchmark
+    public boolean context() {
+        return context.hasPermission(nextHandle());
+    }
+
+    @Benchmark
+    public boolean specialized() {
+        return cell.hasPermission(nextHandle());
+    }
+}
@@ -2,11 +2,39 @@
 
 package admin;
 
+import audit.AuditQuery;
+import audit.AuditRecord;
+import context.ContextBuilder;
+import core.PermissionHolderIndex;
 import core.PermissionsManager;
+import core.PolicyExporter;
+import core.PolicyValidationException;
+import core.PolicyValidator;
+import core.PolicyWhatIf;
+import core.RoleSets;
+import core.TimeBoundGrants;
+import daemon.DaemonClient;
+import replication.ReplicationFollower;
+import replication.ReplicationLeader;
 import users.UserRegistryManager;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AdminCommandConsole provides an interactive command-line interface
@@ -15,9 +43,93 @@ import java.util.Scanner;
  * This class supports both:
  * - main() for standalone launch
  * - mainWithOperator(String) for authenticated RBACCli injection
+ *
+ * Changes can be applied one by one, or staged with begin/commit/rollback
+ * (or a script via run) so that many grants and user changes are saved
+ * with a single write and logged as one batch.
+ *
+ * Replication across instances is enabled with system properties:
+ *   -Drbac.replication.listen=<port>        this node is the leader
+ *   -Drbac.replication.leader=<host:port>   this node follows a leader
+ * A follower refuses local changes; make them on the leader. If a
+ * {@link daemon.PolicyDaemon} is running, replication is the daemon's:
+ * the console starts neither role itself and reports the daemon's.
+ *
+ * grantfor/activatefor hand out access that is revoked automatically when
+ * its duration runs out (see {@link TimeBoundGrants}). Next to a running
+ * daemon the console only schedules them in the expiry file and the
+ * daemon's worker revokes them, so they run out even after the console
+ * has exited.
  */
 public class AdminCommandConsole {
 
+    private static final int WHOCAN_PAGE_SIZE = 20;
+    private static final int WHATIF_CONSOLE_LINES = 50;
+
+    private final String operator;
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistryManager;
+    private final PermissionHolderIndex holderIndex;
+    private final ContextBuilder explainer;
+    private final DaemonClient daemon;            // null unless a PolicyDaemon is running
+    private final ReplicationLeader leader;       // null unless rbac.replication.listen is set and no daemon runs
+    private final ReplicationFollower follower;   // null unless rbac.replication.leader is set and no daemon runs
+    private final String followedLeader;          // leader this node follows (locally or via the daemon), or null
+    private final TimeBoundGrants expiries;       // null on a follower: the leader expires and replicates;
+                                                  // scheduling only next to a daemon, which expires
+    private PolicyTransaction transaction;   // null when not inside begin … commit
+
+    private AdminCommandConsole(String operator) {
+        this(operator, new PermissionsManager(), new UserRegistryManager(),
+                System.getProperty("rbac.expiries", "config/TimeBoundGrants.yaml"), DaemonClient.connectIfRunning());
+    }
+
+    /**
+     * Builds a console over existing managers. Replication still follows
+     * the system properties.
+     *
+     * @param operator     actor recorded in the audit log
+     * @param pm           permission matrix to manage
+     * @param urm          user registry to manage
+     * @param expiriesPath file holding pending time-bound grants, or null to keep them in memory
+     */
+    AdminCommandConsole(String operator, PermissionsManager pm, UserRegistryManager urm, String expiriesPath) {
+        this(operator, pm, urm, expiriesPath, null);
+    }
+
+    /**
+     * Builds a console over existing managers next to a running daemon,
+     * which then owns replication.
+     *
+     * @param daemon connection to the running daemon, or null if none runs
+     */
+    AdminCommandConsole(String operator, PermissionsManager pm, UserRegistryManager urm, String expiriesPath,
+                        DaemonClient daemon) {
+        this.operator = operator;
+        this.daemon = daemon;
+        this.permissionsManager = pm;
+        this.userRegistryManager = urm;
+        this.holderIndex = new PermissionHolderIndex(permissionsManager, userRegistryManager);
+        this.explainer = new ContextBuilder(permissionsManager, userRegistryManager);
+        String listen = System.getProperty("rbac.replication.listen");
+        String leaderAddress = System.getProperty("rbac.replication.leader");
+        this.leader = daemon == null && listen != null
+                ? new ReplicationLeader(permissionsManager, userRegistryManager, Integer.parseInt(listen))
+                : null;
+        this.follower = daemon == null && leaderAddress != null
+                ? ReplicationFollower.connect(permissionsManager, userRegistryManager, leaderAddress)
+                : null;
+        this.followedLeader = follower != null ? follower.getLeaderAddress() : daemonLeader(daemon);
+        if (followedLeader != null) {
+            this.expiries = null;
+        } else if (daemon != null) {
+            this.expiries = TimeBoundGrants.scheduleOnly(permissionsManager, userRegistryManager, expiriesPath);
+        } else {
+            this.expiries = new TimeBoundGrants(permissionsManager, userRegistryManager, expiriesPath,
+                    Clock.systemUTC(), TimeBoundGrants.DEFAULT_TICK_MILLIS);
+        }
+    }
+
     /**
      * Standalone CLI entry — fallback if launched directly.
      * Prompts for operator ID.
@@ -37,95 +149,751 @@ public class AdminCommandConsole {
      */
     public static void mainWithOperator(String operator) {
         Scanner scanner = new Scanner(System.in);
-        PermissionsManager permissionsManager = new PermissionsManager();
-        UserRegistryManager userRegistryManager = new UserRegistryManager();
+        AdminCommandConsole console = new AdminCommandConsole(operator);
 
         System.out.println("Welcome, " + operator + ". Type 'help' for commands.");
+        try {
+            PolicyValidator.validateOrThrow(console.permissionsManager, console.userRegistryManager);
+        } catch (PolicyValidationException e) {
+            System.out.println("⚠️  Current policy is invalid. " + e.getMessage());
+        }
 
         while (true) {
-            System.out.print("admin> ");
+            System.out.print(console.transaction == null
+                    ? "admin> "
+                    : "admin(tx:" + console.transaction.size() + ")> ");
             String input = scanner.nextLine().trim();
             if (input.equals("exit")) break;
+            console.handle(input);
+        }
+        console.close();
+        System.out.println("👋 Exiting admin console.");
+    }
 
-            if (input.equals("help")) {
-                System.out.println("Commands:");
-                System.out.println("  grant <role> <permission> <true/false>");
-                System.out.println("  adduser <user_id> <role> <client_id> <true/false>");
-                System.out.println("  listusers");
-                System.out.println("  listperms <role>");
-                System.out.println("  reload");
-                System.out.println("  exit");
-                continue;
+    /**
+     * Discards an open transaction, has a running daemon reload once more
+     * and stops replication and expiry.
+     */
+    void close() {
+        if (transaction != null && !transaction.isEmpty()) {
+            System.out.println("⚠️  Discarding " + transaction.size() + " uncommitted change(s).");
+        }
+        transaction = null;
+        if (leader != null) leader.close();
+        if (follower != null) follower.close();
+        if (daemon != null) {
+            reloadDaemon();
+            daemon.close();
+        }
+        if (expiries != null) expiries.close();
+    }
+
+    /**
+     * @return the open transaction, or null outside begin … commit
+     */
+    PolicyTransaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Executes one console command. Next to a daemon, every command that
+     * wrote the policy files outside a transaction (including commit and
+     * reload) is followed by a RELOAD, so the daemon never serves a policy
+     * older than the files.
+     *
+     * @param input the trimmed command line
+     * @return true if the command succeeded; false on usage or validation errors
+     */
+    boolean handle(String input) {
+        boolean succeeded = dispatch(input);
+        if (daemon != null && transaction == null && isWriteCommand(input)) {
+            reloadDaemon();
+        }
+        return succeeded;
+    }
+
+    private boolean dispatch(String input) {
+        if (input.equals("help")) {
+            System.out.println("Commands:");
+            System.out.println("  grant <role> <permission> <true/false>");
+            System.out.println("  adduser <user_id> <role[,role...]> <client_id> <true/false>");
+            System.out.println("  toggle <user_id> <true/false>");
+            System.out.println("  grantfor <role> <permission> <duration>  → grant until the duration (e.g. 90s, 30m, 8h, 2d) runs out");
+            System.out.println("  activatefor <user_id> <duration>          → activate until the duration runs out");
+            System.out.println("  importusers <file> [batchsize]  → provision users from a CSV or JSONL file (resumable)");
+            System.out.println("  expiries             → list pending time-bound grants and activations");
+            System.out.println("  listusers");
+            System.out.println("  listperms <role>");
+            System.out.println("  equivalentroles      → roles with identical permission sets");
+            System.out.println("  whocan <permission> [page]  → active users holding a permission");
+            System.out.println("  explain <user_id> <permission>  → why a user is allowed or denied a permission");
+            System.out.println("  whatif <candidate> [reportfile]  → users gaining/losing access under a candidate matrix");
+            System.out.println("  begin                → start staging changes");
+            System.out.println("  commit               → validate and apply staged changes");
+            System.out.println("  rollback             → discard staged changes");
+            System.out.println("  run <scriptfile>     → apply a command script as one batch");
+            System.out.println("  audit [from=<date>] [to=<date>] [operator=..] [role=..] [user=..] [key=..] [action=..] [limit=N]");
+            System.out.println("  export <dir> <csv|jsonl|binary> [shards]  → dump matrix and users from one snapshot");
+            System.out.println("  replication          → show leader/follower versions");
+            System.out.println("  reload");
+            System.out.println("  exit");
+            return true;
+        }
+
+        if (followedLeader != null && isWriteCommand(input)) {
+            System.out.println("⛔ This node follows " + followedLeader + "; make changes on the leader.");
+            return false;
+        }
+
+        if (input.equals("replication")) {
+            printReplicationStatus();
+            return true;
+        }
+
+        if (input.startsWith("export ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 3 || parts.length == 4) {
+                try {
+                    PolicyExporter exporter = PolicyExporter.capture(permissionsManager, userRegistryManager);
+                    int shards = parts.length == 4 ? Integer.parseInt(parts[3]) : 1;
+                    List<Path> files = exporter.exportTo(Paths.get(parts[1]),
+                            PolicyExporter.Format.parse(parts[2]), shards, ForkJoinPool.commonPool());
+                    System.out.printf("📦 Exported matrix v%d and registry v%d to %s (%d file(s))%n",
+                            exporter.getMatrixVersion(), exporter.getRegistryVersion(), parts[1], files.size());
+                    return true;
+                } catch (RuntimeException e) {
+                    System.out.println("❌ Export failed: " + e.getMessage());
+                    return false;
+                }
             }
+            System.out.println("⚠️  Usage: export <dir> <csv|jsonl|binary> [shards]");
+            return false;
+        }
 
-            if (input.startsWith("grant ")) {
-                String[] parts = input.split("\\s+");
-                if (parts.length == 4) {
-                    String role = parts[1];
-                    String perm = parts[2];
-                    boolean value = Boolean.parseBoolean(parts[3]);
+        if (input.startsWith("grant ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 4) {
+                String role = parts[1];
+                String perm = parts[2];
+                boolean value = Boolean.parseBoolean(parts[3]);
+                if (transaction != null) {
+                    transaction.grant(role, perm, value);
+                    System.out.printf("📝 Staged: '%s' for role '%s' → %s%n", perm, role, value);
+                } else {
                     permissionsManager.grant(role, perm, value, operator);  // 🔁 一行搞定
                     System.out.printf("✅ Permission '%s' for role '%s' set to %s%n", perm, role, value);
+                }
+                return true;
+            }
+            System.out.println("⚠️  Usage: grant <role> <permission> <true/false>");
+            return false;
+        }
+
+        if (input.startsWith("adduser ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 5) {
+                String userId = parts[1];
+                List<String> roles = List.of(parts[2].split(","));
+                String clientId = parts[3];
+                boolean active = Boolean.parseBoolean(parts[4]);
+                if (transaction != null) {
+                    transaction.addUser(userId, roles, clientId, active);
+                    System.out.printf("📝 Staged: add user '%s' with role '%s'%n", userId, parts[2]);
                 } else {
-                    System.out.println("⚠️  Usage: grant <role> <permission> <true/false>");
+                    userRegistryManager.addUser(userId, roles, clientId, active, operator);
+                    System.out.printf("✅ User '%s' added with role '%s'%n", userId, parts[2]);
                 }
-                continue;
+                return true;
             }
-            
-            if (input.startsWith("adduser ")) {
-                String[] parts = input.split("\\s+");
-                if (parts.length == 5) {
-                    String userId = parts[1];
-                    String role = parts[2];
-                    String clientId = parts[3];
-                    boolean active = Boolean.parseBoolean(parts[4]);
-                    userRegistryManager.addUser(userId, role, clientId, active, operator);
-                    System.out.printf("✅ User '%s' added with role '%s'%n", userId, role);
+            System.out.println("⚠️  Usage: adduser <user_id> <role[,role...]> <client_id> <true/false>");
+            return false;
+        }
+
+        if (input.startsWith("toggle ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 3) {
+                String userId = parts[1];
+                boolean active = Boolean.parseBoolean(parts[2]);
+                if (transaction != null) {
+                    transaction.toggleActive(userId, active);
+                    System.out.printf("📝 Staged: user '%s' active → %s%n", userId, active);
+                } else if (userRegistryManager.getUser(userId) == null) {
+                    System.out.println("❌ Unknown user: " + userId);
+                    return false;
                 } else {
-                    System.out.println("⚠️  Usage: adduser <user_id> <role> <client_id> <true/false>");
+                    userRegistryManager.toggleActive(userId, active, operator);
+                    System.out.printf("✅ User '%s' active set to %s%n", userId, active);
                 }
-                continue;
+                return true;
             }
+            System.out.println("⚠️  Usage: toggle <user_id> <true/false>");
+            return false;
+        }
 
-            if (input.equals("listusers")) {
-                System.out.println("📋 Users:");
-                for (String userId : userRegistryManager.getAllUsers().keySet()) {
-                    Map<String, Object> user = userRegistryManager.getUser(userId);
-                    System.out.printf("  - %s → %s (%s) active=%s%n",
-                            userId,
-                            user.get("role"),
-                            user.get("client_id"),
-                            user.get("active"));
+        if (input.startsWith("grantfor ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 4) {
+                if (transaction != null) {
+                    System.out.println("⚠️  grantfor cannot be staged; commit or rollback first.");
+                    return false;
+                }
+                try {
+                    Instant until = Instant.now().plus(parseDuration(parts[3]));
+                    syncExpiries();
+                    expiries.grantUntil(parts[1], parts[2], until, operator);
+                    System.out.printf("✅ Permission '%s' granted to role '%s' until %s%n", parts[2], parts[1], until);
+                    return true;
+                } catch (RuntimeException e) {
+                    System.out.println("❌ " + e.getMessage());
+                    return false;
+                }
+            }
+            System.out.println("⚠️  Usage: grantfor <role> <permission> <duration>");
+            return false;
+        }
+
+        if (input.startsWith("activatefor ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 3) {
+                if (transaction != null) {
+                    System.out.println("⚠️  activatefor cannot be staged; commit or rollback first.");
+                    return false;
+                }
+                try {
+                    Instant until = Instant.now().plus(parseDuration(parts[2]));
+                    syncExpiries();
+                    expiries.activateUntil(parts[1], until, operator);
+                    System.out.printf("✅ User '%s' active until %s%n", parts[1], until);
+                    return true;
+                } catch (RuntimeException e) {
+                    System.out.println("❌ " + e.getMessage());
+                    return false;
                 }
-                continue;
             }
+            System.out.println("⚠️  Usage: activatefor <user_id> <duration>");
+            return false;
+        }
 
-            if (input.startsWith("listperms ")) {
-                String[] parts = input.split("\\s+");
-                if (parts.length == 2) {
-                    String role = parts[1];
-                    Map<String, Boolean> perms = permissionsManager.getRolePermissions(role);
-                    System.out.printf("📋 Permissions for role '%s':%n", role);
-                    for (Map.Entry<String, Boolean> entry : perms.entrySet()) {
-                        System.out.printf("  - %s = %s%n", entry.getKey(), entry.getValue());
+        if (input.startsWith("importusers ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 2 || parts.length == 3) {
+                if (transaction != null) {
+                    System.out.println("⚠️  importusers cannot be staged; commit or rollback first.");
+                    return false;
+                }
+                try {
+                    BulkUserImport importer = new BulkUserImport(permissionsManager, userRegistryManager, operator)
+                            .onProgress(r -> System.out.println("⏳ " + r));
+                    if (parts.length == 3) {
+                        importer.batchSize(Integer.parseInt(parts[2]));
                     }
-                } else {
-                    System.out.println("⚠️  Usage: listperms <role>");
+                    BulkUserImport.Report report = importer.run(Paths.get(parts[1]));
+                    System.out.printf("✅ Imported %d user(s) in %d batch(es), %d rejected%n",
+                            report.getImported(), report.getBatches(), report.getRejected());
+                    for (String error : report.getErrors()) {
+                        System.out.println("  ❌ " + error);
+                    }
+                    return report.getRejected() == 0;
+                } catch (RuntimeException e) {
+                    System.out.println("❌ Import stopped: " + e.getMessage());
+                    return false;
                 }
-                continue;
             }
+            System.out.println("⚠️  Usage: importusers <file> [batchsize]");
+            return false;
+        }
+
+        if (input.equals("expiries")) {
+            if (expiries == null) {
+                System.out.println("ℹ️  Expiries are handled by the leader.");
+                return true;
+            }
+            syncExpiries();
+            List<TimeBoundGrants.Expiry> pending = expiries.list();
+            System.out.printf("⏰ %d pending expiry(ies):%n", pending.size());
+            for (TimeBoundGrants.Expiry e : pending) {
+                System.out.println("  " + e);
+            }
+            return true;
+        }
+
+        if (input.equals("listusers")) {
+            System.out.println("📋 Users:");
+            for (String userId : userRegistryManager.getAllUsers().keySet()) {
+                Map<String, Object> user = userRegistryManager.getUser(userId);
+                System.out.printf("  - %s → %s (%s) active=%s%n",
+                        userId,
+                        String.join(",", RoleSets.of(user)),
+                        user.get("client_id"),
+                        user.get("active"));
+            }
+            return true;
+        }
+
+        if (input.startsWith("explain ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 3) {
+                System.out.println("🔎 " + explainer.explain(parts[1], parts[2]));
+                return true;
+            }
+            System.out.println("⚠️  Usage: explain <user_id> <permission>");
+            return false;
+        }
+
+        if (input.equals("equivalentroles")) {
+            List<List<String>> classes = permissionsManager.getEquivalentRoles();
+            System.out.printf("🧬 %d role(s), %d distinct permission set(s):%n",
+                    permissionsManager.getAllRoles().size(), permissionsManager.getDistinctRoleSets());
+            if (classes.isEmpty()) {
+                System.out.println("  (every role has its own set)");
+            }
+            for (List<String> roles : classes) {
+                System.out.println("  = " + String.join(", ", roles));
+            }
+            return true;
+        }
+
+        if (input.startsWith("listperms ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 2) {
+                String role = parts[1];
+                Map<String, Boolean> perms = permissionsManager.getRolePermissions(role);
+                System.out.printf("📋 Permissions for role '%s':%n", role);
+                for (Map.Entry<String, Boolean> entry : perms.entrySet()) {
+                    System.out.printf("  - %s = %s%n", entry.getKey(), entry.getValue());
+                }
+                return true;
+            }
+            System.out.println("⚠️  Usage: listperms <role>");
+            return false;
+        }
+
+        if (input.startsWith("whocan ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 2 || parts.length == 3) {
+                try {
+                    int page = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+                    if (page >= 1) {
+                        printHolders(parts[1], page);
+                        return true;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // fall through to usage
+                }
+            }
+            System.out.println("⚠️  Usage: whocan <permission> [page]");
+            return false;
+        }
+
+        if (input.startsWith("whatif ")) {
+            String[] parts = input.split("\\s+");
+            if (parts.length == 2 || parts.length == 3) {
+                return whatIf(parts[1], parts.length == 3 ? parts[2] : null);
+            }
+            System.out.println("⚠️  Usage: whatif <candidate.yaml|dir> [reportfile]");
+            return false;
+        }
+
+        if (input.equals("begin")) {
+            if (transaction != null) {
+                System.out.println("⚠️  A transaction is already open (" + transaction.size() + " staged).");
+                return false;
+            }
+            transaction = new PolicyTransaction(permissionsManager, userRegistryManager, operator);
+            System.out.println("📝 Transaction started. Changes are staged until 'commit'.");
+            return true;
+        }
+
+        if (input.equals("commit")) {
+            if (transaction == null) {
+                System.out.println("⚠️  No open transaction. Use 'begin' first.");
+                return false;
+            }
+            return commitTransaction();
+        }
+
+        if (input.equals("rollback")) {
+            if (transaction == null) {
+                System.out.println("⚠️  No open transaction.");
+                return false;
+            }
+            int discarded = transaction.size();
+            transaction = null;
+            System.out.println("↩️  Rolled back " + discarded + " staged change(s).");
+            return true;
+        }
+
+        if (input.startsWith("run ")) {
+            return runScript(input.substring(4).trim());
+        }
 
-            if (input.equals("reload")) {
+        if (input.equals("audit") || input.startsWith("audit ")) {
+            return queryAudit(input.substring(5).trim());
+        }
+
+        if (input.equals("reload")) {
+            if (transaction != null) {
+                System.out.println("⚠️  Commit or rollback the open transaction before reloading.");
+                return false;
+            }
+            try {
                 permissionsManager.reload();
                 userRegistryManager.reload();
-                System.out.println("🔁 Reloaded permission matrix and user registry.");
-                continue;
+            } catch (PolicyValidationException e) {
+                System.out.println("❌ Reload failed, keeping the current policy. " + e.getMessage());
+                return false;
             }
+            System.out.println("🔁 Reloaded permission matrix and user registry.");
+            return true;
+        }
+
+        System.out.println("❓ Unknown command. Type 'help' for available commands.");
+        return false;
+    }
 
-            System.out.println("❓ Unknown command. Type 'help' for available commands.");
+    /**
+     * Scripts run inside one transaction, so they may not open, end or
+     * nest one, reload underneath it, or exit.
+     *
+     * @return true for commands allowed in a script
+     */
+    private static boolean isScriptCommand(String input) {
+        String command = input.split("\\s+", 2)[0];
+        switch (command) {
+            case "begin":
+            case "commit":
+            case "rollback":
+            case "run":
+            case "reload":
+            case "exit":
+                return false;
+            default:
+                return true;
         }
+    }
 
-        System.out.println("👋 Exiting admin console.");
+    /**
+     * @return true for commands that change the local policy
+     */
+    private static boolean isWriteCommand(String input) {
+        String command = input.split("\\s+", 2)[0];
+        switch (command) {
+            case "grant":
+            case "adduser":
+            case "toggle":
+            case "grantfor":
+            case "activatefor":
+            case "importusers":
+            case "begin":
+            case "commit":
+            case "run":
+            case "reload":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Prints this node's replication role and versions.
+     */
+    private void printReplicationStatus() {
+        if (daemon != null) {
+            try {
+                for (String line : daemon.request("REPLICATION")) {
+                    String[] f = line.split(" ");
+                    if (f[0].equals("leader")) {
+                        System.out.printf("📡 Daemon is leader on port %s, version %s%n", f[1], f[2]);
+                    } else if (f[0].equals("follower")) {
+                        System.out.printf("  - %s applied %s%n", f[1], f[2]);
+                    } else if (f[0].equals("following")) {
+                        System.out.printf("📡 Daemon follows %s (%s), applied version %s%n", f[1], f[2], f[3]);
+                    } else {
+                        System.out.println("📡 Replication is off in the daemon"
+                                + " (start it with rbac.replication.listen or rbac.replication.leader).");
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.out.println("❌ Daemon did not answer: " + e.getMessage());
+            }
+        } else if (leader != null) {
+            System.out.printf("📡 Leader on port %d, version %d%n", leader.getPort(), leader.getVersion());
+            Map<String, Long> followers = leader.getFollowerVersions();
+            if (followers.isEmpty()) {
+                System.out.println("  (no followers connected)");
+            }
+            followers.forEach((name, version) ->
+                    System.out.printf("  - %s applied %d%n", name, version));
+        } else if (follower != null) {
+            System.out.printf("📡 Following %s (%s), applied version %d%n",
+                    follower.getLeaderAddress(),
+                    follower.isConnected() ? "connected" : "reconnecting",
+                    follower.getAppliedVersion());
+        } else {
+            System.out.println("📡 Replication is off (set rbac.replication.listen or rbac.replication.leader).");
+        }
+    }
+
+    /**
+     * Has the daemon re-read the policy and expiry files this console writes.
+     */
+    private void reloadDaemon() {
+        try {
+            daemon.request("RELOAD");
+        } catch (RuntimeException e) {
+            System.out.println("⚠️  Daemon did not reload; it still serves the previous policy. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Next to a daemon, picks up what its worker expired since this
+     * console last read the expiry file.
+     */
+    private void syncExpiries() {
+        if (daemon != null) expiries.reload();
+    }
+
+    /**
+     * @return the leader a running daemon follows, or null
+     */
+    private static String daemonLeader(DaemonClient daemon) {
+        if (daemon == null) return null;
+        try {
+            for (String line : daemon.request("REPLICATION")) {
+                if (line.startsWith("following ")) return line.split(" ")[1];
+            }
+        } catch (RuntimeException e) {
+            System.err.println("⚠️  Could not ask the daemon about replication: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Commits the open transaction and closes it. On validation or save
+     * failure the transaction stays open so the operator can fix it, retry
+     * or roll back.
+     */
+    private boolean commitTransaction() {
+        if (transaction == null) {
+            System.out.println("⚠️  No open transaction.");
+            return false;
+        }
+        int count = transaction.size();
+        try {
+            String batchId = transaction.commit();
+            transaction = null;
+            System.out.printf("✅ Committed %d change(s) as batch %s.%n", count, batchId);
+            return true;
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Commit rejected: " + e.getMessage());
+            return false;
+        } catch (IllegalStateException e) {
+            System.out.println("❌ Commit failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Prints one page of the active users that hold a permission.
+     *
+     * @param key  the permission key
+     * @param page 1-based page number
+     */
+    private void printHolders(String key, int page) {
+        PermissionHolderIndex.Page result = holderIndex.holders(key, (page - 1) * WHOCAN_PAGE_SIZE, WHOCAN_PAGE_SIZE);
+        System.out.printf("🔎 %d active user(s) hold '%s' (roles: %s)%n",
+                result.getTotal(), key, String.join(", ", holderIndex.rolesWith(key)));
+        for (String userId : result.getUserIds()) {
+            System.out.println("  - " + userId);
+        }
+        if (result.hasMore()) {
+            System.out.printf("  … more on page %d (whocan %s %d)%n", page + 1, key, page + 1);
+        }
     }
-}
 
+    /**
+     * Compares the current matrix with a candidate and reports per-user
+     * access changes, either to the console (first lines only) or as a
+     * full report file with one line per affected user.
+     *
+     * @param candidate  YAML file or shard directory with the candidate matrix
+     * @param reportFile optional output file for the full report
+     */
+    private boolean whatIf(String candidate, String reportFile) {
+        if (!Files.exists(Paths.get(candidate))) {
+            System.out.println("❌ Candidate not found: " + candidate);
+            return false;
+        }
+        PolicyWhatIf whatIf;
+        try {
+            whatIf = new PolicyWhatIf(permissionsManager.export(), PolicyWhatIf.loadMatrix(candidate));
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Candidate is invalid: " + e.getMessage());
+            return false;
+        }
+
+        List<String> roles = whatIf.getChangedRoles();
+        System.out.printf("🧪 %d role(s) change:%n", roles.size());
+        for (String role : roles) {
+            System.out.printf("  %s: +%s -%s%n", role, whatIf.getGained(role), whatIf.getLost(role));
+        }
+
+        Map<String, Map<String, Object>> users = userRegistryManager.getAllUsers();
+        long affected;
+        if (reportFile != null) {
+            try (BufferedWriter out = Files.newBufferedWriter(Paths.get(reportFile))) {
+                affected = whatIf.run(users, users, ForkJoinPool.commonPool(), delta -> {
+                    synchronized (out) {
+                        try {
+                            out.write(delta.toString());
+                            out.newLine();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                System.out.println("❌ Failed to write report: " + e.getMessage());
+                return false;
+            }
+            System.out.printf("📄 %d user(s) affected; report written to %s%n", affected, reportFile);
+            return true;
+        }
+
+        AtomicInteger printed = new AtomicInteger();
+        affected = whatIf.run(users, users, ForkJoinPool.commonPool(), delta -> {
+            if (printed.getAndIncrement() < WHATIF_CONSOLE_LINES) {
+                System.out.println("  " + delta);
+            }
+        });
+        System.out.printf("👥 %d user(s) affected%s%n", affected,
+                affected > WHATIF_CONSOLE_LINES ? " (first " + WHATIF_CONSOLE_LINES + " shown; pass a report file for all)" : "");
+        return true;
+    }
+
+    /**
+     * Queries the structured audit store and prints matches, newest first.
+     *
+     * Dates are local time, either yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss.
+     *
+     * @param args space-separated field=value filters
+     */
+    private boolean queryAudit(String args) {
+        AuditQuery query = new AuditQuery().limit(50);
+        try {
+            for (String arg : args.isEmpty() ? new String[0] : args.split("\\s+")) {
+                int eq = arg.indexOf('=');
+                if (eq <= 0) throw new IllegalArgumentException("expected field=value, got '" + arg + "'");
+                String field = arg.substring(0, eq);
+                String value = arg.substring(eq + 1);
+                switch (field) {
+                    case "from": query.from(parseTime(value)); break;
+                    case "to": query.to(parseTime(value)); break;
+                    case "operator": query.operator(value); break;
+                    case "role": query.role(value); break;
+                    case "user": query.user(value); break;
+                    case "key": query.key(value); break;
+                    case "action": query.action(AuditRecord.Action.valueOf(value.toUpperCase())); break;
+                    case "limit": query.limit(Integer.parseInt(value)); break;
+                    default: throw new IllegalArgumentException("unknown field '" + field + "'");
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("⚠️  " + e.getMessage());
+            System.out.println("⚠️  Usage: audit [from=<date>] [to=<date>] [operator=..] [role=..] [user=..] [key=..] [action=..] [limit=N]");
+            return false;
+        }
+
+        long start = System.nanoTime();
+        List<AuditRecord> records = permissionsManager.getAuditLog().query(query);
+        long micros = (System.nanoTime() - start) / 1_000;
+        System.out.printf("📂 %d record(s) in %d µs:%n", records.size(), micros);
+        for (AuditRecord r : records) {
+            System.out.println("  " + r);
+        }
+        return true;
+    }
+
+    /**
+     * Parses a duration such as 90s, 30m, 8h or 2d (or ISO-8601, e.g. PT8H).
+     */
+    private static Duration parseDuration(String value) {
+        if (value.matches("\\d+[smhd]")) {
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            switch (value.charAt(value.length() - 1)) {
+                case 's': return Duration.ofSeconds(amount);
+                case 'm': return Duration.ofMinutes(amount);
+                case 'h': return Duration.ofHours(amount);
+                default: return Duration.ofDays(amount);
+            }
+        }
+        try {
+            return Duration.parse(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid duration '" + value + "' (use e.g. 90s, 30m, 8h, 2d)");
+        }
+    }
+
+    private static Instant parseTime(String value) {
+        LocalDateTime time = value.length() == 10
+                ? LocalDate.parse(value).atStartOfDay()
+                : LocalDateTime.parse(value);
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    /**
+     * Runs a script of console commands as one batch.
+     *
+     * Blank lines and lines starting with '#' are skipped. If no transaction
+     * is open, the script runs inside an implicit one that is committed at
+     * the end, or rolled back on the first failing line.
+     *
+     * @param scriptPath path to the script file
+     */
+    private boolean runScript(String scriptPath) {
+        if (scriptPath.isEmpty()) {
+            System.out.println("⚠️  Usage: run <scriptfile>");
+            return false;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(scriptPath));
+        } catch (IOException e) {
+            System.out.println("❌ Failed to read script: " + e.getMessage());
+            return false;
+        }
+
+        boolean implicit = transaction == null;
+        if (implicit) {
+            transaction = new PolicyTransaction(permissionsManager, userRegistryManager, operator);
+        }
+
+        int lineNo = 0;
+        for (String raw : lines) {
+            lineNo++;
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (!isScriptCommand(line)) {
+                System.out.printf("❌ %s:%d: '%s' is not allowed in scripts%n", scriptPath, lineNo, line);
+            } else if (handle(line)) {
+                continue;
+            } else {
+                System.out.printf("❌ %s:%d: failed at '%s'%n", scriptPath, lineNo, line);
+            }
+            if (implicit) {
+                transaction = null;
+                System.out.println("↩️  Script rolled back; nothing was applied.");
+            }
+            return false;
+        }
+
+        if (implicit) {
+            if (!commitTransaction()) {
+                transaction = null;
+                System.out.println("↩️  Script rolled back; nothing was applied.");
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,415 @@
+// === src/main/java/admin/BulkUserImport.java ===
+
+package admin;
+
+import audit.AuditRecord;
+import core.PermissionsManager;
+import users.UserChange;
+import users.UserRegistryManager;
+import utils.YamlLoader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * BulkUserImport provisions users from a CSV or JSONL file without
+ * holding the file in memory and without a registry write per user.
+ *
+ * The file is read line by line. Each record is validated as it is read
+ * (user ID present, every role defined in the current matrix, active flag
+ * readable); bad records are reported with their line number and skipped.
+ * Valid records are collected into batches, and each batch is:
+ *   1. applied to the registry as one version (listeners such as views
+ *      and indexes update once per batch)
+ *   2. saved with one file write
+ *   3. audited as one BATCH BEGIN … BATCH COMMIT group
+ *   4. recorded in the checkpoint file
+ *
+ * If an import stops part-way, running it again on the same file resumes
+ * after the last checkpointed line. A batch that was saved but not yet
+ * checkpointed is applied again on resume, which is harmless since adds
+ * are idempotent. The checkpoint is deleted once the file is done.
+ *
+ * Formats (chosen by extension, else by the first character):
+ *   CSV, with a header naming the columns, in any order:
+ *     user_id,roles,client_id,active
+ *     carol,trader;reporter,C001,true
+ *   ("role" is accepted for "roles"; roles are separated by ";" or "|";
+ *   client_id and active are optional, active defaults to true)
+ *
+ *   JSONL, one object per line:
+ *     {"user_id": "carol", "roles": ["trader", "reporter"], "client_id": "C001", "active": true}
+ *
+ * Usage:
+ *   BulkUserImport.Report report = new BulkUserImport(pm, urm, "ops")
+ *           .batchSize(5000)
+ *           .onProgress(r -> System.out.println(r))
+ *           .run(Path.of("onboarding.csv"));
+ */
+public class BulkUserImport {
+
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    /** Errors kept in the report; the rest are only counted. */
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Progress and outcome of one import.
+     */
+    public static final class Report {
+        private long lines;
+        private long resumedAfter;
+        private long imported;
+        private long rejected;
+        private int batches;
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * @return lines read (including header, blanks and skipped resumed lines)
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return the checkpointed line this run resumed after (0 for a fresh import)
+         */
+        public long getResumedAfter() {
+            return resumedAfter;
+        }
+
+        /**
+         * @return users applied to the registry by this run
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * @return records that failed validation
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return batches committed by this run
+         */
+        public int getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return the first {@link #MAX_REPORTED_ERRORS} errors, as "line N: message"
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("line %d: %d imported in %d batch(es), %d rejected%s",
+                    lines, imported, batches, rejected,
+                    resumedAfter > 0 ? " (resumed after line " + resumedAfter + ")" : "");
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final String operator;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Path checkpoint;
+    private Consumer<Report> progress = r -> { };
+
+    /**
+     * @param pm       matrix the roles are validated against
+     * @param urm      registry to import into
+     * @param operator actor recorded in the audit log
+     */
+    public BulkUserImport(PermissionsManager pm, UserRegistryManager urm, String operator) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.operator = operator;
+    }
+
+    /**
+     * @param batchSize users per registry version and file write
+     * @return this
+     */
+    public BulkUserImport batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @param checkpoint where to record progress; defaults to the input path plus ".checkpoint"
+     * @return this
+     */
+    public BulkUserImport checkpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * @param progress called with the running report after every batch
+     * @return this
+     */
+    public BulkUserImport onProgress(Consumer<Report> progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Imports a file, resuming from its checkpoint if there is one.
+     *
+     * @param file the CSV or JSONL file
+     * @return what was imported and rejected
+     * @throws UncheckedIOException if the file cannot be read or the checkpoint written
+     * @throws IllegalArgumentException if a CSV file has no user_id or roles column
+     */
+    public Report run(Path file) {
+        Path checkpointFile = checkpoint != null ? checkpoint : file.resolveSibling(file.getFileName() + ".checkpoint");
+        Report report = new Report();
+        report.resumedAfter = readCheckpoint(checkpointFile);
+        List<UserChange> batch = new ArrayList<>(Math.min(batchSize, 1 << 16));
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean csv = isCsv(file, reader);
+            Map<String, Integer> columns = null;
+            for (String line; (line = reader.readLine()) != null; ) {
+                report.lines++;
+                if (line.isBlank()) continue;
+                if (csv && columns == null) {
+                    columns = header(parseCsv(line));
+                    continue;
+                }
+                if (report.lines <= report.resumedAfter) continue;
+                try {
+                    batch.add(csv ? fromCsv(parseCsv(line), columns) : fromJson(parseJson(line)));
+                } catch (IllegalArgumentException e) {
+                    report.rejected++;
+                    if (report.errors.size() < MAX_REPORTED_ERRORS) {
+                        report.errors.add("line " + report.lines + ": " + e.getMessage());
+                    }
+                }
+                if (batch.size() >= batchSize) {
+                    commit(batch, report, checkpointFile);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + file, e);
+        }
+        commit(batch, report, checkpointFile);
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            System.err.println("⚠️  Failed to remove checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+        return report;
+    }
+
+    // === Batches ===
+
+    private void commit(List<UserChange> batch, Report report, Path checkpointFile) {
+        if (!batch.isEmpty()) {
+            userRegistry.applyBatch(batch);
+            String batchId = UUID.randomUUID().toString().substring(0, 8);
+            List<AuditRecord> group = new ArrayList<>(batch.size() + 2);
+            group.add(AuditRecord.batchBegin(batchId, batch.size(), operator));
+            for (UserChange c : batch) {
+                group.add(AuditRecord.userAdd(c.getUserId(), String.join(",", c.getRoles()), c.getClientId(),
+                        c.isActive(), operator, batchId));
+            }
+            group.add(AuditRecord.batchCommit(batchId, operator));
+            userRegistry.getAuditLog().recordAll(group);
+            report.imported += batch.size();
+            report.batches++;
+            batch.clear();
+        }
+        writeCheckpoint(checkpointFile, report.lines);
+        progress.accept(report);
+    }
+
+    private static long readCheckpoint(Path file) {
+        if (!Files.exists(file)) return 0;
+        try {
+            return Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("⚠️  Ignoring unreadable checkpoint " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void writeCheckpoint(Path file, long line) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, Long.toString(line), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write checkpoint " + file, e);
+        }
+    }
+
+    // === Records ===
+
+    private UserChange toChange(String userId, List<String> roles, String clientId, Object active) {
+        if (userId == null || userId.isBlank() || userId.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("missing or malformed user_id '" + userId + "'");
+        }
+        if (roles.isEmpty()) {
+            throw new IllegalArgumentException("user " + userId + ": no roles");
+        }
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        for (String role : roles) {
+            if (!matrix.containsKey(role)) {
+                throw new IllegalArgumentException("user " + userId + ": unknown role '" + role + "'");
+            }
+        }
+        return UserChange.add(userId, roles, clientId == null || clientId.isBlank() ? null : clientId,
+                parseActive(userId, active));
+    }
+
+    private static boolean parseActive(String userId, Object value) {
+        if (value == null) return true;
+        if (value instanceof Boolean) return (Boolean) value;
+        switch (value.toString().trim().toLowerCase(Locale.ROOT)) {
+            case "": case "true": case "yes": case "1": return true;
+            case "false": case "no": case "0": return false;
+            default: throw new IllegalArgumentException("user " + userId + ": bad active flag '" + value + "'");
+        }
+    }
+
+    private static List<String> splitRoles(String roles) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        if (roles != null) {
+            for (String role : roles.split("[;|]")) {
+                if (!role.isBlank()) names.add(role.trim());
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    // === CSV ===
+
+    private static boolean isCsv(Path file, BufferedReader reader) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) return true;
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) return false;
+        reader.mark(1 << 16);
+        int c;
+        while ((c = reader.read()) != -1 && Character.isWhitespace(c)) { }
+        reader.reset();
+        return c != '{';
+    }
+
+    private static Map<String, Integer> header(List<String> names) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            columns.put(name.equals("role") ? "roles" : name, i);
+        }
+        if (!columns.containsKey("user_id") || !columns.containsKey("roles")) {
+            throw new IllegalArgumentException("CSV header must name user_id and roles columns: " + names);
+        }
+        return columns;
+    }
+
+    private UserChange fromCsv(List<String> fields, Map<String, Integer> columns) {
+        return toChange(field(fields, columns, "user_id"), splitRoles(field(fields, columns, "roles")),
+                field(fields, columns, "client_id"), field(fields, columns, "active"));
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer i = columns.get(name);
+        return i == null || i >= fields.size() ? null : fields.get(i).trim();
+    }
+
+    /**
+     * Splits one CSV record: comma separated, fields may be double-quoted
+     * with "" for a literal quote. Records do not span lines.
+     */
+    static List<String> parseCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // === JSONL ===
+
+    /**
+     * Reads one JSONL record through the shared YAML parser (JSON is YAML
+     * flow syntax).
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parseJson(String line) {
+        Object parsed = YamlLoader.parseText(line);
+        if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+        return (Map<String, Object>) parsed;
+    }
+
+    private UserChange fromJson(Map<String, Object> record) {
+        Object roles = record.containsKey("roles") ? record.get("roles") : record.get("role");
+        List<String> names;
+        if (roles instanceof List) {
+            LinkedHashSet<String> unique = new LinkedHashSet<>();
+            for (Object role : (List<?>) roles) {
+                if (!(role instanceof String) || ((String) role).isBlank()) {
+                    throw new IllegalArgumentException("roles must be non-blank strings: " + roles);
+                }
+                unique.add((String) role);
+            }
+            names = List.copyOf(unique);
+        } else {
+            names = splitRoles(roles instanceof String ? (String) roles : null);
+        }
+        Object userId = record.get("user_id");
+        Object clientId = record.get("client_id");
+        return toChange(userId instanceof String ? (String) userId : null, names,
+                clientId != null ? clientId.toString() : null, record.get("active"));
+    }
+}
@@ -0,0 +1,233 @@
+// === src/main/java/admin/PolicyTransaction.java ===
+
+package admin;
+
+import audit.AuditRecord;
+import core.PermissionChange;
+import core.PermissionsManager;
+import core.PolicyValidationException;
+import core.PolicyValidator;
+import users.UserChange;
+import users.UserRegistryManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * PolicyTransaction stages grants and user changes in memory and applies
+ * them together on commit.
+ *
+ * On commit the transaction:
+ *   1. validates every staged change and reports all errors at once
+ *   2. publishes the new matrix and registry (one reference swap each)
+ *   3. persists each YAML file with a single atomic write
+ *   4. writes one grouped audit record (BATCH BEGIN … BATCH COMMIT)
+ *
+ * Nothing is written if validation fails, so a bad script can never
+ * leave a half-applied role behind.
+ *
+ * The matrix and the registry are separate files, so the two halves are
+ * published and saved one after the other. If the second fails (or either
+ * save does), the roles and users the batch touched are put back as they
+ * were before commit and saved again, and commit throws; the staged
+ * changes are kept so the operator can retry or roll back. Readers may
+ * see the first half in the meantime, and a change another operator made
+ * to the same roles or users in that window is undone along with it.
+ */
+public class PolicyTransaction {
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final String operator;
+
+    private final List<PermissionChange> permissionChanges = new ArrayList<>();
+    private final List<UserChange> userChanges = new ArrayList<>();
+
+    /**
+     * @param pm       the permissions manager to commit into
+     * @param urm      the user registry to commit into
+     * @param operator actor recorded in the audit log
+     */
+    public PolicyTransaction(PermissionsManager pm, UserRegistryManager urm, String operator) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.operator = operator;
+    }
+
+    /**
+     * Stages a grant or revoke.
+     */
+    public void grant(String role, String key, boolean value) {
+        permissionChanges.add(PermissionChange.set(role, key, value));
+    }
+
+    /**
+     * Stages a user add/update.
+     */
+    public void addUser(String userId, String role, String clientId, boolean active) {
+        userChanges.add(UserChange.add(userId, role, clientId, active));
+    }
+
+    /**
+     * Stages a user add/update with several roles.
+     */
+    public void addUser(String userId, List<String> roles, String clientId, boolean active) {
+        userChanges.add(UserChange.add(userId, roles, clientId, active));
+    }
+
+    /**
+     * Stages an active-flag change.
+     */
+    public void toggleActive(String userId, boolean active) {
+        userChanges.add(UserChange.toggle(userId, active));
+    }
+
+    /**
+     * @return number of staged changes
+     */
+    public int size() {
+        return permissionChanges.size() + userChanges.size();
+    }
+
+    /**
+     * @return true if nothing has been staged
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Discards all staged changes.
+     */
+    public void rollback() {
+        permissionChanges.clear();
+        userChanges.clear();
+    }
+
+    /**
+     * Validates staged changes against the current policy plus the
+     * changes staged earlier in this transaction.
+     *
+     * @return list of errors (empty if valid)
+     */
+    public List<String> validate() {
+        List<String> errors = new ArrayList<>();
+        Set<String> roles = new HashSet<>(permissionsManager.getAllRoles());
+
+        for (PermissionChange change : permissionChanges) {
+            if (change.getRole() == null || change.getRole().isBlank()) {
+                errors.add("grant: missing role in '" + change + "'");
+            } else {
+                roles.add(change.getRole());
+            }
+            if (!PolicyValidator.isValidEntryKey(change.getKey())) {
+                errors.add("grant: malformed permission key '" + change.getKey() + "'");
+            }
+        }
+
+        Set<String> users = new HashSet<>(userRegistry.getAllUserIds());
+        for (UserChange change : userChanges) {
+            if (change.getKind() == UserChange.Kind.ADD) {
+                if (change.getRoles().isEmpty()) {
+                    errors.add("adduser " + change.getUserId() + ": unknown role 'null'");
+                }
+                for (String role : change.getRoles()) {
+                    if (!roles.contains(role)) {
+                        errors.add("adduser " + change.getUserId() + ": unknown role '" + role + "'");
+                    }
+                }
+                users.add(change.getUserId());
+            } else if (!users.contains(change.getUserId())) {
+                errors.add("toggle: unknown user '" + change.getUserId() + "'");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Validates and applies all staged changes, then clears the transaction.
+     *
+     * @return the batch ID written to the audit log
+     * @throws PolicyValidationException if any staged change is invalid
+     * @throws IllegalStateException     if applying or saving failed; what was
+     *         applied has been undone and the changes are still staged
+     */
+    public String commit() {
+        List<String> errors = validate();
+        if (!errors.isEmpty()) {
+            throw new PolicyValidationException(errors);
+        }
+
+        String batchId = UUID.randomUUID().toString().substring(0, 8);
+        Map<String, Map<String, Boolean>> matrixBefore = permissionsManager.snapshot();
+        Map<String, Map<String, Object>> usersBefore = userRegistry.getAllUsers();
+        boolean usersTouched = false;
+        try {
+            // Matrix first, so roles introduced by this batch exist before users reference them.
+            permissionsManager.applyBatch(permissionChanges);
+            usersTouched = true;
+            userRegistry.applyBatch(userChanges);
+        } catch (RuntimeException e) {
+            IllegalStateException failure =
+                    new IllegalStateException("Batch " + batchId + " failed and was undone: " + e.getMessage(), e);
+            undo(matrixBefore, usersTouched ? usersBefore : null, failure);
+            throw failure;
+        }
+        logBatch(batchId);
+        rollback();
+        return batchId;
+    }
+
+    /**
+     * Puts every role and user the batch touched back to its state before
+     * commit; users only if usersBefore is given (the registry half was
+     * attempted). Both halves are restored even if one of them fails; such
+     * failures are attached to the commit's.
+     */
+    private void undo(Map<String, Map<String, Boolean>> matrixBefore,
+                      Map<String, Map<String, Object>> usersBefore, IllegalStateException failure) {
+        Map<String, Map<String, Boolean>> roles = new HashMap<>();
+        for (PermissionChange c : permissionChanges) {
+            roles.put(c.getRole(), matrixBefore.get(c.getRole()));
+        }
+        Map<String, Map<String, Object>> users = new HashMap<>();
+        if (usersBefore != null) {
+            for (UserChange c : userChanges) {
+                users.put(c.getUserId(), usersBefore.get(c.getUserId()));
+            }
+        }
+        try {
+            if (!roles.isEmpty()) permissionsManager.restoreRoles(roles);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        try {
+            if (!users.isEmpty()) userRegistry.restoreUsers(users);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Writes the whole batch as one contiguous audit record group.
+     */
+    private void logBatch(String batchId) {
+        List<AuditRecord> group = new ArrayList<>(size() + 2);
+        group.add(AuditRecord.batchBegin(batchId, size(), operator));
+        for (PermissionChange c : permissionChanges) {
+            group.add(AuditRecord.permissionChange(c.getRole(), c.getKey(), c.getValue(), operator, batchId));
+        }
+        for (UserChange c : userChanges) {
+            group.add(c.getKind() == UserChange.Kind.ADD
+                    ? AuditRecord.userAdd(c.getUserId(), String.join(",", c.getRoles()), c.getClientId(), c.isActive(), operator, batchId)
+                    : AuditRecord.userToggle(c.getUserId(), c.isActive(), operator, batchId));
+        }
+        group.add(AuditRecord.batchCommit(batchId, operator));
+        permissionsManager.getAuditLog().recordAll(group);
+    }
+}
@@ -0,0 +1,129 @@
+// === src/main/java/audit/AuditLog.java ===
+
+package audit;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * AuditLog is the single sink for audit records.
+ *
+ * Records go to the structured, indexed {@link AuditStore}, whose segments
+ * are rotated, compressed and pruned by retention. Readable output comes
+ * from the store (the admin console's audit command, or
+ * {@link AuditStore#readRange}).
+ *
+ * The human-readable rbac.log mirror of earlier versions grows without
+ * bound, so it is off by default; -Drbac.audit.textlog=true turns it back
+ * on for setups that still tail it.
+ *
+ * The store is opened lazily on first use, so tools that never write or
+ * query the audit trail do not pay for opening it. When the store is
+ * created for the first time, an existing rbac.log history is imported
+ * into it.
+ */
+public class AuditLog {
+
+    private static volatile AuditLog defaultLog;
+
+    private final String logPath;
+    private final String storePath;
+    private final boolean textMirror;
+    private AuditStore store;
+
+    /**
+     * Writes the rbac.log mirror only if rbac.audit.textlog is true.
+     *
+     * @param logPath   path of the legacy text log (e.g. rbac.log)
+     * @param storePath directory of the structured store (e.g. rbac-audit)
+     */
+    public AuditLog(String logPath, String storePath) {
+        this(logPath, storePath, Boolean.getBoolean("rbac.audit.textlog"));
+    }
+
+    /**
+     * @param logPath    path of the legacy text log (e.g. rbac.log)
+     * @param storePath  directory of the structured store (e.g. rbac-audit)
+     * @param textMirror true to also append every record to the text log
+     */
+    public AuditLog(String logPath, String storePath, boolean textMirror) {
+        this.logPath = logPath;
+        this.storePath = storePath;
+        this.textMirror = textMirror;
+    }
+
+    /**
+     * @return the process-wide log writing to rbac-audit/ (and rbac.log if mirrored)
+     */
+    public static AuditLog getDefault() {
+        if (defaultLog == null) {
+            synchronized (AuditLog.class) {
+                if (defaultLog == null) {
+                    defaultLog = new AuditLog("rbac.log", "rbac-audit");
+                }
+            }
+        }
+        return defaultLog;
+    }
+
+    /**
+     * Records a single entry.
+     */
+    public void record(AuditRecord record) {
+        recordAll(List.of(record));
+    }
+
+    /**
+     * Records a group of entries with one write per sink, so a batch is
+     * never interleaved with other writers.
+     *
+     * @param records the entries, in order
+     */
+    public synchronized void recordAll(List<AuditRecord> records) {
+        if (records.isEmpty()) return;
+        // Open the store first so a first-time legacy import does not pick up these lines.
+        AuditStore target = getStore();
+        if (textMirror) {
+            mirror(records);
+        }
+        target.append(records);
+    }
+
+    private void mirror(List<AuditRecord> records) {
+        try (FileWriter fw = new FileWriter(logPath, true)) {
+            StringBuilder sb = new StringBuilder();
+            for (AuditRecord r : records) {
+                sb.append(r.toLogLine());
+            }
+            fw.write(sb.toString());
+        } catch (IOException e) {
+            System.err.println("Failed to write to log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queries the structured store.
+     *
+     * @param query the filter
+     * @return matching records, newest first
+     */
+    public List<AuditRecord> query(AuditQuery query) {
+        return getStore().query(query);
+    }
+
+    /**
+     * @return the structured store, opening (and seeding) it on first use
+     */
+    public synchronized AuditStore getStore() {
+        if (store == null) {
+            boolean fresh = !new File(storePath).exists();
+            store = new AuditStore(storePath);
+            if (fresh) {
+                store.importLegacyLog(logPath);
+            }
+        }
+        return store;
+    }
+}
@@ -0,0 +1,112 @@
+// === src/main/java/audit/AuditQuery.java ===
+
+package audit;
+
+import java.time.Instant;
+
+/**
+ * AuditQuery describes a filter over the audit trail.
+ *
+ * All criteria are optional and combined with AND. Results are returned
+ * newest first, up to the limit.
+ *
+ * Example:
+ *   new AuditQuery().role("trader").from(Instant.parse("2025-01-01T00:00:00Z")).limit(50)
+ */
+public class AuditQuery {
+
+    private Instant from;              // inclusive
+    private Instant to;                // exclusive
+    private String operator;
+    private String role;
+    private String userId;
+    private String key;
+    private AuditRecord.Action action;
+    private int limit = 100;
+
+    public AuditQuery from(Instant from) {
+        this.from = from;
+        return this;
+    }
+
+    public AuditQuery to(Instant to) {
+        this.to = to;
+        return this;
+    }
+
+    public AuditQuery operator(String operator) {
+        this.operator = operator;
+        return this;
+    }
+
+    public AuditQuery role(String role) {
+        this.role = role;
+        return this;
+    }
+
+    public AuditQuery user(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public AuditQuery key(String key) {
+        this.key = key;
+        return this;
+    }
+
+    public AuditQuery action(AuditRecord.Action action) {
+        this.action = action;
+        return this;
+    }
+
+    public AuditQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public AuditRecord.Action getAction() {
+        return action;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Checks the non-time criteria against a record.
+     *
+     * @param r the record to test
+     * @return true if the record matches
+     */
+    public boolean matches(AuditRecord r) {
+        return (operator == null || operator.equals(r.getOperator()))
+                && (role == null || role.equals(r.getRole()))
+                && (userId == null || userId.equals(r.getUserId()))
+                && (key == null || key.equals(r.getKey()))
+                && (action == null || action == r.getAction());
+    }
+}
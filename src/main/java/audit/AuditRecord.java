@@ -0,0 +1,180 @@
+// === src/main/java/audit/AuditRecord.java ===
+
+package audit;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * AuditRecord is one structured entry in the audit trail.
+ *
+ * Every policy change is recorded with the same fixed set of fields so it
+ * can be indexed and queried. Fields that do not apply to an action are null:
+ *
+ *   action             role  user  key  value            client_id
+ *   PERMISSION_CHANGE   ✔           ✔    true/false
+ *   USER_ADD            ✔     ✔         active
+ *   USER_TOGGLE               ✔         active
+ *   BATCH_BEGIN                         change count
+ *   BATCH_COMMIT
+ *
+ * {@link #toLogLine()} renders the record in the human-readable rbac.log format.
+ */
+public final class AuditRecord {
+
+    private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Kinds of audited actions, with the label used in rbac.log.
+     */
+    public enum Action {
+        PERMISSION_CHANGE("PERMISSION CHANGE"),
+        USER_ADD("USER ADD"),
+        USER_TOGGLE("USER STATUS TOGGLE"),
+        BATCH_BEGIN("BATCH BEGIN"),
+        BATCH_COMMIT("BATCH COMMIT");
+
+        private final String label;
+
+        Action(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the action with this rbac.log label, or null
+         */
+        public static Action fromLabel(String label) {
+            for (Action a : values()) {
+                if (a.label.equals(label)) return a;
+            }
+            return null;
+        }
+    }
+
+    private final Instant time;
+    private final Action action;
+    private final String operator;
+    private final String role;
+    private final String userId;
+    private final String key;
+    private final String value;
+    private final String clientId;
+    private final String batchId;
+
+    /**
+     * Full constructor; prefer the static factories.
+     */
+    public AuditRecord(Instant time, Action action, String operator, String role, String userId,
+                       String key, String value, String clientId, String batchId) {
+        this.time = time;
+        this.action = action;
+        this.operator = operator;
+        this.role = role;
+        this.userId = userId;
+        this.key = key;
+        this.value = value;
+        this.clientId = clientId;
+        this.batchId = batchId;
+    }
+
+    public static AuditRecord permissionChange(String role, String key, Boolean value, String operator, String batchId) {
+        return new AuditRecord(Instant.now(), Action.PERMISSION_CHANGE, operator, role, null,
+                key, String.valueOf(value), null, batchId);
+    }
+
+    public static AuditRecord userAdd(String userId, String role, String clientId, boolean active,
+                                      String operator, String batchId) {
+        return new AuditRecord(Instant.now(), Action.USER_ADD, operator, role, userId,
+                null, String.valueOf(active), clientId, batchId);
+    }
+
+    public static AuditRecord userToggle(String userId, boolean active, String operator, String batchId) {
+        return new AuditRecord(Instant.now(), Action.USER_TOGGLE, operator, null, userId,
+                null, String.valueOf(active), null, batchId);
+    }
+
+    public static AuditRecord batchBegin(String batchId, int changes, String operator) {
+        return new AuditRecord(Instant.now(), Action.BATCH_BEGIN, operator, null, null,
+                null, String.valueOf(changes), null, batchId);
+    }
+
+    public static AuditRecord batchCommit(String batchId, String operator) {
+        return new AuditRecord(Instant.now(), Action.BATCH_COMMIT, operator, null, null,
+                null, null, null, batchId);
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * Renders the record in the rbac.log text format.
+     *
+     * @return one log line including the trailing newline
+     */
+    public String toLogLine() {
+        String ts = LocalDateTime.ofInstant(time, ZoneId.systemDefault()).format(TS);
+        String batch = batchId != null && action != Action.BATCH_BEGIN && action != Action.BATCH_COMMIT
+                ? " batch=" + batchId : "";
+        switch (action) {
+            case PERMISSION_CHANGE:
+                return String.format("[%s] %s: role=%s key=%s value=%s operator=%s%s\n",
+                        ts, action.label, role, key, value, operator, batch);
+            case USER_ADD:
+                return String.format("[%s] %s: user=%s role=%s client_id=%s active=%s operator=%s%s\n",
+                        ts, action.label, userId, role, clientId, value, operator, batch);
+            case USER_TOGGLE:
+                return String.format("[%s] %s: user=%s active=%s operator=%s%s\n",
+                        ts, action.label, userId, value, operator, batch);
+            case BATCH_BEGIN:
+                return String.format("[%s] %s: batch=%s changes=%s operator=%s\n",
+                        ts, action.label, batchId, value, operator);
+            default:
+                return String.format("[%s] %s: batch=%s operator=%s\n",
+                        ts, action.label, batchId, operator);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toLogLine().trim();
+    }
+}
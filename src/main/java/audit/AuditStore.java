@@ -0,0 +1,337 @@
+// === src/main/java/audit/AuditStore.java ===
+
+package audit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AuditStore is an append-only, indexed store of structured audit records.
+ *
+ * Records are appended to a {@link SegmentedLog} (bounded, rotated and
+ * compressed segment files). Each segment has its own {@link SegmentIndex}
+ * over time, operator, role, user and permission key. Only the segment
+ * being written is indexed and held in memory as records arrive; when it is
+ * sealed its index is written next to it, and the indexes of older segments
+ * are read back only when a query reaches them.
+ *
+ * A query walks the segments that overlap its time window, newest first,
+ * and stops once it has q.getLimit() records. Within a segment it starts
+ * from the smallest matching posting list and narrows it by binary search
+ * on time, and the segment's records are read only when the index says one
+ * may match. Opening a store therefore reads nothing, and a query costs
+ * roughly O(segments in the window + log n + matches).
+ *
+ * The indexes of a few recently queried segments are cached along with
+ * their records. When retention deletes a segment, its index file goes
+ * with it and the cache lets go of it. An index file that is missing or
+ * does not match its segment (written before indexes were kept, or lost in
+ * a crash) is rebuilt from the segment the first time a query needs it.
+ *
+ * Bulk time-range reads that do not need the indexes can stream straight
+ * from the segments with {@link #readRange}. If the store does not exist
+ * yet, the legacy rbac.log text lines can be imported once with
+ * {@link #importLegacyLog(String)}.
+ */
+public class AuditStore {
+
+    private static final DateTimeFormatter LEGACY_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern LEGACY_LINE = Pattern.compile("^\\[(.+?)\\] ([A-Z ]+): (.*)$");
+    private static final Pattern LEGACY_FIELD = Pattern.compile("(\\w+)=(\\S*)");
+    private static final int CACHED_SEGMENTS = 8;
+
+    private final SegmentedLog log;
+
+    private long currentSeq = -1;                            // segment the current index belongs to
+    private SegmentIndex current = SegmentIndex.open();      // index and records of that segment
+    private final Map<Long, SegmentIndex> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SegmentIndex> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    /**
+     * Opens (or creates) a store with default segment limits.
+     *
+     * @param dir directory holding the audit segments
+     */
+    public AuditStore(String dir) {
+        this(new SegmentedLog(Paths.get(dir)));
+    }
+
+    /**
+     * Opens a store on an already configured segmented log.
+     *
+     * @param log the segment storage
+     */
+    public AuditStore(SegmentedLog log) {
+        this.log = log;
+        log.setPruneListener(this::segmentPruned);
+    }
+
+    /**
+     * @return true if the store has no records
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return number of records in the store
+     */
+    public long size() {
+        return log.recordCount();
+    }
+
+    /**
+     * Appends records to the active segment and its index as one write.
+     *
+     * @param batch records to append, in order
+     */
+    public synchronized void append(List<AuditRecord> batch) {
+        if (batch.isEmpty()) return;
+        long seq = log.append(batch);
+        if (seq != currentSeq) {
+            if (current.size() > 0) seal(currentSeq, current);
+            currentSeq = seq;
+            current = SegmentIndex.open();
+        }
+        for (AuditRecord r : batch) {
+            current.add(r);
+        }
+    }
+
+    /**
+     * Runs a query against the indexes.
+     *
+     * @param q the filter
+     * @return matching records, newest first, at most q.getLimit()
+     */
+    public synchronized List<AuditRecord> query(AuditQuery q) {
+        List<AuditRecord> result = new ArrayList<>();
+        if (current.mayMatch(q)) current.collect(q, result);
+        long lo = q.getFrom() == null ? Long.MIN_VALUE : q.getFrom().toEpochMilli();
+        long hi = q.getTo() == null ? Long.MAX_VALUE : q.getTo().toEpochMilli();
+        for (long seq : log.closedSegments(lo, hi)) {
+            if (result.size() >= q.getLimit()) break;
+            if (seq == currentSeq) continue;
+            SegmentIndex index = segment(seq);
+            if (index == null || !index.mayMatch(q)) continue;
+            if (!index.hasRecords()) {
+                index = withRecords(seq, index);
+                if (index == null || !index.mayMatch(q)) continue;
+            }
+            index.collect(q, result);
+        }
+        return result;
+    }
+
+    /**
+     * Streams records in a time range straight from the segments, touching
+     * only the segments and blocks that overlap the range.
+     *
+     * @param from     inclusive lower bound, or null
+     * @param to       exclusive upper bound, or null
+     * @param consumer receives matching records in append order
+     */
+    public void readRange(Instant from, Instant to, Consumer<AuditRecord> consumer) {
+        log.read(from != null ? from.toEpochMilli() : null,
+                to != null ? to.toEpochMilli() : null,
+                consumer);
+    }
+
+    /**
+     * @return the underlying segment storage
+     */
+    public SegmentedLog getLog() {
+        return log;
+    }
+
+    /**
+     * Imports legacy rbac.log text lines into an empty store.
+     *
+     * @param legacyPath path to rbac.log
+     * @return number of imported records
+     */
+    public synchronized int importLegacyLog(String legacyPath) {
+        Path legacy = Paths.get(legacyPath);
+        if (!isEmpty() || !Files.exists(legacy)) return 0;
+        List<AuditRecord> imported = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(legacy, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AuditRecord r = parseLegacy(line);
+                if (r != null) imported.add(r);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to import legacy log: " + e.getMessage());
+            return 0;
+        }
+        append(imported);
+        return imported.size();
+    }
+
+    // === Segment indexes ===
+
+    /**
+     * Writes the index of a segment that was just sealed and keeps it
+     * cached while its records are still at hand.
+     */
+    private void seal(long seq, SegmentIndex index) {
+        save(seq, index);
+        cache.put(seq, index);
+    }
+
+    /**
+     * @return the index of a closed segment, from the cache, its index file,
+     *         or rebuilt from the segment; null if the segment is gone
+     */
+    private SegmentIndex segment(long seq) {
+        SegmentIndex index = cache.get(seq);
+        if (index != null) return index;
+        Path file = log.indexFile(seq);
+        if (Files.exists(file)) {
+            try {
+                index = SegmentIndex.read(file);
+            } catch (IOException e) {
+                System.err.println("⚠️ Rebuilding audit index " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        if (index == null) {
+            List<AuditRecord> segment = new ArrayList<>();
+            if (!log.readSegment(seq, segment::add)) return null;
+            index = SegmentIndex.of(segment);
+            save(seq, index);
+        }
+        cache.put(seq, index);
+        return index;
+    }
+
+    /**
+     * Reads a segment's records for its index, rebuilding the index if it
+     * turns out not to match them.
+     *
+     * @return the index with records attached, or null if the segment is gone
+     */
+    private SegmentIndex withRecords(long seq, SegmentIndex index) {
+        List<AuditRecord> segment = new ArrayList<>();
+        if (!log.readSegment(seq, segment::add)) return null;
+        if (!index.attach(segment)) {
+            index = SegmentIndex.of(segment);
+            save(seq, index);
+            cache.put(seq, index);
+        }
+        return index;
+    }
+
+    private void save(long seq, SegmentIndex index) {
+        try {
+            index.write(log.indexFile(seq));
+        } catch (IOException e) {
+            // Not fatal: the index is rebuilt from the segment when next needed.
+            System.err.println("⚠️ Failed to write audit index for segment " + seq + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called when retention deleted a segment (and its index file).
+     */
+    private synchronized void segmentPruned(long seq) {
+        cache.remove(seq);
+        if (seq == currentSeq) {
+            currentSeq = -1;
+            current = SegmentIndex.open();
+        }
+    }
+
+    // === File format ===
+
+    private static final int FIELDS = 9;
+
+    static String encode(AuditRecord r) {
+        return r.getTime().toEpochMilli() + "\t" + r.getAction().name()
+                + "\t" + escape(r.getOperator()) + "\t" + escape(r.getRole())
+                + "\t" + escape(r.getUserId()) + "\t" + escape(r.getKey())
+                + "\t" + escape(r.getValue()) + "\t" + escape(r.getClientId())
+                + "\t" + escape(r.getBatchId());
+    }
+
+    static AuditRecord decode(String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length != FIELDS) return null;
+        try {
+            return new AuditRecord(Instant.ofEpochMilli(Long.parseLong(f[0])),
+                    AuditRecord.Action.valueOf(f[1]),
+                    unescape(f[2]), unescape(f[3]), unescape(f[4]), unescape(f[5]),
+                    unescape(f[6]), unescape(f[7]), unescape(f[8]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String escape(String s) {
+        if (s == null) return "";
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        if (s.isEmpty()) return null;
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses one rbac.log text line back into a record.
+     *
+     * @return the record, or null if the line is not an audit line
+     */
+    static AuditRecord parseLegacy(String line) {
+        Matcher m = LEGACY_LINE.matcher(line);
+        if (!m.matches()) return null;
+        AuditRecord.Action action = AuditRecord.Action.fromLabel(m.group(2));
+        if (action == null) return null;
+        Instant time;
+        try {
+            time = LocalDateTime.parse(m.group(1), LEGACY_TS).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        Map<String, String> f = new HashMap<>();
+        Matcher fm = LEGACY_FIELD.matcher(m.group(3));
+        while (fm.find()) {
+            f.put(fm.group(1), fm.group(2));
+        }
+        String value = action == AuditRecord.Action.PERMISSION_CHANGE ? f.get("value")
+                : action == AuditRecord.Action.BATCH_BEGIN ? f.get("changes")
+                : f.get("active");
+        return new AuditRecord(time, action, f.get("operator"), f.get("role"), f.get("user"),
+                f.get("key"), value, f.get("client_id"), f.get("batch"));
+    }
+}
@@ -0,0 +1,287 @@
+// === src/main/java/audit/SegmentIndex.java ===
+
+package audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SegmentIndex indexes the records of one audit segment by:
+ *   - time       (sorted array, binary search)
+ *   - operator   (posting list of record positions in the segment)
+ *   - role       (posting list)
+ *   - user       (posting list)
+ *   - permission key (posting list)
+ *
+ * The store writes it next to the segment once the segment is sealed, and
+ * reads it back instead of the segment until a query actually needs records
+ * from it. The records themselves are attached only while they are needed.
+ *
+ * File format (big-endian):
+ *   "RBACIDX1" count:int time:long[count]
+ *   4 x { values:int { value:utf ids:int ids:int[ids] }* }   operator, role, user, key
+ */
+final class SegmentIndex {
+
+    private static final long MAGIC = 0x5242414349445831L;   // "RBACIDX1"
+
+    private long[] times = new long[64];   // epoch millis, non-decreasing, indexed by position
+    private int count;
+    private final Map<String, IntList> byOperator = new HashMap<>();
+    private final Map<String, IntList> byRole = new HashMap<>();
+    private final Map<String, IntList> byUser = new HashMap<>();
+    private final Map<String, IntList> byKey = new HashMap<>();
+    private List<AuditRecord> records;     // the segment's records in order, or null if not loaded
+
+    /**
+     * @return an empty index that keeps the records added to it
+     */
+    static SegmentIndex open() {
+        SegmentIndex index = new SegmentIndex();
+        index.records = new ArrayList<>();
+        return index;
+    }
+
+    /**
+     * @return an index over the given records, which stay attached
+     */
+    static SegmentIndex of(List<AuditRecord> records) {
+        SegmentIndex index = open();
+        for (AuditRecord r : records) {
+            index.add(r);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the next record of the segment.
+     */
+    void add(AuditRecord r) {
+        int pos = count++;
+        if (pos == times.length) {
+            times = Arrays.copyOf(times, pos * 2);
+        }
+        long t = r.getTime().toEpochMilli();
+        // Clamp so the time index stays sorted even if the clock stepped back.
+        times[pos] = pos > 0 ? Math.max(t, times[pos - 1]) : t;
+        post(byOperator, r.getOperator(), pos);
+        post(byRole, r.getRole(), pos);
+        post(byUser, r.getUserId(), pos);
+        post(byKey, r.getKey(), pos);
+        if (records != null) records.add(r);
+    }
+
+    /**
+     * @return number of records in the segment
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return true if the segment's records are attached
+     */
+    boolean hasRecords() {
+        return records != null;
+    }
+
+    /**
+     * Attaches the segment's records, read back in order.
+     *
+     * @return false if they do not match this index (it is stale)
+     */
+    boolean attach(List<AuditRecord> segment) {
+        if (segment.size() != count) return false;
+        records = segment;
+        return true;
+    }
+
+    /**
+     * @return true if the indexes say some record may match, without looking at records
+     */
+    boolean mayMatch(AuditQuery q) {
+        int lo = lowerBound(q.getFrom() == null ? Long.MIN_VALUE : q.getFrom().toEpochMilli());
+        int hi = q.getTo() == null ? count : lowerBound(q.getTo().toEpochMilli());
+        if (lo >= hi) return false;
+        IntList postings = postings(q);
+        return postings == null || postings.upperBound(hi - 1) > postings.upperBound(lo - 1);
+    }
+
+    /**
+     * Adds the records matching the query to result, newest first, until it
+     * holds q.getLimit() records. The records must be attached.
+     *
+     * A query starts from the smallest matching posting list, narrows it to
+     * the requested time window by binary search, and checks the remaining
+     * criteria only on those candidates.
+     */
+    void collect(AuditQuery q, List<AuditRecord> result) {
+        int lo = lowerBound(q.getFrom() == null ? Long.MIN_VALUE : q.getFrom().toEpochMilli());
+        int hi = q.getTo() == null ? count : lowerBound(q.getTo().toEpochMilli());
+        IntList postings = postings(q);
+        if (postings == null) {
+            for (int pos = hi - 1; pos >= lo && result.size() < q.getLimit(); pos--) {
+                AuditRecord r = records.get(pos);
+                if (q.matches(r)) result.add(r);
+            }
+            return;
+        }
+        for (int i = postings.upperBound(hi - 1) - 1; i >= 0 && result.size() < q.getLimit(); i--) {
+            int pos = postings.get(i);
+            if (pos < lo) break;
+            AuditRecord r = records.get(pos);
+            if (q.matches(r)) result.add(r);
+        }
+    }
+
+    // === File format ===
+
+    /**
+     * Writes the index to a file, replacing it atomically.
+     */
+    void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(times[i]);
+            }
+            for (Map<String, IntList> index : List.of(byOperator, byRole, byUser, byKey)) {
+                out.writeInt(index.size());
+                for (Map.Entry<String, IntList> e : index.entrySet()) {
+                    IntList list = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeInt(list.size);
+                    for (int i = 0; i < list.size; i++) {
+                        out.writeInt(list.data[i]);
+                    }
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an index written by {@link #write}, without records.
+     */
+    static SegmentIndex read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readLong() != MAGIC) throw new IOException("not a segment index");
+            SegmentIndex index = new SegmentIndex();
+            index.count = in.readInt();
+            index.times = new long[Math.max(index.count, 1)];
+            for (int i = 0; i < index.count; i++) {
+                index.times[i] = in.readLong();
+            }
+            for (Map<String, IntList> map : List.of(index.byOperator, index.byRole, index.byUser, index.byKey)) {
+                int values = in.readInt();
+                for (int v = 0; v < values; v++) {
+                    String value = in.readUTF();
+                    int[] ids = new int[in.readInt()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = in.readInt();
+                    }
+                    map.put(value, new IntList(ids));
+                }
+            }
+            return index;
+        }
+    }
+
+    // === Lookup ===
+
+    private static void post(Map<String, IntList> index, String value, int pos) {
+        if (value != null) {
+            index.computeIfAbsent(value, v -> new IntList()).add(pos);
+        }
+    }
+
+    /**
+     * @return the smallest posting list the query names, IntList.EMPTY if a value is unknown, or null if unfiltered
+     */
+    private IntList postings(AuditQuery q) {
+        return smallest(
+                postings(byOperator, q.getOperator()),
+                postings(byRole, q.getRole()),
+                postings(byUser, q.getUserId()),
+                postings(byKey, q.getKey()));
+    }
+
+    private static IntList postings(Map<String, IntList> index, String value) {
+        if (value == null) return null;
+        IntList list = index.get(value);
+        return list != null ? list : IntList.EMPTY;
+    }
+
+    private static IntList smallest(IntList... lists) {
+        IntList best = null;
+        for (IntList list : lists) {
+            if (list != null && (best == null || list.size < best.size)) best = list;
+        }
+        return best;
+    }
+
+    /**
+     * @return first position whose time is >= millis
+     */
+    private int lowerBound(long millis) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < millis) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Growable, sorted list of record positions.
+     */
+    private static final class IntList {
+        static final IntList EMPTY = new IntList();
+
+        int[] data;
+        int size;
+
+        IntList() {
+            this.data = new int[8];
+        }
+
+        IntList(int[] data) {
+            this.data = data;
+            this.size = data.length;
+        }
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+
+        /**
+         * @return index of the first element > v
+         */
+        int upperBound(int v) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (data[mid] <= v) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,688 @@
+// === src/main/java/audit/SegmentedLog.java ===
+
+package audit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * SegmentedLog stores audit records in a directory of bounded segment files.
+ *
+ * Segment lifecycle:
+ *   seg-00000042.active   the single open segment; records are appended here
+ *   seg-00000042.seg      closed, waiting for background compression
+ *   seg-00000042.segz     closed and compressed; read-only
+ *   seg-00000042.idx      the store's indexes for a closed segment (see {@link SegmentIndex})
+ *
+ * The active segment is rotated when it exceeds the size limit or the age
+ * limit. Closed segments are compressed on a background thread into
+ * independently deflated blocks, with a footer index holding the time
+ * range and file offset of each block, and a header holding the time range
+ * of the whole segment.
+ *
+ * A time-range read consults the in-memory catalog of segment headers,
+ * memory-maps only the segments that overlap the range, and inflates only
+ * the blocks whose footer entry overlaps it. Retention pruning deletes
+ * whole segments, and their index files, on the background thread, so
+ * writers are never blocked.
+ *
+ * File formats (big-endian):
+ *   active/.seg:  "RBACSEG1" created:long  { time:long len:int utf8[len] }*
+ *   .segz:        "RBACSGZ1" min:long max:long count:int  block*
+ *                 footer: blocks:int { first:long last:long offset:long zlen:int rawlen:int }*
+ *                 trailer: footerOffset:long "RBACSGZ1"
+ */
+public class SegmentedLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+    public static final Duration DEFAULT_SEGMENT_AGE = Duration.ofDays(1);
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(400);
+
+    private static final long ACTIVE_MAGIC = 0x5242414353454731L;   // "RBACSEG1"
+    private static final long PACKED_MAGIC = 0x5242414353475A31L;   // "RBACSGZ1"
+    private static final int ACTIVE_HEADER = 16;
+    private static final int PACKED_HEADER = 28;
+    private static final int TRAILER = 16;
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    /**
+     * Catalog entry for a closed segment (compressed or pending compression).
+     */
+    private static final class Segment {
+        final long seq;
+        final Path file;
+        final boolean packed;
+        final long minTime;
+        final long maxTime;
+        final int count;
+
+        Segment(long seq, Path file, boolean packed, long minTime, long maxTime, int count) {
+            this.seq = seq;
+            this.file = file;
+            this.packed = packed;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+        }
+
+        boolean overlaps(long from, long to) {
+            return maxTime >= from && minTime < to;
+        }
+    }
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+    private final Duration maxSegmentAge;
+    private final Clock clock;
+    private volatile Duration retention;
+    private volatile LongConsumer pruneListener;
+
+    private final ConcurrentSkipListMap<Long, Segment> closed = new ConcurrentSkipListMap<>();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "audit-segment-maintenance");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel active;
+    private Path activePath;
+    private long activeSeq;
+    private long activeCreated;
+    private long activeMin = Long.MAX_VALUE;
+    private long activeMax = Long.MIN_VALUE;
+    private int activeCount;
+
+    /**
+     * Opens a segmented log with default limits.
+     *
+     * @param dir directory holding the segments (created if missing)
+     */
+    public SegmentedLog(Path dir) {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE, DEFAULT_RETENTION, Clock.systemUTC());
+    }
+
+    /**
+     * Opens a segmented log.
+     *
+     * @param dir             directory holding the segments (created if missing)
+     * @param maxSegmentBytes rotate once the active segment reaches this size
+     * @param maxSegmentAge   rotate once the active segment is this old
+     * @param retention       delete closed segments whose newest record is older than this
+     * @param clock           time source for rotation and retention
+     */
+    public SegmentedLog(Path dir, long maxSegmentBytes, Duration maxSegmentAge, Duration retention, Clock clock) {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAge = maxSegmentAge;
+        this.retention = retention;
+        this.clock = clock;
+        try {
+            Files.createDirectories(dir);
+            long lastSeq = recover();
+            openActive(lastSeq + 1);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open audit segments in " + dir + ": " + e.getMessage(), e);
+        }
+        background.submit(this::prune);
+    }
+
+    /**
+     * Appends records to the active segment with one write, rotating first
+     * if the segment is full or too old.
+     *
+     * @param records records to append, in order
+     * @return sequence number of the segment they went to
+     */
+    public synchronized long append(List<AuditRecord> records) {
+        if (records.isEmpty()) return activeSeq;
+        try {
+            if (active.size() >= maxSegmentBytes
+                    || clock.millis() - activeCreated >= maxSegmentAge.toMillis()) {
+                rotate();
+            }
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buf);
+            for (AuditRecord r : records) {
+                long t = r.getTime().toEpochMilli();
+                byte[] payload = AuditStore.encode(r).getBytes(StandardCharsets.UTF_8);
+                out.writeLong(t);
+                out.writeInt(payload.length);
+                out.write(payload);
+                activeMin = Math.min(activeMin, t);
+                activeMax = Math.max(activeMax, t);
+            }
+            activeCount += records.size();
+            ByteBuffer bytes = ByteBuffer.wrap(buf.toByteArray());
+            while (bytes.hasRemaining()) {
+                active.write(bytes);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write audit segment: " + e.getMessage());
+        }
+        return activeSeq;
+    }
+
+    /**
+     * Reads every record with from <= time < to, in segment order.
+     * Pass null bounds for an open range.
+     *
+     * @param from     inclusive lower bound in epoch millis, or null
+     * @param to       exclusive upper bound in epoch millis, or null
+     * @param consumer receives matching records
+     */
+    public void read(Long from, Long to, Consumer<AuditRecord> consumer) {
+        read(from != null ? from : Long.MIN_VALUE, to != null ? to : Long.MAX_VALUE,
+                (record, seq) -> consumer.accept(record));
+    }
+
+    /**
+     * Reads every record, in order, with the sequence number of the
+     * segment holding it (see {@link #setPruneListener}).
+     *
+     * @param consumer receives each record and its segment
+     */
+    public void scan(ObjLongConsumer<AuditRecord> consumer) {
+        read(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    private void read(long lo, long hi, ObjLongConsumer<AuditRecord> consumer) {
+        for (Segment seg : closed.values()) {
+            if (seg.overlaps(lo, hi)) {
+                readClosed(seg, lo, hi, record -> consumer.accept(record, seg.seq));
+            }
+        }
+        Path current;
+        long seq;
+        synchronized (this) {
+            if (activeMin == Long.MAX_VALUE || activeMax < lo || activeMin >= hi) return;
+            current = activePath;
+            seq = activeSeq;
+        }
+        try {
+            readPlain(current, lo, hi, record -> consumer.accept(record, seq));
+        } catch (IOException e) {
+            System.err.println("Failed to read active audit segment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the closed segments holding records with lo <= time < hi,
+     * newest first.
+     *
+     * @return segment sequence numbers
+     */
+    List<Long> closedSegments(long lo, long hi) {
+        List<Long> out = new ArrayList<>();
+        for (Segment seg : closed.descendingMap().values()) {
+            if (seg.overlaps(lo, hi)) out.add(seg.seq);
+        }
+        return out;
+    }
+
+    /**
+     * Reads every record of one closed segment, in order.
+     *
+     * @param seq      segment sequence number
+     * @param consumer receives the records
+     * @return false if no such closed segment exists (never sealed, or pruned)
+     */
+    boolean readSegment(long seq, Consumer<AuditRecord> consumer) {
+        Segment seg = closed.get(seq);
+        if (seg == null) return false;
+        return readClosed(seg, Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * @return where the store keeps the indexes of the given segment
+     */
+    Path indexFile(long seq) {
+        return dir.resolve(name(seq, ".idx"));
+    }
+
+    /**
+     * @return number of records in the retained segments
+     */
+    public long recordCount() {
+        long count = 0;
+        for (Segment seg : closed.values()) {
+            count += seg.count;
+        }
+        synchronized (this) {
+            return count + activeCount;
+        }
+    }
+
+    /**
+     * @return number of closed segments (compressed or pending)
+     */
+    public int closedSegmentCount() {
+        return closed.size();
+    }
+
+    /**
+     * Lists segment files in sequence order (diagnostics).
+     */
+    public List<String> describe() {
+        List<String> out = new ArrayList<>();
+        for (Segment seg : closed.values()) {
+            out.add(seg.file.getFileName() + " [" + seg.minTime + ", " + seg.maxTime + "]");
+        }
+        synchronized (this) {
+            out.add(activePath.getFileName() + " (active)");
+        }
+        return out;
+    }
+
+    /**
+     * Changes the retention window and prunes in the background.
+     */
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+        background.submit(this::prune);
+    }
+
+    /**
+     * Registers a callback that is told the sequence number of every
+     * segment retention deletes, on the maintenance thread, so that an
+     * index can drop what it holds for it.
+     *
+     * @param listener receives segment sequence numbers, or null for none
+     */
+    public void setPruneListener(LongConsumer listener) {
+        this.pruneListener = listener;
+    }
+
+    /**
+     * Closes the active segment and starts a new one.
+     */
+    public synchronized void rotate() throws IOException {
+        active.force(true);
+        active.close();
+        if (activeMin == Long.MAX_VALUE) {
+            Files.deleteIfExists(activePath);
+        } else {
+            Path sealed = dir.resolve(name(activeSeq, ".seg"));
+            Files.move(activePath, sealed, StandardCopyOption.ATOMIC_MOVE);
+            closed.put(activeSeq, new Segment(activeSeq, sealed, false, activeMin, activeMax, activeCount));
+            long seq = activeSeq;
+            background.submit(() -> compress(seq, sealed));
+            background.submit(this::prune);
+        }
+        openActive(activeSeq + 1);
+    }
+
+    /**
+     * Waits for pending compression and pruning (mostly for tests and shutdown).
+     */
+    public void awaitMaintenance() {
+        try {
+            background.submit(() -> { }).get();
+        } catch (Exception e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(true);
+        active.close();
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // === Startup and maintenance ===
+
+    /**
+     * Rebuilds the catalog from the directory. Leftover active segments
+     * from a crash are trimmed to their last complete record and sealed;
+     * half-written compressions are deleted and redone, and index files
+     * left behind by a segment that is gone are deleted.
+     *
+     * @return the highest segment sequence number found
+     */
+    private long recover() throws IOException {
+        long lastSeq = 0;
+        Map<Long, Path> uncompressed = new TreeMap<>();
+        Map<Long, Path> indexes = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "seg-*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int dot = fileName.indexOf('.');
+                if (dot < 0) continue;
+                long seq;
+                try {
+                    seq = Long.parseLong(fileName.substring(4, dot));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                String ext = fileName.substring(dot);
+                lastSeq = Math.max(lastSeq, seq);
+                if (ext.equals(".segz")) {
+                    long[] range = packedRange(file);
+                    if (range != null) {
+                        closed.put(seq, new Segment(seq, file, true, range[0], range[1], (int) range[2]));
+                    }
+                } else if (ext.equals(".seg") || ext.equals(".active")) {
+                    long[] range = plainRangeAndTrim(file);
+                    if (range == null) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    Path sealed = file;
+                    if (ext.equals(".active")) {
+                        sealed = dir.resolve(name(seq, ".seg"));
+                        Files.move(file, sealed, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    closed.put(seq, new Segment(seq, sealed, false, range[0], range[1], (int) range[2]));
+                    uncompressed.put(seq, sealed);
+                } else if (ext.equals(".segz.tmp")) {
+                    Files.deleteIfExists(file);   // its .seg is still there and is compressed again
+                } else if (ext.equals(".idx")) {
+                    indexes.put(seq, file);
+                } else if (ext.equals(".idx.tmp")) {
+                    Files.deleteIfExists(file);   // rebuilt from the segment when it is next needed
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> index : indexes.entrySet()) {
+            if (!closed.containsKey(index.getKey())) Files.deleteIfExists(index.getValue());
+        }
+        // Only once the scan is done, so it never sees (and deletes) a new ".segz.tmp".
+        uncompressed.forEach((seq, sealed) -> background.submit(() -> compress(seq, sealed)));
+        return lastSeq;
+    }
+
+    private void openActive(long seq) throws IOException {
+        activeSeq = seq;
+        activePath = dir.resolve(name(seq, ".active"));
+        activeCreated = clock.millis();
+        activeMin = Long.MAX_VALUE;
+        activeMax = Long.MIN_VALUE;
+        activeCount = 0;
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(ACTIVE_HEADER);
+        header.putLong(ACTIVE_MAGIC).putLong(activeCreated).flip();
+        while (header.hasRemaining()) {
+            active.write(header);
+        }
+    }
+
+    /**
+     * Rewrites a sealed segment as deflated blocks with a footer index.
+     */
+    private void compress(long seq, Path source) {
+        if (!Files.exists(source)) return;
+        Path target = dir.resolve(name(seq, ".segz"));
+        Path tmp = dir.resolve(name(seq, ".segz.tmp"));
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            src.position(ACTIVE_HEADER);
+
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(footer);
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            int count = 0, blocks = 0;
+            long offset = PACKED_HEADER;
+            out.position(PACKED_HEADER);
+
+            while (src.remaining() >= 12) {
+                int blockStart = src.position();
+                long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+                while (src.remaining() >= 12 && src.position() - blockStart < BLOCK_BYTES) {
+                    long t = src.getLong();
+                    int len = src.getInt();
+                    src.position(src.position() + len);
+                    first = Math.min(first, t);
+                    last = Math.max(last, t);
+                    count++;
+                }
+                int rawLen = src.position() - blockStart;
+                byte[] raw = new byte[rawLen];
+                src.get(blockStart, raw);
+                byte[] zipped = deflate(raw);
+                ByteBuffer z = ByteBuffer.wrap(zipped);
+                while (z.hasRemaining()) {
+                    out.write(z);
+                }
+                index.writeLong(first);
+                index.writeLong(last);
+                index.writeLong(offset);
+                index.writeInt(zipped.length);
+                index.writeInt(rawLen);
+                offset += zipped.length;
+                blocks++;
+                min = Math.min(min, first);
+                max = Math.max(max, last);
+            }
+
+            ByteBuffer tail = ByteBuffer.allocate(4 + footer.size() + TRAILER);
+            tail.putInt(blocks).put(footer.toByteArray()).putLong(offset).putLong(PACKED_MAGIC).flip();
+            while (tail.hasRemaining()) {
+                out.write(tail);
+            }
+            ByteBuffer header = ByteBuffer.allocate(PACKED_HEADER);
+            header.putLong(PACKED_MAGIC).putLong(min).putLong(max).putInt(count).flip();
+            out.write(header, 0);
+            out.force(true);
+
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            closed.put(seq, new Segment(seq, target, true, min, max, count));
+            Files.deleteIfExists(source);
+        } catch (IOException e) {
+            System.err.println("Failed to compress audit segment " + source.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes closed segments whose newest record is older than the
+     * retention window, together with their index files.
+     */
+    private void prune() {
+        long cutoff = clock.millis() - retention.toMillis();
+        for (Segment seg : closed.values()) {
+            if (seg.maxTime < cutoff && closed.remove(seg.seq, seg)) {
+                try {
+                    Files.deleteIfExists(seg.file);
+                    Files.deleteIfExists(indexFile(seg.seq));
+                } catch (IOException e) {
+                    System.err.println("Failed to prune audit segment " + seg.file.getFileName() + ": " + e.getMessage());
+                }
+                LongConsumer listener = pruneListener;
+                if (listener != null) listener.accept(seg.seq);
+            }
+        }
+    }
+
+    // === Readers ===
+
+    /**
+     * Reads a closed segment, retrying once if it was compressed under us.
+     *
+     * @return false if the segment could not be read
+     */
+    private boolean readClosed(Segment seg, long lo, long hi, Consumer<AuditRecord> consumer) {
+        try {
+            readSegment(seg, lo, hi, consumer);
+            return true;
+        } catch (IOException e) {
+            Segment replacement = closed.get(seg.seq);
+            try {
+                if (replacement != null && replacement != seg) {
+                    readSegment(replacement, lo, hi, consumer);
+                    return true;
+                }
+            } catch (IOException again) {
+                e = again;
+            }
+            System.err.println("Skipped audit segment " + seg.file.getFileName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void readSegment(Segment seg, long lo, long hi, Consumer<AuditRecord> consumer) throws IOException {
+        if (seg.packed) {
+            readPacked(seg.file, lo, hi, consumer);
+        } else {
+            readPlain(seg.file, lo, hi, consumer);
+        }
+    }
+
+    private static void readPlain(Path file, long lo, long hi, Consumer<AuditRecord> consumer) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.position(ACTIVE_HEADER);
+            emit(buf, lo, hi, consumer);
+        }
+    }
+
+    private static void readPacked(Path file, long lo, long hi, Consumer<AuditRecord> consumer) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < PACKED_HEADER + TRAILER || buf.getLong((int) size - 8) != PACKED_MAGIC) {
+                throw new IOException("corrupt segment trailer");
+            }
+            int footerOffset = (int) buf.getLong((int) size - TRAILER);
+            buf.position(footerOffset);
+            int blocks = buf.getInt();
+            for (int i = 0; i < blocks; i++) {
+                long first = buf.getLong();
+                long last = buf.getLong();
+                int offset = (int) buf.getLong();
+                int zlen = buf.getInt();
+                int rawLen = buf.getInt();
+                if (last < lo || first >= hi) continue;
+                byte[] zipped = new byte[zlen];
+                buf.get(offset, zipped);
+                emit(ByteBuffer.wrap(inflate(zipped, rawLen)), lo, hi, consumer);
+            }
+        }
+    }
+
+    private static void emit(ByteBuffer buf, long lo, long hi, Consumer<AuditRecord> consumer) {
+        while (buf.remaining() >= 12) {
+            long t = buf.getLong();
+            int len = buf.getInt();
+            if (len < 0 || len > buf.remaining()) return;   // torn tail of the active segment
+            if (t >= lo && t < hi) {
+                byte[] payload = new byte[len];
+                buf.get(payload);
+                AuditRecord r = AuditStore.decode(new String(payload, StandardCharsets.UTF_8));
+                if (r != null) consumer.accept(r);
+            } else {
+                buf.position(buf.position() + len);
+            }
+        }
+    }
+
+    /**
+     * @return {min, max, count} from a compressed segment header, or null if unreadable
+     */
+    private static long[] packedRange(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(PACKED_HEADER);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            header.flip();
+            if (header.remaining() < PACKED_HEADER || header.getLong() != PACKED_MAGIC) return null;
+            return new long[]{header.getLong(), header.getLong(), header.getInt()};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans a plain segment, truncating any torn record at the end.
+     *
+     * @return {min, max} time and record count, or null if the segment holds no records
+     */
+    private static long[] plainRangeAndTrim(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() < ACTIVE_HEADER) return null;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getLong(0) != ACTIVE_MAGIC) return null;
+            buf.position(ACTIVE_HEADER);
+            long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+            int valid = ACTIVE_HEADER, count = 0;
+            while (buf.remaining() >= 12) {
+                long t = buf.getLong();
+                int len = buf.getInt();
+                if (len < 0 || len > buf.remaining()) break;
+                buf.position(buf.position() + len);
+                valid = buf.position();
+                count++;
+                min = Math.min(min, t);
+                max = Math.max(max, t);
+            }
+            if (valid < ch.size()) ch.truncate(valid);
+            return min == Long.MAX_VALUE ? null : new long[]{min, max, count};
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream z = new DeflaterOutputStream(out, deflater)) {
+            z.write(raw);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] zipped, int rawLen) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zipped);
+            byte[] raw = new byte[rawLen];
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                n += inflater.inflate(raw, n, rawLen - n);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt segment block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String name(long seq, String ext) {
+        return String.format("seg-%08d%s", seq, ext);
+    }
+}
@@ -3,10 +3,19 @@
 package cli;
 
 import context.ContextBuilder;
+import context.SessionRegistry;
+import core.Permissions;
 import core.PermissionsManager;
+import core.PolicyValidationException;
+import core.PolicyValidator;
+import core.TimeBoundGrants;
+import daemon.DaemonClient;
 import model.UserContext;
+import replication.ReplicationFollower;
+import trace.DecisionTrace;
 import users.UserRegistryManager;
 
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -21,6 +30,9 @@ import java.util.Scanner;
  *
  * This tool demonstrates the RBAC flow:
  *   user_id → role → permission matrix → runtime enforcement
+ *
+ * If a {@link daemon.PolicyDaemon} is running, checks and :reload go to it
+ * and nothing is loaded in this JVM (-Drbac.daemon=off forces local mode).
  */
 public class RBACCli {
 
@@ -29,15 +41,56 @@ public class RBACCli {
         System.out.print("Enter user ID: ");
         String userId = scanner.nextLine().trim();
 
-        // Initialize permission system and user registry
-        PermissionsManager permissionsManager = new PermissionsManager();
-        UserRegistryManager userRegistryManager = new UserRegistryManager();
+        DaemonClient daemon = DaemonClient.connectIfRunning();
+        if (daemon != null) {
+            try (daemon) {
+                runRemote(daemon, userId, scanner);
+            }
+            return;
+        }
+
+        // Initialize permission system and user registry, refusing to serve a broken policy
+        PermissionsManager permissionsManager;
+        UserRegistryManager userRegistryManager;
+        try {
+            permissionsManager = new PermissionsManager();
+            userRegistryManager = new UserRegistryManager();
+            PolicyValidator.validateOrThrow(permissionsManager, userRegistryManager);
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Policy is invalid, refusing to start. " + e.getMessage());
+            return;
+        }
+        // Nothing runs expiries while no daemon is up; catch up on what came due
+        if (System.getProperty("rbac.replication.leader") == null) {
+            TimeBoundGrants.expireOverdue(permissionsManager, userRegistryManager);
+        }
         ContextBuilder builder = new ContextBuilder(permissionsManager, userRegistryManager);
+        DecisionTrace.installFromProperties(permissionsManager, userRegistryManager);
+        SessionRegistry sessions = new SessionRegistry(permissionsManager, userRegistryManager);
 
+        // Follow a replication leader if configured, so changes made there reach this session
+        String leaderAddress = System.getProperty("rbac.replication.leader");
+        ReplicationFollower follower = null;
+        if (leaderAddress != null) {
+            follower = ReplicationFollower.connect(permissionsManager, userRegistryManager, leaderAddress);
+            System.out.println("📡 Following replication leader at " + leaderAddress);
+        }
+        try {
+            runLocal(permissionsManager, userRegistryManager, builder, sessions, userId, scanner);
+        } finally {
+            if (follower != null) follower.close();
+        }
+    }
+
+    /**
+     * The interactive session over managers loaded in this JVM.
+     */
+    private static void runLocal(PermissionsManager permissionsManager, UserRegistryManager userRegistryManager,
+                                 ContextBuilder builder, SessionRegistry sessions, String userId, Scanner scanner) {
         // Attempt to build user context
         UserContext context;
         try {
-            context = builder.buildUserContextWithLog(userId);
+            context = sessions.register(builder.buildUserContextWithLog(userId));
         } catch (Exception e) {
             System.out.println("❌ Failed to build context: " + e.getMessage());
             return;
@@ -53,12 +106,17 @@ public class RBACCli {
             System.out.print("> ");
             String input = scanner.nextLine().trim();
 
+            if (context.isRevoked()) {
+                System.out.println("⛔ Session revoked (user deactivated or role removed). Exiting.");
+                break;
+            }
+
             if (input.equalsIgnoreCase("exit")) {
                 System.out.println("👋 Exiting.");
                 break;
 
             } else if (input.equals(":admin")) {
-                if (context.hasPermission("admin.manage_users")) {
+                if (context.hasPermission(Permissions.ADMIN_MANAGE_USERS)) {
                     System.out.println("🔐 Entering AdminCommandConsole...");
                     try {
                         Class<?> adminConsole = Class.forName("admin.AdminCommandConsole");
@@ -74,10 +132,11 @@ public class RBACCli {
 
             } else if (input.equals(":reload")) {
                 System.out.println("🔄 Reloading YAML and rebuilding user context...");
-                permissionsManager.reload();
-                userRegistryManager.reload();
                 try {
-                    context = builder.buildUserContextWithLog(userId);
+                    permissionsManager.reload();
+                    userRegistryManager.reload();
+                    sessions.unregister(context);
+                    context = sessions.register(builder.buildUserContextWithLog(userId));
                     System.out.println("✅ Reload successful.");
                 } catch (Exception e) {
                     System.out.println("❌ Reload failed: " + e.getMessage());
@@ -90,6 +149,83 @@ public class RBACCli {
             }
         }
     }
+
+    /**
+     * Same session as {@link #main}, served by a running daemon.
+     */
+    private static void runRemote(DaemonClient daemon, String userId, Scanner scanner) {
+        try {
+            List<String> context = daemon.request("CONTEXT " + userId);
+            System.out.println("✅ User '" + userId + "' has roles: " + context.get(0).substring("roles ".length()));
+            System.out.println("🔑 Granted permissions:");
+            for (String line : context) {
+                if (line.startsWith("+ ")) System.out.println("   ✔ " + line.substring(2));
+            }
+        } catch (IllegalStateException e) {
+            System.out.println("❌ Failed to build context: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("✅ Permission check ready (via daemon).");
+        System.out.println("Type a permission key (e.g., 'admin.manage_users') to test access.");
+        System.out.println("Type ':admin' to enter admin console (if authorized).");
+        System.out.println("Type ':reload' to have the daemon re-read the YAML.");
+        System.out.println("Type 'exit' to quit.\n");
+
+        while (true) {
+            System.out.print("> ");
+            String input = scanner.nextLine().trim();
+
+            if (input.equalsIgnoreCase("exit")) {
+                System.out.println("👋 Exiting.");
+                break;
+
+            } else if (input.equals(":admin")) {
+                if (check(daemon, userId, Permissions.ADMIN_MANAGE_USERS.getKey()).equals("ALLOWED")) {
+                    System.out.println("🔐 Entering AdminCommandConsole...");
+                    try {
+                        Class<?> adminConsole = Class.forName("admin.AdminCommandConsole");
+                        adminConsole.getMethod("mainWithOperator", String.class)
+                                    .invoke(null, userId);
+                    } catch (Exception e) {
+                        System.err.println("❌ Failed to launch admin console: " + e.getMessage());
+                    }
+                    break;
+                } else {
+                    System.out.println("⛔ You are not authorized to enter admin mode.");
+                }
+
+            } else if (input.equals(":reload")) {
+                System.out.println("🔄 Asking the daemon to reload YAML...");
+                try {
+                    daemon.request("RELOAD");
+                    System.out.println("✅ Reload successful.");
+                } catch (RuntimeException e) {
+                    System.out.println("❌ Reload failed: " + e.getMessage());
+                    break;
+                }
+
+            } else {
+                String outcome;
+                try {
+                    outcome = check(daemon, userId, input);
+                } catch (IllegalStateException e) {
+                    System.out.println("❌ " + e.getMessage());
+                    continue;
+                }
+                if (outcome.equals("ALLOWED") || outcome.equals("DENIED")) {
+                    System.out.println(outcome.equals("ALLOWED") ? "✅ ALLOWED" : "⛔ DENIED");
+                } else {
+                    System.out.println("⛔ Session revoked (" + outcome + "). Exiting.");
+                    break;
+                }
+            }
+        }
+    }
+
+    private static String check(DaemonClient daemon, String userId, String key) {
+        return daemon.request("CHECK " + userId + " " + key).get(0);
+    }
 }
 
 
@@ -0,0 +1,57 @@
+// === src/main/java/context/AccessDeniedException.java ===
+
+package context;
+
+import trace.TraceReason;
+
+/**
+ * AccessDeniedException is thrown by {@link ContextBuilder} when no context
+ * can be built for a user: unknown, deactivated, or holding a role that is
+ * not in the matrix.
+ *
+ * It is stackless and builds its message only when asked, so a flood of
+ * checks for made-up users costs one small allocation each instead of a
+ * stack walk and a string concatenation. The reason code says which rule
+ * failed; the message keeps the wording callers already match on.
+ */
+public class AccessDeniedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TraceReason reason;
+    private final String subject;
+
+    /**
+     * @param reason  UNKNOWN_USER, INACTIVE_USER or INVALID_ROLE
+     * @param subject the user ID, or the invalid role for INVALID_ROLE
+     */
+    public AccessDeniedException(TraceReason reason, String subject) {
+        super(null, null, false, false);
+        this.reason = reason;
+        this.subject = subject;
+    }
+
+    /**
+     * @return why no context was built
+     */
+    public TraceReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the user ID, or the invalid role for INVALID_ROLE
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public String getMessage() {
+        switch (reason) {
+            case UNKNOWN_USER: return "User not found: " + subject;
+            case INACTIVE_USER: return "User account is deactivated: " + subject;
+            case INVALID_ROLE: return "Invalid role: " + subject;
+            default: return reason + ": " + subject;
+        }
+    }
+}
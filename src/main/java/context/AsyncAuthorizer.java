@@ -0,0 +1,206 @@
+// === src/main/java/context/AsyncAuthorizer.java ===
+
+package context;
+
+import core.FastRejectFilter;
+import core.PermissionsManager;
+import core.RoleSets;
+import trace.DecisionTrace;
+import trace.TraceReason;
+import users.UserRegistryManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * AsyncAuthorizer is the non-blocking counterpart of ContextBuilder for
+ * services that only need yes/no answers.
+ *
+ * Every check reads the current matrix and registry versions (one volatile
+ * read each, never a lock), applies the same rules as ContextBuilder and
+ * returns a typed {@link Decision} instead of throwing.
+ *
+ * Three entry points:
+ *   - decide / decideAll: synchronous, for callers already off the I/O path
+ *   - check: a CompletableFuture, already completed, so composing it costs
+ *     no thread hop
+ *   - processor: a Flow.Processor from CheckRequests to Decisions that
+ *     honours downstream demand and decides whatever has queued up as one
+ *     micro-batch (one policy snapshot per batch, each user resolved
+ *     once per batch)
+ *
+ * With a {@link FastRejectFilter} set, {@link #decide(String, String)}
+ * answers checks for certainly unknown users (UNKNOWN_USER) or keys no
+ * role lists (DENIED) before touching the registry. The unknown-key
+ * answer is a deny either way; it is just not told apart from an inactive
+ * user or invalid role.
+ *
+ * Usage:
+ *   AsyncAuthorizer authz = new AsyncAuthorizer(pm, urm);
+ *   authz.check("bob", "trader.view_portfolio").thenAccept(d -> ...);
+ *   requests.subscribe(authz.processor());
+ */
+public class AsyncAuthorizer {
+
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private volatile FastRejectFilter fastReject;
+
+    /**
+     * @param pm  the permissions manager (resolves role → permissions)
+     * @param urm the user registry manager (resolves userId → metadata)
+     */
+    public AsyncAuthorizer(PermissionsManager pm, UserRegistryManager urm) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+    }
+
+    /**
+     * Decides one check synchronously.
+     *
+     * @param userId the user to check
+     * @param key    the permission key
+     * @return the decision
+     */
+    public Decision decide(String userId, String key) {
+        FastRejectFilter filter = fastReject;
+        if (filter != null) {
+            TraceReason rejected = filter.reject(userId, key);
+            if (rejected != null) {
+                DecisionTrace.denied(rejected, userId, key);
+                return new Decision(CheckRequest.of(userId, key), rejected == TraceReason.UNKNOWN_USER
+                        ? Decision.Outcome.UNKNOWN_USER : Decision.Outcome.DENIED);
+            }
+        }
+        return decide(CheckRequest.of(userId, key), resolve(userId, userRegistry.getAllUsers(),
+                permissionsManager.snapshot(), permissionsManager::getEffectivePermissions));
+    }
+
+    /**
+     * Answers certainly unknown users and keys from the filter in
+     * {@link #decide(String, String)}.
+     *
+     * @param filter the filter to consult, or null to turn it off
+     */
+    public void setFastReject(FastRejectFilter filter) {
+        this.fastReject = filter;
+    }
+
+    /**
+     * Decides one check without blocking.
+     *
+     * @param userId the user to check
+     * @param key    the permission key
+     * @return an already completed future holding the decision
+     */
+    public CompletableFuture<Decision> check(String userId, String key) {
+        return CompletableFuture.completedFuture(decide(userId, key));
+    }
+
+    /**
+     * Decides a batch against one consistent policy snapshot. Effective
+     * permissions are computed from that snapshot (once per role
+     * combination in the batch), not taken from the live memo, which may
+     * already hold a newer version.
+     *
+     * @param requests the checks, in order
+     * @return one decision per request, in the same order
+     */
+    public List<Decision> decideAll(List<CheckRequest> requests) {
+        Map<String, Map<String, Object>> users = userRegistry.getAllUsers();
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        Map<List<String>, Map<String, Boolean>> combinations = new HashMap<>();
+        Function<List<String>, Map<String, Boolean>> effective = roles ->
+                combinations.computeIfAbsent(RoleSets.sorted(roles), c -> RoleSets.effective(c, matrix));
+        Map<String, Resolved> resolved = new HashMap<>();
+        List<Decision> decisions = new ArrayList<>(requests.size());
+        for (CheckRequest request : requests) {
+            Resolved user = resolved.computeIfAbsent(request.getUserId(), id -> resolve(id, users, matrix, effective));
+            decisions.add(decide(request, user));
+        }
+        return decisions;
+    }
+
+    /**
+     * @return a processor using the common pool and the default batch size
+     */
+    public Flow.Processor<CheckRequest, Decision> processor() {
+        return processor(ForkJoinPool.commonPool(), DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Creates a processor for one subscriber.
+     *
+     * @param executor runs the decision loop
+     * @param maxBatch largest number of requests decided against one snapshot
+     * @return a new processor
+     */
+    public Flow.Processor<CheckRequest, Decision> processor(Executor executor, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        return new DecisionProcessor(this, executor, maxBatch);
+    }
+
+    /**
+     * A user resolved against one snapshot: either a failure outcome or the
+     * effective permission map of their roles.
+     */
+    private static final class Resolved {
+        final Decision.Outcome failure;
+        final Map<String, Boolean> perms;
+
+        Resolved(Decision.Outcome failure, Map<String, Boolean> perms) {
+            this.failure = failure;
+            this.perms = perms;
+        }
+    }
+
+    /**
+     * Applies the ContextBuilder rules (exists, active, every role defined)
+     * to one user.
+     *
+     * @param effective maps the user's roles to their effective permissions
+     */
+    private static Resolved resolve(String userId,
+                                    Map<String, Map<String, Object>> users,
+                                    Map<String, Map<String, Boolean>> matrix,
+                                    Function<List<String>, Map<String, Boolean>> effective) {
+        Map<String, Object> user = users.get(userId);
+        if (user == null) {
+            return new Resolved(Decision.Outcome.UNKNOWN_USER, null);
+        }
+        if (!Boolean.TRUE.equals(user.get("active"))) {
+            return new Resolved(Decision.Outcome.INACTIVE_USER, null);
+        }
+        List<String> roles = RoleSets.of(user);
+        if (!RoleSets.allDefined(roles, matrix)) {
+            return new Resolved(Decision.Outcome.INVALID_ROLE, null);
+        }
+        return new Resolved(null, effective.apply(roles));
+    }
+
+    private static Decision decide(CheckRequest request, Resolved user) {
+        if (user.failure != null) {
+            DecisionTrace.denied(TraceReason.valueOf(user.failure.name()), request.getUserId(), request.getKey());
+            return new Decision(request, user.failure);
+        }
+        Boolean granted = user.perms.get(request.getKey());
+        if (Boolean.TRUE.equals(granted)) {
+            DecisionTrace.allowed(request.getUserId(), request.getKey());
+            return new Decision(request, Decision.Outcome.ALLOWED);
+        }
+        DecisionTrace.denied(granted == null ? TraceReason.UNKNOWN_KEY : TraceReason.NOT_GRANTED,
+                request.getUserId(), request.getKey());
+        return new Decision(request, Decision.Outcome.DENIED);
+    }
+}
@@ -0,0 +1,40 @@
+// === src/main/java/context/CheckRequest.java ===
+
+package context;
+
+/**
+ * CheckRequest asks whether a user holds a permission key.
+ * It is the input element of {@link AsyncAuthorizer#processor}.
+ */
+public final class CheckRequest {
+
+    private final String userId;
+    private final String key;
+
+    private CheckRequest(String userId, String key) {
+        this.userId = userId;
+        this.key = key;
+    }
+
+    /**
+     * @param userId the user to check
+     * @param key    the permission key
+     * @return the request
+     */
+    public static CheckRequest of(String userId, String key) {
+        return new CheckRequest(userId, key);
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return userId + " → " + key;
+    }
+}
@@ -2,10 +2,16 @@
 
 package context;
 
+import core.FastRejectFilter;
 import core.PermissionsManager;
+import core.RoleSets;
 import model.UserContext;
+import trace.DecisionTrace;
+import trace.TraceReason;
 import users.UserRegistryManager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -13,20 +19,30 @@ import java.util.Set;
  * ContextBuilder is responsible for constructing a permission-aware
  * UserContext object by combining:
  *
- * - User metadata from registry (role, client_id, active)
- * - Role-permission mapping from PermissionsManager
+ * - User metadata from registry (role or roles, client_id, active)
+ * - Role-permission mapping from PermissionsManager; a user with several
+ *   roles gets the memoized effective permissions of that combination
  *
  * It performs critical validation steps:
  * - Ensures user exists in registry
  * - Checks active status
- * - Verifies role is defined in permission matrix
+ * - Verifies every role is defined in permission matrix
  *
  * This class is the key link between user identity and policy enforcement.
+ *
+ * Failed builds are reported to the installed {@link DecisionTrace}, and
+ * {@link #explain} walks the same steps for one key and says why it was
+ * allowed or denied.
+ *
+ * Failures throw a stackless {@link AccessDeniedException}. With a
+ * {@link FastRejectFilter} set, users that are certainly not in the
+ * registry are turned away before the registry is consulted.
  */
 public class ContextBuilder {
 
     private final PermissionsManager permissionsManager;
     private final UserRegistryManager userRegistry;
+    private volatile FastRejectFilter fastReject;
 
     /**
      * Constructor for ContextBuilder.
@@ -39,39 +55,59 @@ public class ContextBuilder {
         this.userRegistry = urm;
     }
 
+    /**
+     * Turns away unknown users before the registry lookup.
+     *
+     * @param filter the filter to consult, or null to turn it off
+     */
+    public void setFastReject(FastRejectFilter filter) {
+        this.fastReject = filter;
+    }
+
     /**
      * Builds a UserContext for the given user ID with full validation.
      *
      * @param userId the ID of the user
      * @return UserContext object with resolved permissions
-     * @throws RuntimeException if user is missing, inactive, or has an invalid role
+     * @throws AccessDeniedException if user is missing, inactive, or has an invalid role
      */
     public UserContext buildUserContext(String userId) {
+        // 0. Certainly unknown users never reach the registry
+        FastRejectFilter filter = fastReject;
+        if (filter != null && filter.rejectsUser(userId)) {
+            DecisionTrace.denied(TraceReason.UNKNOWN_USER, userId, null);
+            throw new AccessDeniedException(TraceReason.UNKNOWN_USER, userId);
+        }
+
         // 1. Load user metadata from registry
         Map<String, Object> userEntry = userRegistry.getUser(userId);
         if (userEntry == null) {
-            throw new RuntimeException("User not found: " + userId);
+            DecisionTrace.denied(TraceReason.UNKNOWN_USER, userId, null);
+            throw new AccessDeniedException(TraceReason.UNKNOWN_USER, userId);
         }
 
         // 2. Check active flag
         boolean isActive = Boolean.TRUE.equals(userEntry.get("active"));
         if (!isActive) {
-            throw new RuntimeException("User account is deactivated: " + userId);
+            DecisionTrace.denied(TraceReason.INACTIVE_USER, userId, null);
+            throw new AccessDeniedException(TraceReason.INACTIVE_USER, userId);
         }
 
-        // 3. Get and validate role
-        String role = (String) userEntry.get("role");
-        if (!isValidRole(role)) {
-            throw new RuntimeException("Invalid role: " + role);
+        // 3. Get and validate roles
+        List<String> roles = RoleSets.of(userEntry);
+        String invalid = findInvalidRole(roles);
+        if (invalid != null) {
+            DecisionTrace.denied(TraceReason.INVALID_ROLE, userId, null);
+            throw new AccessDeniedException(TraceReason.INVALID_ROLE, invalid);
         }
 
         // 4. Optional client_id
         String clientId = (String) userEntry.getOrDefault("client_id", null);
 
-        // 5. Load permission map
-        Map<String, Boolean> perms = permissionsManager.getRolePermissions(role);
+        // 5. Load effective permission map
+        Map<String, Boolean> perms = permissionsManager.getEffectivePermissions(roles);
 
-        return new UserContext(userId, role, perms, clientId);
+        return new UserContext(userId, roles, perms, clientId);
     }
 
     /**
@@ -86,23 +122,28 @@ public class ContextBuilder {
 
         Map<String, Object> userEntry = userRegistry.getUser(userId);
         if (userEntry == null) {
+            DecisionTrace.denied(TraceReason.UNKNOWN_USER, userId, null);
             throw new RuntimeException("❌ User not found: " + userId);
         }
 
         boolean isActive = Boolean.TRUE.equals(userEntry.get("active"));
         if (!isActive) {
+            DecisionTrace.denied(TraceReason.INACTIVE_USER, userId, null);
             throw new RuntimeException("❌ User is deactivated: " + userId);
         }
 
-        String role = (String) userEntry.get("role");
-        if (!isValidRole(role)) {
-            throw new RuntimeException("❌ Invalid role: " + role);
+        List<String> roles = RoleSets.of(userEntry);
+        String invalid = findInvalidRole(roles);
+        if (invalid != null) {
+            DecisionTrace.denied(TraceReason.INVALID_ROLE, userId, null);
+            throw new RuntimeException("❌ Invalid role: " + invalid);
         }
 
         String clientId = (String) userEntry.getOrDefault("client_id", null);
-        Map<String, Boolean> perms = permissionsManager.getRolePermissions(role);
+        Map<String, Boolean> perms = permissionsManager.getEffectivePermissions(roles);
 
-        System.out.println("✅ User '" + userId + "' has role: " + role);
+        System.out.println("✅ User '" + userId + "' has role" + (roles.size() > 1 ? "s: " : ": ")
+                + String.join(", ", roles));
         System.out.println("✅ Assigned client_id: " + clientId);
         System.out.println("🔑 Granted permissions:");
         perms.forEach((key, val) -> {
@@ -111,17 +152,96 @@ public class ContextBuilder {
             }
         });
 
-        return new UserContext(userId, role, perms, clientId);
+        return new UserContext(userId, roles, perms, clientId);
     }
 
     /**
-     * Checks if a role is valid (exists in the permission matrix).
+     * Explains one check: walks the same steps as {@link #buildUserContext}
+     * and then every role's verdict on the key, against one consistent
+     * snapshot. Never throws for bad users or keys; those are outcomes.
      *
-     * @param role the role to validate
-     * @return true if defined; false otherwise
+     * @param userId the user to check
+     * @param key    the permission key
+     * @return the resolution path and reason code
      */
-    private boolean isValidRole(String role) {
+    public Explanation explain(String userId, String key) {
+        long matrixVersion = permissionsManager.getVersion();
+        long registryVersion = userRegistry.getVersion();
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        List<String> steps = new ArrayList<>();
+
+        Map<String, Object> userEntry = userRegistry.getUser(userId);
+        if (userEntry == null) {
+            steps.add("user '" + userId + "' is not in the registry");
+            return new Explanation(userId, key, TraceReason.UNKNOWN_USER, steps, matrixVersion, registryVersion);
+        }
+        steps.add("user '" + userId + "' found (client_id " + userEntry.get("client_id") + ")");
+        if (!Boolean.TRUE.equals(userEntry.get("active"))) {
+            steps.add("user is deactivated");
+            return new Explanation(userId, key, TraceReason.INACTIVE_USER, steps, matrixVersion, registryVersion);
+        }
+        steps.add("user is active");
+
+        List<String> roles = RoleSets.of(userEntry);
+        if (roles.isEmpty()) {
+            steps.add("user names no role");
+            return new Explanation(userId, key, TraceReason.INVALID_ROLE, steps, matrixVersion, registryVersion);
+        }
+        steps.add("roles: " + String.join(", ", roles));
+
+        boolean undefined = false;
+        boolean listed = false;
+        boolean granted = false;
+        boolean denied = false;
+        for (String role : roles) {
+            Map<String, Boolean> perms = matrix.get(role);
+            if (perms == null) {
+                steps.add("role '" + role + "' is not defined in the permission matrix");
+                undefined = true;
+                continue;
+            }
+            boolean grants = Boolean.TRUE.equals(perms.get(key));
+            boolean denies = Boolean.TRUE.equals(perms.get(RoleSets.DENY_PREFIX + key));
+            if (denies) {
+                steps.add("role '" + role + "' explicitly denies it");
+            } else if (grants) {
+                steps.add("role '" + role + "' grants it");
+            } else {
+                steps.add("role '" + role + "' does not grant it" + (perms.containsKey(key) ? "" : " (not listed)"));
+            }
+            listed |= perms.containsKey(key);
+            granted |= grants;
+            denied |= denies;
+        }
+
+        TraceReason reason;
+        if (undefined) {
+            reason = TraceReason.INVALID_ROLE;
+        } else if (granted && !denied) {
+            reason = TraceReason.ALLOWED;
+        } else if (!listed) {
+            steps.add("none of the user's roles lists '" + key + "'");
+            reason = TraceReason.UNKNOWN_KEY;
+        } else {
+            if (granted) steps.add("a deny wins over any grant");
+            reason = TraceReason.NOT_GRANTED;
+        }
+        return new Explanation(userId, key, reason, steps, matrixVersion, registryVersion);
+    }
+
+    /**
+     * Checks that a user names at least one role and that every role is
+     * valid (exists in the permission matrix).
+     *
+     * @param roles the roles to validate
+     * @return the first undefined role ("null" if there are none at all), or null if all are valid
+     */
+    private String findInvalidRole(List<String> roles) {
+        if (roles.isEmpty()) return "null";
         Set<String> definedRoles = Set.copyOf(permissionsManager.getAllRoles());
-        return definedRoles.contains(role);
+        for (String role : roles) {
+            if (!definedRoles.contains(role)) return role;
+        }
+        return null;
     }
 }
@@ -0,0 +1,49 @@
+// === src/main/java/context/Decision.java ===
+
+package context;
+
+/**
+ * Decision is the typed result of an authorization check.
+ *
+ * Cases that {@link ContextBuilder} reports by throwing (unknown user,
+ * deactivated user, role missing from the matrix) are ordinary outcomes
+ * here, so callers on the hot path never pay for an exception.
+ */
+public final class Decision {
+
+    public enum Outcome {
+        ALLOWED,
+        DENIED,
+        UNKNOWN_USER,
+        INACTIVE_USER,
+        INVALID_ROLE
+    }
+
+    private final CheckRequest request;
+    private final Outcome outcome;
+
+    Decision(CheckRequest request, Outcome outcome) {
+        this.request = request;
+        this.outcome = outcome;
+    }
+
+    public CheckRequest getRequest() {
+        return request;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return true only for {@link Outcome#ALLOWED}
+     */
+    public boolean isAllowed() {
+        return outcome == Outcome.ALLOWED;
+    }
+
+    @Override
+    public String toString() {
+        return request + ": " + outcome;
+    }
+}
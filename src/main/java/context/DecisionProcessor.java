@@ -0,0 +1,203 @@
+// === src/main/java/context/DecisionProcessor.java ===
+
+package context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DecisionProcessor turns a stream of CheckRequests into Decisions for a
+ * single subscriber.
+ *
+ * Backpressure: every unit of downstream demand is forwarded upstream as
+ * one unit, so the processor never holds more requests than its
+ * subscriber has asked for.
+ *
+ * Micro-batching: onNext only enqueues and schedules the drain loop. The
+ * loop takes everything queued (up to maxBatch and the current demand)
+ * and decides it with one {@link AsyncAuthorizer#decideAll} call; under
+ * load many requests arrive while a batch is running, so batches grow by
+ * themselves, while a trickle is decided one at a time with no delay.
+ */
+final class DecisionProcessor implements Flow.Processor<CheckRequest, Decision> {
+
+    private final AsyncAuthorizer authorizer;
+    private final Executor executor;
+    private final int maxBatch;
+
+    private final Queue<CheckRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();   // Long.MAX_VALUE = unbounded
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // Guarded by this.
+    private Flow.Subscription upstream;
+    private long unforwarded;   // demand received before upstream subscribed
+
+    private volatile Flow.Subscriber<? super Decision> downstream;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile Throwable failure;
+    private boolean terminated;   // drain loop only
+
+    DecisionProcessor(AsyncAuthorizer authorizer, Executor executor, int maxBatch) {
+        this.authorizer = authorizer;
+        this.executor = executor;
+        this.maxBatch = maxBatch;
+    }
+
+    // === Publisher side ===
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Decision> subscriber) {
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    public void request(long n) { }
+                    public void cancel() { }
+                });
+                subscriber.onError(new IllegalStateException("DecisionProcessor supports a single subscriber"));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    failure = new IllegalArgumentException("request must be positive: " + n);
+                    done = true;
+                    cancelUpstream();
+                } else {
+                    addDemand(n);
+                    forward(n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                queue.clear();
+            }
+        });
+        drain();
+    }
+
+    // === Subscriber side ===
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long n;
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            n = unforwarded;
+            unforwarded = 0;
+        }
+        if (cancelled) {
+            subscription.cancel();
+        } else if (n > 0) {
+            subscription.request(n);
+        }
+    }
+
+    @Override
+    public void onNext(CheckRequest item) {
+        queue.offer(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    // === Internals ===
+
+    private void addDemand(long n) {
+        demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+    }
+
+    private void forward(long n) {
+        Flow.Subscription s;
+        synchronized (this) {
+            if (upstream == null) {
+                unforwarded = unforwarded + n < 0 ? Long.MAX_VALUE : unforwarded + n;
+                return;
+            }
+            s = upstream;
+        }
+        s.request(n);
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription s;
+        synchronized (this) {
+            s = upstream;
+        }
+        if (s != null) s.cancel();
+    }
+
+    /**
+     * Schedules the drain loop unless it is already running; a running loop
+     * picks up the new work before it exits.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        List<CheckRequest> batch = new ArrayList<>();
+        do {
+            Flow.Subscriber<? super Decision> subscriber = downstream;
+            if (subscriber != null && !cancelled && !terminated) {
+                long available;
+                while ((available = demand.get()) > 0 && !queue.isEmpty() && !cancelled) {
+                    batch.clear();
+                    long limit = Math.min(maxBatch, available);
+                    CheckRequest request;
+                    while (batch.size() < limit && (request = queue.poll()) != null) {
+                        batch.add(request);
+                    }
+                    for (Decision decision : authorizer.decideAll(batch)) {
+                        subscriber.onNext(decision);
+                    }
+                    if (available != Long.MAX_VALUE) {
+                        demand.addAndGet(-batch.size());
+                    }
+                }
+                if (done && (queue.isEmpty() || failure != null)) {
+                    terminated = true;
+                    queue.clear();
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,77 @@
+// === src/main/java/context/Explanation.java ===
+
+package context;
+
+import trace.TraceReason;
+
+import java.util.List;
+
+/**
+ * Explanation is the full resolution path of one check, from
+ * {@link ContextBuilder#explain}: each step taken (user lookup, active
+ * flag, every role's verdict on the key) and the resulting reason code.
+ */
+public final class Explanation {
+
+    private final String userId;
+    private final String key;
+    private final TraceReason reason;
+    private final List<String> steps;
+    private final long matrixVersion;
+    private final long registryVersion;
+
+    Explanation(String userId, String key, TraceReason reason, List<String> steps,
+                long matrixVersion, long registryVersion) {
+        this.userId = userId;
+        this.key = key;
+        this.reason = reason;
+        this.steps = List.copyOf(steps);
+        this.matrixVersion = matrixVersion;
+        this.registryVersion = registryVersion;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public TraceReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return true only for {@link TraceReason#ALLOWED}
+     */
+    public boolean isAllowed() {
+        return reason == TraceReason.ALLOWED;
+    }
+
+    /**
+     * @return the resolution steps, in order
+     */
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    public long getRegistryVersion() {
+        return registryVersion;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(userId).append(' ').append(key).append(" → ").append(reason)
+          .append(" (matrix v").append(matrixVersion).append(", registry v").append(registryVersion).append(')');
+        for (String step : steps) {
+            sb.append("\n  - ").append(step);
+        }
+        return sb.toString();
+    }
+}
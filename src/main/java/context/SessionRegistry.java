@@ -0,0 +1,200 @@
+// === src/main/java/context/SessionRegistry.java ===
+
+package context;
+
+import core.PermissionChange;
+import core.PermissionChangeListener;
+import core.PermissionsManager;
+import core.RoleSets;
+import model.UserContext;
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SessionRegistry keeps live UserContexts up to date by pushing policy
+ * changes to them, instead of leaving each session on the snapshot it
+ * was built with.
+ *
+ * Sessions are indexed by user and by each of their roles, so a change
+ * only touches the sessions it affects:
+ *   - a grant/revoke on a role swaps the new effective permissions into
+ *     the sessions holding that role (alone or with others)
+ *   - re-adding a user with other roles moves their sessions to them
+ *   - deactivating or removing a user, or dropping one of their roles,
+ *     revokes their sessions (every later check is denied)
+ *   - a reload re-evaluates every session
+ *
+ * Pushes run on the writer thread right after the change is published,
+ * so the delay is bounded by the listener call itself. Sessions that are
+ * not affected are never visited, and checks stay a plain read of the
+ * context's current state.
+ *
+ * Usage:
+ *   SessionRegistry sessions = new SessionRegistry(pm, urm);
+ *   UserContext ctx = sessions.register(builder.buildUserContext("bob"));
+ *   ...
+ *   sessions.unregister(ctx);
+ */
+public class SessionRegistry implements PermissionChangeListener, UserChangeListener {
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+
+    // Guarded by this.
+    private final Map<String, Set<UserContext>> byUser = new HashMap<>();
+    private final Map<String, Set<UserContext>> byRole = new HashMap<>();
+
+    /**
+     * Creates an empty registry that follows both managers.
+     *
+     * @param pm  permission matrix to follow
+     * @param urm user registry to follow
+     */
+    public SessionRegistry(PermissionsManager pm, UserRegistryManager urm) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        pm.addChangeListener(this);
+        urm.addChangeListener(this);
+    }
+
+    /**
+     * Stops following the managers. Registered contexts keep their last state.
+     */
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+    }
+
+    /**
+     * Starts pushing changes to a context. The context is re-resolved once
+     * on registration, so a change published between building it and
+     * registering it is not missed.
+     *
+     * @param context a freshly built context
+     * @return the same context, for chaining
+     */
+    public synchronized UserContext register(UserContext context) {
+        byUser.computeIfAbsent(context.getUserId(), u -> new HashSet<>()).add(context);
+        index(context, context.getRoles());
+        refresh(context);
+        return context;
+    }
+
+    /**
+     * Stops pushing changes to a context (e.g. at logout).
+     *
+     * @param context the context to drop
+     */
+    public synchronized void unregister(UserContext context) {
+        remove(byUser, context.getUserId(), context);
+        unindex(context, context.getRoles());
+    }
+
+    /**
+     * @return number of live sessions
+     */
+    public synchronized int size() {
+        int n = 0;
+        for (Set<UserContext> sessions : byUser.values()) n += sessions.size();
+        return n;
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        Set<String> roles = new HashSet<>();
+        for (PermissionChange change : changes) {
+            roles.add(change.getRole());
+        }
+        Set<UserContext> affected = new HashSet<>();
+        for (String role : roles) {
+            affected.addAll(byRole.getOrDefault(role, Set.of()));
+        }
+        for (UserContext context : affected) {
+            context.update(context.getRoles(), permissionsManager.getEffectivePermissions(context.getRoles()));
+        }
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        refreshAll();
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        for (UserChange change : changes) {
+            Set<UserContext> sessions = byUser.get(change.getUserId());
+            if (sessions != null) {
+                for (UserContext context : new ArrayList<>(sessions)) {
+                    refresh(context);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        refreshAll();
+    }
+
+    // === Internals ===
+
+    private void refreshAll() {
+        List<UserContext> all = new ArrayList<>();
+        byUser.values().forEach(all::addAll);
+        for (UserContext context : all) {
+            refresh(context);
+        }
+    }
+
+    /**
+     * Re-resolves one session against the current policy, applying the
+     * same rules as ContextBuilder.
+     */
+    private void refresh(UserContext context) {
+        Map<String, Object> user = userRegistry.getUser(context.getUserId());
+        List<String> roles = RoleSets.of(user);
+        boolean valid = user != null
+                && Boolean.TRUE.equals(user.get("active"))
+                && RoleSets.allDefined(roles, permissionsManager.snapshot());
+        List<String> previousRoles = context.getRoles();
+        if (!valid) {
+            context.revoke();
+            unregister(context);
+            return;
+        }
+        context.update(roles, permissionsManager.getEffectivePermissions(roles));
+        if (!roles.equals(previousRoles)) {
+            unindex(context, previousRoles);
+            index(context, roles);
+        }
+    }
+
+    private void index(UserContext context, List<String> roles) {
+        for (String role : roles) {
+            byRole.computeIfAbsent(role, r -> new HashSet<>()).add(context);
+        }
+    }
+
+    private void unindex(UserContext context, List<String> roles) {
+        for (String role : roles) {
+            remove(byRole, role, context);
+        }
+    }
+
+    private static void remove(Map<String, Set<UserContext>> index, String key, UserContext context) {
+        Set<UserContext> sessions = index.get(key);
+        if (sessions != null && sessions.remove(context) && sessions.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+// === src/main/java/core/CheckerBytecode.java ===
+
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CheckerBytecode writes the class file of a {@link RoleChecker} with one
+ * role's grants folded into constants:
+ *
+ *   public boolean test(int id) {
+ *       switch (id >>> 6) {
+ *           case 0:  return (0x...L >>> id & 1) != 0;   // a mixed word
+ *           case 1:  return true;                        // all 64 granted
+ *           default: return false;                       // empty words, out of range
+ *       }
+ *   }
+ *
+ * The class is emitted as version 49 (Java 5) so the verifier needs no
+ * stack map frames, which keeps this writer to a constant pool and two
+ * short methods. Nothing here needs a later class file feature.
+ */
+final class CheckerBytecode {
+
+    /** Name of every generated class; hidden classes get a unique suffix. */
+    static final String CLASS_NAME = "core/RoleChecker$Specialized";
+
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ILOAD_1 = 0x1b, ALOAD_0 = 0x2a, BIPUSH = 0x10, IUSHR = 0x7c;
+    private static final int LDC2_W = 0x14, LUSHR = 0x7d, LCONST_1 = 0x0a, LAND = 0x7f, L2I = 0x88;
+    private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, IRETURN = 0xac, RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7, TABLESWITCH = 0xaa;
+
+    private CheckerBytecode() {
+    }
+
+    /**
+     * @param words the role's grant bits (bit i of word w is ID w * 64 + i)
+     * @return class file bytes for defineHiddenClass
+     */
+    static byte[] generate(long[] words) {
+        Pool pool = new Pool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int iface = pool.classRef(RoleChecker.class.getName().replace('.', '/'));
+        int objectInit = pool.methodRef(superClass, "<init>", "()V");
+        int initName = pool.utf8("<init>");
+        int initDesc = pool.utf8("()V");
+        int testName = pool.utf8("test");
+        int testDesc = pool.utf8("(I)Z");
+        int codeAttr = pool.utf8("Code");
+        byte[] testCode = testCode(words, pool);
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(0);   // fields
+            out.writeShort(2);   // methods
+            writeMethod(out, initName, initDesc, codeAttr, 1, 1,
+                    new byte[]{(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                            (byte) RETURN});
+            writeMethod(out, testName, testDesc, codeAttr, 4, 2, testCode);
+            out.writeShort(0);   // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] testCode(long[] words, Pool pool) {
+        int n = words.length;
+        while (n > 0 && words[n - 1] == 0) n--;
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        if (n == 0) {
+            code.write(ICONST_0);
+            code.write(IRETURN);
+            return code.toByteArray();
+        }
+
+        // Switch header: iload_1, bipush 6, iushr, tableswitch + padding + table.
+        int switchPc = 4;
+        int padding = 3 - (switchPc % 4);
+        int headerEnd = switchPc + 1 + padding + 12 + 4 * n;
+        int falsePc = headerEnd;                 // iconst_0, ireturn
+        int truePc = falsePc + 2;                // iconst_1, ireturn
+        int pc = truePc + 2;
+        int[] targets = new int[n];
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        for (int w = 0; w < n; w++) {
+            if (words[w] == 0) {
+                targets[w] = falsePc;
+            } else if (words[w] == -1L) {
+                targets[w] = truePc;
+            } else {
+                targets[w] = pc;
+                int constant = pool.longConstant(words[w]);
+                byte[] block = {(byte) LDC2_W, (byte) (constant >> 8), (byte) constant, (byte) ILOAD_1,
+                        (byte) LUSHR, (byte) LCONST_1, (byte) LAND, (byte) L2I, (byte) IRETURN};
+                blocks.write(block, 0, block.length);
+                pc += block.length;
+            }
+        }
+
+        code.write(ILOAD_1);
+        code.write(BIPUSH);
+        code.write(6);
+        code.write(IUSHR);
+        code.write(TABLESWITCH);
+        for (int i = 0; i < padding; i++) code.write(0);
+        writeInt(code, falsePc - switchPc);
+        writeInt(code, 0);
+        writeInt(code, n - 1);
+        for (int target : targets) writeInt(code, target - switchPc);
+        code.write(ICONST_0);
+        code.write(IRETURN);
+        code.write(ICONST_1);
+        code.write(IRETURN);
+        byte[] tail = blocks.toByteArray();
+        code.write(tail, 0, tail.length);
+        return code.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int desc, int codeAttr,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);   // exception table
+        out.writeShort(0);   // code attributes
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Constant pool with de-duplicated entries. Long constants take two slots.
+     */
+    private static final class Pool {
+        private final List<byte[]> entries = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String value) {
+            return add("U" + value, 1, value, 0, 0, 1);
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return add("C" + internalName, 7, null, name, 0, 1);
+        }
+
+        int methodRef(int owner, String name, String desc) {
+            int nameAndType = add("N" + name + desc, 12, null, utf8(name), utf8(desc), 1);
+            return add("M" + owner + name + desc, 10, null, owner, nameAndType, 1);
+        }
+
+        int longConstant(long value) {
+            return add("J" + value, 5, null, (int) (value >>> 32), (int) value, 2);
+        }
+
+        private int add(String key, int tag, String utf, int a, int b, int slots) {
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(tag);
+                switch (tag) {
+                    case 1: out.writeUTF(utf); break;
+                    case 7: out.writeShort(a); break;
+                    case 5: out.writeInt(a); out.writeInt(b); break;
+                    default: out.writeShort(a); out.writeShort(b); break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entries.add(bytes.toByteArray());
+            int slot = next;
+            next += slots;
+            index.put(key, slot);
+            return slot;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeShort(next);
+            for (byte[] entry : entries) out.write(entry);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+// === src/main/java/core/EffectivePermissionView.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * EffectivePermissionView is an optional, materialized view holding the
+ * effective permission bitset of every active user.
+ *
+ * A check is one map lookup plus a bit test, instead of
+ * user → registry → role → role map → key.
+ *
+ * Users with several roles get the OR of their roles' grant sets minus
+ * the OR of their deny sets (see {@link RoleSets}). That bitset is
+ * computed once per distinct role combination and shared by every user
+ * holding it, so their checks cost the same as a single role's.
+ *
+ * The view listens to both managers and is kept up to date incrementally:
+ *   - a grant or delete recomputes only the touched roles, drops the
+ *     combinations containing them, then repoints the users holding those
+ *     roles at the new (shared) bitsets
+ *   - adding or toggling a user updates only that user
+ *   - a reload rebuilds the view and swaps it in as a whole
+ *
+ * Only active users whose roles all exist in the matrix appear in the
+ * view, the same users for which ContextBuilder would build a context.
+ *
+ * Usage:
+ *   EffectivePermissionView view = new EffectivePermissionView(pm, urm);
+ *   view.hasPermission("bob", "trader.submit_manual_trade");
+ */
+public class EffectivePermissionView implements PermissionChecker, PermissionChangeListener, UserChangeListener {
+
+    /**
+     * One materialized user: roles plus effective permissions.
+     */
+    public static final class Entry {
+        private final String userId;
+        private final List<String> roles;
+        private final PermissionSet permissions;
+
+        Entry(String userId, List<String> roles, PermissionSet permissions) {
+            this.userId = userId;
+            this.roles = roles;
+            this.permissions = permissions;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * @return the first (primary) role
+         */
+        public String getRole() {
+            return roles.get(0);
+        }
+
+        /**
+         * @return all roles, in declared order
+         */
+        public List<String> getRoles() {
+            return roles;
+        }
+
+        public PermissionSet getPermissions() {
+            return permissions;
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final PermissionIndex index;
+
+    // Writer-side state, guarded by this.
+    private final Map<String, PermissionSet> roleSets = new HashMap<>();      // granted
+    private final Map<String, PermissionSet> roleDenies = new HashMap<>();    // roles with denies only
+    private final Map<List<String>, PermissionSet> comboSets = new HashMap<>(); // sorted roles → effective
+    private final Map<String, List<String>> rolesOfUser = new HashMap<>();    // active users only
+    private final Map<String, Set<String>> usersByRole = new HashMap<>();     // active users only
+
+    // Reader-side view; replaced as a whole on reload.
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the view with the shared default index and starts following
+     * both managers.
+     *
+     * @param pm  permission matrix to follow
+     * @param urm user registry to follow
+     */
+    public EffectivePermissionView(PermissionsManager pm, UserRegistryManager urm) {
+        this(pm, urm, PermissionIndex.getDefault());
+    }
+
+    /**
+     * Same as above with an explicit key index.
+     */
+    public EffectivePermissionView(PermissionsManager pm, UserRegistryManager urm, PermissionIndex index) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.index = index;
+        // Listen first: a change racing with the initial build waits for the
+        // lock and is then re-applied, which is harmless.
+        synchronized (this) {
+            pm.addChangeListener(this);
+            urm.addChangeListener(this);
+            rebuild(pm.export(), urm.getAllUsers());
+        }
+    }
+
+    /**
+     * Stops following the managers.
+     */
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+    }
+
+    /**
+     * Checks a permission against the materialized view.
+     *
+     * @param userId the user ID
+     * @param key    the permission key
+     * @return true if the user is active, all their roles are valid and together they grant the key
+     */
+    @Override
+    public boolean hasPermission(String userId, String key) {
+        Entry entry = entries.get(userId);
+        return entry != null && entry.permissions.contains(index.lookup(key));
+    }
+
+    /**
+     * Checks a permission by its generated handle, without hashing the key.
+     *
+     * @param userId     the user ID
+     * @param permission the permission handle
+     * @return true if granted
+     */
+    public boolean hasPermission(String userId, PermissionHandle permission) {
+        Entry entry = entries.get(userId);
+        if (entry == null) return false;
+        int id = index == PermissionIndex.getDefault() ? permission.getId() : index.lookup(permission.getKey());
+        return entry.permissions.contains(id);
+    }
+
+    /**
+     * @param userId the user ID
+     * @return the materialized entry, or null if the user is unknown, inactive or has an invalid role
+     */
+    public Entry get(String userId) {
+        return entries.get(userId);
+    }
+
+    /**
+     * Streams every materialized user (for full-matrix reports).
+     *
+     * @return the current entries, in no particular order
+     */
+    public Stream<Entry> stream() {
+        return entries.values().stream();
+    }
+
+    /**
+     * @return number of materialized (active, valid) users
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the index that maps keys to bit positions
+     */
+    public PermissionIndex getIndex() {
+        return index;
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        Set<String> roles = new HashSet<>();
+        for (PermissionChange change : changes) {
+            roles.add(change.getRole());
+        }
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        Set<String> affected = new HashSet<>();
+        for (String role : roles) {
+            compileRole(role, matrix.get(role));
+            affected.addAll(usersByRole.getOrDefault(role, Set.of()));
+        }
+        comboSets.keySet().removeIf(combo -> combo.stream().anyMatch(roles::contains));
+        for (String userId : affected) {
+            List<String> userRoles = rolesOfUser.get(userId);
+            PermissionSet set = effective(userRoles);
+            if (set != null) {
+                entries.put(userId, new Entry(userId, userRoles, set));
+            } else {
+                entries.remove(userId);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        rebuild(matrix, userRegistry.getAllUsers());
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        for (UserChange change : changes) {
+            String userId = change.getUserId();
+            unlink(userId);
+            if (!link(userId, userRegistry.getUser(userId), entries)) {
+                entries.remove(userId);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        rebuild(permissionsManager.export(), registry);
+    }
+
+    // === Internals ===
+
+    private void rebuild(Map<String, Map<String, Boolean>> matrix, Map<String, Map<String, Object>> registry) {
+        roleSets.clear();
+        roleDenies.clear();
+        comboSets.clear();
+        rolesOfUser.clear();
+        usersByRole.clear();
+        matrix.forEach(this::compileRole);
+        Map<String, Entry> next = new ConcurrentHashMap<>();
+        registry.forEach((userId, user) -> link(userId, user, next));
+        entries = next;
+    }
+
+    private void compileRole(String role, Map<String, Boolean> perms) {
+        if (perms == null) {
+            roleSets.remove(role);
+            roleDenies.remove(role);
+            return;
+        }
+        roleSets.put(role, PermissionSet.of(perms, index));
+        PermissionSet denied = PermissionSet.deniedBy(perms, index);
+        if (denied.isEmpty()) {
+            roleDenies.remove(role);
+        } else {
+            roleDenies.put(role, denied);
+        }
+    }
+
+    /**
+     * @return the shared effective set of a role combination, or null if a role is undefined
+     */
+    private PermissionSet effective(List<String> roles) {
+        if (!RoleSets.allDefined(roles, roleSets)) return null;
+        if (roles.size() == 1 && !roleDenies.containsKey(roles.get(0))) {
+            return roleSets.get(roles.get(0));
+        }
+        return comboSets.computeIfAbsent(RoleSets.sorted(roles), c -> RoleSets.effective(c, roleSets, roleDenies));
+    }
+
+    /**
+     * Records an active user under each of their roles and materializes
+     * them if every role exists.
+     *
+     * @return true if an entry was put into target
+     */
+    private boolean link(String userId, Map<String, Object> user, Map<String, Entry> target) {
+        if (user == null || !Boolean.TRUE.equals(user.get("active"))) return false;
+        List<String> roles = RoleSets.of(user);
+        if (roles.isEmpty()) return false;
+        rolesOfUser.put(userId, roles);
+        for (String role : roles) {
+            usersByRole.computeIfAbsent(role, r -> new HashSet<>()).add(userId);
+        }
+        PermissionSet set = effective(roles);
+        if (set == null) return false;
+        target.put(userId, new Entry(userId, roles, set));
+        return true;
+    }
+
+    /**
+     * Forgets a user's role memberships; the reader-side entry is left for the caller
+     * to replace or remove, so readers never see a gap.
+     */
+    private void unlink(String userId) {
+        List<String> roles = rolesOfUser.remove(userId);
+        if (roles == null) return;
+        for (String role : roles) {
+            Set<String> holders = usersByRole.get(role);
+            if (holders != null) holders.remove(userId);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+// === src/main/java/core/FastRejectFilter.java ===
+
+package core;
+
+import trace.TraceReason;
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+import utils.BloomFilter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FastRejectFilter turns away checks for users and permission keys that
+ * certainly do not exist, before any registry lookup, context build or
+ * exception.
+ *
+ * It holds two Bloom filters, one over the registry's user IDs and one
+ * over every key some role grants, lists as false or denies. A miss in
+ * either is a definite answer, so a flood of checks for made-up users or
+ * garbage keys costs a hash and a few bit tests each. A hit proves
+ * nothing and the check takes the normal path.
+ *
+ * Each filter remembers the manager version it is up to date with, and
+ * is only used while that is still the current version: in the moment
+ * between a publish and the update, checks fall through to the normal
+ * path, so a newly added user is never rejected. Added users and newly
+ * listed keys are inserted into the current filter, which is republished
+ * under the new version; it is rebuilt from scratch only on a reload, when
+ * keys are removed, or when it outgrows its capacity.
+ *
+ * Usage:
+ *   FastRejectFilter reject = new FastRejectFilter(pm, urm);
+ *   contextBuilder.setFastReject(reject);
+ *   asyncAuthorizer.setFastReject(reject);
+ */
+public class FastRejectFilter implements PermissionChangeListener, UserChangeListener, Closeable {
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * A filter and the version it was built from.
+     */
+    private static final class Built {
+        final BloomFilter filter;
+        final long version;
+
+        Built(BloomFilter filter, long version) {
+            this.filter = filter;
+            this.version = version;
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final double falsePositiveRate;
+    private volatile Built users;
+    private volatile Built keys;
+
+    /**
+     * Builds both filters with the default false positive rate and starts
+     * following the managers.
+     *
+     * @param pm  permission matrix to follow
+     * @param urm user registry to follow
+     */
+    public FastRejectFilter(PermissionsManager pm, UserRegistryManager urm) {
+        this(pm, urm, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Same as above with an explicit false positive rate.
+     */
+    public FastRejectFilter(PermissionsManager pm, UserRegistryManager urm, double falsePositiveRate) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.falsePositiveRate = falsePositiveRate;
+        synchronized (this) {
+            pm.addChangeListener(this);
+            urm.addChangeListener(this);
+            rebuildKeys(pm.snapshot());
+            rebuildUsers(urm.getAllUsers());
+        }
+    }
+
+    /**
+     * Stops following the managers.
+     */
+    @Override
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+    }
+
+    /**
+     * @param userId the user ID
+     * @return true if the user is certainly not in the current registry
+     */
+    public boolean rejectsUser(String userId) {
+        Built current = users;
+        return current.version == userRegistry.getVersion() && !current.filter.mightContain(userId);
+    }
+
+    /**
+     * @param key the permission key
+     * @return true if no role in the current matrix lists the key
+     */
+    public boolean rejectsKey(String key) {
+        Built current = keys;
+        return current.version == permissionsManager.getVersion() && !current.filter.mightContain(key);
+    }
+
+    /**
+     * Checks a request against both filters. Allocates nothing.
+     *
+     * @param userId the user ID
+     * @param key    the permission key
+     * @return {@link TraceReason#UNKNOWN_USER} or {@link TraceReason#UNKNOWN_KEY} for a
+     *         certain deny, or null if the check must take the normal path
+     */
+    public TraceReason reject(String userId, String key) {
+        if (rejectsUser(userId)) return TraceReason.UNKNOWN_USER;
+        if (rejectsKey(key)) return TraceReason.UNKNOWN_KEY;
+        return null;
+    }
+
+    /**
+     * @return the filter over user IDs (for stats)
+     */
+    public BloomFilter getUserFilter() {
+        return users.filter;
+    }
+
+    /**
+     * @return the filter over permission keys (for stats)
+     */
+    public BloomFilter getKeyFilter() {
+        return keys.filter;
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        long version = permissionsManager.getVersion();
+        List<String> listed = new ArrayList<>(changes.size());
+        for (PermissionChange change : changes) {
+            if (change.isRemoval()) {
+                rebuildKeys(permissionsManager.snapshot());
+                return;
+            }
+            listed.add(RoleSets.target(change.getKey()));
+        }
+        Built extended = extend(keys, listed, version);
+        if (extended != null) {
+            keys = extended;
+        } else {
+            rebuildKeys(permissionsManager.snapshot());
+        }
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        rebuildKeys(matrix);
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        long version = userRegistry.getVersion();
+        List<String> added = new ArrayList<>(changes.size());
+        for (UserChange change : changes) {
+            if (change.getKind() == UserChange.Kind.ADD) added.add(change.getUserId());
+        }
+        Built extended = extend(users, added, version);
+        if (extended != null) {
+            users = extended;
+        } else {
+            rebuildUsers(userRegistry.getAllUsers());
+        }
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        rebuildUsers(registry);
+    }
+
+    // === Internals ===
+
+    /**
+     * Adds members to the current filter for the given version, or returns
+     * null if that would exceed its capacity. Called on the writer thread,
+     * so no other version is published meanwhile.
+     */
+    private static Built extend(Built current, List<String> added, long version) {
+        BloomFilter filter = current.filter;
+        if (filter.size() + added.size() > filter.capacity()) return null;
+        for (String member : added) filter.add(member);
+        return new Built(filter, version);   // the volatile write publishes the new bits
+    }
+
+    // Versions are read before the data: if a publish slips in between,
+    // the filter is built from newer data under an older version and is
+    // simply never used.
+    private void rebuildKeys(Map<String, Map<String, Boolean>> matrix) {
+        long version = permissionsManager.getVersion();
+        Set<String> listed = new HashSet<>();
+        for (Map<String, Boolean> perms : matrix.values()) {
+            for (String key : perms.keySet()) {
+                listed.add(RoleSets.target(key));
+            }
+        }
+        keys = new Built(BloomFilter.of(listed, falsePositiveRate), version);
+    }
+
+    private void rebuildUsers(Map<String, Map<String, Object>> registry) {
+        long version = userRegistry.getVersion();
+        users = new Built(BloomFilter.of(registry.keySet(), falsePositiveRate), version);
+    }
+}
@@ -0,0 +1,602 @@
+// === src/main/java/core/OffHeapPolicyStore.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * OffHeapPolicyStore is an optional backend for very large deployments
+ * that keeps the compiled policy outside the Java heap.
+ *
+ * One buffer (direct memory, or a memory-mapped file) holds:
+ *   - three string tables (permission keys, roles, user IDs), each an
+ *     open-addressing hash table plus UTF-16 character data
+ *   - one effective permission bitset per role, and one per role
+ *     combination held by some multi-role user (named "a+b", see
+ *     {@link RoleSets}), each already minus its explicit denies
+ *   - user columns: role index (int) and active flag (byte)
+ *
+ * The heap holds only the buffer handle and a few section offsets, so a
+ * registry of millions of users adds no long-lived objects for the GC to
+ * trace. A check hashes the two strings, probes two tables and tests one
+ * bit, without allocating.
+ *
+ * When following the managers, common changes are patched into a copy
+ * of the buffer, which is then swapped in: granting/revoking an existing
+ * key on a role no combination uses, and adding, toggling or re-roling
+ * users. A published buffer is never written again, so a reader sees a
+ * whole batch or none of it. The copy is one bulk memory copy, far
+ * cheaper than compiling from the managers' maps.
+ *
+ * New users go into headroom kept free in the user table and columns
+ * (a quarter of the users at compile time). Once it is used up, or for
+ * anything that needs a new string otherwise (new key, role or
+ * combination), touches a role used in a combination, or a reload, a
+ * fresh buffer is compiled, with new headroom, and swapped in.
+ *
+ * Usage:
+ *   OffHeapPolicyStore store = OffHeapPolicyStore.follow(pm, urm, null);
+ *   store.hasPermission("bob", "trader.submit_manual_trade");
+ */
+public final class OffHeapPolicyStore implements PermissionChecker, PermissionChangeListener, UserChangeListener {
+
+    private static final int NO_ROLE = -1;
+    private static final int MIN_SPARE_USERS = 16;
+    private static final int SPARE_CHARS_PER_USER = 16;
+
+    /**
+     * View of one string table section holding count strings, with room
+     * for maxCount.
+     * Layout: slots (hash:int, id+1:int) × capacity, offsets int × (maxCount+1), chars.
+     */
+    private static final class StringTable {
+        final int slotsPos;
+        final int mask;
+        final int offsetsPos;
+        final int charsPos;
+        final int count;
+        final int maxCount;
+
+        StringTable(int slotsPos, int capacity, int count, int maxCount) {
+            this.slotsPos = slotsPos;
+            this.mask = capacity - 1;
+            this.count = count;
+            this.maxCount = maxCount;
+            this.offsetsPos = slotsPos + capacity * 8;
+            this.charsPos = offsetsPos + (maxCount + 1) * 4;
+        }
+
+        int find(ByteBuffer buf, String s) {
+            int h = mix(s.hashCode());
+            int i = h & mask;
+            while (true) {
+                int slot = slotsPos + i * 8;
+                int id1 = buf.getInt(slot + 4);
+                if (id1 == 0) return -1;
+                if (buf.getInt(slot) == h && matches(buf, id1 - 1, s)) return id1 - 1;
+                i = (i + 1) & mask;
+            }
+        }
+
+        private boolean matches(ByteBuffer buf, int id, String s) {
+            int start = buf.getInt(offsetsPos + id * 4);
+            int end = buf.getInt(offsetsPos + id * 4 + 4);
+            if (end - start != s.length()) return false;
+            int base = charsPos + start * 2;
+            for (int i = 0; i < s.length(); i++) {
+                if (buf.getChar(base + i * 2) != s.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        String get(ByteBuffer buf, int id) {
+            int start = buf.getInt(offsetsPos + id * 4);
+            int end = buf.getInt(offsetsPos + id * 4 + 4);
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = buf.getChar(charsPos + (start + i) * 2);
+            }
+            return new String(chars);
+        }
+
+        /**
+         * @return characters used so far
+         */
+        int chars(ByteBuffer buf) {
+            return buf.getInt(offsetsPos + count * 4);
+        }
+
+        /**
+         * Adds a string as the next ID. The caller makes sure it fits.
+         *
+         * @return the table including it
+         */
+        StringTable append(ByteBuffer buf, String s) {
+            int start = chars(buf);
+            int h = mix(s.hashCode());
+            int i = h & mask;
+            while (buf.getInt(slotsPos + i * 8 + 4) != 0) i = (i + 1) & mask;
+            buf.putInt(slotsPos + i * 8, h);
+            buf.putInt(slotsPos + i * 8 + 4, count + 1);
+            for (int c = 0; c < s.length(); c++) {
+                buf.putChar(charsPos + (start + c) * 2, s.charAt(c));
+            }
+            buf.putInt(offsetsPos + (count + 1) * 4, start + s.length());
+            return new StringTable(slotsPos, mask + 1, count + 1, maxCount);
+        }
+
+        static int capacityFor(int count) {
+            return Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1;
+        }
+
+        static long charsOf(List<String> strings) {
+            long chars = 0;
+            for (String s : strings) chars += s.length();
+            return chars;
+        }
+
+        static long sizeOf(int maxCount, long maxChars) {
+            return capacityFor(maxCount) * 8L + (maxCount + 1) * 4L + maxChars * 2;
+        }
+
+        /**
+         * Writes the strings into a zeroed section.
+         */
+        static StringTable write(ByteBuffer buf, int pos, List<String> strings, int maxCount) {
+            StringTable table = new StringTable(pos, capacityFor(maxCount), 0, maxCount);
+            for (String s : strings) {
+                table = table.append(buf, s);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * One compiled, immutable-layout policy buffer.
+     */
+    private static final class Snapshot {
+        final ByteBuffer buf;
+        final Path file;
+        final StringTable keys;
+        final StringTable roles;
+        final StringTable users;
+        final int words;          // longs per role bitset
+        final int bitsPos;
+        final int roleColPos;
+        final int activeColPos;
+        final long maxUserChars;
+        final Set<String> combined;   // roles that are part of a compiled combination
+
+        Snapshot(ByteBuffer buf, Path file, StringTable keys, StringTable roles, StringTable users,
+                 int words, int bitsPos, int roleColPos, int activeColPos, long maxUserChars, Set<String> combined) {
+            this.buf = buf;
+            this.file = file;
+            this.keys = keys;
+            this.roles = roles;
+            this.users = users;
+            this.words = words;
+            this.bitsPos = bitsPos;
+            this.roleColPos = roleColPos;
+            this.activeColPos = activeColPos;
+            this.maxUserChars = maxUserChars;
+            this.combined = combined;
+        }
+
+        long bytes() {
+            return buf.capacity();
+        }
+
+        /**
+         * @return the same snapshot with a user table that has grown in place
+         */
+        Snapshot withUsers(StringTable grown) {
+            return new Snapshot(buf, file, keys, roles, grown, words, bitsPos, roleColPos, activeColPos,
+                    maxUserChars, combined);
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final Path spillDir;
+    private volatile Snapshot snapshot;
+
+    private OffHeapPolicyStore(PermissionsManager pm, UserRegistryManager urm, Path spillDir, Snapshot snapshot) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.spillDir = spillDir;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Compiles a fixed policy into direct memory.
+     *
+     * @param matrix   role → { permission_key → boolean }
+     * @param registry user_id → { role or roles, client_id, active }
+     * @return a store that does not follow any manager
+     */
+    public static OffHeapPolicyStore build(Map<String, Map<String, Boolean>> matrix,
+                                           Map<String, Map<String, Object>> registry) {
+        return build(matrix, registry, null);
+    }
+
+    /**
+     * Compiles a fixed policy into direct memory, or into a memory-mapped
+     * file in spillDir so the OS can page it.
+     *
+     * @param spillDir directory for mapped files, or null for direct memory
+     */
+    public static OffHeapPolicyStore build(Map<String, Map<String, Boolean>> matrix,
+                                           Map<String, Map<String, Object>> registry, Path spillDir) {
+        return new OffHeapPolicyStore(null, null, spillDir, compile(matrix, registry, spillDir));
+    }
+
+    /**
+     * Compiles the managers' current policy and keeps it up to date.
+     *
+     * @param pm       permission matrix to follow
+     * @param urm      user registry to follow
+     * @param spillDir directory for mapped files, or null for direct memory
+     * @return the following store; call {@link #close()} to detach
+     */
+    public static OffHeapPolicyStore follow(PermissionsManager pm, UserRegistryManager urm, Path spillDir) {
+        OffHeapPolicyStore store = new OffHeapPolicyStore(pm, urm, spillDir, null);
+        synchronized (store) {
+            pm.addChangeListener(store);
+            urm.addChangeListener(store);
+            store.snapshot = compile(pm.export(), urm.getAllUsers(), spillDir);
+        }
+        return store;
+    }
+
+    /**
+     * Detaches from the managers and removes the current mapped file, if any.
+     */
+    public synchronized void close() {
+        if (permissionsManager != null) permissionsManager.removeChangeListener(this);
+        if (userRegistry != null) userRegistry.removeChangeListener(this);
+        deleteQuietly(snapshot.file);
+    }
+
+    @Override
+    public boolean hasPermission(String userId, String key) {
+        Snapshot s = snapshot;
+        int user = s.users.find(s.buf, userId);
+        if (user < 0 || s.buf.get(s.activeColPos + user) == 0) return false;
+        int role = s.buf.getInt(s.roleColPos + user * 4);
+        if (role == NO_ROLE) return false;
+        int id = s.keys.find(s.buf, key);
+        if (id < 0) return false;
+        long word = s.buf.getLong(s.bitsPos + (role * s.words + (id >>> 6)) * 8);
+        return (word & (1L << id)) != 0;
+    }
+
+    /**
+     * @param userId the user ID
+     * @return true if the user exists and is active
+     */
+    public boolean isActive(String userId) {
+        Snapshot s = snapshot;
+        int user = s.users.find(s.buf, userId);
+        return user >= 0 && s.buf.get(s.activeColPos + user) != 0;
+    }
+
+    /**
+     * @param userId the user ID
+     * @return the user's role (a "+"-joined combination key for several
+     *         roles), or null if unknown or not defined in the matrix
+     */
+    public String getRole(String userId) {
+        Snapshot s = snapshot;
+        int user = s.users.find(s.buf, userId);
+        if (user < 0) return null;
+        int role = s.buf.getInt(s.roleColPos + user * 4);
+        return role == NO_ROLE ? null : s.roles.get(s.buf, role);
+    }
+
+    /**
+     * @return number of users in the store
+     */
+    public int size() {
+        return snapshot.users.count;
+    }
+
+    /**
+     * @return bytes held outside the Java heap by the current snapshot
+     */
+    public long offHeapBytes() {
+        return snapshot.bytes();
+    }
+
+    /**
+     * Copies the current compiled buffer, byte for byte, to a file. A
+     * snapshot spilled to a mapped file is copied file to file with
+     * {@link FileChannel#transferTo}, so the bytes never pass through the
+     * Java heap; a direct-memory snapshot is written straight from its
+     * buffer. Updates wait until the copy is done, so the file is not
+     * removed underneath it.
+     *
+     * @param target file to create or replace
+     * @return bytes written
+     * @throws UncheckedIOException if either file cannot be accessed
+     */
+    public synchronized long writeTo(Path target) {
+        Snapshot s = snapshot;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (s.file != null) {
+                ((MappedByteBuffer) s.buf).force();
+                try (FileChannel in = FileChannel.open(s.file, StandardOpenOption.READ)) {
+                    long copied = 0;
+                    while (copied < s.bytes()) {
+                        copied += in.transferTo(copied, s.bytes() - copied, out);
+                    }
+                    return copied;
+                }
+            }
+            ByteBuffer src = s.buf.duplicate();
+            src.clear();
+            while (src.hasRemaining()) out.write(src);
+            return s.bytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to copy policy buffer to " + target, e);
+        }
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        Snapshot s = snapshot;
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        for (PermissionChange change : changes) {
+            String key = RoleSets.target(change.getKey());
+            if (s.roles.find(s.buf, change.getRole()) < 0
+                    || (s.keys.find(s.buf, key) < 0 && granted(matrix, change.getRole(), key))
+                    || s.combined.contains(change.getRole())) {
+                recompile();
+                return;
+            }
+        }
+        Snapshot next = copy(s);
+        for (PermissionChange change : changes) {
+            int role = next.roles.find(next.buf, change.getRole());
+            String key = RoleSets.target(change.getKey());
+            int id = next.keys.find(next.buf, key);
+            if (id < 0) continue;   // revoking a key nobody has
+            int pos = next.bitsPos + (role * next.words + (id >>> 6)) * 8;
+            long word = next.buf.getLong(pos);
+            next.buf.putLong(pos, granted(matrix, change.getRole(), key) ? word | (1L << id) : word & ~(1L << id));
+        }
+        replace(next);
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        replace(compile(matrix, userRegistry.getAllUsers(), spillDir));
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        Snapshot s = snapshot;
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        Set<String> added = new LinkedHashSet<>();   // users this batch introduces
+        long addedChars = 0;
+        for (UserChange change : changes) {
+            if (s.users.find(s.buf, change.getUserId()) < 0 && !added.contains(change.getUserId())) {
+                if (change.getKind() != UserChange.Kind.ADD) {
+                    recompile();
+                    return;
+                }
+                added.add(change.getUserId());
+                addedChars += change.getUserId().length();
+            }
+            List<String> roles = change.getRoles();
+            if (change.getKind() == UserChange.Kind.ADD && roles.size() > 1
+                    && s.roles.find(s.buf, RoleSets.key(roles)) < 0 && RoleSets.allDefined(roles, matrix)) {
+                recompile();   // a combination nobody held before
+                return;
+            }
+        }
+        if (s.users.count + added.size() > s.users.maxCount || s.users.chars(s.buf) + addedChars > s.maxUserChars) {
+            recompile();   // out of headroom; the new buffer has room again
+            return;
+        }
+        Snapshot next = copy(s);
+        StringTable users = next.users;
+        for (String userId : added) {
+            users = users.append(next.buf, userId);
+        }
+        next = next.withUsers(users);
+        for (UserChange change : changes) {
+            int user = users.find(next.buf, change.getUserId());
+            if (change.getKind() == UserChange.Kind.ADD) {
+                List<String> roles = change.getRoles();
+                int role = roles.isEmpty() ? NO_ROLE : next.roles.find(next.buf, RoleSets.key(roles));
+                next.buf.putInt(next.roleColPos + user * 4, role < 0 ? NO_ROLE : role);
+            }
+            next.buf.put(next.activeColPos + user, (byte) (change.isActive() ? 1 : 0));
+        }
+        replace(next);
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        replace(compile(permissionsManager.export(), registry, spillDir));
+    }
+
+    // === Compilation ===
+
+    private void recompile() {
+        replace(compile(permissionsManager.export(), userRegistry.getAllUsers(), spillDir));
+    }
+
+    /**
+     * @return true if the role's effective bit for the key is set: granted and not denied
+     */
+    private static boolean granted(Map<String, Map<String, Boolean>> matrix, String role, String key) {
+        Map<String, Boolean> perms = matrix.getOrDefault(role, Map.of());
+        return Boolean.TRUE.equals(perms.get(key)) && !Boolean.TRUE.equals(perms.get(RoleSets.DENY_PREFIX + key));
+    }
+
+    /**
+     * Copies the snapshot's buffer, byte for byte, into a fresh one to patch
+     * before it is published.
+     */
+    private Snapshot copy(Snapshot s) {
+        Path file = spillFile(spillDir);
+        ByteBuffer buf = allocate(s.bytes(), file);
+        ByteBuffer src = s.buf.duplicate();
+        src.clear();
+        buf.put(src);
+        return new Snapshot(buf, file, s.keys, s.roles, s.users, s.words, s.bitsPos, s.roleColPos, s.activeColPos,
+                s.maxUserChars, s.combined);
+    }
+
+    private void replace(Snapshot next) {
+        Snapshot previous = snapshot;
+        snapshot = next;
+        if (previous != null) deleteQuietly(previous.file);
+    }
+
+    private static Snapshot compile(Map<String, Map<String, Boolean>> matrix,
+                                    Map<String, Map<String, Object>> registry, Path spillDir) {
+        // Rows: every role, then every combination some user holds.
+        Map<String, Map<String, Boolean>> rows = new LinkedHashMap<>();
+        matrix.keySet().forEach(role -> rows.put(role, RoleSets.effective(List.of(role), matrix)));
+        Set<String> combined = new HashSet<>();
+        for (Map<String, Object> user : registry.values()) {
+            List<String> roles = RoleSets.of(user);
+            if (roles.size() < 2 || !RoleSets.allDefined(roles, matrix)) continue;
+            rows.computeIfAbsent(RoleSets.key(roles), k -> RoleSets.effective(roles, matrix));
+            combined.addAll(roles);
+        }
+        List<String> roleNames = new ArrayList<>(rows.keySet());
+        Map<String, Integer> roleIds = new HashMap<>();
+        for (int i = 0; i < roleNames.size(); i++) roleIds.put(roleNames.get(i), i);
+
+        List<String> keyNames = new ArrayList<>();
+        Map<String, Integer> keyIds = new HashMap<>();
+        for (Map<String, Boolean> perms : rows.values()) {
+            for (String key : perms.keySet()) {
+                keyIds.computeIfAbsent(key, k -> {
+                    keyNames.add(k);
+                    return keyNames.size() - 1;
+                });
+            }
+        }
+        List<String> userIds = new ArrayList<>(registry.keySet());
+        int spareUsers = Math.max(MIN_SPARE_USERS, userIds.size() / 4);
+        int maxUsers = userIds.size() + spareUsers;
+        long maxUserChars = StringTable.charsOf(userIds) + (long) spareUsers * SPARE_CHARS_PER_USER;
+
+        int words = Math.max(1, (keyNames.size() + 63) >>> 6);
+        long keysSize = StringTable.sizeOf(keyNames.size(), StringTable.charsOf(keyNames));
+        long rolesSize = StringTable.sizeOf(roleNames.size(), StringTable.charsOf(roleNames));
+        long usersSize = StringTable.sizeOf(maxUsers, maxUserChars);
+        long bitsSize = (long) roleNames.size() * words * 8;
+        long total = align(keysSize) + align(rolesSize) + align(usersSize) + bitsSize
+                + (long) maxUsers * 4 + maxUsers;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Policy too large for one off-heap buffer: " + total + " bytes");
+        }
+
+        Path file = spillFile(spillDir);
+        ByteBuffer buf = allocate(total, file);
+
+        int pos = 0;
+        StringTable keys = StringTable.write(buf, pos, keyNames, keyNames.size());
+        pos += (int) align(keysSize);
+        StringTable roles = StringTable.write(buf, pos, roleNames, roleNames.size());
+        pos += (int) align(rolesSize);
+        StringTable users = StringTable.write(buf, pos, userIds, maxUsers);
+        pos += (int) align(usersSize);
+
+        int bitsPos = pos;
+        for (int r = 0; r < roleNames.size(); r++) {
+            Map<String, Boolean> perms = rows.get(roleNames.get(r));
+            for (Map.Entry<String, Boolean> e : perms.entrySet()) {
+                if (!Boolean.TRUE.equals(e.getValue())) continue;
+                int id = keyIds.get(e.getKey());
+                int at = bitsPos + (r * words + (id >>> 6)) * 8;
+                buf.putLong(at, buf.getLong(at) | (1L << id));
+            }
+        }
+        pos += (int) bitsSize;
+
+        int roleColPos = pos;
+        int activeColPos = roleColPos + maxUsers * 4;
+        for (int u = 0; u < userIds.size(); u++) {
+            Map<String, Object> user = registry.get(userIds.get(u));
+            List<String> userRoles = RoleSets.of(user);
+            Integer role = userRoles.isEmpty() ? null : roleIds.get(RoleSets.key(userRoles));
+            buf.putInt(roleColPos + u * 4, role != null ? role : NO_ROLE);
+            buf.put(activeColPos + u, (byte) (user != null && Boolean.TRUE.equals(user.get("active")) ? 1 : 0));
+        }
+        return new Snapshot(buf, file, keys, roles, users, words, bitsPos, roleColPos, activeColPos,
+                maxUserChars, combined);
+    }
+
+    /**
+     * @return a new file to map in spillDir, or null for direct memory
+     */
+    private static Path spillFile(Path spillDir) {
+        if (spillDir == null) return null;
+        try {
+            return Files.createTempFile(spillDir, "rbac-policy-", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create policy file in " + spillDir, e);
+        }
+    }
+
+    /**
+     * @return a zeroed buffer: direct memory, or the file mapped read-write
+     */
+    private static ByteBuffer allocate(long size, Path file) {
+        if (file == null) return ByteBuffer.allocateDirect((int) size);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map policy file " + file, e);
+        }
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Spreads String.hashCode so linear probing behaves on similar keys.
+     */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("⚠️  Could not delete old policy file: " + file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+// === src/main/java/core/PermissionChange.java ===
+
+package core;
+
+/**
+ * PermissionChange is a single staged edit to the role-permission matrix.
+ *
+ * A change either sets a key on a role (grant/revoke) or removes the key
+ * from the role entirely. Instances are immutable so they can be queued,
+ * validated and applied later as part of a batch.
+ */
+public final class PermissionChange {
+
+    private final String role;
+    private final String key;
+    private final Boolean value;   // null means "remove the key"
+
+    private PermissionChange(String role, String key, Boolean value) {
+        this.role = role;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Creates a grant (true) or revoke (false) change.
+     *
+     * @param role  the role name
+     * @param key   the permission key
+     * @param value true to grant, false to revoke
+     * @return the staged change
+     */
+    public static PermissionChange set(String role, String key, boolean value) {
+        return new PermissionChange(role, key, value);
+    }
+
+    /**
+     * Creates a change that removes a key from a role.
+     *
+     * @param role the role name
+     * @param key  the permission key
+     * @return the staged change
+     */
+    public static PermissionChange remove(String role, String key) {
+        return new PermissionChange(role, key, null);
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the new value, or null if the key is removed
+     */
+    public Boolean getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if this change removes the key
+     */
+    public boolean isRemoval() {
+        return value == null;
+    }
+
+    @Override
+    public String toString() {
+        return isRemoval()
+                ? "remove " + role + " " + key
+                : "grant " + role + " " + key + " " + value;
+    }
+}
@@ -0,0 +1,34 @@
+// === src/main/java/core/PermissionChangeListener.java ===
+
+package core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PermissionChangeListener is notified after PermissionsManager publishes
+ * a new version of the role-permission matrix.
+ *
+ * Callbacks run on the writer thread, after the new matrix is visible to
+ * readers, so implementations must be quick and must not call back into
+ * the manager's mutating methods.
+ *
+ * Components that need more time should subscribe through
+ * {@link PolicyEvents} instead, which delivers off the writer thread.
+ */
+public interface PermissionChangeListener {
+
+    /**
+     * Called after one or more keys were set or removed.
+     *
+     * @param changes the applied changes, in order
+     */
+    void onPermissionsChanged(List<PermissionChange> changes);
+
+    /**
+     * Called after the whole matrix was replaced (load, reload or import).
+     *
+     * @param matrix the new matrix (read-only)
+     */
+    void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix);
+}
@@ -0,0 +1,18 @@
+// === src/main/java/core/PermissionChecker.java ===
+
+package core;
+
+/**
+ * PermissionChecker is the common check API shared by the different
+ * policy backends (materialized view, off-heap store, ...), so callers
+ * and benchmarks can switch backends without code changes.
+ */
+public interface PermissionChecker {
+
+    /**
+     * @param userId the user ID
+     * @param key    the permission key
+     * @return true if the user is active, has a valid role and the role grants the key
+     */
+    boolean hasPermission(String userId, String key);
+}
@@ -0,0 +1,46 @@
+// === src/main/java/core/PermissionHandle.java ===
+
+package core;
+
+/**
+ * PermissionHandle is a typed, pre-resolved permission key.
+ *
+ * Handles are generated at build time into {@link Permissions} from
+ * RolePermissions.yaml, each with a fixed int ID. The default
+ * {@link PermissionIndex} reserves the same IDs, so a check with a handle
+ * is a bit test with no hashing and no allocation:
+ *
+ *   context.hasPermission(Permissions.ADMIN_MANAGE_USERS)
+ *
+ * Handles can only be created in this package, so every handle in use
+ * corresponds to a key the policy defined when the code was built.
+ */
+public final class PermissionHandle {
+
+    private final String key;
+    private final int id;
+
+    PermissionHandle(String key, int id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * @return the permission key, e.g. "admin.manage_users"
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the ID of the key in {@link PermissionIndex#getDefault()}
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,328 @@
+// === src/main/java/core/PermissionHolderIndex.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * PermissionHolderIndex answers "who can do X" without scanning users.
+ *
+ * Users are grouped by role combination (a single role is a combination
+ * of one, see {@link RoleSets}), and it maintains two small indexes:
+ *   permission_key → combinations whose effective set holds it
+ *   combination    → active users holding exactly those roles (sorted)
+ *
+ * A query touches only the combinations holding the key: the total is the
+ * sum of their user counts, and a page is cut from the sorted user sets,
+ * skipping whole combinations that lie before the requested offset.
+ * Grouping by combination means a user with two granting roles is counted
+ * once, and a user whose other role denies the key is not counted at all.
+ *
+ * Both indexes follow the managers through their change listeners:
+ * grants/deletes re-diff only the touched roles and the combinations in
+ * use that contain them, user changes move only that user, and reloads
+ * rebuild the affected side.
+ *
+ * Usage:
+ *   PermissionHolderIndex holders = new PermissionHolderIndex(pm, urm);
+ *   holders.count("risker.trigger_global_killswitch");
+ *   holders.holders("admin.modify_role_permission", 0, 20);
+ */
+public class PermissionHolderIndex implements PermissionChangeListener, UserChangeListener {
+
+    /**
+     * One page of holders for a permission key.
+     */
+    public static final class Page {
+        private final String key;
+        private final int total;
+        private final int offset;
+        private final List<String> userIds;
+
+        Page(String key, int total, int offset, List<String> userIds) {
+            this.key = key;
+            this.total = total;
+            this.offset = offset;
+            this.userIds = userIds;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of active users holding the key, across all pages
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return user IDs on this page, ordered by role combination then user ID
+         */
+        public List<String> getUserIds() {
+            return userIds;
+        }
+
+        /**
+         * @return true if more holders follow this page
+         */
+        public boolean hasMore() {
+            return offset + userIds.size() < total;
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+
+    // All state is guarded by this.
+    private final Map<String, NavigableSet<String>> rolesByKey = new HashMap<>();
+    private final Map<String, Set<String>> keysByRole = new HashMap<>();        // granted
+    private final Map<String, Set<String>> deniesByRole = new HashMap<>();      // explicitly denied
+    private final Set<String> definedRoles = new HashSet<>();
+    private final Map<String, NavigableSet<String>> combosByKey = new HashMap<>();
+    private final Map<String, Set<String>> keysByCombo = new HashMap<>();       // effective
+    private final Map<String, NavigableSet<String>> usersByCombo = new HashMap<>();
+    private final Map<String, String> comboOfUser = new HashMap<>();
+
+    /**
+     * Builds the index and starts following both managers.
+     *
+     * @param pm  permission matrix to follow
+     * @param urm user registry to follow
+     */
+    public PermissionHolderIndex(PermissionsManager pm, UserRegistryManager urm) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        synchronized (this) {
+            pm.addChangeListener(this);
+            urm.addChangeListener(this);
+            rebuildRoles(pm.export());
+            rebuildUsers(urm.getAllUsers());
+        }
+    }
+
+    /**
+     * Stops following the managers.
+     */
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+    }
+
+    /**
+     * @param key the permission key
+     * @return roles that currently grant the key, sorted
+     */
+    public synchronized List<String> rolesWith(String key) {
+        NavigableSet<String> roles = rolesByKey.get(key);
+        return roles == null ? List.of() : List.copyOf(roles);
+    }
+
+    /**
+     * @param key the permission key
+     * @return number of active users holding the key
+     */
+    public synchronized int count(String key) {
+        int total = 0;
+        for (String combo : combosByKey.getOrDefault(key, Collections.emptyNavigableSet())) {
+            total += usersByCombo.getOrDefault(combo, Collections.emptyNavigableSet()).size();
+        }
+        return total;
+    }
+
+    /**
+     * Returns one page of the active users holding a key.
+     *
+     * @param key    the permission key
+     * @param offset number of holders to skip
+     * @param limit  maximum number of holders to return
+     * @return the page, with the overall total
+     */
+    public synchronized Page holders(String key, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        List<String> page = new ArrayList<>(Math.min(limit, 64));
+        int total = 0;
+        for (String combo : combosByKey.getOrDefault(key, Collections.emptyNavigableSet())) {
+            NavigableSet<String> users = usersByCombo.getOrDefault(combo, Collections.emptyNavigableSet());
+            int start = total;
+            total += users.size();
+            if (page.size() >= limit || total <= offset) continue;
+            int skip = Math.max(0, offset - start);
+            for (String userId : users) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                if (page.size() >= limit) break;
+                page.add(userId);
+            }
+        }
+        return new Page(key, total, offset, Collections.unmodifiableList(page));
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        Set<String> roles = new HashSet<>();
+        for (PermissionChange change : changes) {
+            roles.add(change.getRole());
+        }
+        Map<String, Map<String, Boolean>> matrix = permissionsManager.snapshot();
+        for (String role : roles) {
+            indexRole(role, matrix.get(role));
+        }
+        for (String combo : List.copyOf(usersByCombo.keySet())) {
+            if (RoleSets.split(combo).stream().anyMatch(roles::contains)) indexCombo(combo);
+        }
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        rebuildRoles(matrix);
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        for (UserChange change : changes) {
+            indexUser(change.getUserId(), userRegistry.getUser(change.getUserId()));
+        }
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        rebuildUsers(registry);
+    }
+
+    // === Internals ===
+
+    private void rebuildRoles(Map<String, Map<String, Boolean>> matrix) {
+        rolesByKey.clear();
+        keysByRole.clear();
+        deniesByRole.clear();
+        definedRoles.clear();
+        matrix.forEach(this::indexRole);
+        usersByCombo.keySet().forEach(this::indexCombo);
+    }
+
+    private void rebuildUsers(Map<String, Map<String, Object>> registry) {
+        usersByCombo.clear();
+        comboOfUser.clear();
+        combosByKey.clear();
+        keysByCombo.clear();
+        registry.forEach(this::indexUser);
+    }
+
+    /**
+     * Replaces a role's granted and denied keys, touching only the grants
+     * that changed. Combinations are re-diffed by the caller.
+     */
+    private void indexRole(String role, Map<String, Boolean> perms) {
+        Set<String> granted = new HashSet<>();
+        Set<String> denied = new HashSet<>();
+        definedRoles.add(role);
+        if (perms != null) {
+            perms.forEach((key, value) -> {
+                if (!Boolean.TRUE.equals(value)) return;
+                if (RoleSets.isDeny(key)) {
+                    denied.add(RoleSets.target(key));
+                } else {
+                    granted.add(key);
+                }
+            });
+        }
+        Set<String> previous = keysByRole.getOrDefault(role, Set.of());
+        for (String key : previous) {
+            if (!granted.contains(key)) {
+                NavigableSet<String> roles = rolesByKey.get(key);
+                roles.remove(role);
+                if (roles.isEmpty()) rolesByKey.remove(key);
+            }
+        }
+        for (String key : granted) {
+            if (!previous.contains(key)) {
+                rolesByKey.computeIfAbsent(key, k -> new TreeSet<>()).add(role);
+            }
+        }
+        put(keysByRole, role, granted);
+        put(deniesByRole, role, denied);
+    }
+
+    /**
+     * Recomputes a combination's effective keys (union of grants minus
+     * union of denies; nothing if a role is undefined) and re-diffs it
+     * against the key index. A combination nobody holds is dropped.
+     */
+    private void indexCombo(String combo) {
+        Set<String> effective = new HashSet<>();
+        List<String> roles = RoleSets.split(combo);
+        if (usersByCombo.containsKey(combo) && definedRoles.containsAll(roles)) {
+            for (String role : roles) effective.addAll(keysByRole.getOrDefault(role, Set.of()));
+            for (String role : roles) effective.removeAll(deniesByRole.getOrDefault(role, Set.of()));
+        }
+        Set<String> previous = keysByCombo.getOrDefault(combo, Set.of());
+        for (String key : previous) {
+            if (!effective.contains(key)) {
+                NavigableSet<String> combos = combosByKey.get(key);
+                combos.remove(combo);
+                if (combos.isEmpty()) combosByKey.remove(key);
+            }
+        }
+        for (String key : effective) {
+            if (!previous.contains(key)) {
+                combosByKey.computeIfAbsent(key, k -> new TreeSet<>()).add(combo);
+            }
+        }
+        put(keysByCombo, combo, effective);
+    }
+
+    /**
+     * Moves a user to the holder set of their current role combination, or drops them if inactive.
+     */
+    private void indexUser(String userId, Map<String, Object> user) {
+        String previous = comboOfUser.remove(userId);
+        if (previous != null) {
+            NavigableSet<String> users = usersByCombo.get(previous);
+            users.remove(userId);
+            if (users.isEmpty()) {
+                usersByCombo.remove(previous);
+                indexCombo(previous);
+            }
+        }
+        if (user == null || !Boolean.TRUE.equals(user.get("active"))) return;
+        List<String> roles = RoleSets.of(user);
+        if (roles.isEmpty()) return;
+        String combo = RoleSets.key(roles);
+        comboOfUser.put(userId, combo);
+        boolean fresh = !usersByCombo.containsKey(combo);
+        usersByCombo.computeIfAbsent(combo, c -> new TreeSet<>()).add(userId);
+        if (fresh) indexCombo(combo);
+    }
+
+    private static void put(Map<String, Set<String>> index, String name, Set<String> keys) {
+        if (keys.isEmpty()) {
+            index.remove(name);
+        } else {
+            index.put(name, keys);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// === src/main/java/core/PermissionIndex.java ===
+
+package core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PermissionIndex assigns a small, dense integer ID to every permission
+ * key it sees, so permission sets can be stored as bitsets.
+ *
+ * IDs are append-only: once a key has an ID it keeps it for the life of
+ * the index, even if the key is later removed from every role. Keys added
+ * at runtime get IDs after the build-time ones. Lookups are lock-free;
+ * assigning a new ID takes a short lock.
+ */
+public final class PermissionIndex {
+
+    private static final PermissionIndex DEFAULT = new PermissionIndex(Permissions.KEYS);
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] keys = new String[64];
+    private volatile int size;
+
+    /**
+     * Creates an empty index.
+     */
+    public PermissionIndex() {
+    }
+
+    /**
+     * Creates an index whose first IDs are reserved for the given keys, in order.
+     *
+     * @param reserved keys to assign IDs 0..n-1
+     */
+    PermissionIndex(String[] reserved) {
+        for (String key : reserved) {
+            idOf(key);
+        }
+    }
+
+    /**
+     * Returns the process-wide index shared by the default views. Its first
+     * IDs match the build-time {@link PermissionHandle} constants in
+     * {@link Permissions}.
+     *
+     * @return the default index
+     */
+    public static PermissionIndex getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the ID of a key, assigning the next free ID if it is new.
+     *
+     * @param key the permission key
+     * @return its ID
+     */
+    public int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) return id;
+            int next = size;
+            if (next == keys.length) {
+                keys = Arrays.copyOf(keys, next * 2);
+            }
+            keys[next] = key;
+            size = next + 1;
+            ids.put(key, next);
+            return next;
+        }
+    }
+
+    /**
+     * @param key the permission key
+     * @return its ID, or -1 if the key has never been seen
+     */
+    public int lookup(String key) {
+        Integer id = ids.get(key);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id a permission ID
+     * @return the key with that ID
+     */
+    public String keyOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown permission ID: " + id);
+        }
+        return keys[id];
+    }
+
+    /**
+     * @return number of assigned IDs
+     */
+    public int size() {
+        return size;
+    }
+}
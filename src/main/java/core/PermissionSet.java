@@ -0,0 +1,168 @@
+// === src/main/java/core/PermissionSet.java ===
+
+package core;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * PermissionSet is an immutable bitset of granted permission IDs
+ * (see {@link PermissionIndex}).
+ *
+ * A check is a single array read and bit test. Sets are never modified
+ * after construction, so they can be shared freely between threads and
+ * between users of the same role.
+ */
+public final class PermissionSet {
+
+    public static final PermissionSet EMPTY = new PermissionSet(new long[0]);
+
+    private final long[] words;
+
+    private PermissionSet(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Builds the set of keys that are granted (value true) in a role map.
+     * Explicit denies ("!key", see {@link RoleSets}) are not grants and are skipped.
+     *
+     * @param perms permission_key → boolean
+     * @param index the index that assigns key IDs
+     * @return the granted set
+     */
+    public static PermissionSet of(Map<String, Boolean> perms, PermissionIndex index) {
+        return collect(perms, index, false);
+    }
+
+    /**
+     * Builds the set of keys a role map explicitly denies ("!key": true).
+     *
+     * @param perms permission_key → boolean
+     * @param index the index that assigns key IDs
+     * @return the denied set
+     */
+    public static PermissionSet deniedBy(Map<String, Boolean> perms, PermissionIndex index) {
+        return collect(perms, index, true);
+    }
+
+    private static PermissionSet collect(Map<String, Boolean> perms, PermissionIndex index, boolean denies) {
+        long[] words = new long[0];
+        for (Map.Entry<String, Boolean> e : perms.entrySet()) {
+            if (!Boolean.TRUE.equals(e.getValue()) || RoleSets.isDeny(e.getKey()) != denies) continue;
+            int id = index.idOf(RoleSets.target(e.getKey()));
+            int w = id >>> 6;
+            if (w >= words.length) words = Arrays.copyOf(words, w + 1);
+            words[w] |= 1L << id;
+        }
+        return words.length == 0 ? EMPTY : new PermissionSet(words);
+    }
+
+    /**
+     * @param id a permission ID (negative IDs are never contained)
+     * @return true if the permission is granted
+     */
+    public boolean contains(int id) {
+        int w = id >>> 6;
+        return id >= 0 && w < words.length && (words[w] & (1L << id)) != 0;
+    }
+
+    /**
+     * @param other the set to add
+     * @return the permissions in either set
+     */
+    public PermissionSet or(PermissionSet other) {
+        if (other.words.length > words.length) return other.or(this);
+        if (other.isEmpty()) return this;
+        long[] result = Arrays.copyOf(words, words.length);
+        for (int i = 0; i < other.words.length; i++) {
+            result[i] |= other.words[i];
+        }
+        return new PermissionSet(result);
+    }
+
+    /**
+     * @param other the set to subtract
+     * @return the permissions in this set that are not in other
+     */
+    public PermissionSet andNot(PermissionSet other) {
+        long[] result = Arrays.copyOf(words, words.length);
+        int n = Math.min(words.length, other.words.length);
+        for (int i = 0; i < n; i++) {
+            result[i] &= ~other.words[i];
+        }
+        for (long word : result) {
+            if (word != 0) return new PermissionSet(result);
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return a copy of the bit words (bit i of word w is ID w * 64 + i)
+     */
+    long[] toWords() {
+        return words.clone();
+    }
+
+    /**
+     * @return number of granted permissions
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long word : words) n += Long.bitCount(word);
+        return n;
+    }
+
+    /**
+     * @return true if nothing is granted
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calls the action for every granted ID in ascending order.
+     *
+     * @param action receives each ID
+     */
+    public void forEach(IntConsumer action) {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PermissionSet)) return false;
+        long[] a = words, b = ((PermissionSet) o).words;
+        int n = Math.max(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if ((i < a.length ? a[i] : 0) != (i < b.length ? b[i] : 0)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Trailing zero words must not change the hash, so equal sets hash equally.
+        int end = words.length;
+        while (end > 0 && words[end - 1] == 0) end--;
+        return Arrays.hashCode(Arrays.copyOf(words, end));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PermissionSet{");
+        forEach(id -> sb.append(sb.length() > 14 ? "," : "").append(id));
+        return sb.append('}').toString();
+    }
+}
@@ -2,15 +2,26 @@
 
 package core;
 
+import audit.AuditLog;
+import audit.AuditRecord;
+import utils.PolicyDirectoryLoader;
 import utils.YamlLoader;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 /**
  * PermissionsManager is responsible for managing the role-to-permission matrix.
@@ -22,24 +33,56 @@ import java.util.Map;
  * - Logging permission changes for auditing
  *
  * The structure managed here is: role → { permission_key → boolean }
+ *
+ * The path may be a single YAML file or a directory of *.roles.yaml
+ * shards (see {@link PolicyDirectoryLoader}). In directory mode the shards
+ * are loaded in parallel and changes are written back to the shard that
+ * owns each entry.
+ *
+ * Users may hold several roles (see {@link RoleSets}). Their effective
+ * permissions are computed once per distinct role combination and
+ * memoized until the matrix next changes.
+ *
+ * Role maps are hash-consed (see {@link RoleSetPool}): roles with equal
+ * permissions share one read-only map, and so do role combinations with
+ * equal effective permissions. {@link #getEquivalentRoles()} reports the
+ * classes of interchangeable roles.
  */
 public class PermissionsManager {
 
-    private Map<String, Map<String, Boolean>> permissions = new HashMap<>();
+    private volatile Map<String, Map<String, Boolean>> permissions = new HashMap<>();
+    // Effective maps for the current matrix only. Replaced (never cleared)
+    // after every swap, so a reader that raced with a writer fills an
+    // orphaned memo instead of the new one.
+    private volatile Memo effective = new Memo();
+    private RoleSetPool pool = new RoleSetPool();   // guarded by this
+    private volatile long version;                    // bumped on every swap; written under this
     private final String path;
-    private final String logPath = "rbac.log";
+    private volatile AuditLog auditLog = AuditLog.getDefault();
+    private final List<PermissionChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private Map<String, String> shardOrigins;   // non-null in directory mode
+
+    /**
+     * Effective maps by sorted role combination, and the same maps by
+     * content so that combinations with equal results share one instance.
+     */
+    private static final class Memo {
+        final Map<List<String>, Map<String, Boolean>> byCombination = new ConcurrentHashMap<>();
+        final Map<Map<String, Boolean>, Map<String, Boolean>> byContent = new ConcurrentHashMap<>();
+    }
 
     /**
-     * Constructs with default permissions file path.
+     * Constructs with the default permissions path: the value of the
+     * rbac.roles system property, or config/RolePermissions.yaml.
      */
     public PermissionsManager() {
-        this("config/RolePermissions.yaml");
+        this(System.getProperty("rbac.roles", "config/RolePermissions.yaml"));
     }
 
     /**
      * Constructs with a custom file path.
      *
-     * @param path the YAML file to load/save permissions from
+     * @param path the YAML file or shard directory to load/save permissions from
      */
     public PermissionsManager(String path) {
         this.path = path;
@@ -48,14 +91,76 @@ public class PermissionsManager {
 
     /**
      * Loads the role-permission matrix from disk.
+     *
+     * @throws PolicyValidationException if a shard directory has unreadable
+     *         files or conflicting entries; the current matrix is kept
      */
-    public void load() {
-        Map<String, Map<String, Boolean>> data = YamlLoader.loadPermissionMatrix(path);
-        if (data != null) {
-            permissions = data;
-        } else {
-            permissions = new HashMap<>();
+    public synchronized void load() {
+        Path dir = Paths.get(path);
+        if (Files.isDirectory(dir)) {
+            PolicyDirectoryLoader.Loaded<Map<String, Boolean>> loaded =
+                    PolicyDirectoryLoader.loadRoles(dir, ForkJoinPool.commonPool());
+            shardOrigins = loaded.getOrigins();
+            replace(loaded.getMerged());
+            return;
         }
+        Map<String, Map<String, Boolean>> data = YamlLoader.loadPermissionMatrix(path);
+        replace(data != null ? data : new HashMap<>());
+    }
+
+    /**
+     * Publishes the matrix another manager loaded from the same path, so a
+     * reload can be validated before it goes live. Listeners see a reload.
+     *
+     * @param candidate a manager freshly loaded from {@link #getPath()}
+     */
+    public synchronized void reloadFrom(PermissionsManager candidate) {
+        shardOrigins = candidate.shardOrigins;
+        replace(candidate.export());
+    }
+
+    /**
+     * @return the YAML file or shard directory this manager loads and saves
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return a counter that changes whenever the matrix does (for tagging
+     *         decisions with the policy they were made under)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener that is told about every published change.
+     *
+     * @param listener the listener to add
+     */
+    public void addChangeListener(PermissionChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener and returns the version it starts from, both
+     * under the publish lock: the listener is told about every change
+     * after the returned version and about none already in it.
+     *
+     * @param listener the listener to add
+     * @return the matrix the listener's changes apply on top of
+     */
+    public synchronized Published<Map<String, Map<String, Boolean>>> subscribe(PermissionChangeListener listener) {
+        listeners.add(listener);
+        return published();
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(PermissionChangeListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -68,8 +173,12 @@ public class PermissionsManager {
     /**
      * Saves the current permission matrix to file.
      */
-    public void save() {
-        YamlLoader.save(path, permissions);
+    public synchronized void save() {
+        if (shardOrigins != null) {
+            PolicyDirectoryLoader.saveRoles(Paths.get(path), permissions, shardOrigins);
+        } else {
+            YamlLoader.save(path, permissions);
+        }
     }
 
     /**
@@ -93,6 +202,72 @@ public class PermissionsManager {
         return new HashMap<>(raw);
     }
 
+    /**
+     * Returns the effective permissions of a role combination: granted if
+     * any of the roles grants the key and none explicitly denies it.
+     *
+     * The map is computed on first use of each distinct combination
+     * (order and duplicates do not matter) and shared until the matrix
+     * changes, so a multi-role user costs the same per check as a
+     * single-role one. Undefined roles contribute nothing; callers that
+     * must reject them check {@link #getAllRoles()} first.
+     *
+     * @param roles the user's roles
+     * @return read-only map of permission keys to effective values
+     */
+    public Map<String, Boolean> getEffectivePermissions(List<String> roles) {
+        Memo memo = effective;   // read before the matrix, see field
+        List<String> combination = RoleSets.sorted(roles);
+        Map<String, Boolean> perms = memo.byCombination.get(combination);
+        if (perms == null) {
+            perms = memo.byCombination.computeIfAbsent(combination, c -> share(memo, c, permissions));
+        }
+        return perms;
+    }
+
+    /**
+     * Computes a combination's effective map and returns the instance
+     * shared with equal results: the role's own (already shared) map when
+     * it has no denies, else the first equal map computed for this version.
+     */
+    private static Map<String, Boolean> share(Memo memo, List<String> combination,
+                                              Map<String, Map<String, Boolean>> matrix) {
+        Map<String, Boolean> computed = RoleSets.effective(combination, matrix);
+        Map<String, Boolean> own = combination.size() == 1 ? matrix.get(combination.get(0)) : null;
+        Map<String, Boolean> perms = own != null && own.equals(computed) ? own : Collections.unmodifiableMap(computed);
+        Map<String, Boolean> earlier = memo.byContent.putIfAbsent(perms, perms);
+        return earlier != null ? earlier : perms;
+    }
+
+    /**
+     * Groups roles whose permission maps are identical. Role maps are
+     * shared by content, so this is a grouping by instance.
+     *
+     * @return classes of two or more interchangeable roles, each sorted, largest first
+     */
+    public List<List<String>> getEquivalentRoles() {
+        Map<Map<String, Boolean>, List<String>> classes = new IdentityHashMap<>();
+        permissions.forEach((role, perms) -> {
+            if (perms != null) classes.computeIfAbsent(perms, p -> new ArrayList<>()).add(role);
+        });
+        List<List<String>> result = new ArrayList<>();
+        for (List<String> roles : classes.values()) {
+            if (roles.size() > 1) {
+                Collections.sort(roles);
+                result.add(roles);
+            }
+        }
+        result.sort(Comparator.comparingInt((List<String> c) -> -c.size()).thenComparing(c -> c.get(0)));
+        return result;
+    }
+
+    /**
+     * @return number of distinct permission sets across all roles
+     */
+    public synchronized int getDistinctRoleSets() {
+        return pool.size();
+    }
+
     /**
      * Sets the permission map for a role.
      *
@@ -100,7 +275,12 @@ public class PermissionsManager {
      * @param perms the permission map to assign
      */
     public void setRolePermissions(String role, Map<String, Boolean> perms) {
-        permissions.put(role, new HashMap<>(perms));
+        List<PermissionChange> changes = new ArrayList<>();
+        for (String key : getRolePermissions(role).keySet()) {
+            if (!perms.containsKey(key)) changes.add(PermissionChange.remove(role, key));
+        }
+        perms.forEach((key, value) -> changes.add(PermissionChange.set(role, key, value)));
+        publish(changes);
     }
 
     /**
@@ -111,7 +291,7 @@ public class PermissionsManager {
      * @param value true to grant, false to revoke
      */
     public void updatePermission(String role, String key, boolean value) {
-        permissions.computeIfAbsent(role, r -> new HashMap<>()).put(key, value);
+        publish(List.of(PermissionChange.set(role, key, value)));
     }
 
     /**
@@ -122,8 +302,8 @@ public class PermissionsManager {
      */
     public void deletePermission(String role, String key) {
         Map<String, Boolean> perms = permissions.get(role);
-        if (perms != null) {
-            perms.remove(key);
+        if (perms != null && perms.containsKey(key)) {
+            publish(List.of(PermissionChange.remove(role, key)));
         }
     }
 
@@ -139,12 +319,39 @@ public class PermissionsManager {
     }
 
     /**
-     * Exports the full permission matrix.
+     * Returns the current matrix version without copying it. Published
+     * versions are never modified (changes build a new map), so the view
+     * stays consistent for as long as the caller holds it.
+     *
+     * @return read-only view of the current role-permission matrix
+     */
+    public Map<String, Map<String, Boolean>> snapshot() {
+        return Collections.unmodifiableMap(permissions);
+    }
+
+    /**
+     * Returns the current matrix version together with its version
+     * number. Both are read under the lock they are published under, so
+     * the number is exactly the one {@link #getVersion()} reported for
+     * this matrix.
      *
-     * @return a copy of the full role-permission map
+     * @return the published matrix and its version
+     */
+    public synchronized Published<Map<String, Map<String, Boolean>>> published() {
+        return new Published<>(version, snapshot());
+    }
+
+    /**
+     * Exports the full permission matrix as an independent copy the
+     * caller may modify. For a read-only view use {@link #snapshot()};
+     * to write the matrix out without copying it use {@link PolicyExporter}.
+     *
+     * @return a deep copy of the full role-permission map
      */
     public Map<String, Map<String, Boolean>> export() {
-        return new HashMap<>(permissions);
+        Map<String, Map<String, Boolean>> copy = new HashMap<>();
+        permissions.forEach((role, perms) -> copy.put(role, new HashMap<>(perms)));
+        return copy;
     }
 
     /**
@@ -152,8 +359,8 @@ public class PermissionsManager {
      *
      * @param newData the new permission data to import
      */
-    public void importPermissions(Map<String, Map<String, Boolean>> newData) {
-        this.permissions = new HashMap<>(newData);
+    public synchronized void importPermissions(Map<String, Map<String, Boolean>> newData) {
+        replace(newData);
         save();
     }
 
@@ -165,14 +372,143 @@ public class PermissionsManager {
      * @param value    true to grant, false to revoke
      * @param operator user performing the change
      */
-    public void grant(String role, String key, boolean value, String operator) {
-        permissions.computeIfAbsent(role, r -> new HashMap<>()).put(key, value);
+    public synchronized void grant(String role, String key, boolean value, String operator) {
+        publish(List.of(PermissionChange.set(role, key, value)));
         save();
         logGrantChange(role, key, value, operator);
     }
 
     /**
-     * Logs a permission grant/revoke operation to a log file.
+     * Grants or revokes a permission only if a condition holds. The
+     * condition is checked under the matrix lock, so no other change is
+     * published between the check and this one.
+     *
+     * @param condition checked just before the change; must not call back into this manager's writers
+     * @param role      the role name
+     * @param key       permission key
+     * @param value     true to grant, false to revoke
+     * @param operator  user performing the change
+     * @return true if the condition held and the change was made
+     */
+    public synchronized boolean grantIf(BooleanSupplier condition, String role, String key, boolean value,
+                                       String operator) {
+        if (!condition.getAsBoolean()) return false;
+        grant(role, key, value, operator);
+        return true;
+    }
+
+    /**
+     * Applies a batch of permission changes as one atomic update.
+     *
+     * The new matrix is built off to the side, published with a single
+     * reference swap and persisted with one file write. Readers see either
+     * the old or the new matrix, never a half-applied batch. Audit logging
+     * is left to the caller so that the whole batch can be recorded as one
+     * group.
+     *
+     * @param changes the staged changes, applied in order
+     * @throws IllegalStateException if the new matrix could not be saved;
+     *         it stays published (see {@link #restoreRoles} to undo it)
+     */
+    public synchronized void applyBatch(List<PermissionChange> changes) {
+        if (changes.isEmpty()) return;
+        publish(changes);
+        saveAtomically();
+    }
+
+    /**
+     * Puts roles back the way they were, e.g. to undo a batch whose other
+     * half could not be applied. Listeners see it as a reload.
+     *
+     * @param previous role → its earlier permissions, or null if the role did not exist
+     * @throws IllegalStateException if the restored matrix could not be saved
+     */
+    public synchronized void restoreRoles(Map<String, Map<String, Boolean>> previous) {
+        Map<String, Map<String, Boolean>> next = new LinkedHashMap<>(permissions);
+        previous.forEach((role, perms) -> {
+            if (perms == null) {
+                next.remove(role);
+            } else {
+                next.put(role, perms);
+            }
+        });
+        replace(next);
+        saveAtomically();
+    }
+
+    /**
+     * Replaces the file (or each shard) in one atomic write.
+     *
+     * @throws IllegalStateException if any write failed
+     */
+    private void saveAtomically() {
+        boolean saved = shardOrigins != null
+                ? PolicyDirectoryLoader.saveRoles(Paths.get(path), permissions, shardOrigins)
+                : YamlLoader.saveAtomically(path, permissions);
+        if (!saved) {
+            throw new IllegalStateException("Failed to save permission matrix: " + path);
+        }
+    }
+
+    /**
+     * Swaps in a whole new matrix (load, reload, import, restore) and
+     * notifies listeners of a reload.
+     */
+    private void replace(Map<String, Map<String, Boolean>> data) {
+        permissions = internAll(data);
+        effective = new Memo();
+        version++;
+        for (PermissionChangeListener l : listeners) {
+            l.onMatrixReloaded(Collections.unmodifiableMap(permissions));
+        }
+    }
+
+    /**
+     * Builds the next matrix copy-on-write, swaps it in and notifies listeners.
+     * Only the outer map and the touched roles are copied (and interned
+     * again); untouched role maps are shared with the previous version.
+     */
+    private synchronized void publish(List<PermissionChange> changes) {
+        if (changes.isEmpty()) return;
+        Map<String, Map<String, Boolean>> next = new LinkedHashMap<>(permissions);
+        Map<String, Map<String, Boolean>> copied = new HashMap<>();
+        for (PermissionChange change : changes) {
+            Map<String, Boolean> perms = copied.computeIfAbsent(change.getRole(), r -> {
+                Map<String, Boolean> copy = new LinkedHashMap<>(next.getOrDefault(r, Map.of()));
+                next.put(r, copy);
+                return copy;
+            });
+            if (change.isRemoval()) {
+                perms.remove(change.getKey());
+            } else {
+                perms.put(change.getKey(), change.getValue());
+            }
+        }
+        copied.forEach((role, perms) -> {
+            next.put(role, pool.intern(perms));   // intern before release keeps an unchanged set's instance
+            pool.release(permissions.get(role));
+        });
+        permissions = next;
+        effective = new Memo();
+        version++;
+        List<PermissionChange> applied = List.copyOf(changes);
+        for (PermissionChangeListener l : listeners) {
+            l.onPermissionsChanged(applied);
+        }
+    }
+
+    /**
+     * Starts a fresh pool for a whole new matrix and shares its role maps.
+     */
+    private Map<String, Map<String, Boolean>> internAll(Map<String, Map<String, Boolean>> matrix) {
+        pool = new RoleSetPool();
+        Map<String, Map<String, Boolean>> shared = new LinkedHashMap<>();
+        matrix.forEach((role, perms) -> shared.put(role, pool.intern(perms)));
+        return shared;
+    }
+
+    /**
+     * Logs a permission grant/revoke operation to the audit log.
      *
      * @param role     affected role
      * @param key      permission key
@@ -180,13 +516,22 @@ public class PermissionsManager {
      * @param operator who made the change
      */
     public void logGrantChange(String role, String key, boolean value, String operator) {
-        try (FileWriter fw = new FileWriter(logPath, true)) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            String msg = String.format("[%s] PERMISSION CHANGE: role=%s key=%s value=%s operator=%s\n",
-                    timestamp, role, key, value, operator);
-            fw.write(msg);
-        } catch (IOException e) {
-            System.err.println("Failed to write to log: " + e.getMessage());
-        }
+        auditLog.record(AuditRecord.permissionChange(role, key, value, operator, null));
+    }
+
+    /**
+     * @return the audit log this manager writes to
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Redirects audit records (e.g. to a test or tenant-specific log).
+     *
+     * @param auditLog the audit log to write to
+     */
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
     }
 }
@@ -0,0 +1,69 @@
+// === src/main/java/core/PolicyDelta.java ===
+
+package core;
+
+import java.util.List;
+
+/**
+ * PolicyDelta is what one {@link PolicySubscriber} callback receives: the
+ * net events between the versions it saw last and the versions now
+ * published. If a subscriber is busy while several versions go by, it
+ * receives one delta covering all of them.
+ */
+public final class PolicyDelta {
+
+    private final long matrixVersion;
+    private final long registryVersion;
+    private final int versions;
+    private final boolean reloaded;
+    private final List<PolicyEvent> events;
+
+    PolicyDelta(long matrixVersion, long registryVersion, int versions, boolean reloaded, List<PolicyEvent> events) {
+        this.matrixVersion = matrixVersion;
+        this.registryVersion = registryVersion;
+        this.versions = versions;
+        this.reloaded = reloaded;
+        this.events = List.copyOf(events);
+    }
+
+    /**
+     * @return matrix version the delta brings the subscriber up to
+     */
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    /**
+     * @return registry version the delta brings the subscriber up to
+     */
+    public long getRegistryVersion() {
+        return registryVersion;
+    }
+
+    /**
+     * @return number of published versions (of either manager) folded into this delta
+     */
+    public int getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return true if a reload or import is among them (events are then a full diff)
+     */
+    public boolean isReloaded() {
+        return reloaded;
+    }
+
+    /**
+     * @return net changes: role keys first, then users
+     */
+    public List<PolicyEvent> getEvents() {
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        return "delta to matrix v" + matrixVersion + ", registry v" + registryVersion
+                + " (" + versions + " version(s), " + events.size() + " event(s))";
+    }
+}
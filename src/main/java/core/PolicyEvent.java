@@ -0,0 +1,153 @@
+// === src/main/java/core/PolicyEvent.java ===
+
+package core;
+
+import java.util.List;
+
+/**
+ * PolicyEvent is one net change between two versions of the policy, as
+ * delivered to a {@link PolicySubscriber} inside a {@link PolicyDelta}.
+ *
+ * Kinds:
+ *   - ROLE_KEY_CHANGED: a key was set, changed or removed on a role
+ *                       (deny entries appear under their "!" key)
+ *   - USER_ADDED:       a user was created, or its record replaced
+ *   - USER_TOGGLED:     only a user's active flag changed
+ *   - USER_REMOVED:     a user is gone (only after a reload)
+ *
+ * Events describe the difference between the versions, not the calls
+ * that led there: a key granted and revoked again between two deliveries
+ * produces no event.
+ */
+public final class PolicyEvent {
+
+    public enum Kind { ROLE_KEY_CHANGED, USER_ADDED, USER_TOGGLED, USER_REMOVED }
+
+    private final Kind kind;
+    private final String role;
+    private final String key;
+    private final Boolean oldValue;
+    private final Boolean newValue;
+    private final String userId;
+    private final List<String> roles;
+    private final String clientId;
+    private final boolean active;
+
+    private PolicyEvent(Kind kind, String role, String key, Boolean oldValue, Boolean newValue,
+                        String userId, List<String> roles, String clientId, boolean active) {
+        this.kind = kind;
+        this.role = role;
+        this.key = key;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.userId = userId;
+        this.roles = roles;
+        this.clientId = clientId;
+        this.active = active;
+    }
+
+    /**
+     * @param role     the role name
+     * @param key      the permission key
+     * @param oldValue the previous value, or null if the key was absent
+     * @param newValue the new value, or null if the key was removed
+     */
+    public static PolicyEvent roleKeyChanged(String role, String key, Boolean oldValue, Boolean newValue) {
+        return new PolicyEvent(Kind.ROLE_KEY_CHANGED, role, key, oldValue, newValue, null, List.of(), null, false);
+    }
+
+    /**
+     * @param userId   user ID
+     * @param roles    the user's roles
+     * @param clientId associated client, or null
+     * @param active   account status
+     */
+    public static PolicyEvent userAdded(String userId, List<String> roles, String clientId, boolean active) {
+        return new PolicyEvent(Kind.USER_ADDED, null, null, null, null, userId, List.copyOf(roles), clientId, active);
+    }
+
+    /**
+     * @param userId user ID
+     * @param active the new account status
+     */
+    public static PolicyEvent userToggled(String userId, boolean active) {
+        return new PolicyEvent(Kind.USER_TOGGLED, null, null, null, null, userId, List.of(), null, active);
+    }
+
+    /**
+     * @param userId user ID
+     */
+    public static PolicyEvent userRemoved(String userId) {
+        return new PolicyEvent(Kind.USER_REMOVED, null, null, null, null, userId, List.of(), null, false);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the role (ROLE_KEY_CHANGED only)
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * @return the permission key (ROLE_KEY_CHANGED only)
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the previous value, or null if the key was absent (ROLE_KEY_CHANGED only)
+     */
+    public Boolean getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return the new value, or null if the key was removed (ROLE_KEY_CHANGED only)
+     */
+    public Boolean getNewValue() {
+        return newValue;
+    }
+
+    /**
+     * @return the user ID (user events only)
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the user's roles (USER_ADDED only; empty otherwise)
+     */
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return the user's client, or null (USER_ADDED only)
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the user's active flag (USER_ADDED and USER_TOGGLED)
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ROLE_KEY_CHANGED: return "role " + role + " " + key + ": " + oldValue + " → " + newValue;
+            case USER_ADDED: return "add user " + userId + " " + roles + " active=" + active;
+            case USER_TOGGLED: return "toggle user " + userId + " active=" + active;
+            default: return "remove user " + userId;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+// === src/main/java/core/PolicyEvents.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+import utils.PersistentMap;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * PolicyEvents lets other components subscribe to policy changes instead
+ * of polling the managers and comparing. Subscribers receive typed
+ * {@link PolicyEvent}s, grouped into one {@link PolicyDelta} per
+ * published version, off the writer thread.
+ *
+ * The writer thread does almost nothing: for each subscription it notes
+ * which role keys and users the new version touched (or that it was a
+ * reload) and, if no delivery is pending, schedules one on the executor.
+ * The delivery compares the version the subscriber saw last with the
+ * current one for just those keys and users (the whole policy after a
+ * reload). Published versions are immutable, so this needs no lock and
+ * no copies.
+ *
+ * Versions published while a delivery is running or queued are folded
+ * into the next delta, so a slow subscriber receives fewer, larger
+ * deltas, and its backlog is bounded by the number of distinct keys and
+ * users touched rather than by the number of versions. It never holds
+ * up grant, provisioning or reload, nor the other subscribers.
+ *
+ * Usage:
+ *   PolicyEvents events = new PolicyEvents(pm, urm);
+ *   PolicyEvents.Subscription s = events.subscribe(delta -> cache.invalidate(delta.getEvents()));
+ *   ...
+ *   s.close();
+ */
+public class PolicyEvents implements PermissionChangeListener, UserChangeListener, Closeable {
+
+    /**
+     * Changes noted for a subscription since its last delivery.
+     */
+    private static final class Pending {
+        final Map<String, Set<String>> keys = new LinkedHashMap<>();   // role → keys
+        final Set<String> users = new LinkedHashSet<>();
+        boolean matrixReloaded;
+        boolean registryReloaded;
+        int versions;
+    }
+
+    /**
+     * One subscriber's registration. Close it to stop deliveries.
+     */
+    public final class Subscription implements Closeable {
+        private final PolicySubscriber subscriber;
+        // All guarded by the enclosing PolicyEvents.
+        private Map<String, Map<String, Boolean>> seenMatrix;
+        private PersistentMap<String, Map<String, Object>> seenRegistry;
+        private Pending pending;
+        private boolean scheduled;
+        private boolean closed;
+
+        private Subscription(PolicySubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Stops deliveries; one already running completes.
+         */
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final List<Subscription> subscriptions = new ArrayList<>();   // guarded by this
+
+    // Latest published versions, guarded by this.
+    private Map<String, Map<String, Boolean>> matrix;
+    private long matrixVersion;
+    private PersistentMap<String, Map<String, Object>> registry;
+    private long registryVersion;
+
+    /**
+     * Starts following both managers, delivering on daemon threads of its
+     * own (one per busy subscriber).
+     *
+     * @param pm  permission matrix to follow
+     * @param urm user registry to follow
+     */
+    public PolicyEvents(PermissionsManager pm, UserRegistryManager urm) {
+        this(pm, urm, null);
+    }
+
+    /**
+     * Starts following both managers.
+     *
+     * @param pm       permission matrix to follow
+     * @param urm      user registry to follow
+     * @param executor runs deliveries, or null for daemon threads of its own
+     */
+    public PolicyEvents(PermissionsManager pm, UserRegistryManager urm, Executor executor) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        if (executor == null) {
+            this.ownExecutor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "rbac-events");
+                t.setDaemon(true);
+                return t;
+            });
+            this.executor = ownExecutor;
+        } else {
+            this.ownExecutor = null;
+            this.executor = executor;
+        }
+        synchronized (this) {
+            pm.addChangeListener(this);
+            urm.addChangeListener(this);
+            matrix = pm.snapshot();
+            matrixVersion = pm.getVersion();
+            registry = urm.snapshot();
+            registryVersion = urm.getVersion();
+        }
+    }
+
+    /**
+     * Subscribes to every version published from now on.
+     *
+     * @param subscriber receives the deltas
+     * @return the subscription; close it to unsubscribe
+     */
+    public synchronized Subscription subscribe(PolicySubscriber subscriber) {
+        Subscription s = new Subscription(Objects.requireNonNull(subscriber));
+        s.seenMatrix = matrix;
+        s.seenRegistry = registry;
+        subscriptions.add(s);
+        return s;
+    }
+
+    /**
+     * @return number of open subscriptions
+     */
+    public synchronized int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Stops following the managers and drops every subscription. Threads
+     * of its own are shut down once running deliveries complete.
+     */
+    @Override
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+        synchronized (this) {
+            subscriptions.forEach(s -> s.closed = true);
+            subscriptions.clear();
+        }
+        if (ownExecutor != null) ownExecutor.shutdown();
+    }
+
+    private synchronized void unsubscribe(Subscription s) {
+        s.closed = true;
+        subscriptions.remove(s);
+    }
+
+    // === Listener callbacks (writer thread) ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        matrix = permissionsManager.snapshot();
+        matrixVersion = permissionsManager.getVersion();
+        for (Subscription s : subscriptions) {
+            Pending p = pending(s);
+            if (!p.matrixReloaded) {
+                for (PermissionChange change : changes) {
+                    p.keys.computeIfAbsent(change.getRole(), r -> new LinkedHashSet<>()).add(change.getKey());
+                }
+            }
+            schedule(s);
+        }
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> reloaded) {
+        matrix = permissionsManager.snapshot();
+        matrixVersion = permissionsManager.getVersion();
+        for (Subscription s : subscriptions) {
+            Pending p = pending(s);
+            p.matrixReloaded = true;
+            p.keys.clear();
+            schedule(s);
+        }
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        registry = userRegistry.snapshot();
+        registryVersion = userRegistry.getVersion();
+        for (Subscription s : subscriptions) {
+            Pending p = pending(s);
+            if (!p.registryReloaded) {
+                for (UserChange change : changes) p.users.add(change.getUserId());
+            }
+            schedule(s);
+        }
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> reloaded) {
+        registry = userRegistry.snapshot();
+        registryVersion = userRegistry.getVersion();
+        for (Subscription s : subscriptions) {
+            Pending p = pending(s);
+            p.registryReloaded = true;
+            p.users.clear();
+            schedule(s);
+        }
+    }
+
+    private static Pending pending(Subscription s) {
+        if (s.pending == null) s.pending = new Pending();
+        s.pending.versions++;
+        return s.pending;
+    }
+
+    private void schedule(Subscription s) {
+        if (s.scheduled) return;
+        s.scheduled = true;
+        try {
+            executor.execute(() -> drain(s));
+        } catch (RejectedExecutionException e) {
+            s.scheduled = false;
+            System.err.println("⚠️  Policy event delivery rejected: " + e.getMessage());
+        }
+    }
+
+    // === Delivery (executor thread) ===
+
+    private void drain(Subscription s) {
+        while (true) {
+            Pending p;
+            Map<String, Map<String, Boolean>> fromMatrix;
+            Map<String, Map<String, Boolean>> toMatrix;
+            PersistentMap<String, Map<String, Object>> fromRegistry;
+            PersistentMap<String, Map<String, Object>> toRegistry;
+            long toMatrixVersion;
+            long toRegistryVersion;
+            synchronized (this) {
+                if (s.closed || s.pending == null) {
+                    s.scheduled = false;
+                    return;
+                }
+                p = s.pending;
+                s.pending = null;
+                fromMatrix = s.seenMatrix;
+                fromRegistry = s.seenRegistry;
+                toMatrix = s.seenMatrix = matrix;
+                toRegistry = s.seenRegistry = registry;
+                toMatrixVersion = matrixVersion;
+                toRegistryVersion = registryVersion;
+            }
+            List<PolicyEvent> events = new ArrayList<>();
+            diffMatrix(fromMatrix, toMatrix, p.matrixReloaded ? null : p.keys, events);
+            diffRegistry(fromRegistry, toRegistry, p.registryReloaded ? null : p.users, events);
+            if (events.isEmpty()) continue;   // the versions cancelled out
+            try {
+                s.subscriber.onPolicyChanged(new PolicyDelta(toMatrixVersion, toRegistryVersion, p.versions,
+                        p.matrixReloaded || p.registryReloaded, events));
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Policy subscriber failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param keys role → keys to compare, or null to compare everything
+     */
+    private static void diffMatrix(Map<String, Map<String, Boolean>> from, Map<String, Map<String, Boolean>> to,
+                                   Map<String, Set<String>> keys, List<PolicyEvent> events) {
+        if (from == to) return;
+        if (keys != null) {
+            keys.forEach((role, touched) -> {
+                Map<String, Boolean> before = from.getOrDefault(role, Map.of());
+                Map<String, Boolean> after = to.getOrDefault(role, Map.of());
+                for (String key : touched) compare(role, key, before, after, events);
+            });
+            return;
+        }
+        Set<String> roles = new LinkedHashSet<>(from.keySet());
+        roles.addAll(to.keySet());
+        for (String role : roles) {
+            Map<String, Boolean> before = from.getOrDefault(role, Map.of());
+            Map<String, Boolean> after = to.getOrDefault(role, Map.of());
+            if (before == after) continue;   // interned: unchanged roles share one instance
+            for (String key : before.keySet()) compare(role, key, before, after, events);
+            for (String key : after.keySet()) {
+                if (!before.containsKey(key)) compare(role, key, before, after, events);
+            }
+        }
+    }
+
+    private static void compare(String role, String key, Map<String, Boolean> before, Map<String, Boolean> after,
+                                List<PolicyEvent> events) {
+        Boolean was = before.get(key);
+        Boolean now = after.get(key);
+        if (!Objects.equals(was, now)) events.add(PolicyEvent.roleKeyChanged(role, key, was, now));
+    }
+
+    /**
+     * @param users user IDs to compare, or null to compare everything
+     */
+    private static void diffRegistry(PersistentMap<String, Map<String, Object>> from,
+                                     PersistentMap<String, Map<String, Object>> to,
+                                     Set<String> users, List<PolicyEvent> events) {
+        if (from == to) return;
+        if (users != null) {
+            for (String userId : users) userEvent(userId, from.get(userId), to.get(userId), events);
+            return;
+        }
+        to.forEach((userId, user) -> userEvent(userId, from.get(userId), user, events));
+        from.forEach((userId, user) -> {
+            if (!to.containsKey(userId)) events.add(PolicyEvent.userRemoved(userId));
+        });
+    }
+
+    private static void userEvent(String userId, Map<String, Object> was, Map<String, Object> now,
+                                  List<PolicyEvent> events) {
+        if (was == now) return;
+        if (now == null) {
+            events.add(PolicyEvent.userRemoved(userId));
+            return;
+        }
+        boolean active = Boolean.TRUE.equals(now.get("active"));
+        if (was != null && sameExceptActive(was, now)) {
+            if (active != Boolean.TRUE.equals(was.get("active"))) events.add(PolicyEvent.userToggled(userId, active));
+            return;
+        }
+        Object clientId = now.get("client_id");
+        events.add(PolicyEvent.userAdded(userId, RoleSets.of(now), clientId != null ? clientId.toString() : null, active));
+    }
+
+    private static boolean sameExceptActive(Map<String, Object> a, Map<String, Object> b) {
+        for (Map.Entry<String, Object> e : a.entrySet()) {
+            if (!e.getKey().equals("active") && !Objects.equals(e.getValue(), b.get(e.getKey()))) return false;
+        }
+        for (String key : b.keySet()) {
+            if (!key.equals("active") && !a.containsKey(key)) return false;
+        }
+        return true;
+    }
+}
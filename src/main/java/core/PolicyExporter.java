@@ -0,0 +1,407 @@
+// === src/main/java/core/PolicyExporter.java ===
+
+package core;
+
+import users.UserRegistryManager;
+import utils.PersistentMap;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * PolicyExporter writes the permission matrix and the user registry out
+ * for downstream systems (e.g. a nightly warehouse dump) without copying
+ * either of them.
+ *
+ * {@link #capture} takes the current published version of each manager.
+ * Published versions are immutable, so the exporter can stream them
+ * entry by entry while grants and provisioning carry on: the output
+ * reflects exactly the captured versions, and the only memory used
+ * beyond the live policy is an output buffer and an iterator.
+ *
+ * Rows (one per matrix entry, one per user):
+ *   CSV:    role,permission_key,granted
+ *           user_id,roles,client_id,active     (roles joined with ";")
+ *   JSONL:  {"role": ..., "key": ..., "granted": ...}
+ *           {"user_id": ..., "roles": [...], "client_id": ..., "active": ...}
+ *   BINARY: big-endian, strings as {@link DataOutputStream#writeUTF}:
+ *           int magic "RBX1", byte kind ('M' or 'U'), long version,
+ *           then per row a byte 1 followed by
+ *             M: role, key, boolean granted
+ *             U: user_id, unsigned short role count, roles, boolean has client,
+ *                [client_id], boolean active
+ *           then a byte 0 and a long row count.
+ * The CSV and JSONL user rows are the formats BulkUserImport reads, so
+ * an export can be re-imported.
+ *
+ * {@link #exportTo} writes a directory: the matrix, the users split into
+ * shards written in parallel (each shard walks its own slice of the
+ * registry, see {@link PersistentMap#iterator(int, int)}), and a manifest
+ * with the captured versions and row counts. Every file is written to a
+ * temporary name and moved into place.
+ *
+ * For a byte-for-byte copy of a compiled off-heap policy, see
+ * {@link OffHeapPolicyStore#writeTo}.
+ *
+ * Usage:
+ *   PolicyExporter.capture(pm, urm)
+ *           .exportTo(Path.of("dump"), PolicyExporter.Format.CSV, 8, ForkJoinPool.commonPool());
+ */
+public final class PolicyExporter {
+
+    /** Most user shards one export can be split into. */
+    public static final int MAX_SHARDS = 32;
+
+    static final int MAGIC = 0x52425831;   // "RBX1"
+
+    /**
+     * Output formats.
+     */
+    public enum Format {
+        CSV("csv"), JSONL("jsonl"), BINARY("bin");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @param name "csv", "jsonl" or "binary" (any case)
+         * @return the format
+         * @throws IllegalArgumentException for any other name
+         */
+        public static Format parse(String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "csv": return CSV;
+                case "jsonl": case "ndjson": return JSONL;
+                case "binary": case "bin": return BINARY;
+                default: throw new IllegalArgumentException("Unknown export format: " + name);
+            }
+        }
+    }
+
+    private final Map<String, Map<String, Boolean>> matrix;
+    private final long matrixVersion;
+    private final PersistentMap<String, Map<String, Object>> registry;
+    private final long registryVersion;
+
+    private PolicyExporter(Map<String, Map<String, Boolean>> matrix, long matrixVersion,
+                           PersistentMap<String, Map<String, Object>> registry, long registryVersion) {
+        this.matrix = matrix;
+        this.matrixVersion = matrixVersion;
+        this.registry = registry;
+        this.registryVersion = registryVersion;
+    }
+
+    /**
+     * Captures the current version of both managers, each paired with
+     * the version number it was published under.
+     *
+     * @param pm  the permission matrix
+     * @param urm the user registry
+     * @return an exporter over the captured versions
+     */
+    public static PolicyExporter capture(PermissionsManager pm, UserRegistryManager urm) {
+        Published<Map<String, Map<String, Boolean>>> matrix = pm.published();
+        Published<PersistentMap<String, Map<String, Object>>> registry = urm.published();
+        return new PolicyExporter(matrix.getValue(), matrix.getVersion(),
+                registry.getValue(), registry.getVersion());
+    }
+
+    /**
+     * @return version of the captured matrix
+     */
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    /**
+     * @return version of the captured registry
+     */
+    public long getRegistryVersion() {
+        return registryVersion;
+    }
+
+    /**
+     * Writes the exporter's directory layout:
+     *   matrix.&lt;ext&gt;
+     *   users.&lt;ext&gt;, or users-NN-of-MM.&lt;ext&gt; for several shards
+     *   export.manifest   (versions, format, rows per file)
+     * All files are written concurrently on the executor.
+     *
+     * @param dir      target directory (created if missing)
+     * @param format   output format
+     * @param shards   number of user files, 1 to {@link #MAX_SHARDS}
+     * @param executor runs the file writers
+     * @return the data files written, matrix first
+     * @throws UncheckedIOException if a file cannot be written
+     */
+    public List<Path> exportTo(Path dir, Format format, int shards, Executor executor) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("shards must be 1-" + MAX_SHARDS + ": " + shards);
+        }
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + dir, e);
+        }
+        List<Path> files = new ArrayList<>();
+        List<CompletableFuture<Long>> rows = new ArrayList<>();
+        Path matrixFile = dir.resolve("matrix." + format.getExtension());
+        files.add(matrixFile);
+        rows.add(CompletableFuture.supplyAsync(() -> writeFile(matrixFile, out -> writeMatrix(out, format)), executor));
+        for (int i = 0; i < shards; i++) {
+            int part = i;
+            Path file = dir.resolve(shards == 1 ? "users." + format.getExtension()
+                    : String.format("users-%02d-of-%02d.%s", i, shards, format.getExtension()));
+            files.add(file);
+            rows.add(CompletableFuture.supplyAsync(
+                    () -> writeFile(file, out -> writeUsers(out, format, part, shards)), executor));
+        }
+
+        List<String> manifest = new ArrayList<>();
+        manifest.add("matrix_version=" + matrixVersion);
+        manifest.add("registry_version=" + registryVersion);
+        manifest.add("format=" + format.name().toLowerCase(Locale.ROOT));
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                manifest.add(files.get(i).getFileName() + "=" + rows.get(i).join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        writeFile(dir.resolve("export.manifest"), out -> {
+            out.write(String.join("\n", manifest).concat("\n").getBytes(StandardCharsets.UTF_8));
+            return manifest.size();
+        });
+        return files;
+    }
+
+    /**
+     * Streams every matrix entry.
+     *
+     * @param out    destination; flushed, not closed
+     * @param format output format
+     * @return rows written
+     * @throws IOException if the stream fails
+     */
+    public long writeMatrix(OutputStream out, Format format) throws IOException {
+        long rows = 0;
+        if (format == Format.BINARY) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            header(data, 'M', matrixVersion);
+            for (Map.Entry<String, Map<String, Boolean>> role : matrix.entrySet()) {
+                for (Map.Entry<String, Boolean> e : role.getValue().entrySet()) {
+                    data.writeByte(1);
+                    data.writeUTF(role.getKey());
+                    data.writeUTF(e.getKey());
+                    data.writeBoolean(Boolean.TRUE.equals(e.getValue()));
+                    rows++;
+                }
+            }
+            footer(data, rows);
+            return rows;
+        }
+        Writer w = writer(out);
+        if (format == Format.CSV) w.write("role,permission_key,granted\n");
+        for (Map.Entry<String, Map<String, Boolean>> role : matrix.entrySet()) {
+            for (Map.Entry<String, Boolean> e : role.getValue().entrySet()) {
+                boolean granted = Boolean.TRUE.equals(e.getValue());
+                if (format == Format.CSV) {
+                    csv(w, role.getKey());
+                    w.write(',');
+                    csv(w, e.getKey());
+                    w.write(granted ? ",true\n" : ",false\n");
+                } else {
+                    w.write("{\"role\": ");
+                    json(w, role.getKey());
+                    w.write(", \"key\": ");
+                    json(w, e.getKey());
+                    w.write(granted ? ", \"granted\": true}\n" : ", \"granted\": false}\n");
+                }
+                rows++;
+            }
+        }
+        w.flush();
+        return rows;
+    }
+
+    /**
+     * Streams every user.
+     *
+     * @param out    destination; flushed, not closed
+     * @param format output format
+     * @return rows written
+     * @throws IOException if the stream fails
+     */
+    public long writeUsers(OutputStream out, Format format) throws IOException {
+        return writeUsers(out, format, 0, 1);
+    }
+
+    /**
+     * Streams one shard of the users. Shards are disjoint and together
+     * hold every user; a user's shard depends only on its ID's hash.
+     *
+     * @param out    destination; flushed, not closed
+     * @param format output format
+     * @param shard  which shard, 0 ≤ shard &lt; shards
+     * @param shards number of shards, 1 to {@link #MAX_SHARDS}
+     * @return rows written
+     * @throws IOException if the stream fails
+     * @throws IllegalStateException if a binary row would need more than
+     *         65535 roles
+     */
+    public long writeUsers(OutputStream out, Format format, int shard, int shards) throws IOException {
+        Iterator<Map.Entry<String, Map<String, Object>>> users = registry.iterator(shard, shards);
+        long rows = 0;
+        if (format == Format.BINARY) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            header(data, 'U', registryVersion);
+            while (users.hasNext()) {
+                Map.Entry<String, Map<String, Object>> user = users.next();
+                List<String> roles = RoleSets.of(user.getValue());
+                Object clientId = user.getValue().get("client_id");
+                data.writeByte(1);
+                data.writeUTF(user.getKey());
+                if (roles.size() > 0xFFFF) {
+                    throw new IllegalStateException("User '" + user.getKey() + "' has too many roles to export: "
+                            + roles.size());
+                }
+                data.writeShort(roles.size());
+                for (String role : roles) data.writeUTF(role);
+                data.writeBoolean(clientId != null);
+                if (clientId != null) data.writeUTF(clientId.toString());
+                data.writeBoolean(Boolean.TRUE.equals(user.getValue().get("active")));
+                rows++;
+            }
+            footer(data, rows);
+            return rows;
+        }
+        Writer w = writer(out);
+        if (format == Format.CSV) w.write("user_id,roles,client_id,active\n");
+        while (users.hasNext()) {
+            Map.Entry<String, Map<String, Object>> user = users.next();
+            List<String> roles = RoleSets.of(user.getValue());
+            Object clientId = user.getValue().get("client_id");
+            boolean active = Boolean.TRUE.equals(user.getValue().get("active"));
+            if (format == Format.CSV) {
+                csv(w, user.getKey());
+                w.write(',');
+                csv(w, String.join(";", roles));
+                w.write(',');
+                if (clientId != null) csv(w, clientId.toString());
+                w.write(active ? ",true\n" : ",false\n");
+            } else {
+                w.write("{\"user_id\": ");
+                json(w, user.getKey());
+                w.write(", \"roles\": [");
+                for (int i = 0; i < roles.size(); i++) {
+                    if (i > 0) w.write(", ");
+                    json(w, roles.get(i));
+                }
+                w.write("], \"client_id\": ");
+                if (clientId != null) json(w, clientId.toString()); else w.write("null");
+                w.write(active ? ", \"active\": true}\n" : ", \"active\": false}\n");
+            }
+            rows++;
+        }
+        w.flush();
+        return rows;
+    }
+
+    // === Internals ===
+
+    private interface Body {
+        long write(OutputStream out) throws IOException;
+    }
+
+    private static long writeFile(Path target, Body body) {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            long rows;
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                rows = body.write(out);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export " + target, e);
+        }
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void header(DataOutputStream data, char kind, long version) throws IOException {
+        data.writeInt(MAGIC);
+        data.writeByte(kind);
+        data.writeLong(version);
+    }
+
+    private static void footer(DataOutputStream data, long rows) throws IOException {
+        data.writeByte(0);
+        data.writeLong(rows);
+        data.flush();
+    }
+
+    private static void csv(Writer w, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+
+    private static void json(Writer w, String value) throws IOException {
+        w.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        w.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        w.write(c);
+                    }
+            }
+        }
+        w.write('"');
+    }
+}
@@ -0,0 +1,276 @@
+// === src/main/java/core/PolicyHistory.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+import utils.PersistentMap;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * PolicyHistory keeps every published version of the permission matrix
+ * and user registry so that past authorization decisions can be answered.
+ *
+ * Each version is a pair of persistent maps (see {@link PersistentMap}):
+ *   role    → { permission_key → boolean }
+ *   user_id → { roles, active }
+ *
+ * A change copies only the path to the touched entries, so memory per
+ * version is proportional to the change, not to the matrix. Versions are
+ * indexed by publish time, so {@link #hasPermissionAt} is a floor lookup
+ * (logarithmic in the number of versions) followed by two map lookups.
+ *
+ * Versions older than the retention window are compacted away; the newest
+ * version before the cutoff is kept so queries at the edge still resolve.
+ *
+ * Usage:
+ *   PolicyHistory history = new PolicyHistory(pm, urm, Duration.ofDays(90));
+ *   history.hasPermissionAt("bob", "auditor.view_audit_decisions", instant);
+ */
+public class PolicyHistory implements PermissionChangeListener, UserChangeListener {
+
+    /**
+     * One immutable point-in-time view of the policy.
+     */
+    public static final class Version {
+        private final long number;
+        private final Instant publishedAt;
+        final PersistentMap<String, PersistentMap<String, Boolean>> matrix;
+        final PersistentMap<String, UserState> users;
+
+        Version(long number, Instant publishedAt,
+                PersistentMap<String, PersistentMap<String, Boolean>> matrix,
+                PersistentMap<String, UserState> users) {
+            this.number = number;
+            this.publishedAt = publishedAt;
+            this.matrix = matrix;
+            this.users = users;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public Instant getPublishedAt() {
+            return publishedAt;
+        }
+
+        /**
+         * @return true if the user existed, was active, one of their roles
+         *         granted the key and none of them denied it
+         */
+        public boolean hasPermission(String userId, String key) {
+            UserState user = users.get(userId);
+            if (user == null || !user.active) return false;
+            boolean granted = false;
+            for (String role : user.roles) {
+                PersistentMap<String, Boolean> perms = matrix.get(role);
+                if (perms == null) continue;
+                if (perms.getOrDefault(RoleSets.DENY_PREFIX + key, false)) return false;
+                granted |= perms.getOrDefault(key, false);
+            }
+            return granted;
+        }
+
+        /**
+         * @return the user's first role in this version, or null if unknown
+         */
+        public String getRole(String userId) {
+            UserState user = users.get(userId);
+            return user != null && !user.roles.isEmpty() ? user.roles.get(0) : null;
+        }
+
+        /**
+         * @return the user's roles in this version (empty if unknown)
+         */
+        public List<String> getRoles(String userId) {
+            UserState user = users.get(userId);
+            return user != null ? user.roles : List.of();
+        }
+    }
+
+    /**
+     * Minimal user record kept per version: only what decisions depend on.
+     */
+    static final class UserState {
+        final List<String> roles;
+        final boolean active;
+
+        UserState(List<String> roles, boolean active) {
+            this.roles = roles;
+            this.active = active;
+        }
+    }
+
+    private final NavigableMap<Instant, Version> versions = new ConcurrentSkipListMap<>();
+    private final Clock clock;
+    private volatile Duration retention;
+    private volatile Version current;
+
+    /**
+     * Starts recording history for the given managers with a retention window.
+     *
+     * @param pm        permission matrix to track
+     * @param urm       user registry to track
+     * @param retention how long superseded versions are kept
+     */
+    public PolicyHistory(PermissionsManager pm, UserRegistryManager urm, Duration retention) {
+        this(pm, urm, retention, Clock.systemUTC());
+    }
+
+    /**
+     * Same as above with an explicit clock (useful for tests and replays).
+     */
+    public PolicyHistory(PermissionsManager pm, UserRegistryManager urm, Duration retention, Clock clock) {
+        this.clock = clock;
+        this.retention = retention;
+        // Each manager registers us and hands back the version our first
+        // change applies to in one step, so no change is missed or applied
+        // twice. Changes arriving meanwhile wait for this lock.
+        synchronized (this) {
+            Published<Map<String, Map<String, Boolean>>> matrix = pm.subscribe(this);
+            Published<PersistentMap<String, Map<String, Object>>> registry = urm.subscribe(this);
+            this.current = new Version(0, clock.instant(), toMatrix(matrix.getValue()), toUsers(registry.getValue().asMap()));
+            versions.put(current.publishedAt, current);
+        }
+    }
+
+    /**
+     * Answers whether a user could perform an action at a past instant.
+     *
+     * @param userId  the user ID
+     * @param key     the permission key
+     * @param instant the point in time to evaluate
+     * @return true if granted at that time; false if denied or before recorded history
+     */
+    public boolean hasPermissionAt(String userId, String key, Instant instant) {
+        Version v = versionAt(instant);
+        return v != null && v.hasPermission(userId, key);
+    }
+
+    /**
+     * @param instant the point in time to evaluate
+     * @return the version in force at that instant, or null if before recorded history
+     */
+    public Version versionAt(Instant instant) {
+        Map.Entry<Instant, Version> e = versions.floorEntry(instant);
+        return e != null ? e.getValue() : null;
+    }
+
+    /**
+     * @return the newest recorded version
+     */
+    public Version current() {
+        return current;
+    }
+
+    /**
+     * @return number of versions currently retained
+     */
+    public int size() {
+        return versions.size();
+    }
+
+    /**
+     * Changes the retention window and compacts immediately.
+     *
+     * @param retention how long superseded versions are kept
+     */
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+        compact();
+    }
+
+    /**
+     * Drops versions that were superseded before the retention cutoff.
+     */
+    public synchronized void compact() {
+        Instant cutoff = clock.instant().minus(retention);
+        Instant keep = versions.floorKey(cutoff);
+        if (keep != null) {
+            versions.headMap(keep, false).clear();
+        }
+    }
+
+    // === Change listeners ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        PersistentMap<String, PersistentMap<String, Boolean>> matrix = current.matrix;
+        for (PermissionChange c : changes) {
+            PersistentMap<String, Boolean> perms = matrix.getOrDefault(c.getRole(), PersistentMap.empty());
+            perms = c.isRemoval() ? perms.without(c.getKey()) : perms.with(c.getKey(), c.getValue());
+            matrix = matrix.with(c.getRole(), perms);
+        }
+        append(matrix, current.users);
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        append(toMatrix(matrix), current.users);
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        PersistentMap<String, UserState> users = current.users;
+        for (UserChange c : changes) {
+            if (c.getKind() == UserChange.Kind.ADD) {
+                users = users.with(c.getUserId(), new UserState(c.getRoles(), c.isActive()));
+            } else {
+                UserState prev = users.get(c.getUserId());
+                if (prev != null) {
+                    users = users.with(c.getUserId(), new UserState(prev.roles, c.isActive()));
+                }
+            }
+        }
+        append(current.matrix, users);
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        append(current.matrix, toUsers(registry));
+    }
+
+    private void append(PersistentMap<String, PersistentMap<String, Boolean>> matrix,
+                        PersistentMap<String, UserState> users) {
+        Instant now = clock.instant();
+        // Keep the index strictly increasing even if the clock stalls or steps back.
+        if (!now.isAfter(current.publishedAt)) {
+            now = current.publishedAt.plusNanos(1);
+        }
+        Version next = new Version(current.number + 1, now, matrix, users);
+        versions.put(now, next);
+        current = next;
+        compact();
+    }
+
+    private static PersistentMap<String, PersistentMap<String, Boolean>> toMatrix(Map<String, Map<String, Boolean>> source) {
+        PersistentMap<String, PersistentMap<String, Boolean>> matrix = PersistentMap.empty();
+        for (Map.Entry<String, Map<String, Boolean>> e : source.entrySet()) {
+            if (e.getValue() != null) {
+                matrix = matrix.with(e.getKey(), PersistentMap.copyOf(e.getValue()));
+            }
+        }
+        return matrix;
+    }
+
+    private static PersistentMap<String, UserState> toUsers(Map<String, Map<String, Object>> source) {
+        PersistentMap<String, UserState> users = PersistentMap.empty();
+        for (Map.Entry<String, Map<String, Object>> e : source.entrySet()) {
+            Map<String, Object> entry = e.getValue();
+            if (entry == null) continue;
+            users = users.with(e.getKey(), new UserState(
+                    RoleSets.of(entry),
+                    Boolean.TRUE.equals(entry.get("active"))));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,22 @@
+// === src/main/java/core/PolicySubscriber.java ===
+
+package core;
+
+/**
+ * PolicySubscriber receives policy changes from {@link PolicyEvents}.
+ *
+ * Unlike {@link PermissionChangeListener}, callbacks run on a dispatcher
+ * thread, never on the writer: a subscriber may take as long as it needs
+ * and may read the managers. Calls to one subscriber never overlap and
+ * arrive in version order.
+ */
+@FunctionalInterface
+public interface PolicySubscriber {
+
+    /**
+     * Called once for every batch of published versions.
+     *
+     * @param delta the net changes since the previous call
+     */
+    void onPolicyChanged(PolicyDelta delta);
+}
@@ -0,0 +1,34 @@
+// === src/main/java/core/PolicyValidationException.java ===
+
+package core;
+
+import java.util.List;
+
+/**
+ * PolicyValidationException is thrown when a set of policy changes or a
+ * loaded policy fails validation.
+ *
+ * Instead of stopping at the first problem, callers collect every error
+ * and throw once, so the operator gets one consolidated report.
+ */
+public class PolicyValidationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> errors;
+
+    /**
+     * @param errors all validation errors found (must not be empty)
+     */
+    public PolicyValidationException(List<String> errors) {
+        super(errors.size() + " validation error(s):\n  - " + String.join("\n  - ", errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    /**
+     * @return the individual validation errors
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
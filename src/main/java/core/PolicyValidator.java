@@ -0,0 +1,142 @@
+// === src/main/java/core/PolicyValidator.java ===
+
+package core;
+
+import users.UserRegistryManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * PolicyValidator checks a permission matrix and a user registry for
+ * broken entries and dangling cross-references.
+ *
+ * Checks performed:
+ *   - role → permission: role names are non-blank, keys are well-formed
+ *     (module.action, or !module.action for an explicit deny), values are
+ *     booleans, and no role both grants and denies the same key
+ *   - user → role: every user has at least one role, every role exists in
+ *     the matrix, and the active flag is a boolean
+ *
+ * Roles and users are checked in parallel on a fork/join pool. Errors are
+ * sorted so the report is identical from run to run, and all of them are
+ * reported together instead of failing on the first one.
+ */
+public final class PolicyValidator {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)+");
+
+    private PolicyValidator() {
+    }
+
+    /**
+     * @param key a permission key
+     * @return true if the key has the module.action shape
+     */
+    public static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+
+    /**
+     * @param key a role entry key
+     * @return true if the key is a well-formed grant or explicit deny (see {@link RoleSets})
+     */
+    public static boolean isValidEntryKey(String key) {
+        return key != null && isValidKey(RoleSets.target(key));
+    }
+
+    /**
+     * Validates the current state of both managers and throws one
+     * consolidated report if anything is wrong. Call this at startup,
+     * before serving any checks.
+     *
+     * @throws PolicyValidationException listing every problem found
+     */
+    public static void validateOrThrow(PermissionsManager pm, UserRegistryManager urm) {
+        List<String> errors = validate(pm.export(), urm.getAllUsers(), ForkJoinPool.commonPool());
+        if (!errors.isEmpty()) {
+            throw new PolicyValidationException(errors);
+        }
+    }
+
+    /**
+     * Validates a matrix and registry in parallel.
+     *
+     * @param matrix   role → { permission_key → boolean }
+     * @param registry user_id → { role or roles, client_id, active }
+     * @param pool     the fork/join pool to run on
+     * @return sorted list of errors (empty if valid)
+     */
+    public static List<String> validate(Map<String, ? extends Map<String, ?>> matrix,
+                                        Map<String, ? extends Map<String, ?>> registry,
+                                        ForkJoinPool pool) {
+        try {
+            return pool.submit(() -> Stream.concat(
+                            matrix.entrySet().parallelStream().flatMap(e -> checkRole(e.getKey(), e.getValue()).stream()),
+                            registry.entrySet().parallelStream().flatMap(e -> checkUser(e.getKey(), e.getValue(), matrix).stream()))
+                    .sorted()
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Policy validation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Policy validation failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private static List<String> checkRole(String role, Map<String, ?> perms) {
+        List<String> errors = new ArrayList<>();
+        if (role == null || role.isBlank()) {
+            errors.add("role: blank role name");
+            return errors;
+        }
+        if (role.contains(RoleSets.SEPARATOR)) {
+            errors.add("role " + role + ": name must not contain '" + RoleSets.SEPARATOR + "' (reserved for role combinations)");
+        }
+        if (perms == null) {
+            errors.add("role " + role + ": has no permission map");
+            return errors;
+        }
+        for (Map.Entry<String, ?> e : perms.entrySet()) {
+            if (!isValidEntryKey(e.getKey())) {
+                errors.add("role " + role + ": malformed permission key '" + e.getKey() + "'");
+            }
+            if (!(e.getValue() instanceof Boolean)) {
+                errors.add("role " + role + ": value of '" + e.getKey() + "' is not true/false: " + e.getValue());
+            }
+            if (e.getKey() != null && RoleSets.isDeny(e.getKey()) && Boolean.TRUE.equals(e.getValue())
+                    && Boolean.TRUE.equals(perms.get(RoleSets.target(e.getKey())))) {
+                errors.add("role " + role + ": both grants and denies '" + RoleSets.target(e.getKey()) + "'");
+            }
+        }
+        return errors;
+    }
+
+    private static List<String> checkUser(String userId, Map<String, ?> user, Map<String, ?> matrix) {
+        List<String> errors = new ArrayList<>();
+        if (user == null) {
+            errors.add("user " + userId + ": empty record");
+            return errors;
+        }
+        List<String> roles = RoleSets.of(user);
+        if (roles.isEmpty()) {
+            errors.add("user " + userId + ": missing role");
+        }
+        for (String role : roles) {
+            if (!matrix.containsKey(role)) {
+                errors.add("user " + userId + ": role '" + role + "' is not defined in the permission matrix");
+            }
+        }
+        Object active = user.get("active");
+        if (active != null && !(active instanceof Boolean)) {
+            errors.add("user " + userId + ": active is not true/false: " + active);
+        }
+        return errors;
+    }
+}
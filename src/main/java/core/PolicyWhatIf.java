@@ -0,0 +1,310 @@
+// === src/main/java/core/PolicyWhatIf.java ===
+
+package core;
+
+import utils.PolicyDirectoryLoader;
+import utils.YamlLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * PolicyWhatIf reports which users would gain or lose which permissions
+ * if one policy version were replaced by another.
+ *
+ * The two matrices are compiled into per-role grant and deny bitsets
+ * once, and each role's delta (gained = after \ before, lost = before \
+ * after) is computed up front. Users with several roles are evaluated
+ * per combination (see {@link RoleSets}); a combination's sets and delta
+ * are computed the first time a user holding it is seen and then shared.
+ * The registry is then streamed in parallel:
+ *   - an active user whose roles and status did not change costs one map
+ *     lookup, and is reported only if their combination has a delta
+ *   - a user whose roles or active flag changed is diffed individually
+ *
+ * Only affected users are materialized and handed to the sink, so memory
+ * is proportional to the delta, not to the registry.
+ *
+ * Usage:
+ *   PolicyWhatIf whatIf = new PolicyWhatIf(pm.export(), PolicyWhatIf.loadMatrix("candidate.yaml"));
+ *   whatIf.run(users, users, ForkJoinPool.commonPool(), delta -> ...);
+ */
+public final class PolicyWhatIf {
+
+    /**
+     * Access change for one user.
+     */
+    public static final class UserDelta {
+        private final String userId;
+        private final String roleBefore;
+        private final String roleAfter;
+        private final List<String> gained;
+        private final List<String> lost;
+
+        UserDelta(String userId, String roleBefore, String roleAfter, List<String> gained, List<String> lost) {
+            this.userId = userId;
+            this.roleBefore = roleBefore;
+            this.roleAfter = roleAfter;
+            this.gained = gained;
+            this.lost = lost;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * @return role before the change (a combination key for several
+         *         roles), or null if the user had no access
+         */
+        public String getRoleBefore() {
+            return roleBefore;
+        }
+
+        /**
+         * @return role after the change, or null if the user has no access
+         */
+        public String getRoleAfter() {
+            return roleAfter;
+        }
+
+        /**
+         * @return keys the user gains, sorted
+         */
+        public List<String> getGained() {
+            return gained;
+        }
+
+        /**
+         * @return keys the user loses, sorted
+         */
+        public List<String> getLost() {
+            return lost;
+        }
+
+        @Override
+        public String toString() {
+            String role = Objects.equals(roleBefore, roleAfter) ? String.valueOf(roleAfter) : roleBefore + "→" + roleAfter;
+            return userId + " (" + role + "): +" + gained + " -" + lost;
+        }
+    }
+
+    /**
+     * Precomputed delta for a role (or combination) whose users keep it.
+     */
+    private static final class RoleDelta {
+        final List<String> gained;
+        final List<String> lost;
+
+        RoleDelta(List<String> gained, List<String> lost) {
+            this.gained = gained;
+            this.lost = lost;
+        }
+    }
+
+    private static final RoleDelta NO_DELTA = new RoleDelta(List.of(), List.of());
+
+    private final PermissionIndex index;
+    private final Map<String, PermissionSet> before = new HashMap<>();
+    private final Map<String, PermissionSet> after = new HashMap<>();
+    private final Map<String, PermissionSet> deniedBefore = new HashMap<>();
+    private final Map<String, PermissionSet> deniedAfter = new HashMap<>();
+    private final Map<String, RoleDelta> roleDeltas = new HashMap<>();
+
+    // Multi-role combinations, filled lazily from pool threads.
+    private final Map<String, PermissionSet> combosBefore = new ConcurrentHashMap<>();
+    private final Map<String, PermissionSet> combosAfter = new ConcurrentHashMap<>();
+    private final Map<String, RoleDelta> comboDeltas = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles both matrices with a private index.
+     *
+     * @param matrixBefore the current matrix
+     * @param matrixAfter  the candidate matrix
+     */
+    public PolicyWhatIf(Map<String, Map<String, Boolean>> matrixBefore, Map<String, Map<String, Boolean>> matrixAfter) {
+        this(matrixBefore, matrixAfter, new PermissionIndex());
+    }
+
+    /**
+     * Same as above with an explicit key index.
+     */
+    public PolicyWhatIf(Map<String, Map<String, Boolean>> matrixBefore, Map<String, Map<String, Boolean>> matrixAfter,
+                        PermissionIndex index) {
+        this.index = index;
+        compile(matrixBefore, before, deniedBefore);
+        compile(matrixAfter, after, deniedAfter);
+        Set<String> roles = new HashSet<>(before.keySet());
+        roles.addAll(after.keySet());
+        for (String role : roles) {
+            RoleDelta d = delta(effective(role, before, deniedBefore), effective(role, after, deniedAfter));
+            if (d != NO_DELTA) {
+                roleDeltas.put(role, d);
+            }
+        }
+    }
+
+    private void compile(Map<String, Map<String, Boolean>> matrix,
+                         Map<String, PermissionSet> grants, Map<String, PermissionSet> denies) {
+        matrix.forEach((role, perms) -> {
+            grants.put(role, PermissionSet.of(perms, index));
+            PermissionSet denied = PermissionSet.deniedBy(perms, index);
+            if (!denied.isEmpty()) denies.put(role, denied);
+        });
+    }
+
+    /**
+     * Loads a candidate matrix from a YAML file or a shard directory.
+     *
+     * @param path file or directory
+     * @return the matrix (empty if the file cannot be read)
+     * @throws PolicyValidationException if a shard directory has conflicts
+     */
+    public static Map<String, Map<String, Boolean>> loadMatrix(String path) {
+        Path p = Paths.get(path);
+        if (Files.isDirectory(p)) {
+            return PolicyDirectoryLoader.loadRoles(p, ForkJoinPool.commonPool()).getMerged();
+        }
+        Map<String, Map<String, Boolean>> matrix = YamlLoader.loadPermissionMatrix(path);
+        return matrix != null ? matrix : Map.of();
+    }
+
+    /**
+     * @return roles whose effective set (on their own) changes, sorted
+     */
+    public List<String> getChangedRoles() {
+        return List.copyOf(new TreeSet<>(roleDeltas.keySet()));
+    }
+
+    /**
+     * @param role a role name
+     * @return keys the role gains, sorted
+     */
+    public List<String> getGained(String role) {
+        RoleDelta d = roleDeltas.get(role);
+        return d != null ? d.gained : List.of();
+    }
+
+    /**
+     * @param role a role name
+     * @return keys the role loses, sorted
+     */
+    public List<String> getLost(String role) {
+        RoleDelta d = roleDeltas.get(role);
+        return d != null ? d.lost : List.of();
+    }
+
+    /**
+     * Streams the per-user delta over a registry. Pass the same map twice
+     * to evaluate a matrix change alone.
+     *
+     * The sink is called from pool threads concurrently and in no
+     * particular order; it must be thread-safe.
+     *
+     * @param usersBefore registry under the current policy
+     * @param usersAfter  registry under the candidate policy
+     * @param pool        the fork/join pool to run on
+     * @param sink        receives one delta per affected user
+     * @return number of affected users
+     */
+    public long run(Map<String, Map<String, Object>> usersBefore, Map<String, Map<String, Object>> usersAfter,
+                    ForkJoinPool pool, Consumer<UserDelta> sink) {
+        LongAdder affected = new LongAdder();
+        Consumer<UserDelta> counting = d -> {
+            affected.increment();
+            sink.accept(d);
+        };
+        try {
+            pool.submit(() -> {
+                usersAfter.entrySet().parallelStream().forEach(e ->
+                        evaluate(e.getKey(), usersBefore.get(e.getKey()), e.getValue(), counting));
+                if (usersBefore != usersAfter) {
+                    usersBefore.entrySet().parallelStream()
+                            .filter(e -> !usersAfter.containsKey(e.getKey()))
+                            .forEach(e -> evaluate(e.getKey(), e.getValue(), null, counting));
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("What-if analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("What-if analysis failed: " + e.getCause(), e.getCause());
+        }
+        return affected.sum();
+    }
+
+    private void evaluate(String userId, Map<String, Object> userBefore, Map<String, Object> userAfter,
+                          Consumer<UserDelta> sink) {
+        String roleBefore = effectiveRole(userBefore, before);
+        String roleAfter = effectiveRole(userAfter, after);
+        if (roleBefore == null && roleAfter == null) return;
+
+        if (Objects.equals(roleBefore, roleAfter)) {
+            // Common case: nothing about the user changed, reuse the role (or combination) delta.
+            RoleDelta d = roleAfter.contains(RoleSets.SEPARATOR)
+                    ? comboDeltas.computeIfAbsent(roleAfter, c -> delta(
+                            combo(c, before, deniedBefore, combosBefore), combo(c, after, deniedAfter, combosAfter)))
+                    : roleDeltas.getOrDefault(roleAfter, NO_DELTA);
+            if (d != NO_DELTA) sink.accept(new UserDelta(userId, roleBefore, roleAfter, d.gained, d.lost));
+            return;
+        }
+        PermissionSet b = roleBefore != null ? combo(roleBefore, before, deniedBefore, combosBefore) : PermissionSet.EMPTY;
+        PermissionSet a = roleAfter != null ? combo(roleAfter, after, deniedAfter, combosAfter) : PermissionSet.EMPTY;
+        RoleDelta d = delta(b, a);
+        if (d != NO_DELTA) {
+            sink.accept(new UserDelta(userId, roleBefore, roleAfter, d.gained, d.lost));
+        }
+    }
+
+    /**
+     * @return the user's role (or combination key) if they are active and
+     *         every role exists, else null
+     */
+    private static String effectiveRole(Map<String, Object> user, Map<String, PermissionSet> roles) {
+        if (user == null || !Boolean.TRUE.equals(user.get("active"))) return null;
+        List<String> names = RoleSets.of(user);
+        return RoleSets.allDefined(names, roles) ? RoleSets.key(names) : null;
+    }
+
+    private static PermissionSet effective(String role, Map<String, PermissionSet> grants,
+                                           Map<String, PermissionSet> denies) {
+        PermissionSet granted = grants.getOrDefault(role, PermissionSet.EMPTY);
+        PermissionSet denied = denies.get(role);
+        return denied != null ? granted.andNot(denied) : granted;
+    }
+
+    private static PermissionSet combo(String key, Map<String, PermissionSet> grants,
+                                       Map<String, PermissionSet> denies, Map<String, PermissionSet> cache) {
+        if (!key.contains(RoleSets.SEPARATOR)) return effective(key, grants, denies);
+        return cache.computeIfAbsent(key, k -> RoleSets.effective(RoleSets.split(k), grants, denies));
+    }
+
+    private RoleDelta delta(PermissionSet b, PermissionSet a) {
+        List<String> gained = keys(a.andNot(b));
+        List<String> lost = keys(b.andNot(a));
+        return gained.isEmpty() && lost.isEmpty() ? NO_DELTA : new RoleDelta(gained, lost);
+    }
+
+    private List<String> keys(PermissionSet set) {
+        if (set.isEmpty()) return List.of();
+        List<String> keys = new ArrayList<>(set.cardinality());
+        set.forEach(id -> keys.add(index.keyOf(id)));
+        Collections.sort(keys);
+        return Collections.unmodifiableList(keys);
+    }
+}
@@ -0,0 +1,39 @@
+// === src/main/java/core/Published.java ===
+
+package core;
+
+/**
+ * Published is one published version of a manager's state together with
+ * its version number, read under the manager's lock so the two always
+ * match (see {@link PermissionsManager#published()} and
+ * {@link users.UserRegistryManager#published()}).
+ *
+ * The value is the manager's own immutable view of that version, so it
+ * stays consistent for as long as the caller holds it.
+ *
+ * @param <T> the snapshot type
+ */
+public final class Published<T> {
+
+    private final long version;
+    private final T value;
+
+    public Published(long version, T value) {
+        this.version = version;
+        this.value = value;
+    }
+
+    /**
+     * @return the version number the value was published under
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the published state; never modified
+     */
+    public T getValue() {
+        return value;
+    }
+}
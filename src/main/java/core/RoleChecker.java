@@ -0,0 +1,18 @@
+// === src/main/java/core/RoleChecker.java ===
+
+package core;
+
+/**
+ * RoleChecker answers checks for one role's permission set by ID (see
+ * {@link PermissionIndex}). Implementations are generated per role by
+ * {@link SpecializedCheckers}; the interface only exists so call sites
+ * can hold them.
+ */
+public interface RoleChecker {
+
+    /**
+     * @param permissionId a permission ID from the default index
+     * @return true if the role grants it
+     */
+    boolean test(int permissionId);
+}
@@ -0,0 +1,76 @@
+// === src/main/java/core/RoleSetPool.java ===
+
+package core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * RoleSetPool hash-conses role permission maps: every distinct content is
+ * kept once, as a read-only map, and roles with equal content (clones,
+ * per-desk copies) all point at that one instance.
+ *
+ * Lookups hash the candidate map by content ({@link Map#hashCode()}), so
+ * interning costs one pass over the candidate; only roles a change touches
+ * are interned again. Entries are reference counted and dropped when the
+ * last role holding them changes.
+ *
+ * Because shared maps are never modified, equal content implies identity:
+ * per-role caches can key on the instance and compute once per class.
+ *
+ * Not thread-safe: {@link PermissionsManager} uses it under its lock.
+ */
+final class RoleSetPool {
+
+    private static final class Shared {
+        final Map<String, Boolean> perms;
+        int refs;
+
+        Shared(Map<String, Boolean> perms) {
+            this.perms = perms;
+        }
+    }
+
+    private final Map<Map<String, Boolean>, Shared> pool = new HashMap<>();
+    private final Map<Map<String, Boolean>, Shared> byInstance = new IdentityHashMap<>();   // release without rehashing
+
+    /**
+     * @param perms a role's permission map (not modified)
+     * @return the shared read-only map with the same content, or null for null
+     */
+    Map<String, Boolean> intern(Map<String, Boolean> perms) {
+        if (perms == null) return null;
+        Shared shared = pool.get(perms);
+        if (shared == null) {
+            shared = new Shared(Collections.unmodifiableMap(new LinkedHashMap<>(perms)));
+            pool.put(shared.perms, shared);
+            byInstance.put(shared.perms, shared);
+        }
+        shared.refs++;
+        return shared.perms;
+    }
+
+    /**
+     * Drops one reference to a shared map (one role no longer holds it).
+     *
+     * @param perms a map returned by {@link #intern}, or null
+     */
+    void release(Map<String, Boolean> perms) {
+        if (perms == null) return;
+        Shared shared = byInstance.get(perms);
+        if (shared != null && --shared.refs == 0) {
+            byInstance.remove(perms);
+            pool.remove(perms);
+        }
+    }
+
+    /**
+     * @return number of distinct permission sets held
+     */
+    int size() {
+        return pool.size();
+    }
+}
@@ -0,0 +1,193 @@
+// === src/main/java/core/RoleSets.java ===
+
+package core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * RoleSets holds the rules for users with more than one role.
+ *
+ * A registry entry names its roles either the legacy way or as a list:
+ *   alice:                  carol:
+ *     role: admin             roles: [trader, reporter]
+ *
+ * A user's effective permissions are the union of what their roles grant,
+ * minus every key any of their roles explicitly denies. A deny is a role
+ * entry whose key starts with "!":
+ *   reporter:
+ *     reporter.view_daily: true
+ *     "!trader.submit_manual_trade": true
+ *
+ * A deny always wins over a grant, whichever role the grant comes from.
+ * Every role already lists every key as true/false, so "false" cannot mean
+ * "deny"; it only means "this role does not grant it".
+ *
+ * Effective permissions depend only on the set of roles, so they are
+ * computed once per distinct combination (see
+ * {@link PermissionsManager#getEffectivePermissions}) and shared by every
+ * user holding it. {@link #key} gives the canonical name of a combination.
+ */
+public final class RoleSets {
+
+    /**
+     * Prefix that turns a role entry into an explicit deny.
+     */
+    public static final String DENY_PREFIX = "!";
+
+    /**
+     * Separator between role names in a combination key.
+     */
+    public static final String SEPARATOR = "+";
+
+    private RoleSets() {
+    }
+
+    /**
+     * Reads a user's roles from a registry entry, in declared order and
+     * without duplicates.
+     *
+     * @param user the registry entry (may be null)
+     * @return the roles; empty if the entry names none or is malformed
+     */
+    public static List<String> of(Map<String, ?> user) {
+        if (user == null) return List.of();
+        Object roles = user.get("roles");
+        if (roles == null) {
+            Object role = user.get("role");
+            return role instanceof String && !((String) role).isBlank() ? List.of((String) role) : List.of();
+        }
+        if (!(roles instanceof Collection)) return List.of();
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (Object role : (Collection<?>) roles) {
+            if (!(role instanceof String) || ((String) role).isBlank()) return List.of();
+            names.add((String) role);
+        }
+        return List.copyOf(names);
+    }
+
+    /**
+     * Writes roles into a registry entry: a single role as "role" (so
+     * existing files keep their shape), several as a "roles" list.
+     *
+     * @param user  the entry to update
+     * @param roles the roles, in declared order
+     */
+    public static void put(Map<String, Object> user, List<String> roles) {
+        user.remove("role");
+        user.remove("roles");
+        if (roles.size() == 1) {
+            user.put("role", roles.get(0));
+        } else if (!roles.isEmpty()) {
+            user.put("roles", new ArrayList<>(roles));
+        }
+    }
+
+    /**
+     * @param roles roles in any order
+     * @return the canonical combination key: sorted names joined by "+"
+     */
+    public static String key(Collection<String> roles) {
+        return String.join(SEPARATOR, sorted(roles));
+    }
+
+    /**
+     * @param roles roles in any order
+     * @return the roles sorted and without duplicates (the memo key)
+     */
+    public static List<String> sorted(Collection<String> roles) {
+        return roles.stream().distinct().sorted().toList();
+    }
+
+    /**
+     * @param key a combination key from {@link #key}
+     * @return the role names it combines
+     */
+    public static List<String> split(String key) {
+        return List.of(key.split(Pattern.quote(SEPARATOR)));
+    }
+
+    /**
+     * @param key a role entry key
+     * @return true if the entry is an explicit deny
+     */
+    public static boolean isDeny(String key) {
+        return key.startsWith(DENY_PREFIX);
+    }
+
+    /**
+     * @param key a role entry key
+     * @return the permission key it grants or denies
+     */
+    public static String target(String key) {
+        return isDeny(key) ? key.substring(DENY_PREFIX.length()) : key;
+    }
+
+    /**
+     * @param roles  role names
+     * @param matrix role → { permission_key → boolean }
+     * @return true if there is at least one role and every one is defined
+     */
+    public static boolean allDefined(Collection<String> roles, Map<String, ?> matrix) {
+        if (roles.isEmpty()) return false;
+        for (String role : roles) {
+            if (!matrix.containsKey(role)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the effective permission map of a role combination: every
+     * non-deny key of any role, true if some role grants it and no role
+     * denies it. Undefined roles contribute nothing.
+     *
+     * @param roles  the roles
+     * @param matrix role → { permission_key → boolean }
+     * @return permission_key → effective value
+     */
+    public static Map<String, Boolean> effective(Collection<String> roles, Map<String, Map<String, Boolean>> matrix) {
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        List<String> denied = new ArrayList<>();
+        for (String role : roles) {
+            Map<String, Boolean> perms = matrix.get(role);
+            if (perms == null) continue;
+            perms.forEach((key, value) -> {
+                if (isDeny(key)) {
+                    if (Boolean.TRUE.equals(value)) denied.add(target(key));
+                } else {
+                    result.merge(key, Boolean.TRUE.equals(value), Boolean::logicalOr);
+                }
+            });
+        }
+        for (String key : denied) {
+            if (result.containsKey(key)) result.put(key, false);
+        }
+        return result;
+    }
+
+    /**
+     * Bitwise form of {@link #effective(Collection, Map)}: OR of the grant
+     * sets minus the OR of the deny sets.
+     *
+     * @param roles  the roles
+     * @param grants role → granted set (see {@link PermissionSet#of})
+     * @param denies role → denied set (see {@link PermissionSet#deniedBy}); absent = none
+     * @return the effective set
+     */
+    public static PermissionSet effective(Collection<String> roles,
+                                          Map<String, PermissionSet> grants,
+                                          Map<String, PermissionSet> denies) {
+        PermissionSet granted = PermissionSet.EMPTY;
+        PermissionSet denied = PermissionSet.EMPTY;
+        for (String role : roles) {
+            granted = granted.or(grants.getOrDefault(role, PermissionSet.EMPTY));
+            denied = denied.or(denies.getOrDefault(role, PermissionSet.EMPTY));
+        }
+        return denied.isEmpty() ? granted : granted.andNot(denied);
+    }
+}
@@ -0,0 +1,205 @@
+// === src/main/java/core/SpecializedCheckers.java ===
+
+package core;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpecializedCheckers is an optional engine for hot roles: each role gets
+ * its own generated {@link RoleChecker} class, with the role's grants
+ * folded into a constant switch over 64-bit words (see
+ * {@link CheckerBytecode}). A check is then a shift, a switch and a bit
+ * test on a constant, with no map, set or array on the path, which the
+ * JIT can inline into a call site that always sees the same role.
+ *
+ * Classes are defined with {@link MethodHandles.Lookup#defineHiddenClass}
+ * and are not strongly tied to their loader, so a class that is no longer
+ * referenced can be unloaded. Roles with the same effective permissions
+ * share one class.
+ *
+ * Callers hold a {@link Cell} per role. The engine follows the manager:
+ *   - a grant or delete regenerates only the touched roles' cells
+ *   - a reload regenerates every cell
+ * and swaps the cell's checker in one volatile write, so a check sees
+ * either the old or the new version, never a mix. Only roles someone has
+ * asked for are compiled.
+ *
+ * Usage:
+ *   SpecializedCheckers checkers = new SpecializedCheckers(pm);
+ *   SpecializedCheckers.Cell trader = checkers.forRole("trader");
+ *   trader.hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE);
+ */
+public class SpecializedCheckers implements PermissionChangeListener, Closeable {
+
+    /** Checker of a role that is not in the matrix. */
+    private static final RoleChecker NONE = id -> false;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * The current checker of one role. Stable for the life of the engine;
+     * hold on to it at call sites.
+     */
+    public static final class Cell {
+        private final String role;
+        private volatile RoleChecker checker;
+        private PermissionSet compiled;   // guarded by the engine
+
+        private Cell(String role) {
+            this.role = role;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        /**
+         * @return the checker of the current matrix version
+         */
+        public RoleChecker getChecker() {
+            return checker;
+        }
+
+        /**
+         * @param permission the permission handle
+         * @return true if the role grants it
+         */
+        public boolean hasPermission(PermissionHandle permission) {
+            return checker.test(permission.getId());
+        }
+
+        /**
+         * @param key the permission key
+         * @return true if the role grants it; unknown keys are never granted
+         */
+        public boolean hasPermission(String key) {
+            int id = PermissionIndex.getDefault().lookup(key);
+            return id >= 0 && checker.test(id);
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final PermissionIndex index = PermissionIndex.getDefault();
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+    private final AtomicLong generated = new AtomicLong();
+
+    // Live classes by the set they were generated from, guarded by this.
+    private Map<PermissionSet, RoleChecker> byContent = new HashMap<>();
+
+    /**
+     * Starts following the manager. No role is compiled until asked for.
+     *
+     * @param pm permission matrix to follow
+     */
+    public SpecializedCheckers(PermissionsManager pm) {
+        this.permissionsManager = pm;
+        pm.addChangeListener(this);
+    }
+
+    /**
+     * Stops following the manager; cells keep their last checker.
+     */
+    @Override
+    public void close() {
+        permissionsManager.removeChangeListener(this);
+    }
+
+    /**
+     * Returns the cell of a role, generating its checker on first use.
+     *
+     * @param role the role name
+     * @return the role's cell (an undefined role grants nothing until defined)
+     */
+    public Cell forRole(String role) {
+        Cell cell = cells.get(role);
+        if (cell != null) return cell;
+        synchronized (this) {
+            return cells.computeIfAbsent(role, r -> {
+                Cell created = new Cell(r);
+                compile(created, byContent);
+                return created;
+            });
+        }
+    }
+
+    /**
+     * @return number of classes generated so far (including replaced ones)
+     */
+    public long getGeneratedCount() {
+        return generated.get();
+    }
+
+    /**
+     * @return number of distinct classes the cells currently use
+     */
+    public synchronized int getLiveClassCount() {
+        return byContent.size();
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        Set<String> roles = new HashSet<>();
+        for (PermissionChange change : changes) {
+            roles.add(change.getRole());
+        }
+        recompile(roles);
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        recompile(cells.keySet());
+    }
+
+    // === Internals ===
+
+    private void recompile(Set<String> roles) {
+        Map<PermissionSet, RoleChecker> reusable = new HashMap<>(byContent);
+        for (String role : roles) {
+            Cell cell = cells.get(role);
+            if (cell != null) compile(cell, reusable);
+        }
+        // Keep only the classes still in use, so replaced ones can be unloaded.
+        Map<PermissionSet, RoleChecker> live = new HashMap<>();
+        for (Cell cell : cells.values()) {
+            if (cell.compiled != null) live.put(cell.compiled, cell.checker);
+        }
+        byContent = live;
+    }
+
+    private void compile(Cell cell, Map<PermissionSet, RoleChecker> reusable) {
+        if (!permissionsManager.snapshot().containsKey(cell.role)) {
+            cell.compiled = null;
+            cell.checker = NONE;
+            return;
+        }
+        PermissionSet set = PermissionSet.of(permissionsManager.getEffectivePermissions(List.of(cell.role)), index);
+        RoleChecker checker = reusable.computeIfAbsent(set, this::define);
+        cell.compiled = set;
+        cell.checker = checker;
+    }
+
+    private RoleChecker define(PermissionSet set) {
+        byte[] bytes = CheckerBytecode.generate(set.toWords());
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            RoleChecker checker = (RoleChecker) hidden
+                    .findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+            generated.incrementAndGet();
+            return checker;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to generate checker for " + set, e);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+// === src/main/java/core/TimeBoundGrants.java ===
+
+package core;
+
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+import utils.TimingWheel;
+import utils.YamlLoader;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * TimeBoundGrants hands out temporary access that takes itself back:
+ * a grant of one key to a role, or the activation of a user, with an
+ * expiry time.
+ *
+ * The grant itself is an ordinary matrix (or registry) change, so checks
+ * pay nothing extra for it. Only the expiry is tracked here, in a
+ * {@link TimingWheel}: a background thread advances the wheel once per
+ * tick, which costs O(1) plus the entries actually due, instead of
+ * scanning the matrix for stale entries. When an entry comes due it is
+ * undone through the normal manager calls, so the change is published as
+ * a new snapshot (listeners, views and sessions update), persisted, and
+ * audited with operator {@value #OPERATOR}.
+ *
+ * Pending expiries are persisted next to the policy (rbac.expiries, or
+ * config/TimeBoundGrants.yaml) and rescheduled on startup; anything that
+ * came due while the process was down is undone on the first tick.
+ * The worker belongs in the long-lived process (daemon.PolicyDaemon);
+ * short-lived tools apply what is overdue when they load the policy
+ * ({@link #expireOverdue}), and an admin console next to a running daemon
+ * only schedules ({@link #scheduleOnly}) and leaves expiring to it.
+ *
+ * An explicit change to the same role/key or user supersedes the pending
+ * expiry: granting the key again makes it permanent, revoking it ends it
+ * early.
+ *
+ * Usage:
+ *   TimeBoundGrants temporary = new TimeBoundGrants(pm, urm);
+ *   temporary.grantUntil("risker", "risker.approve_trade", shiftEnd, "alice");
+ *   temporary.activateUntil("eve", Instant.now().plus(Duration.ofHours(8)), "alice");
+ */
+public class TimeBoundGrants implements PermissionChangeListener, UserChangeListener, Closeable {
+
+    /**
+     * Operator recorded in the audit log for expiries.
+     */
+    public static final String OPERATOR = "expiry";
+
+    public static final long DEFAULT_TICK_MILLIS = 1_000;
+
+    // Set while this class applies its own change, so the listener callbacks
+    // do not treat it as an explicit change that supersedes an expiry.
+    private static final ThreadLocal<Boolean> APPLYING = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * One pending expiry.
+     */
+    public static final class Expiry {
+        public enum Kind { GRANT, ACTIVATION }
+
+        private final Kind kind;
+        private final String role;
+        private final String key;
+        private final String userId;
+        private final Instant expiresAt;
+        private final String operator;
+
+        private Expiry(Kind kind, String role, String key, String userId, Instant expiresAt, String operator) {
+            this.kind = kind;
+            this.role = role;
+            this.key = key;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.operator = operator;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the role (null for ACTIVATION)
+         */
+        public String getRole() {
+            return role;
+        }
+
+        /**
+         * @return the permission key (null for ACTIVATION)
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the user (null for GRANT)
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * @return who granted the temporary access
+         */
+        public String getOperator() {
+            return operator;
+        }
+
+        String id() {
+            return kind == Kind.GRANT ? grantId(role, key) : activationId(userId);
+        }
+
+        @Override
+        public String toString() {
+            return (kind == Kind.GRANT ? "grant " + key + " to " + role : "activation of " + userId)
+                    + " until " + expiresAt + " (by " + operator + ")";
+        }
+    }
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final String path;   // null = not persisted
+    private final Clock clock;
+    private final Thread worker;   // null if scheduling only
+    private volatile boolean closed;
+
+    // Guarded by this.
+    private final TimingWheel<Expiry> wheel;
+    private final Map<String, TimingWheel.Timeout<Expiry>> pending = new HashMap<>();
+
+    /**
+     * Follows both managers with the default expiry file and one-second ticks.
+     *
+     * @param pm  permission matrix to grant into
+     * @param urm user registry to activate in
+     */
+    public TimeBoundGrants(PermissionsManager pm, UserRegistryManager urm) {
+        this(pm, urm, System.getProperty("rbac.expiries", "config/TimeBoundGrants.yaml"),
+                Clock.systemUTC(), DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * @param pm         permission matrix to grant into
+     * @param urm        user registry to activate in
+     * @param path       file holding pending expiries, or null to keep them in memory only
+     * @param clock      time source
+     * @param tickMillis resolution of expiry
+     */
+    public TimeBoundGrants(PermissionsManager pm, UserRegistryManager urm, String path, Clock clock, long tickMillis) {
+        this(pm, urm, path, clock, tickMillis, true);
+    }
+
+    private TimeBoundGrants(PermissionsManager pm, UserRegistryManager urm, String path, Clock clock, long tickMillis,
+                            boolean startWorker) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.path = path;
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(tickMillis, clock.millis());
+        synchronized (this) {
+            pm.addChangeListener(this);
+            urm.addChangeListener(this);
+            load();
+        }
+        if (!startWorker) {
+            this.worker = null;
+            return;
+        }
+        this.worker = new Thread(this::run, "rbac-expiry");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Follows both managers and keeps the expiry file up to date, but
+     * never expires anything by itself: another process runs the worker.
+     * {@link #expireDue()} still works when called.
+     *
+     * @param pm   permission matrix to grant into
+     * @param urm  user registry to activate in
+     * @param path file holding pending expiries, or null to keep them in memory only
+     * @return a scheduler without a background thread
+     */
+    public static TimeBoundGrants scheduleOnly(PermissionsManager pm, UserRegistryManager urm, String path) {
+        return new TimeBoundGrants(pm, urm, path, Clock.systemUTC(), DEFAULT_TICK_MILLIS, false);
+    }
+
+    /**
+     * Undoes every expiry in the default file that came due while no
+     * worker was running. Tools that load the policy without hosting the
+     * worker call this right after loading.
+     *
+     * @param pm  freshly loaded permission matrix
+     * @param urm freshly loaded user registry
+     * @return number of expiries applied
+     */
+    public static int expireOverdue(PermissionsManager pm, UserRegistryManager urm) {
+        TimeBoundGrants overdue = scheduleOnly(pm, urm,
+                System.getProperty("rbac.expiries", "config/TimeBoundGrants.yaml"));
+        try {
+            // Not through the wheel: it files past deadlines one tick ahead.
+            Instant now = overdue.clock.instant();
+            List<Expiry> due = new ArrayList<>();
+            for (Expiry e : overdue.list()) {
+                if (!e.expiresAt.isAfter(now)) due.add(e);
+            }
+            return overdue.apply(due);
+        } finally {
+            overdue.close();
+        }
+    }
+
+    /**
+     * Grants a key to a role until the given time.
+     *
+     * @param role      the role
+     * @param key       the permission key
+     * @param expiresAt when the grant is revoked again
+     * @param operator  actor recorded in the audit log
+     * @throws IllegalArgumentException if the time is not in the future
+     * @throws IllegalStateException    if the role already holds the key permanently
+     */
+    public void grantUntil(String role, String key, Instant expiresAt, String operator) {
+        requireFuture(expiresAt);
+        synchronized (this) {
+            if (!pending.containsKey(grantId(role, key)) && permissionsManager.hasPermission(role, key)) {
+                throw new IllegalStateException("Role '" + role + "' already holds '" + key + "' permanently");
+            }
+        }
+        applying(() -> permissionsManager.grant(role, key, true, operator));
+        schedule(new Expiry(Expiry.Kind.GRANT, role, key, null, expiresAt, operator));
+    }
+
+    /**
+     * Activates a user until the given time.
+     *
+     * @param userId    an existing user
+     * @param expiresAt when the user is deactivated again
+     * @param operator  actor recorded in the audit log
+     * @throws IllegalArgumentException if the user is unknown or the time is not in the future
+     * @throws IllegalStateException    if the user is already active permanently
+     */
+    public void activateUntil(String userId, Instant expiresAt, String operator) {
+        requireFuture(expiresAt);
+        if (userRegistry.getUser(userId) == null) {
+            throw new IllegalArgumentException("User not found: " + userId);
+        }
+        synchronized (this) {
+            if (!pending.containsKey(activationId(userId)) && userRegistry.isActive(userId)) {
+                throw new IllegalStateException("User '" + userId + "' is already active permanently");
+            }
+        }
+        applying(() -> userRegistry.toggleActive(userId, true, operator));
+        schedule(new Expiry(Expiry.Kind.ACTIVATION, null, null, userId, expiresAt, operator));
+    }
+
+    /**
+     * Re-reads the expiry file, replacing what is scheduled here. Used
+     * when another process (an admin console next to the daemon) may have
+     * scheduled or superseded expiries in it.
+     */
+    public synchronized void reload() {
+        for (TimingWheel.Timeout<Expiry> t : pending.values()) wheel.cancel(t);
+        pending.clear();
+        load();
+        notifyAll();
+    }
+
+    /**
+     * @return pending expiries, soonest first
+     */
+    public synchronized List<Expiry> list() {
+        List<Expiry> result = new ArrayList<>();
+        for (TimingWheel.Timeout<Expiry> t : pending.values()) result.add(t.getItem());
+        result.sort(Comparator.comparing(Expiry::getExpiresAt));
+        return result;
+    }
+
+    /**
+     * Undoes everything that has come due by the clock's current time.
+     * Called by the background thread every tick; callers with a
+     * controlled clock may call it directly.
+     *
+     * An expiry that was superseded in the meantime, or whose role no
+     * longer holds the key (e.g. removed by a reload), is dropped without
+     * a change.
+     *
+     * @return number of expiries applied
+     */
+    public int expireDue() {
+        List<Expiry> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(clock.millis(), due::add);
+        }
+        return apply(due);
+    }
+
+    /**
+     * Undoes the given expiries, skipping superseded ones, and persists
+     * what is left pending.
+     */
+    private int apply(List<Expiry> due) {
+        if (due.isEmpty()) return 0;
+        // Outside the lock: the managers call back into the listener methods.
+        // Each expiry claims its entry under the manager's own lock, so an
+        // explicit change published in the meantime supersedes it.
+        int expired = 0;
+        for (Expiry e : due) {
+            try {
+                boolean applied = applyingIf(() -> e.kind == Expiry.Kind.GRANT
+                        ? permissionsManager.grantIf(() -> claim(e) && permissionsManager.hasPermission(e.role, e.key),
+                                e.role, e.key, false, OPERATOR)
+                        : userRegistry.toggleActiveIf(() -> claim(e), e.userId, false, OPERATOR));
+                if (applied) {
+                    expired++;
+                    System.out.println("⏰ Expired " + e);
+                }
+            } catch (RuntimeException ex) {
+                System.err.println("❌ Failed to expire " + e + ": " + ex.getMessage());
+            }
+        }
+        synchronized (this) {
+            for (Expiry e : due) claim(e);   // dropped if the manager call failed before claiming
+            persist();
+        }
+        return expired;
+    }
+
+    /**
+     * Stops the background thread and detaches from the managers. Pending
+     * expiries stay in the file and are picked up by the next instance.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+        synchronized (this) {
+            notifyAll();
+        }
+        if (worker != null) worker.interrupt();
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        if (APPLYING.get()) return;
+        boolean superseded = false;
+        for (PermissionChange change : changes) {
+            superseded |= cancel(grantId(change.getRole(), change.getKey()));
+        }
+        if (superseded) persist();
+    }
+
+    @Override
+    public void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        // Pending expiries stay scheduled; revoking a key that is gone is harmless.
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        if (APPLYING.get()) return;
+        boolean superseded = false;
+        for (UserChange change : changes) {
+            superseded |= cancel(activationId(change.getUserId()));
+        }
+        if (superseded) persist();
+    }
+
+    @Override
+    public void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        // As for the matrix: expiries outlive a reload.
+    }
+
+    // === Internals ===
+
+    private void run() {
+        long tick = wheel.getTickMillis();
+        while (!closed) {
+            try {
+                synchronized (this) {
+                    while (!closed && wheel.size() == 0) wait();
+                }
+                Thread.sleep(tick - Math.floorMod(clock.millis(), tick));
+                expireDue();
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Expiry tick failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void schedule(Expiry expiry) {
+        cancel(expiry.id());
+        pending.put(expiry.id(), wheel.schedule(expiry, expiry.expiresAt.toEpochMilli()));
+        persist();
+        notifyAll();
+    }
+
+    private boolean cancel(String id) {
+        TimingWheel.Timeout<Expiry> previous = pending.remove(id);
+        return previous != null && wheel.cancel(previous);
+    }
+
+    /**
+     * Takes a due expiry out of the pending table, unless it was superseded.
+     * Called under the manager's lock just before the expiry is applied.
+     *
+     * @return true if e was still pending
+     */
+    private synchronized boolean claim(Expiry e) {
+        TimingWheel.Timeout<Expiry> current = pending.get(e.id());
+        if (current == null || current.getItem() != e) return false;
+        pending.remove(e.id());
+        return true;
+    }
+
+    private void requireFuture(Instant expiresAt) {
+        if (!expiresAt.isAfter(clock.instant())) {
+            throw new IllegalArgumentException("Expiry must be in the future: " + expiresAt);
+        }
+    }
+
+    private static void applying(Runnable change) {
+        APPLYING.set(true);
+        try {
+            change.run();
+        } finally {
+            APPLYING.set(false);
+        }
+    }
+
+    private static boolean applyingIf(BooleanSupplier change) {
+        APPLYING.set(true);
+        try {
+            return change.getAsBoolean();
+        } finally {
+            APPLYING.set(false);
+        }
+    }
+
+    private static String grantId(String role, String key) {
+        return "grant:" + role + "/" + key;
+    }
+
+    private static String activationId(String userId) {
+        return "user:" + userId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (path == null || !Files.exists(Paths.get(path))) return;
+        Map<String, Map<String, Object>> data = YamlLoader.load(path, Map.class);
+        if (data == null) return;
+        for (Map<String, Object> entry : data.values()) {
+            try {
+                Expiry.Kind kind = Expiry.Kind.valueOf(String.valueOf(entry.get("kind")));
+                Expiry expiry = new Expiry(kind, (String) entry.get("role"), (String) entry.get("key"),
+                        (String) entry.get("user"), Instant.parse(String.valueOf(entry.get("expires_at"))),
+                        (String) entry.get("operator"));
+                pending.put(expiry.id(), wheel.schedule(expiry, expiry.expiresAt.toEpochMilli()));
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Skipping malformed expiry in " + path + ": " + entry);
+            }
+        }
+    }
+
+    private void persist() {
+        if (path == null) return;
+        Map<String, Map<String, Object>> data = new LinkedHashMap<>();
+        for (Expiry e : list()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("kind", e.kind.name());
+            if (e.kind == Expiry.Kind.GRANT) {
+                entry.put("role", e.role);
+                entry.put("key", e.key);
+            } else {
+                entry.put("user", e.userId);
+            }
+            entry.put("expires_at", e.expiresAt.toString());
+            entry.put("operator", e.operator);
+            data.put(e.id(), entry);
+        }
+        YamlLoader.saveAtomically(path, data);
+    }
+}
@@ -0,0 +1,137 @@
+// === src/main/java/daemon/DaemonClient.java ===
+
+package daemon;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DaemonClient sends requests to a running {@link PolicyDaemon} over its
+ * Unix domain socket. The CLI tools use it to skip loading the policy
+ * themselves whenever a daemon is up.
+ *
+ * Not thread-safe: one request at a time per client.
+ *
+ * Usage:
+ *   try (DaemonClient client = DaemonClient.connectIfRunning()) {
+ *       if (client != null) client.request("CHECK alice admin.manage_users");
+ *   }
+ */
+public final class DaemonClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final BufferedReader in;
+    private final Writer out;
+
+    private DaemonClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+        this.out = Channels.newWriter(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Connects to the daemon on a socket.
+     *
+     * @param socketPath the daemon's socket file
+     * @return a connected client
+     * @throws UncheckedIOException if nothing is listening there
+     */
+    public static DaemonClient connect(Path socketPath) {
+        try {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socketPath));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new DaemonClient(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No daemon at " + socketPath, e);
+        }
+    }
+
+    /**
+     * Connects to the daemon on the default socket, unless disabled with
+     * -Drbac.daemon=off. A socket owned by another user is ignored: its
+     * answers decide who may enter admin mode.
+     *
+     * @return a connected client, or null if no daemon of this user is running
+     */
+    public static DaemonClient connectIfRunning() {
+        if ("off".equals(System.getProperty("rbac.daemon"))) return null;
+        Path socket = PolicyDaemon.defaultSocket();
+        if (!Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) return null;
+        if (!isOwnedByCurrentUser(socket)) {
+            System.err.println("⚠️  Ignoring daemon socket " + socket + ": not owned by "
+                    + System.getProperty("user.name"));
+            return null;
+        }
+        try {
+            return connect(socket);
+        } catch (UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isOwnedByCurrentUser(Path socket) {
+        try {
+            return Files.getOwner(socket, LinkOption.NOFOLLOW_LINKS).getName()
+                    .equals(System.getProperty("user.name"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends one request and waits for the reply.
+     *
+     * @param command the request line, e.g. "CHECK alice admin.manage_users"
+     * @return the body lines of an OK reply
+     * @throws IllegalStateException    with the daemon's message on an ERR reply
+     * @throws UncheckedIOException     if the connection fails
+     */
+    public List<String> request(String command) {
+        try {
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String status = in.readLine();
+            if (status == null) throw new IOException("daemon closed the connection");
+            List<String> body = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+                body.add(line.startsWith(".") ? line.substring(1) : line);
+            }
+            if (line == null) throw new IOException("daemon closed the connection");
+            if (status.startsWith("ERR")) {
+                throw new IllegalStateException(status.length() > 4 ? status.substring(4) : "daemon error");
+            }
+            return body;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Daemon request failed: " + command, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("⚠️  Failed to close daemon connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,433 @@
+// === src/main/java/daemon/PolicyDaemon.java ===
+
+package daemon;
+
+import audit.AuditQuery;
+import audit.AuditRecord;
+import context.AsyncAuthorizer;
+import context.ContextBuilder;
+import context.Explanation;
+import core.EffectivePermissionView;
+import core.FastRejectFilter;
+import core.PermissionIndex;
+import core.PermissionsManager;
+import core.PolicyValidationException;
+import core.PolicyValidator;
+import core.RoleSets;
+import core.TimeBoundGrants;
+import model.UserContext;
+import replication.ReplicationFollower;
+import replication.ReplicationLeader;
+import trace.DecisionTrace;
+import users.UserRegistryManager;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * PolicyDaemon keeps the policy loaded in one long-lived JVM and answers
+ * the CLI tools over a local Unix domain socket, so a script that runs
+ * RBACCli, RBACTestConsole or RunAllUsers thousands of times pays for JVM
+ * start-up and YAML parsing once instead of every time.
+ *
+ * The daemon holds the usual managers plus an {@link EffectivePermissionView}
+ * and a {@link FastRejectFilter}, so checks for made-up users and keys
+ * (scanners, misconfigured clients) are answered from the filter.
+ * RELOAD re-reads both YAML files in place and the view, filter, memoized
+ * role combinations and sessions follow through their listeners.
+ *
+ * Protocol (UTF-8 lines, one connection may carry many requests):
+ *   request:  COMMAND [args...]
+ *   response: "OK" or "ERR <message>", body lines, then a line "."
+ *             (body lines starting with "." are sent with an extra ".")
+ *
+ *   PING                 → OK
+ *   CHECK <user> <key>   → outcome (ALLOWED, DENIED, UNKNOWN_USER, ...)
+ *   CONTEXT <user>       → "roles a,b", "client_id X", "+ key" per granted key
+ *   EXPLAIN <user> <key> → reason code, then one line per resolution step
+ *   MATRIX               → per user "U <user>", then "+ key"/"- key" or "E <error>"
+ *   AUDIT <limit>        → the newest audit records
+ *   RELOAD               → reloads the YAML (and pending expiries) if it is valid;
+ *                          ERR lists the errors
+ *   REPLICATION          → "leader <port> <version>" and "follower <address> <version>"
+ *                          per follower, "following <address> <connected|reconnecting>
+ *                          <version>", or "off"
+ *   STOP                 → shuts the daemon down
+ *
+ * Being the long-lived process, the daemon is where replication runs:
+ * {@link #main} starts a {@link ReplicationLeader} for
+ * -Drbac.replication.listen=<port> or a {@link ReplicationFollower} for
+ * -Drbac.replication.leader=<host:port>, and both outlive any admin
+ * session. Unless it follows a leader, it also runs the
+ * {@link TimeBoundGrants} worker that revokes expired grants, and RELOAD
+ * re-reads the expiry file along with the policy. An admin console
+ * started while the daemon runs leaves replication and expiry to it.
+ *
+ * The socket is rbac.daemon.socket, or daemon.sock in a directory only its
+ * owner can enter ($XDG_RUNTIME_DIR/rbac, else ~/.rbac), and is itself
+ * readable by its owner only. Clients ignore a socket some other user owns.
+ *
+ * Usage:
+ *   java daemon.PolicyDaemon                 # serve until STOP
+ *   DaemonClient client = DaemonClient.connectIfRunning();
+ */
+public class PolicyDaemon implements Closeable {
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final ContextBuilder builder;
+    private final AsyncAuthorizer authorizer;
+    private final EffectivePermissionView view;
+    private final FastRejectFilter fastReject;
+    private final Path socketPath;
+    private final ServerSocketChannel server;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean closed;
+    private volatile ReplicationLeader leader;       // null unless started by startReplication
+    private volatile ReplicationFollower follower;   // null unless started by startReplication
+    private volatile TimeBoundGrants expiries;       // null unless started by startExpiries
+
+    /**
+     * Serves the given managers on a socket.
+     *
+     * @param pm         loaded permission matrix
+     * @param urm        loaded user registry
+     * @param socketPath socket file to create
+     * @throws IllegalStateException if another daemon already serves that socket
+     */
+    public PolicyDaemon(PermissionsManager pm, UserRegistryManager urm, Path socketPath) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.builder = new ContextBuilder(pm, urm);
+        this.authorizer = new AsyncAuthorizer(pm, urm);
+        this.socketPath = socketPath;
+        try {
+            if (Files.exists(socketPath)) {
+                try {
+                    DaemonClient.connect(socketPath).close();
+                    throw new IllegalStateException("A daemon is already serving " + socketPath);
+                } catch (UncheckedIOException stale) {
+                    Files.delete(socketPath);   // left behind by a daemon that died
+                }
+            }
+            Path parent = socketPath.toAbsolutePath().getParent();
+            if (!Files.exists(parent)) createPrivateDirectory(parent);
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            if (isPosix(socketPath)) {
+                Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen on " + socketPath, e);
+        }
+        this.view = new EffectivePermissionView(pm, urm);
+        this.fastReject = new FastRejectFilter(pm, urm);
+        builder.setFastReject(fastReject);
+        authorizer.setFastReject(fastReject);
+        Thread acceptor = new Thread(this::acceptLoop, "rbac-daemon-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the default socket: rbac.daemon.socket, or daemon.sock in the
+     *         user's own rbac directory under XDG_RUNTIME_DIR or ~/.rbac
+     */
+    public static Path defaultSocket() {
+        String configured = System.getProperty("rbac.daemon.socket");
+        if (configured != null) return Path.of(configured);
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path dir = runtime != null && !runtime.isBlank()
+                ? Path.of(runtime, "rbac")
+                : Path.of(System.getProperty("user.home"), ".rbac");
+        return dir.resolve("daemon.sock");
+    }
+
+    /**
+     * Creates the socket's directory readable by its owner only, so other
+     * users can neither connect nor plant a socket of their own there.
+     */
+    private static void createPrivateDirectory(Path dir) throws IOException {
+        if (isPosix(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(dir);
+        }
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * @return the socket this daemon serves
+     */
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Starts replication as configured: a leader if rbac.replication.listen
+     * is set, a follower of rbac.replication.leader if that is set. Both
+     * are stopped by {@link #close()}.
+     */
+    public synchronized void startReplication() {
+        if (leader != null || follower != null) return;
+        String listen = System.getProperty("rbac.replication.listen");
+        String leaderAddress = System.getProperty("rbac.replication.leader");
+        if (listen != null) {
+            leader = new ReplicationLeader(permissionsManager, userRegistry, Integer.parseInt(listen));
+        } else if (leaderAddress != null) {
+            follower = ReplicationFollower.connect(permissionsManager, userRegistry, leaderAddress);
+        }
+    }
+
+    /**
+     * Starts the expiry worker on the rbac.expiries file, unless this
+     * daemon follows a leader (the leader expires and replicates).
+     * Stopped by {@link #close()}.
+     */
+    public synchronized void startExpiries() {
+        if (expiries == null && follower == null) {
+            expiries = new TimeBoundGrants(permissionsManager, userRegistry);
+        }
+    }
+
+    /**
+     * Blocks until the daemon is stopped (STOP or {@link #close()}).
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops accepting requests and removes the socket file.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            System.err.println("⚠️  Failed to remove " + socketPath + ": " + e.getMessage());
+        }
+        if (leader != null) leader.close();
+        if (follower != null) follower.close();
+        if (expiries != null) expiries.close();
+        view.close();
+        fastReject.close();
+        stopped.countDown();
+    }
+
+    /**
+     * Starts a daemon on the default socket and serves until STOP.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        PermissionsManager pm;
+        UserRegistryManager urm;
+        try {
+            pm = new PermissionsManager();
+            urm = new UserRegistryManager();
+            PolicyValidator.validateOrThrow(pm, urm);
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Policy is invalid, refusing to start. " + e.getMessage());
+            return;
+        }
+        Path socket = args.length > 0 ? Path.of(args[0]) : defaultSocket();
+        PolicyDaemon daemon = new PolicyDaemon(pm, urm, socket);
+        DecisionTrace.installFromProperties(pm, urm);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        daemon.startReplication();
+        daemon.startExpiries();
+        System.out.println("🛰️  RBAC daemon serving " + socket);
+        if (daemon.leader != null) {
+            System.out.println("📡 Replication leader on port " + daemon.leader.getPort());
+        } else if (daemon.follower != null) {
+            System.out.println("📡 Following replication leader at " + daemon.follower.getLeaderAddress());
+        }
+        daemon.awaitStop();
+        System.out.println("👋 RBAC daemon stopped.");
+    }
+
+    // === Serving ===
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                Thread handler = new Thread(() -> serve(channel), "rbac-daemon-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) System.err.println("⚠️  Daemon accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel;
+             BufferedReader in = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             Writer out = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                boolean stop = line.trim().equals("STOP");
+                respond(out, line.trim());
+                if (stop) {
+                    close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) System.err.println("⚠️  Daemon client failed: " + e.getMessage());
+        }
+    }
+
+    private void respond(Writer out, String request) throws IOException {
+        List<String> body = new ArrayList<>();
+        String status;
+        try {
+            execute(request.split("\\s+"), body);
+            status = "OK";
+        } catch (RuntimeException e) {
+            body.clear();
+            status = "ERR " + String.valueOf(e.getMessage()).replace('\n', ' ');
+        }
+        StringBuilder response = new StringBuilder(status).append('\n');
+        for (String b : body) {
+            if (b.startsWith(".")) response.append('.');
+            response.append(b).append('\n');
+        }
+        response.append(".\n");
+        out.write(response.toString());
+        out.flush();
+    }
+
+    /**
+     * Runs one request, appending its output to body.
+     *
+     * @throws RuntimeException with the message to send back as ERR
+     */
+    private void execute(String[] args, List<String> body) {
+        switch (args[0]) {
+            case "PING":
+                break;
+            case "CHECK":
+                arity(args, 3, "CHECK <user> <key>");
+                body.add(authorizer.decide(args[1], args[2]).getOutcome().name());
+                break;
+            case "CONTEXT": {
+                arity(args, 2, "CONTEXT <user>");
+                UserContext context = builder.buildUserContext(args[1]);
+                body.add("roles " + String.join(",", context.getRoles()));
+                body.add("client_id " + context.getClientId());
+                context.getPermissions().forEach((key, granted) -> {
+                    if (Boolean.TRUE.equals(granted)) body.add("+ " + key);
+                });
+                break;
+            }
+            case "EXPLAIN": {
+                arity(args, 3, "EXPLAIN <user> <key>");
+                Explanation explanation = builder.explain(args[1], args[2]);
+                body.add(explanation.getReason().name());
+                body.addAll(explanation.getSteps());
+                break;
+            }
+            case "MATRIX":
+                matrix(body);
+                break;
+            case "AUDIT": {
+                arity(args, 2, "AUDIT <limit>");
+                for (AuditRecord r : permissionsManager.getAuditLog()
+                        .query(new AuditQuery().limit(Integer.parseInt(args[1])))) {
+                    body.add(r.toString());
+                }
+                break;
+            }
+            case "RELOAD": {
+                PermissionsManager matrix = new PermissionsManager(permissionsManager.getPath());
+                UserRegistryManager users = new UserRegistryManager(userRegistry.getPath());
+                PolicyValidator.validateOrThrow(matrix, users);   // an invalid policy never goes live
+                permissionsManager.reloadFrom(matrix);
+                userRegistry.reloadFrom(users);
+                TimeBoundGrants e = expiries;
+                if (e != null) e.reload();
+                break;
+            }
+            case "REPLICATION":
+                replication(body);
+                break;
+            case "STOP":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + args[0]);
+        }
+    }
+
+    private void matrix(List<String> body) {
+        PermissionIndex index = view.getIndex();
+        Set<String> keys = new TreeSet<>();
+        for (Map<String, Boolean> perms : permissionsManager.export().values()) {
+            for (String key : perms.keySet()) {
+                if (!RoleSets.isDeny(key)) keys.add(key);
+            }
+        }
+        for (String userId : userRegistry.getAllUserIds()) {
+            body.add("U " + userId);
+            EffectivePermissionView.Entry entry = view.get(userId);
+            if (entry == null) {
+                try {
+                    builder.buildUserContext(userId);
+                } catch (RuntimeException e) {
+                    body.add("E " + e.getMessage());
+                }
+                continue;
+            }
+            for (String key : keys) {
+                body.add((entry.getPermissions().contains(index.lookup(key)) ? "+ " : "- ") + key);
+            }
+        }
+    }
+
+    private void replication(List<String> body) {
+        ReplicationLeader l = leader;
+        ReplicationFollower f = follower;
+        if (l != null) {
+            body.add("leader " + l.getPort() + " " + l.getVersion());
+            l.getFollowerVersions().forEach((name, version) -> body.add("follower " + name + " " + version));
+        } else if (f != null) {
+            body.add("following " + f.getLeaderAddress() + " " + (f.isConnected() ? "connected" : "reconnecting")
+                    + " " + f.getAppliedVersion());
+        } else {
+            body.add("off");
+        }
+    }
+
+    private static void arity(String[] args, int expected, String usage) {
+        if (args.length != expected) throw new IllegalArgumentException("Usage: " + usage);
+    }
+}
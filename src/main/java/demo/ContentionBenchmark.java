@@ -0,0 +1,388 @@
+// === src/main/java/demo/ContentionBenchmark.java ===
+
+package demo;
+
+import audit.AuditLog;
+import context.ContextBuilder;
+import core.PermissionChange;
+import core.PermissionsManager;
+import model.UserContext;
+import users.UserChange;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ContentionBenchmark runs a configurable mix of reads and writes against
+ * PermissionsManager, UserRegistryManager and ContextBuilder on 1..N
+ * threads and reports how throughput scales, the latency tail of each
+ * operation, and any consistency violations observed.
+ *
+ * Operations (weights are relative):
+ *   check   resolve a random user's role and test a random key
+ *   build   ContextBuilder.buildUserContext for a random user
+ *   grant   flip the two canary keys of role bench_canary in one batch
+ *           (every other time: a plain audited grant on a noise key)
+ *   toggle  flip the active flag of the two canary users in one batch
+ *   reload  reload both managers from disk
+ *
+ * Consistency: the canary keys are only ever changed together, and so
+ * are the canary users. A reader that sees one matrix (or registry)
+ * version where the pair differs has observed a torn update. Contexts
+ * built for a canary-role user must also see the pair equal. Unexpected
+ * exceptions count as violations too; "user is deactivated" from a build
+ * racing a toggle is expected and counted separately.
+ *
+ * Runs on temporary copies of the config, so the real files are untouched.
+ *
+ * Usage:
+ *   java demo.ContentionBenchmark [maxThreads] [secondsPerStep] [mix]
+ *   (defaults: 64, 3, check=940,build=40,grant=10,toggle=5,reload=5)
+ */
+public class ContentionBenchmark {
+
+    enum Op { CHECK, BUILD, GRANT, TOGGLE, RELOAD }
+
+    private static final String CANARY_ROLE = "bench_canary";
+    private static final String CANARY_KEY_A = "bench.canary_a";
+    private static final String CANARY_KEY_B = "bench.canary_b";
+    private static final String CANARY_USER_A = "bench_user_a";
+    private static final String CANARY_USER_B = "bench_user_b";
+    private static final String VERIFY_USER = "bench_reader";
+    private static final int VERIFY_EVERY = 16;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Map<Op, Integer> mix = parseMix(args.length > 2 ? args[2] : "check=940,build=40,grant=10,toggle=5,reload=5");
+
+        ContentionBenchmark bench = new ContentionBenchmark(mix);
+        System.out.printf("========= Contention benchmark: 1..%d threads, %ds per step =========%n", maxThreads, seconds);
+        System.out.println("mix: " + mix + ", cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+
+        List<Step> steps = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            bench.run(threads, 1);   // warm-up
+            steps.add(bench.run(threads, seconds));
+        }
+        report(steps);
+        System.out.println("================================================================");
+    }
+
+    // === Setup ===
+
+    private final Op[] table;   // weighted lookup: table[random] → op
+    private final PermissionsManager pm;
+    private final UserRegistryManager urm;
+    private final ContextBuilder builder;
+    private final List<String> userIds;
+    private final List<String> keys;
+
+    ContentionBenchmark(Map<Op, Integer> mix) {
+        List<Op> ops = new ArrayList<>();
+        mix.forEach((op, weight) -> {
+            for (int i = 0; i < weight; i++) ops.add(op);
+        });
+        this.table = ops.toArray(new Op[0]);
+
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("rbac-bench");
+            Files.copy(Paths.get(System.getProperty("rbac.roles", "config/RolePermissions.yaml")), dir.resolve("RolePermissions.yaml"));
+            Files.copy(Paths.get(System.getProperty("rbac.users", "config/UserRegistry.yaml")), dir.resolve("UserRegistry.yaml"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare benchmark config", e);
+        }
+        pm = new PermissionsManager(dir.resolve("RolePermissions.yaml").toString());
+        urm = new UserRegistryManager(dir.resolve("UserRegistry.yaml").toString());
+        AuditLog audit = new AuditLog(dir.resolve("rbac.log").toString(), dir.resolve("rbac-audit").toString());
+        pm.setAuditLog(audit);
+        urm.setAuditLog(audit);
+        builder = new ContextBuilder(pm, urm);
+
+        pm.applyBatch(List.of(
+                PermissionChange.set(CANARY_ROLE, CANARY_KEY_A, true),
+                PermissionChange.set(CANARY_ROLE, CANARY_KEY_B, true)));
+        urm.applyBatch(List.of(
+                UserChange.add(CANARY_USER_A, CANARY_ROLE, null, true),
+                UserChange.add(CANARY_USER_B, CANARY_ROLE, null, true),
+                UserChange.add(VERIFY_USER, CANARY_ROLE, null, true)));
+
+        userIds = new ArrayList<>(urm.getAllUserIds());
+        userIds.remove(CANARY_USER_A);
+        userIds.remove(CANARY_USER_B);
+        keys = new ArrayList<>();
+        pm.export().values().forEach(perms -> keys.addAll(perms.keySet()));
+    }
+
+    // === One step ===
+
+    /**
+     * Results of one thread-count step.
+     */
+    static final class Step {
+        final int threads;
+        final long nanos;
+        final Map<Op, Histogram> latency = new EnumMap<>(Op.class);
+        final AtomicLong violations = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicReference<String> firstViolation = new AtomicReference<>();
+
+        Step(int threads, long nanos) {
+            this.threads = threads;
+            this.nanos = nanos;
+            for (Op op : Op.values()) latency.put(op, new Histogram());
+        }
+
+        long totalOps() {
+            long n = 0;
+            for (Histogram h : latency.values()) n += h.count();
+            return n;
+        }
+
+        void violation(String what) {
+            violations.incrementAndGet();
+            firstViolation.compareAndSet(null, what);
+        }
+    }
+
+    Step run(int threads, int seconds) throws InterruptedException {
+        Step step = new Step(threads, seconds * 1_000_000_000L);
+        List<Map<Op, Histogram>> perThread = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Map<Op, Histogram> local = new EnumMap<>(Op.class);
+            for (Op op : Op.values()) local.put(op, new Histogram());
+            perThread.add(local);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + step.nanos;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    Op op = table[random.nextInt(table.length)];
+                    long begin = System.nanoTime();
+                    execute(op, random, step, ++n);
+                    local.get(op).record(System.nanoTime() - begin);
+                }
+            }, "bench-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+        for (Map<Op, Histogram> local : perThread) {
+            local.forEach((op, h) -> step.latency.get(op).add(h));
+        }
+        return step;
+    }
+
+    private void execute(Op op, ThreadLocalRandom random, Step step, long n) {
+        try {
+            switch (op) {
+                case CHECK: {
+                    Map<String, Object> user = urm.getUser(userIds.get(random.nextInt(userIds.size())));
+                    if (user != null && Boolean.TRUE.equals(user.get("active"))) {
+                        pm.hasPermission((String) user.get("role"), keys.get(random.nextInt(keys.size())));
+                    }
+                    if (n % VERIFY_EVERY == 0) verifySnapshots(step);
+                    break;
+                }
+                case BUILD: {
+                    String userId = random.nextInt(8) == 0 ? VERIFY_USER : userIds.get(random.nextInt(userIds.size()));
+                    try {
+                        UserContext ctx = builder.buildUserContext(userId);
+                        if (CANARY_ROLE.equals(ctx.getRole())
+                                && ctx.hasPermission(CANARY_KEY_A) != ctx.hasPermission(CANARY_KEY_B)) {
+                            step.violation("context for " + userId + " saw a torn canary pair");
+                        }
+                    } catch (RuntimeException e) {
+                        if (String.valueOf(e.getMessage()).contains("deactivated")) {
+                            step.rejected.incrementAndGet();
+                        } else {
+                            throw e;
+                        }
+                    }
+                    break;
+                }
+                case GRANT: {
+                    if (n % 2 == 0) {
+                        pm.grant(CANARY_ROLE, "bench.noise_" + random.nextInt(16), random.nextBoolean(), "bench");
+                    } else {
+                        boolean value = random.nextBoolean();
+                        pm.applyBatch(List.of(
+                                PermissionChange.set(CANARY_ROLE, CANARY_KEY_A, value),
+                                PermissionChange.set(CANARY_ROLE, CANARY_KEY_B, value)));
+                    }
+                    break;
+                }
+                case TOGGLE: {
+                    boolean active = random.nextBoolean();
+                    urm.applyBatch(List.of(
+                            UserChange.toggle(CANARY_USER_A, active),
+                            UserChange.toggle(CANARY_USER_B, active)));
+                    break;
+                }
+                case RELOAD: {
+                    pm.reload();
+                    urm.reload();
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            step.violation(op + " threw " + e);
+        }
+    }
+
+    /**
+     * Checks the canary pairs within one matrix version and one registry version.
+     */
+    private void verifySnapshots(Step step) {
+        Map<String, Boolean> canary = pm.snapshot().get(CANARY_ROLE);
+        if (canary == null) {
+            step.violation("canary role missing from matrix");
+        } else if (!canary.get(CANARY_KEY_A).equals(canary.get(CANARY_KEY_B))) {
+            step.violation("torn matrix: canary keys differ");
+        }
+        Map<String, Map<String, Object>> users = urm.getAllUsers();
+        Map<String, Object> a = users.get(CANARY_USER_A);
+        Map<String, Object> b = users.get(CANARY_USER_B);
+        if (a == null || b == null) {
+            step.violation("canary user missing from registry");
+        } else if (!a.get("active").equals(b.get("active"))) {
+            step.violation("torn registry: canary users differ");
+        }
+    }
+
+    // === Reporting ===
+
+    private static void report(List<Step> steps) {
+        double base = throughput(steps.get(0));
+        double best = 0;
+        for (Step s : steps) best = Math.max(best, throughput(s));
+
+        System.out.println("▶ Throughput");
+        System.out.println("  threads        ops/s   scaling");
+        for (Step s : steps) {
+            double ops = throughput(s);
+            System.out.printf("  %7d %12.0f   %6.2fx  %s%n", s.threads, ops, ops / base,
+                    "█".repeat((int) Math.round(30 * ops / best)));
+        }
+        System.out.println();
+
+        System.out.println("▶ Latency (µs): p50 / p99 / p99.9 / max");
+        for (Op op : Op.values()) {
+            System.out.println("  " + op.name().toLowerCase());
+            for (Step s : steps) {
+                Histogram h = s.latency.get(op);
+                if (h.count() == 0) continue;
+                System.out.printf("    %3d threads %,10d ops  %9.1f %9.1f %9.1f %10.1f%n", s.threads, h.count(),
+                        h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+            }
+        }
+        System.out.println();
+
+        System.out.println("▶ Consistency");
+        long total = 0;
+        for (Step s : steps) {
+            total += s.violations.get();
+            System.out.printf("  %3d threads: %d violation(s), %d expected deactivation rejects%s%n",
+                    s.threads, s.violations.get(), s.rejected.get(),
+                    s.firstViolation.get() != null ? " — first: " + s.firstViolation.get() : "");
+        }
+        System.out.println(total == 0 ? "✅ No violations observed." : "❌ " + total + " violation(s) observed.");
+    }
+
+    private static double throughput(Step s) {
+        return s.totalOps() * 1e9 / s.nanos;
+    }
+
+    private static Map<Op, Integer> parseMix(String spec) {
+        Map<Op, Integer> mix = new EnumMap<>(Op.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry (expected op=weight): " + part);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) mix.put(Op.valueOf(kv[0].trim().toUpperCase()), weight);
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no operations: " + spec);
+        }
+        return mix;
+    }
+
+    /**
+     * Log-linear latency histogram: 8 sub-buckets per power of two, so
+     * reported percentiles are within 12.5% of the true value.
+     * Single-writer; merged after each step.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private final long[] counts = new long[64 << SUB_BITS];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            long v = Math.max(1, nanos);
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = exp < SUB_BITS ? (int) v & ((1 << SUB_BITS) - 1)
+                    : (int) (v >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            counts[(exp << SUB_BITS) | sub]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /**
+         * @return upper bound of the bucket holding the given percentile, in ns
+         */
+        long percentile(double p) {
+            long target = (long) Math.ceil(count * p / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && counts[i] > 0) {
+                    int exp = i >>> SUB_BITS;
+                    int sub = i & ((1 << SUB_BITS) - 1);
+                    long upper = exp < SUB_BITS ? sub + 1
+                            : (((1L << SUB_BITS) | sub) + 1) << (exp - SUB_BITS);
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+// === src/main/java/demo/OffHeapBenchmark.java ===
+
+package demo;
+
+import core.OffHeapPolicyStore;
+import core.PermissionChecker;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * OffHeapBenchmark compares the on-heap policy layout (the boxed maps
+ * used by PermissionsManager / UserRegistryManager) with
+ * {@link OffHeapPolicyStore} on a synthetic deployment.
+ *
+ * For each layout it reports:
+ *   - retained heap after a full GC
+ *   - bytes held off-heap
+ *   - total time spent in full GCs while the policy is live
+ *   - check throughput
+ *
+ * Usage:
+ *   java -Xmx4g demo.OffHeapBenchmark [users] [roles] [keys]
+ *   (defaults: 1000000 users, 50 roles, 400 keys)
+ */
+public class OffHeapBenchmark {
+
+    private static final int FULL_GCS = 5;
+    private static final int CHECKS = 5_000_000;
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int roles = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int keys = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        System.out.printf("========= Off-heap benchmark: %,d users, %d roles, %d keys =========%n%n", users, roles, keys);
+
+        long baseline = retainedHeap();
+
+        // --- On-heap layout ---
+        Map<String, Map<String, Boolean>> matrix = matrix(roles, keys);
+        Map<String, Map<String, Object>> registry = registry(users, roles);
+        PermissionChecker onHeap = (userId, key) -> {
+            Map<String, Object> user = registry.get(userId);
+            if (user == null || !Boolean.TRUE.equals(user.get("active"))) return false;
+            return matrix.getOrDefault(user.get("role"), Map.of()).getOrDefault(key, false);
+        };
+        report("on-heap maps", onHeap, retainedHeap() - baseline, 0, users, keys);
+
+        // --- Off-heap layout (the maps are only needed to compile) ---
+        OffHeapPolicyStore store = OffHeapPolicyStore.build(matrix, registry);
+        registry.clear();
+        matrix.clear();
+        report("off-heap store", store, retainedHeap() - baseline, store.offHeapBytes(), users, keys);
+
+        System.out.println("================================================================");
+    }
+
+    private static void report(String name, PermissionChecker checker, long heap, long offHeap, int users, int keys) {
+        long gcMillis = fullGcMillis();
+        long nanos = checkNanos(checker, users, keys);
+        System.out.println("▶ " + name);
+        System.out.printf("  retained heap : %,10d KB%n", heap / 1024);
+        System.out.printf("  off-heap      : %,10d KB%n", offHeap / 1024);
+        System.out.printf("  %d full GCs   : %,10d ms%n", FULL_GCS, gcMillis);
+        System.out.printf("  check         : %,10.1f ns/op%n%n", (double) nanos / CHECKS);
+    }
+
+    private static Map<String, Map<String, Boolean>> matrix(int roles, int keys) {
+        Random random = new Random(42);
+        Map<String, Map<String, Boolean>> matrix = new LinkedHashMap<>();
+        for (int r = 0; r < roles; r++) {
+            Map<String, Boolean> perms = new LinkedHashMap<>();
+            for (int k = 0; k < keys; k++) {
+                perms.put("module" + (k % 20) + ".action_" + k, random.nextInt(4) == 0);
+            }
+            matrix.put("role_" + r, perms);
+        }
+        return matrix;
+    }
+
+    private static Map<String, Map<String, Object>> registry(int users, int roles) {
+        Map<String, Map<String, Object>> registry = new HashMap<>();
+        for (int u = 0; u < users; u++) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("role", "role_" + (u % roles));
+            user.put("client_id", "C" + (u % 1000));
+            user.put("active", u % 17 != 0);
+            registry.put("user_" + u, user);
+        }
+        return registry;
+    }
+
+    private static long checkNanos(PermissionChecker checker, int users, int keys) {
+        List<String> userIds = new ArrayList<>();
+        List<String> keyNames = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 4096; i++) {
+            userIds.add("user_" + random.nextInt(users));
+            int k = random.nextInt(keys);
+            keyNames.add("module" + (k % 20) + ".action_" + k);
+        }
+        int granted = 0;
+        for (int i = 0; i < CHECKS / 10; i++) {   // warm-up
+            if (checker.hasPermission(userIds.get(i & 4095), keyNames.get((i * 7) & 4095))) granted++;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < CHECKS; i++) {
+            if (checker.hasPermission(userIds.get(i & 4095), keyNames.get((i * 7) & 4095))) granted++;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (granted == -1) System.out.println();   // keep the loop alive
+        return elapsed;
+    }
+
+    private static long retainedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Forces several full collections and returns the GC time they took;
+     * this is dominated by tracing the live policy objects.
+     */
+    private static long fullGcMillis() {
+        long before = totalGcMillis();
+        for (int i = 0; i < FULL_GCS; i++) System.gc();
+        return totalGcMillis() - before;
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -2,12 +2,24 @@
 
 package demo;
 
+import audit.AuditQuery;
+import audit.AuditRecord;
 import context.ContextBuilder;
+import context.SessionRegistry;
+import core.Permissions;
 import core.PermissionsManager;
+import core.PolicyValidationException;
+import core.PermissionHandle;
+import core.PolicyValidator;
+import core.TimeBoundGrants;
+import daemon.DaemonClient;
 import model.UserContext;
+import trace.DecisionTrace;
 import users.UserRegistryManager;
 
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.Predicate;
 
 /**
  * RBACTestConsole simulates any role (auditor, risker, testengine, etc.)
@@ -15,49 +27,68 @@ import java.util.Scanner;
  *
  * Usage: java demo.RBACTestConsole <userId>
  * Or via Maven profile: mvn compile exec:java -Prisker
+ *
+ * If a {@link daemon.PolicyDaemon} is running, the console asks it instead
+ * of loading the policy itself.
  */
 public class RBACTestConsole {
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        PermissionsManager permissionsManager = new PermissionsManager();
-        UserRegistryManager userRegistryManager = new UserRegistryManager();
-        ContextBuilder builder = new ContextBuilder(permissionsManager, userRegistryManager);
-
         String userId = args.length > 0 ? args[0].trim() : null;
         if (userId == null || userId.isEmpty()) {
             System.out.print("Enter test user ID: ");
             userId = scanner.nextLine().trim();
         }
 
-        UserContext context = builder.buildUserContextWithLog(userId);
+        DaemonClient daemon = DaemonClient.connectIfRunning();
+        if (daemon != null) {
+            try (daemon) {
+                runRemote(daemon, userId, scanner);
+            }
+            return;
+        }
+
+        PermissionsManager permissionsManager;
+        UserRegistryManager userRegistryManager;
+        try {
+            permissionsManager = new PermissionsManager();
+            userRegistryManager = new UserRegistryManager();
+            PolicyValidator.validateOrThrow(permissionsManager, userRegistryManager);
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Policy is invalid, refusing to start. " + e.getMessage());
+            return;
+        }
+        // Nothing runs expiries while no daemon is up; catch up on what came due
+        TimeBoundGrants.expireOverdue(permissionsManager, userRegistryManager);
+        ContextBuilder builder = new ContextBuilder(permissionsManager, userRegistryManager);
+        DecisionTrace.installFromProperties(permissionsManager, userRegistryManager);
+        SessionRegistry sessions = new SessionRegistry(permissionsManager, userRegistryManager);
+
+        UserContext context = sessions.register(builder.buildUserContextWithLog(userId));
         System.out.println("👤 Context initialized for user: " + userId);
 
         while (true) {
             System.out.print("rbac> ");
             String input = scanner.nextLine().trim();
 
+            if (context.isRevoked()) {
+                System.out.println("⛔ Session for " + userId + " was revoked. Use 'switch <userId>' or exit.");
+            }
+
             if (input.equals("exit")) {
                 System.out.println("👋 Exiting test console.");
                 break;
             }
 
             if (input.equals("help")) {
-                System.out.println("🔧 Commands:");
-                System.out.println("  whoami            → show current user identity");
-                System.out.println("  permissions       → show all granted permissions");
-                System.out.println("  viewlog           → simulate audit log access");
-                System.out.println("  simulate-action   → simulate behavior based on role");
-                System.out.println("  can <perm>        → check permission explicitly");
-                System.out.println("  switch <userId>   → switch context to another user");
-                System.out.println("  help              → show available commands");
-                System.out.println("  exit              → quit console");
+                printHelp();
                 continue;
             }
 
             if (input.equals("whoami")) {
                 System.out.printf("👤 You are: %s | role=%s | client_id=%s%n",
-                        userId, context.getRole(), context.getClientId());
+                        userId, String.join(",", context.getRoles()), context.getClientId());
                 continue;
             }
 
@@ -70,12 +101,12 @@ public class RBACTestConsole {
             }
 
             if (input.equals("viewlog")) {
-                if (context.hasPermission("admin.view_action_logs") ||
-                    context.hasPermission("auditor.view_audit_decisions")) {
-                    System.out.println("📂 Simulated Logs:");
-                    System.out.println("  [2025-06-18 12:00:01] ALICE added user bob (role=auditor)");
-                    System.out.println("  [2025-06-18 12:03:45] BOB viewed portfolio A001");
-                    System.out.println("  [2025-06-18 12:05:11] DIANA flagged risk exposure on A888");
+                if (context.hasPermission(Permissions.ADMIN_VIEW_ACTION_LOGS) ||
+                    context.hasPermission(Permissions.AUDITOR_VIEW_AUDIT_DECISIONS)) {
+                    System.out.println("📂 Recent audit records:");
+                    for (AuditRecord r : permissionsManager.getAuditLog().query(new AuditQuery().limit(20))) {
+                        System.out.println("  " + r);
+                    }
                 } else {
                     System.out.println("⛔ Access denied: no permission to view logs.");
                 }
@@ -83,20 +114,12 @@ public class RBACTestConsole {
             }
 
             if (input.equals("simulate-action")) {
-                System.out.println("🎭 Simulating action based on permission:");
-                if (context.hasPermission("risk.trigger_killswitch")) {
-                    System.out.println("⚠️  Kill switch triggered.");
-                } else if (context.hasPermission("auditor.view_risk_triggers")) {
-                    System.out.println("📈 Viewing risk trigger timeline...");
-                } else if (context.hasPermission("quant.run_backtest")) {
-                    System.out.println("🔬 Backtest started on portfolio...");
-                } else if (context.hasPermission("compliance.review_alerts")) {
-                    System.out.println("🕵️ Reviewing compliance alerts.");
-                } else if (context.hasPermission("testengine.run_scenario")) {
-                    System.out.println("🧪 Test scenario executed.");
-                } else {
-                    System.out.println("🚫 No actionable permissions found.");
-                }
+                simulateAction(context::hasPermission);
+                continue;
+            }
+
+            if (input.startsWith("explain ")) {
+                System.out.println("🔎 " + builder.explain(userId, input.substring(8).trim()));
                 continue;
             }
 
@@ -113,7 +136,9 @@ public class RBACTestConsole {
                     System.out.println("⚠️  Usage: switch <userId>");
                     continue;
                 }
-                context = builder.buildUserContextWithLog(newUser);
+                UserContext next = sessions.register(builder.buildUserContextWithLog(newUser));
+                sessions.unregister(context);
+                context = next;
                 userId = newUser;
                 System.out.println("🔁 Switched context to: " + newUser);
                 continue;
@@ -122,4 +147,117 @@ public class RBACTestConsole {
             System.out.println("❓ Unknown command. Type 'help' for options.");
         }
     }
+
+    /**
+     * Runs the console against a {@link daemon.PolicyDaemon}: every
+     * command is one request, nothing is loaded locally.
+     */
+    private static void runRemote(DaemonClient daemon, String userId, Scanner scanner) {
+        List<String> context;
+        try {
+            context = daemon.request("CONTEXT " + userId);
+        } catch (IllegalStateException e) {
+            System.out.println("❌ " + e.getMessage());
+            return;
+        }
+        System.out.println("👤 Context initialized for user: " + userId + " (via daemon)");
+
+        while (true) {
+            System.out.print("rbac> ");
+            String input = scanner.nextLine().trim();
+            String current = userId;
+            Predicate<String> can = key -> "ALLOWED".equals(daemon.request("CHECK " + current + " " + key).get(0));
+
+            if (input.equals("exit")) {
+                System.out.println("👋 Exiting test console.");
+                break;
+            }
+
+            try {
+                if (input.equals("help")) {
+                    printHelp();
+                } else if (input.equals("whoami")) {
+                    context = daemon.request("CONTEXT " + userId);
+                    System.out.printf("👤 You are: %s | role=%s | client_id=%s%n",
+                            userId, field(context, "roles"), field(context, "client_id"));
+                } else if (input.equals("permissions")) {
+                    context = daemon.request("CONTEXT " + userId);
+                    System.out.println("🔑 Permissions for " + userId + ":");
+                    for (String line : context) {
+                        if (line.startsWith("+ ")) System.out.printf("  %s = true%n", line.substring(2));
+                    }
+                } else if (input.equals("viewlog")) {
+                    if (can.test(Permissions.ADMIN_VIEW_ACTION_LOGS.getKey()) ||
+                        can.test(Permissions.AUDITOR_VIEW_AUDIT_DECISIONS.getKey())) {
+                        System.out.println("📂 Recent audit records:");
+                        for (String r : daemon.request("AUDIT 20")) {
+                            System.out.println("  " + r);
+                        }
+                    } else {
+                        System.out.println("⛔ Access denied: no permission to view logs.");
+                    }
+                } else if (input.equals("simulate-action")) {
+                    simulateAction(handle -> can.test(handle.getKey()));
+                } else if (input.startsWith("explain ")) {
+                    List<String> explanation = daemon.request("EXPLAIN " + userId + " " + input.substring(8).trim());
+                    System.out.println("🔎 " + userId + " " + input.substring(8).trim() + " → " + explanation.get(0));
+                    for (String step : explanation.subList(1, explanation.size())) {
+                        System.out.println("  - " + step);
+                    }
+                } else if (input.startsWith("can ")) {
+                    System.out.println(can.test(input.substring(4).trim()) ? "✅ ALLOWED" : "⛔ DENIED");
+                } else if (input.startsWith("switch ")) {
+                    String newUser = input.substring(7).trim();
+                    if (newUser.isEmpty()) {
+                        System.out.println("⚠️  Usage: switch <userId>");
+                        continue;
+                    }
+                    context = daemon.request("CONTEXT " + newUser);
+                    userId = newUser;
+                    System.out.println("🔁 Switched context to: " + newUser);
+                } else {
+                    System.out.println("❓ Unknown command. Type 'help' for options.");
+                }
+            } catch (IllegalStateException e) {
+                System.out.println("❌ " + e.getMessage());
+            }
+        }
+    }
+
+    private static String field(List<String> context, String name) {
+        for (String line : context) {
+            if (line.startsWith(name + " ")) return line.substring(name.length() + 1);
+        }
+        return null;
+    }
+
+    private static void printHelp() {
+        System.out.println("🔧 Commands:");
+        System.out.println("  whoami            → show current user identity");
+        System.out.println("  permissions       → show all granted permissions");
+        System.out.println("  viewlog           → show recent audit records");
+        System.out.println("  simulate-action   → simulate behavior based on role");
+        System.out.println("  can <perm>        → check permission explicitly");
+        System.out.println("  explain <perm>    → show why a permission is allowed or denied");
+        System.out.println("  switch <userId>   → switch context to another user");
+        System.out.println("  help              → show available commands");
+        System.out.println("  exit              → quit console");
+    }
+
+    private static void simulateAction(Predicate<PermissionHandle> can) {
+        System.out.println("🎭 Simulating action based on permission:");
+        if (can.test(Permissions.RISKER_TRIGGER_GLOBAL_KILLSWITCH)) {
+            System.out.println("⚠️  Kill switch triggered.");
+        } else if (can.test(Permissions.AUDITOR_VIEW_RISK_TRIGGERS)) {
+            System.out.println("📈 Viewing risk trigger timeline...");
+        } else if (can.test(Permissions.QUANT_RESEARCHER_RUN_STRATEGY)) {
+            System.out.println("🔬 Backtest started on portfolio...");
+        } else if (can.test(Permissions.COMPLIANCE_OFFICER_VIEW_OVERRIDES)) {
+            System.out.println("🕵️ Reviewing compliance alerts.");
+        } else if (can.test(Permissions.TESTENGINE_RUN_TEST)) {
+            System.out.println("🧪 Test scenario executed.");
+        } else {
+            System.out.println("🚫 No actionable permissions found.");
+        }
+    }
 }
@@ -3,10 +3,15 @@
 package demo;
 
 import context.ContextBuilder;
+import core.EffectivePermissionView;
+import core.PermissionIndex;
 import core.PermissionsManager;
-import model.UserContext;
+import core.PolicyValidationException;
+import core.PolicyValidator;
+import core.RoleSets;
+import core.TimeBoundGrants;
+import daemon.DaemonClient;
 import users.UserRegistryManager;
-import utils.YamlLoader;
 
 import java.util.*;
 
@@ -24,6 +29,9 @@ import java.util.*;
  * - Verifying YAML-based access control configurations
  * - Demonstrating role-permission mappings
  * - Auditing expected vs actual access outcomes
+ *
+ * If a {@link daemon.PolicyDaemon} is running, the matrix is fetched from
+ * it instead of loading the policy in this JVM.
  */
 public class RunAllUsers {
 
@@ -32,29 +40,57 @@ public class RunAllUsers {
     private static final String RESET = "\u001B[0m";
 
     public static void main(String[] args) {
-        PermissionsManager permissionsManager = new PermissionsManager();
-        UserRegistryManager userRegistryManager = new UserRegistryManager();
+        try (DaemonClient daemon = DaemonClient.connectIfRunning()) {
+            if (daemon != null) {
+                printRemoteMatrix(daemon.request("MATRIX"));
+                return;
+            }
+        }
+
+        PermissionsManager permissionsManager;
+        UserRegistryManager userRegistryManager;
+        try {
+            permissionsManager = new PermissionsManager();
+            userRegistryManager = new UserRegistryManager();
+            PolicyValidator.validateOrThrow(permissionsManager, userRegistryManager);
+        } catch (PolicyValidationException e) {
+            System.out.println("❌ Policy is invalid. " + e.getMessage());
+            return;
+        }
+        // Nothing runs expiries while no daemon is up; catch up on what came due
+        TimeBoundGrants.expireOverdue(permissionsManager, userRegistryManager);
         ContextBuilder contextBuilder = new ContextBuilder(permissionsManager, userRegistryManager);
+        EffectivePermissionView view = new EffectivePermissionView(permissionsManager, userRegistryManager);
+        PermissionIndex index = view.getIndex();
 
         // Load all users and permissions from configuration
         Set<String> allUsers = userRegistryManager.getAllUserIds();       // <- requires method: getAllUserIds()
-        Set<String> allPermissions = YamlLoader.loadAllPermissions();     // <- requires method: loadAllPermissions()
+        Set<String> allPermissions = new TreeSet<>();
+        for (Map<String, Boolean> perms : permissionsManager.snapshot().values()) {
+            for (String key : perms.keySet()) {
+                if (!RoleSets.isDeny(key)) allPermissions.add(key);   // "!key" entries only veto grants
+            }
+        }
 
         System.out.println("========= RBAC Permission Matrix =========\n");
 
         for (String userId : allUsers) {
             System.out.println("👤 User: " + userId);
 
-            UserContext context;
-            try {
-                context = contextBuilder.buildUserContext(userId);
-            } catch (RuntimeException e) {
-                printWithColor("  [Error] " + e.getMessage(), RED);
+            // Read straight from the materialized view; only users missing from
+            // it (unknown, inactive, bad role) go through ContextBuilder for the reason.
+            EffectivePermissionView.Entry entry = view.get(userId);
+            if (entry == null) {
+                try {
+                    contextBuilder.buildUserContext(userId);
+                } catch (RuntimeException e) {
+                    printWithColor("  [Error] " + e.getMessage(), RED);
+                }
                 continue;
             }
 
             for (String permission : allPermissions) {
-                boolean allowed = context.hasPermission(permission);
+                boolean allowed = entry.getPermissions().contains(index.lookup(permission));
                 if (allowed) {
                     printWithColor("    ✔ " + permission, GREEN);
                 } else {
@@ -68,6 +104,36 @@ public class RunAllUsers {
         System.out.println("==========================================");
     }
 
+    /**
+     * Prints the matrix as returned by the daemon's MATRIX request.
+     *
+     * @param lines "U user", then "+ key"/"- key" or "E error" per user
+     */
+    private static void printRemoteMatrix(List<String> lines) {
+        System.out.println("========= RBAC Permission Matrix =========\n");
+        boolean first = true;
+        for (String line : lines) {
+            String value = line.substring(2);
+            switch (line.charAt(0)) {
+                case 'U':
+                    if (!first) System.out.println();
+                    first = false;
+                    System.out.println("👤 User: " + value);
+                    break;
+                case 'E':
+                    printWithColor("  [Error] " + value, RED);
+                    break;
+                case '+':
+                    printWithColor("    ✔ " + value, GREEN);
+                    break;
+                default:
+                    printWithColor("    ✘ " + value, RED);
+            }
+        }
+        System.out.println();
+        System.out.println("==========================================");
+    }
+
     /**
      * Prints a line to the console using ANSI color codes.
      *
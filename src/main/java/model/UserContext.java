@@ -2,24 +2,57 @@
 
 package model;
 
+import core.PermissionHandle;
+import core.PermissionIndex;
+import core.PermissionSet;
+import trace.DecisionTrace;
+import trace.TraceReason;
+
+import java.util.List;
 import java.util.Map;
 
 /**
  * UserContext represents the runtime identity of a user during a request or session.
  * It contains:
  * - userId: the username or login ID
- * - role: the role assigned to the user (e.g., admin, trader)
+ * - roles: the roles assigned to the user (e.g., admin, or trader + reporter)
  * - clientId: (optional) the client or account the user is operating under
- * - permissions: the resolved map of permission keys → boolean (granted or not)
+ * - permissions: the resolved map of permission keys → boolean (granted or not);
+ *   for several roles, the union of their grants minus their explicit denies
  *
  * This class is the core object for access control checks during execution.
+ *
+ * A context starts as a snapshot, but when registered with a
+ * context.SessionRegistry it is kept live: role changes swap in the new
+ * permissions and deactivation revokes it. Roles, permissions and the
+ * compiled bitset are published together as one immutable state, so a
+ * check is a single volatile read plus the lookup.
+ *
+ * Denied checks (and sampled allowed ones) are reported to the installed
+ * {@link DecisionTrace}, if any.
  */
 public class UserContext {
 
+    /**
+     * Roles and permissions as of the last push.
+     */
+    private static final class State {
+        final List<String> roles;
+        final Map<String, Boolean> permissions;
+        final PermissionSet granted;   // same permissions, compiled against the default index
+        final boolean revoked;
+
+        State(List<String> roles, Map<String, Boolean> permissions, boolean revoked) {
+            this.roles = roles;
+            this.permissions = permissions;
+            this.granted = PermissionSet.of(permissions, PermissionIndex.getDefault());
+            this.revoked = revoked;
+        }
+    }
+
     private final String userId;
-    private final String role;
-    private final Map<String, Boolean> permissions;
     private final String clientId;
+    private volatile State state;
 
     /**
      * Constructor for a complete user context snapshot.
@@ -30,10 +63,21 @@ public class UserContext {
      * @param clientId   client/account context (optional)
      */
     public UserContext(String userId, String role, Map<String, Boolean> permissions, String clientId) {
+        this(userId, role != null ? List.of(role) : List.of(), permissions, clientId);
+    }
+
+    /**
+     * Constructor for a user holding several roles.
+     *
+     * @param userId      the user ID
+     * @param roles       the assigned roles, in declared order
+     * @param permissions effective permissions of the role combination
+     * @param clientId    client/account context (optional)
+     */
+    public UserContext(String userId, List<String> roles, Map<String, Boolean> permissions, String clientId) {
         this.userId = userId;
-        this.role = role;
-        this.permissions = permissions;
         this.clientId = clientId;
+        this.state = new State(List.copyOf(roles), permissions, false);
     }
 
     /**
@@ -43,7 +87,72 @@ public class UserContext {
      * @return true if granted; false otherwise
      */
     public boolean hasPermission(String key) {
-        return permissions.getOrDefault(key, false);
+        State s = state;
+        Boolean granted = s.permissions.get(key);
+        if (Boolean.TRUE.equals(granted)) {
+            DecisionTrace.allowed(userId, key);
+            return true;
+        }
+        DecisionTrace.denied(s.revoked ? TraceReason.SESSION_REVOKED
+                : granted == null ? TraceReason.UNKNOWN_KEY : TraceReason.NOT_GRANTED, userId, key);
+        return false;
+    }
+
+    /**
+     * Checks a permission by its generated handle (see core.Permissions).
+     * No hashing and no allocation: a single bit test.
+     *
+     * @param permission the permission handle
+     * @return true if granted; false otherwise
+     */
+    public boolean hasPermission(PermissionHandle permission) {
+        State s = state;
+        if (s.granted.contains(permission.getId())) {
+            DecisionTrace.allowed(userId, permission.getKey());
+            return true;
+        }
+        DecisionTrace.denied(s.revoked ? TraceReason.SESSION_REVOKED : TraceReason.NOT_GRANTED,
+                userId, permission.getKey());
+        return false;
+    }
+
+    /**
+     * Swaps in a new role and permission map (pushed by the session registry).
+     * Has no effect once the context is revoked.
+     *
+     * @param role        the user's current role
+     * @param permissions the role's current permissions
+     */
+    public void update(String role, Map<String, Boolean> permissions) {
+        update(List.of(role), permissions);
+    }
+
+    /**
+     * Swaps in new roles and their effective permissions. Has no effect
+     * once the context is revoked.
+     *
+     * @param roles       the user's current roles
+     * @param permissions effective permissions of those roles
+     */
+    public synchronized void update(List<String> roles, Map<String, Boolean> permissions) {
+        if (!state.revoked) {
+            state = new State(List.copyOf(roles), permissions, false);
+        }
+    }
+
+    /**
+     * Revokes this context: every later check is denied. A revoked context
+     * cannot be revived; the user has to build a new one.
+     */
+    public synchronized void revoke() {
+        state = new State(state.roles, Map.of(), true);
+    }
+
+    /**
+     * @return true if the context was revoked (user deactivated, removed or role dropped)
+     */
+    public boolean isRevoked() {
+        return state.revoked;
     }
 
     // === Getters ===
@@ -56,17 +165,25 @@ public class UserContext {
     }
 
     /**
-     * @return role name
+     * @return the first (primary) role name, or null if none
      */
     public String getRole() {
-        return role;
+        List<String> roles = state.roles;
+        return roles.isEmpty() ? null : roles.get(0);
+    }
+
+    /**
+     * @return all role names, in declared order
+     */
+    public List<String> getRoles() {
+        return state.roles;
     }
 
     /**
      * @return permission map (read-only usage)
      */
     public Map<String, Boolean> getPermissions() {
-        return permissions;
+        return state.permissions;
     }
 
     /**
@@ -83,11 +200,13 @@ public class UserContext {
      */
     @Override
     public String toString() {
+        State s = state;
         return "UserContext{" +
                 "userId='" + userId + '\'' +
-                ", role='" + role + '\'' +
+                ", roles=" + s.roles +
                 ", clientId='" + clientId + '\'' +
-                ", permissions=" + permissions.keySet() +
+                ", permissions=" + s.permissions.keySet() +
+                (s.revoked ? ", revoked" : "") +
                 '}';
     }
 }
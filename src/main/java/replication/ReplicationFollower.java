@@ -0,0 +1,251 @@
+// === src/main/java/replication/ReplicationFollower.java ===
+
+package replication;
+
+import core.PermissionsManager;
+import users.UserRegistryManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * ReplicationFollower keeps a node's managers in step with a
+ * {@link ReplicationLeader}.
+ *
+ * It connects, tells the leader which epoch/version it already has, and
+ * then applies frames in order through the normal manager entry points
+ * (applyBatch, importPermissions, importRegistry), so local listeners,
+ * views and sessions update exactly as they would for a local change,
+ * and the local YAML files are rewritten to match. Each applied version
+ * is acknowledged back to the leader.
+ *
+ * If the connection drops, it reconnects with backoff and resumes from
+ * its last applied version (or takes a fresh snapshot if the leader has
+ * restarted or no longer holds that version). A follower should not take
+ * local admin writes; they would be overwritten by the next snapshot.
+ *
+ * Nothing is applied until the leader has proved it holds the same shared
+ * secret (see {@link ReplicationProtocol}).
+ *
+ * Usage:
+ *   ReplicationFollower follower = ReplicationFollower.connect(pm, urm, "leader-host:7700");
+ *   ...
+ *   follower.close();
+ */
+public class ReplicationFollower implements Closeable {
+
+    private static final long MIN_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final Thread worker;
+
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private long epoch;              // written only by the worker thread
+    private volatile long appliedVersion;
+
+    /**
+     * Starts following a leader with the configured shared secret
+     * (rbac.replication.secret or RBAC_REPLICATION_SECRET).
+     *
+     * @param pm   local permission matrix to keep in sync
+     * @param urm  local user registry to keep in sync
+     * @param host leader host
+     * @param port leader replication port
+     */
+    public ReplicationFollower(PermissionsManager pm, UserRegistryManager urm, String host, int port) {
+        this(pm, urm, host, port, ReplicationProtocol.defaultSecret());
+    }
+
+    /**
+     * Starts following a leader.
+     *
+     * @param pm     local permission matrix to keep in sync
+     * @param urm    local user registry to keep in sync
+     * @param host   leader host
+     * @param port   leader replication port
+     * @param secret shared secret, or null if the leader has none
+     */
+    public ReplicationFollower(PermissionsManager pm, UserRegistryManager urm, String host, int port, String secret) {
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        this.worker = new Thread(this::run, "rbac-replication-follower");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Starts following a leader given as "host:port".
+     *
+     * @param pm      local permission matrix to keep in sync
+     * @param urm     local user registry to keep in sync
+     * @param address leader address, e.g. "10.0.0.5:7700"
+     * @return the running follower
+     */
+    public static ReplicationFollower connect(PermissionsManager pm, UserRegistryManager urm, String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Expected host:port, got: " + address);
+        }
+        return new ReplicationFollower(pm, urm, address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /**
+     * @return the leader's version this node has applied (0 before the first snapshot)
+     */
+    public long getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    /**
+     * @return true while a connection to the leader is open
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return the leader address as "host:port"
+     */
+    public String getLeaderAddress() {
+        return host + ":" + port;
+    }
+
+    /**
+     * Waits until at least the given version has been applied.
+     *
+     * @param version       leader version to wait for
+     * @param timeoutMillis maximum wait
+     * @return true if reached, false on timeout
+     */
+    public synchronized boolean awaitVersion(long version, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (appliedVersion < version) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects and stops reconnecting. The local policy keeps its last state.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+        worker.interrupt();
+    }
+
+    // === Internals ===
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            try (Socket s = new Socket(host, port)) {
+                socket = s;
+                s.setTcpNoDelay(true);
+                connected = true;
+                backoff = MIN_BACKOFF_MILLIS;
+                follow(s);
+            } catch (IOException | RuntimeException e) {
+                // report the first failure of a streak, not every retry
+                if (!closed && !(e instanceof EOFException) && backoff == MIN_BACKOFF_MILLIS) {
+                    System.err.println("⚠️  Replication link to " + getLeaderAddress() + " lost: " + e.getMessage());
+                }
+            } finally {
+                connected = false;
+                socket = null;
+            }
+            if (closed) break;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        if (in.readByte() != ReplicationProtocol.CHALLENGE) {
+            throw new IOException("Expected CHALLENGE from " + getLeaderAddress());
+        }
+        byte[] leaderNonce = ReplicationProtocol.readBytes(in, ReplicationProtocol.NONCE_BYTES);
+        byte[] followerNonce = ReplicationProtocol.nonce();
+        out.writeByte(ReplicationProtocol.HELLO);
+        out.writeLong(epoch);
+        out.writeLong(appliedVersion);
+        out.write(followerNonce);
+        out.write(ReplicationProtocol.proof(secret, ReplicationProtocol.HELLO, leaderNonce, followerNonce));
+        out.flush();
+        if (in.readByte() != ReplicationProtocol.WELCOME
+                || !ReplicationProtocol.verify(secret, ReplicationProtocol.WELCOME, leaderNonce, followerNonce,
+                        ReplicationProtocol.readBytes(in, ReplicationProtocol.PROOF_BYTES))) {
+            throw new IOException("Leader " + getLeaderAddress() + " failed authentication");
+        }
+
+        while (!closed) {
+            byte type = in.readByte();
+            long version = in.readLong();
+            switch (type) {
+                case ReplicationProtocol.PERMISSIONS:
+                    permissionsManager.applyBatch(ReplicationProtocol.readPermissions(in));
+                    break;
+                case ReplicationProtocol.USERS:
+                    userRegistry.applyBatch(ReplicationProtocol.readUsers(in));
+                    break;
+                case ReplicationProtocol.MATRIX:
+                    permissionsManager.importPermissions(ReplicationProtocol.readMatrix(in));
+                    break;
+                case ReplicationProtocol.REGISTRY:
+                    userRegistry.importRegistry(ReplicationProtocol.readRegistry(in));
+                    break;
+                case ReplicationProtocol.SNAPSHOT:
+                    long leaderEpoch = in.readLong();
+                    permissionsManager.importPermissions(ReplicationProtocol.readMatrix(in));
+                    userRegistry.importRegistry(ReplicationProtocol.readRegistry(in));
+                    epoch = leaderEpoch;
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame type: " + type);
+            }
+            synchronized (this) {
+                appliedVersion = version;
+                notifyAll();
+            }
+            // Ack only when nothing else is already buffered, so a burst
+            // costs one ack instead of one per frame.
+            if (in.available() == 0) {
+                out.writeByte(ReplicationProtocol.ACK);
+                out.writeLong(version);
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+// === src/main/java/replication/ReplicationLeader.java ===
+
+package replication;
+
+import core.PermissionChange;
+import core.PermissionChangeListener;
+import core.PermissionsManager;
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ReplicationLeader ships every change made to its managers, in order, to
+ * any number of {@link ReplicationFollower}s connected over TCP.
+ *
+ * Each published change (a grant batch, a user batch, or a reload) gets
+ * the next version number and is encoded once into a ring of the last
+ * {@code logCapacity} frames. A follower says which version it has; it is
+ * streamed the frames after that, or sent a full snapshot first if it is
+ * new, comes from an earlier leader run (different epoch), or has fallen
+ * out of the ring. Followers acknowledge every version they apply, which
+ * is reported by {@link #getFollowerVersions()}.
+ *
+ * Frames are built on the writer thread (cheap, under this leader's lock)
+ * and sent by one thread per follower, so a slow follower never holds up
+ * grants on the leader. A snapshot is captured under the lock but
+ * encoded by the follower's thread outside it.
+ *
+ * The leader listens on rbac.replication.bind (loopback by default) and
+ * only streams to followers that prove they hold the shared secret
+ * (rbac.replication.secret or RBAC_REPLICATION_SECRET), proving the same
+ * in return (see {@link ReplicationProtocol}). Listening on any other
+ * address requires a secret.
+ *
+ * Usage:
+ *   ReplicationLeader leader = new ReplicationLeader(pm, urm, 7700);
+ *   ...
+ *   leader.close();
+ */
+public class ReplicationLeader implements PermissionChangeListener, UserChangeListener, Closeable {
+
+    public static final int DEFAULT_LOG_CAPACITY = 10_000;
+
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+    private final PermissionsManager permissionsManager;
+    private final UserRegistryManager userRegistry;
+    private final ServerSocket server;
+    private final String secret;
+    private final long epoch;
+
+    // Guarded by this. Frame for version v lives at ring[v % ring.length].
+    private final byte[][] ring;
+    private long version;
+
+    private final Map<String, Long> followerVersions = new ConcurrentHashMap<>();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Starts a leader with the default log capacity.
+     *
+     * @param pm   permission matrix to replicate
+     * @param urm  user registry to replicate
+     * @param port TCP port to listen on (0 picks a free port)
+     */
+    public ReplicationLeader(PermissionsManager pm, UserRegistryManager urm, int port) {
+        this(pm, urm, port, DEFAULT_LOG_CAPACITY);
+    }
+
+    /**
+     * Starts a leader on the configured bind address and secret.
+     *
+     * @param pm          permission matrix to replicate
+     * @param urm         user registry to replicate
+     * @param port        TCP port to listen on (0 picks a free port)
+     * @param logCapacity number of recent frames kept for catch-up
+     */
+    public ReplicationLeader(PermissionsManager pm, UserRegistryManager urm, int port, int logCapacity) {
+        this(pm, urm, defaultBindAddress(), port, logCapacity, ReplicationProtocol.defaultSecret());
+    }
+
+    /**
+     * Starts a leader.
+     *
+     * @param pm          permission matrix to replicate
+     * @param urm         user registry to replicate
+     * @param bindAddress local address to listen on
+     * @param port        TCP port to listen on (0 picks a free port)
+     * @param logCapacity number of recent frames kept for catch-up
+     * @param secret      shared secret followers must prove, or null (loopback only)
+     * @throws IllegalArgumentException if a non-loopback address has no secret
+     */
+    public ReplicationLeader(PermissionsManager pm, UserRegistryManager urm, InetAddress bindAddress, int port,
+                             int logCapacity, String secret) {
+        if (logCapacity < 1) {
+            throw new IllegalArgumentException("logCapacity must be positive");
+        }
+        if (secret == null && !bindAddress.isLoopbackAddress()) {
+            throw new IllegalArgumentException("Listening on " + bindAddress.getHostAddress()
+                    + " needs a shared secret (rbac.replication.secret)");
+        }
+        this.permissionsManager = pm;
+        this.userRegistry = urm;
+        this.secret = secret;
+        this.ring = new byte[logCapacity][];
+        long e;
+        do {
+            e = ThreadLocalRandom.current().nextLong();
+        } while (e == 0);   // 0 means "no epoch yet" on followers
+        this.epoch = e;
+        try {
+            this.server = new ServerSocket(port, 50, bindAddress);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot listen on " + bindAddress.getHostAddress() + ":" + port, ex);
+        }
+        pm.addChangeListener(this);
+        urm.addChangeListener(this);
+        Thread acceptor = new Thread(this::acceptLoop, "rbac-replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return rbac.replication.bind, or the loopback address if unset
+     * @throws IllegalArgumentException if the configured address cannot be resolved
+     */
+    public static InetAddress defaultBindAddress() {
+        String configured = System.getProperty("rbac.replication.bind");
+        if (configured == null) return InetAddress.getLoopbackAddress();
+        try {
+            return InetAddress.getByName(configured);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown rbac.replication.bind address: " + configured, e);
+        }
+    }
+
+    /**
+     * @return the port followers connect to
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the version of the last published change
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return applied version of each connected follower, keyed by remote address
+     */
+    public Map<String, Long> getFollowerVersions() {
+        return new TreeMap<>(followerVersions);
+    }
+
+    /**
+     * Stops listening, disconnects followers and stops following the managers.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        permissionsManager.removeChangeListener(this);
+        userRegistry.removeChangeListener(this);
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    // === Listener callbacks ===
+
+    @Override
+    public synchronized void onPermissionsChanged(List<PermissionChange> changes) {
+        append(ReplicationProtocol.permissions(version + 1, changes));
+    }
+
+    @Override
+    public synchronized void onMatrixReloaded(Map<String, Map<String, Boolean>> matrix) {
+        append(ReplicationProtocol.matrix(version + 1, matrix));
+    }
+
+    @Override
+    public synchronized void onUsersChanged(List<UserChange> changes) {
+        append(ReplicationProtocol.users(version + 1, changes));
+    }
+
+    @Override
+    public synchronized void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+        append(ReplicationProtocol.registry(version + 1, registry));
+    }
+
+    // === Internals ===
+
+    private void append(byte[] frame) {
+        version++;
+        ring[(int) (version % ring.length)] = frame;
+        notifyAll();
+    }
+
+    /**
+     * @return oldest version still in the ring
+     */
+    private long oldest() {
+        return Math.max(1, version - ring.length + 1);
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread sender = new Thread(() -> serve(socket), "rbac-replication-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("⚠️  Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handshake, then streams frames to one follower until it disconnects.
+     */
+    private void serve(Socket socket) {
+        String name = socket.getRemoteSocketAddress().toString();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            byte[] leaderNonce = ReplicationProtocol.nonce();
+            out.writeByte(ReplicationProtocol.CHALLENGE);
+            out.write(leaderNonce);
+            out.flush();
+            if (in.readByte() != ReplicationProtocol.HELLO) {
+                throw new IOException("Expected HELLO from " + name);
+            }
+            long followerEpoch = in.readLong();
+            long followerVersion = in.readLong();
+            byte[] followerNonce = ReplicationProtocol.readBytes(in, ReplicationProtocol.NONCE_BYTES);
+            byte[] proof = ReplicationProtocol.readBytes(in, ReplicationProtocol.PROOF_BYTES);
+            if (!ReplicationProtocol.verify(secret, ReplicationProtocol.HELLO, leaderNonce, followerNonce, proof)) {
+                throw new IOException("Follower " + name + " failed authentication");
+            }
+            out.writeByte(ReplicationProtocol.WELCOME);
+            out.write(ReplicationProtocol.proof(secret, ReplicationProtocol.WELCOME, leaderNonce, followerNonce));
+            out.flush();
+            socket.setSoTimeout(0);
+            followerVersions.put(name, followerVersion);
+
+            Thread acks = new Thread(() -> readAcks(socket, in, name), "rbac-replication-acks-" + name);
+            acks.setDaemon(true);
+            acks.start();
+
+            long sent = followerEpoch == epoch ? followerVersion : -1;
+            while (!closed) {
+                List<byte[]> frames = new ArrayList<>();
+                Map<String, Map<String, Boolean>> matrix = null;
+                Map<String, Map<String, Object>> registry = null;
+                synchronized (this) {
+                    while (!closed && !socket.isClosed() && sent == version) {
+                        wait();
+                    }
+                    if (closed || socket.isClosed()) break;
+                    if (sent < oldest() - 1 || sent > version) {
+                        // Capture only; encoding the whole policy here would hold up writers.
+                        matrix = permissionsManager.snapshot();
+                        registry = userRegistry.getAllUsers();
+                    } else {
+                        for (long v = sent + 1; v <= version; v++) {
+                            frames.add(ring[(int) (v % ring.length)]);
+                        }
+                    }
+                    sent = version;
+                }
+                if (matrix != null) {
+                    frames.add(ReplicationProtocol.snapshot(sent, epoch, matrix, registry));
+                }
+                for (byte[] frame : frames) {
+                    out.write(frame);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!closed && !(e instanceof SocketException)) {
+                System.err.println("⚠️  Replication to " + name + " failed: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followerVersions.remove(name);
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void readAcks(Socket socket, DataInputStream in, String name) {
+        try {
+            while (in.readByte() == ReplicationProtocol.ACK) {
+                followerVersions.put(name, in.readLong());
+            }
+        } catch (IOException ignored) {
+            // connection closed
+        }
+        // wake the sender so it notices and cleans up
+        closeQuietly(socket);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// === src/main/java/replication/ReplicationProtocol.java ===
+
+package replication;
+
+import core.PermissionChange;
+import core.RoleSets;
+import users.UserChange;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReplicationProtocol defines the frames exchanged between a leader and
+ * its followers over one TCP connection.
+ *
+ * Handshake, before any policy is sent or applied:
+ *   leader → follower  CHALLENGE nonce
+ *   follower → leader  HELLO epoch:long version:long nonce proof
+ *   leader → follower  WELCOME proof
+ * Nonces are 16 random bytes. Each proof is an HMAC-SHA256, keyed with
+ * the shared secret, of the sender's message type and both nonces, so it
+ * cannot be replayed on another connection or reflected back. Either side
+ * hangs up on a wrong proof.
+ *
+ * Follower → leader afterwards:
+ *   ACK    version:long              sent after each frame is applied
+ *
+ * Leader → follower, every frame starts with type:byte version:long:
+ *   PERMISSIONS  a batch of PermissionChanges
+ *   USERS        a batch of UserChanges
+ *   MATRIX       a full role-permission matrix (leader reloaded it)
+ *   REGISTRY     a full user registry (leader reloaded it)
+ *   SNAPSHOT     epoch:long, then a matrix and a registry
+ *
+ * Every delta carries absolute values (set/remove a key, add/toggle a
+ * user), so applying one twice is harmless.
+ */
+final class ReplicationProtocol {
+
+    static final byte CHALLENGE = 'C';
+    static final byte HELLO = 'H';
+    static final byte WELCOME = 'W';
+    static final byte ACK = 'A';
+    static final byte PERMISSIONS = 'P';
+    static final byte USERS = 'U';
+    static final byte MATRIX = 'M';
+    static final byte REGISTRY = 'R';
+    static final byte SNAPSHOT = 'S';
+
+    private static final byte REVOKE = 0;
+    private static final byte GRANT = 1;
+    private static final byte REMOVE = 2;
+
+    static final int NONCE_BYTES = 16;
+    static final int PROOF_BYTES = 32;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ReplicationProtocol() {
+    }
+
+    // === Handshake ===
+
+    /**
+     * @return the shared secret from rbac.replication.secret or the
+     *         RBAC_REPLICATION_SECRET environment variable, or null if neither is set
+     */
+    static String defaultSecret() {
+        String secret = System.getProperty("rbac.replication.secret");
+        return secret != null ? secret : System.getenv("RBAC_REPLICATION_SECRET");
+    }
+
+    static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * @param secret shared secret, or null if none is configured (loopback only)
+     * @param type   the message carrying the proof (HELLO or WELCOME)
+     */
+    static byte[] proof(String secret, byte type, byte[] leaderNonce, byte[] followerNonce) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            // The label keeps the key non-empty when no secret is configured.
+            byte[] key = ("rbac-replication:" + (secret != null ? secret : "")).getBytes(StandardCharsets.UTF_8);
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            mac.update(type);
+            mac.update(leaderNonce);
+            mac.update(followerNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute replication handshake proof", e);
+        }
+    }
+
+    /**
+     * @return true if proof is the one {@link #proof} computes, compared in constant time
+     */
+    static boolean verify(String secret, byte type, byte[] leaderNonce, byte[] followerNonce, byte[] proof) {
+        return MessageDigest.isEqual(proof(secret, type, leaderNonce, followerNonce), proof);
+    }
+
+    static byte[] readBytes(DataInputStream in, int n) throws IOException {
+        byte[] bytes = new byte[n];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    // === Encoding (leader) ===
+
+    static byte[] permissions(long version, List<PermissionChange> changes) {
+        return frame(PERMISSIONS, version, out -> {
+            out.writeInt(changes.size());
+            for (PermissionChange change : changes) {
+                out.writeUTF(change.getRole());
+                out.writeUTF(change.getKey());
+                out.writeByte(change.isRemoval() ? REMOVE : change.getValue() ? GRANT : REVOKE);
+            }
+        });
+    }
+
+    static byte[] users(long version, List<UserChange> changes) {
+        return frame(USERS, version, out -> {
+            out.writeInt(changes.size());
+            for (UserChange change : changes) {
+                out.writeByte(change.getKind().ordinal());
+                out.writeUTF(change.getUserId());
+                if (change.getKind() == UserChange.Kind.ADD) {
+                    writeRoles(out, change.getRoles());
+                    writeNullable(out, change.getClientId());
+                }
+                out.writeBoolean(change.isActive());
+            }
+        });
+    }
+
+    static byte[] matrix(long version, Map<String, Map<String, Boolean>> matrix) {
+        return frame(MATRIX, version, out -> writeMatrix(out, matrix));
+    }
+
+    static byte[] registry(long version, Map<String, Map<String, Object>> registry) {
+        return frame(REGISTRY, version, out -> writeRegistry(out, registry));
+    }
+
+    static byte[] snapshot(long version, long epoch,
+                           Map<String, Map<String, Boolean>> matrix,
+                           Map<String, Map<String, Object>> registry) {
+        return frame(SNAPSHOT, version, out -> {
+            out.writeLong(epoch);
+            writeMatrix(out, matrix);
+            writeRegistry(out, registry);
+        });
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] frame(byte type, long version, Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeLong(version);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeMatrix(DataOutputStream out, Map<String, Map<String, Boolean>> matrix) throws IOException {
+        out.writeInt(matrix.size());
+        for (Map.Entry<String, Map<String, Boolean>> role : matrix.entrySet()) {
+            out.writeUTF(role.getKey());
+            Map<String, Boolean> perms = role.getValue() != null ? role.getValue() : Map.of();
+            out.writeInt(perms.size());
+            for (Map.Entry<String, Boolean> perm : perms.entrySet()) {
+                out.writeUTF(perm.getKey());
+                out.writeBoolean(Boolean.TRUE.equals(perm.getValue()));
+            }
+        }
+    }
+
+    private static void writeRegistry(DataOutputStream out, Map<String, Map<String, Object>> registry) throws IOException {
+        out.writeInt(registry.size());
+        for (Map.Entry<String, Map<String, Object>> user : registry.entrySet()) {
+            Map<String, Object> fields = user.getValue() != null ? user.getValue() : Map.of();
+            out.writeUTF(user.getKey());
+            Object clientId = fields.get("client_id");
+            writeRoles(out, RoleSets.of(fields));
+            writeNullable(out, clientId != null ? clientId.toString() : null);
+            out.writeBoolean(Boolean.TRUE.equals(fields.get("active")));
+        }
+    }
+
+    private static void writeRoles(DataOutputStream out, List<String> roles) throws IOException {
+        out.writeShort(roles.size());
+        for (String role : roles) {
+            out.writeUTF(role);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    // === Decoding (follower) ===
+
+    static List<PermissionChange> readPermissions(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<PermissionChange> changes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String role = in.readUTF();
+            String key = in.readUTF();
+            byte op = in.readByte();
+            changes.add(op == REMOVE
+                    ? PermissionChange.remove(role, key)
+                    : PermissionChange.set(role, key, op == GRANT));
+        }
+        return changes;
+    }
+
+    static List<UserChange> readUsers(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<UserChange> changes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            UserChange.Kind kind = UserChange.Kind.values()[in.readByte()];
+            String userId = in.readUTF();
+            if (kind == UserChange.Kind.ADD) {
+                List<String> roles = readRoles(in);
+                String clientId = readNullable(in);
+                changes.add(UserChange.add(userId, roles, clientId, in.readBoolean()));
+            } else {
+                changes.add(UserChange.toggle(userId, in.readBoolean()));
+            }
+        }
+        return changes;
+    }
+
+    static Map<String, Map<String, Boolean>> readMatrix(DataInputStream in) throws IOException {
+        int roles = in.readInt();
+        Map<String, Map<String, Boolean>> matrix = new LinkedHashMap<>();
+        for (int i = 0; i < roles; i++) {
+            String role = in.readUTF();
+            int n = in.readInt();
+            Map<String, Boolean> perms = new LinkedHashMap<>();
+            for (int j = 0; j < n; j++) {
+                perms.put(in.readUTF(), in.readBoolean());
+            }
+            matrix.put(role, perms);
+        }
+        return matrix;
+    }
+
+    static Map<String, Map<String, Object>> readRegistry(DataInputStream in) throws IOException {
+        int users = in.readInt();
+        Map<String, Map<String, Object>> registry = new LinkedHashMap<>();
+        for (int i = 0; i < users; i++) {
+            String userId = in.readUTF();
+            Map<String, Object> fields = new HashMap<>();
+            RoleSets.put(fields, readRoles(in));
+            fields.put("client_id", readNullable(in));
+            fields.put("active", in.readBoolean());
+            registry.put(userId, fields);
+        }
+        return registry;
+    }
+
+    private static List<String> readRoles(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        List<String> roles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            roles.add(in.readUTF());
+        }
+        return roles;
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,351 @@
+// === src/main/java/trace/DecisionTrace.java ===
+
+package trace;
+
+import core.PermissionsManager;
+import users.UserRegistryManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * DecisionTrace records why checks came out the way they did: every deny
+ * and a sample of allows, each with a {@link TraceReason} and the policy
+ * versions it was decided under, in a binary trace file.
+ *
+ * The check path never blocks and never does I/O. A checking thread
+ * claims a slot in a fixed ring with one compare-and-set and stores the
+ * record; a background thread drains the ring in order and appends to the
+ * file. When the ring is full the record is dropped and counted
+ * ({@link #getDropped()}) rather than slowing the check down. With no
+ * trace installed, a hook costs one volatile read.
+ *
+ * Checks report through the static hooks {@link #allowed} / {@link #denied};
+ * UserContext, ContextBuilder and AsyncAuthorizer call them. For the full
+ * resolution path of one check, use context.ContextBuilder#explain.
+ *
+ * File format: magic "RBTR", format byte, then per record
+ *   long time millis, long matrix version, long registry version,
+ *   byte reason code, UTF user id, UTF key ("" when there is none)
+ *
+ * Enabled from the command line with:
+ *   -Drbac.trace.file=rbac-decisions.trace   trace file
+ *   -Drbac.trace.allowSample=1000            also record 1 in 1000 allows (0 = none)
+ *
+ * Usage:
+ *   DecisionTrace trace = DecisionTrace.install(new DecisionTrace(path, pm, urm, 1000));
+ *   ...
+ *   trace.close();
+ *   List<TraceRecord> records = DecisionTrace.read(path);
+ */
+public final class DecisionTrace implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int MAGIC = 0x52425452;   // "RBTR"
+    private static final byte FORMAT = 1;
+    private static final long DRAIN_INTERVAL_NANOS = 10_000_000;
+
+    private static volatile DecisionTrace installed;
+
+    private final Path file;
+    private final LongSupplier matrixVersion;
+    private final LongSupplier registryVersion;
+    private final int allowSampleEvery;
+
+    // Multi-producer, single-consumer ring. Producers claim sequence numbers
+    // on head; the consumer owns tail and publishes it for the fullness check.
+    private final AtomicReferenceArray<TraceRecord> ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+    private final LongAdder dropped = new LongAdder();
+
+    private final DataOutputStream out;   // guarded by this
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    /**
+     * Traces decisions against the given managers' versions.
+     *
+     * @param file             trace file, appended to
+     * @param pm               source of the matrix version
+     * @param urm              source of the registry version
+     * @param allowSampleEvery record 1 in this many allows (0 = no allows, 1 = all)
+     */
+    public DecisionTrace(Path file, PermissionsManager pm, UserRegistryManager urm, int allowSampleEvery) {
+        this(file, pm::getVersion, urm::getVersion, allowSampleEvery, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param file             trace file, appended to
+     * @param matrixVersion    current matrix version
+     * @param registryVersion  current registry version
+     * @param allowSampleEvery record 1 in this many allows (0 = no allows, 1 = all)
+     * @param capacity         ring size, rounded up to a power of two
+     */
+    public DecisionTrace(Path file, LongSupplier matrixVersion, LongSupplier registryVersion,
+                         int allowSampleEvery, int capacity) {
+        if (allowSampleEvery < 0 || capacity < 1) {
+            throw new IllegalArgumentException("allowSampleEvery must be >= 0 and capacity positive");
+        }
+        this.file = file;
+        this.matrixVersion = matrixVersion;
+        this.registryVersion = registryVersion;
+        this.allowSampleEvery = allowSampleEvery;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        try {
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            if (fresh) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open trace file " + file, e);
+        }
+        this.drainer = new Thread(this::drainLoop, "rbac-trace");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Installs a trace from the rbac.trace.file / rbac.trace.allowSample
+     * properties, if a file is configured. It is closed (and drained) when
+     * the JVM exits.
+     *
+     * @return the installed trace, or null when tracing is not configured
+     */
+    public static DecisionTrace installFromProperties(PermissionsManager pm, UserRegistryManager urm) {
+        String path = System.getProperty("rbac.trace.file");
+        if (path == null) return null;
+        int sample = Integer.parseInt(System.getProperty("rbac.trace.allowSample", "0"));
+        DecisionTrace trace = install(new DecisionTrace(Path.of(path), pm, urm, sample));
+        Runtime.getRuntime().addShutdownHook(new Thread(trace::close, "rbac-trace-close"));
+        return trace;
+    }
+
+    /**
+     * Makes a trace the target of the static hooks, replacing any other.
+     *
+     * @param trace the trace (null disables tracing)
+     * @return the trace
+     */
+    public static DecisionTrace install(DecisionTrace trace) {
+        installed = trace;
+        return trace;
+    }
+
+    /**
+     * @return the trace the hooks write to, or null
+     */
+    public static DecisionTrace current() {
+        return installed;
+    }
+
+    // === Hooks (hot path) ===
+
+    /**
+     * Reports an allowed check; recorded only if sampled.
+     */
+    public static void allowed(String userId, String key) {
+        DecisionTrace trace = installed;
+        if (trace != null && trace.sampleAllow()) {
+            trace.offer(TraceReason.ALLOWED, userId, key);
+        }
+    }
+
+    /**
+     * Reports a denied check; always recorded.
+     *
+     * @param reason why it was denied
+     * @param key    the key, or null when the user could not be resolved
+     */
+    public static void denied(TraceReason reason, String userId, String key) {
+        DecisionTrace trace = installed;
+        if (trace != null) {
+            trace.offer(reason, userId, key);
+        }
+    }
+
+    private boolean sampleAllow() {
+        int every = allowSampleEvery;
+        return every == 1 || (every > 1 && ThreadLocalRandom.current().nextInt(every) == 0);
+    }
+
+    /**
+     * Enqueues a record without blocking.
+     *
+     * @return false if the ring was full (or the trace closed) and the record was dropped
+     */
+    public boolean offer(TraceReason reason, String userId, String key) {
+        if (closed) return false;
+        long seq;
+        do {
+            seq = head.get();
+            if (seq - tail >= ring.length()) {
+                dropped.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(seq, seq + 1));
+        ring.lazySet((int) (seq & mask), new TraceRecord(System.currentTimeMillis(),
+                matrixVersion.getAsLong(), registryVersion.getAsLong(), reason, userId, key));
+        return true;
+    }
+
+    // === Draining ===
+
+    /**
+     * Writes everything enqueued so far to the file.
+     */
+    public synchronized void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to flush trace file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return number of records dropped because the ring was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the trace file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Drains what is left, closes the file and uninstalls the trace if installed.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (installed == this) installed = null;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            flush();
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("❌ Failed to close trace file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (!closed) {
+            synchronized (this) {
+                if (drain() > 0) {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        System.err.println("❌ Failed to write trace file " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+            LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+        }
+    }
+
+    /**
+     * Moves records from the ring to the stream, in sequence order. Stops at
+     * a slot that is claimed but not yet filled; the next drain picks it up.
+     */
+    private int drain() {
+        int written = 0;
+        long t = tail;
+        while (true) {
+            int slot = (int) (t & mask);
+            TraceRecord record = ring.get(slot);
+            if (record == null) break;
+            ring.lazySet(slot, null);
+            tail = ++t;
+            try {
+                write(record);
+                written++;
+            } catch (IOException e) {
+                System.err.println("❌ Failed to write trace file " + file + ": " + e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private void write(TraceRecord r) throws IOException {
+        out.writeLong(r.getTimeMillis());
+        out.writeLong(r.getMatrixVersion());
+        out.writeLong(r.getRegistryVersion());
+        out.writeByte(r.getReason().ordinal());
+        out.writeUTF(r.getUserId() != null ? r.getUserId() : "");
+        out.writeUTF(r.getKey() != null ? r.getKey() : "");
+    }
+
+    // === Reading ===
+
+    /**
+     * Reads a trace file.
+     *
+     * @param file the trace file
+     * @return its records, oldest first
+     * @throws UncheckedIOException if the file cannot be read or is not a trace file
+     */
+    public static List<TraceRecord> read(Path file) {
+        List<TraceRecord> records = new ArrayList<>();
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT) {
+                throw new IOException("not a decision trace file");
+            }
+            while (true) {
+                long time;
+                try {
+                    time = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                long matrix = in.readLong();
+                long registry = in.readLong();
+                TraceReason reason = TraceReason.fromCode(in.readUnsignedByte());
+                String userId = in.readUTF();
+                String key = in.readUTF();
+                records.add(new TraceRecord(time, matrix, registry, reason, userId, key.isEmpty() ? null : key));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read trace file " + file, e);
+        }
+        return records;
+    }
+}
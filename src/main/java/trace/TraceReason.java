@@ -0,0 +1,39 @@
+// === src/main/java/trace/TraceReason.java ===
+
+package trace;
+
+/**
+ * TraceReason is the compact code recorded for each traced decision: why
+ * a check came out the way it did. Stored in trace files as one byte
+ * (the ordinal), so new codes are only ever appended.
+ */
+public enum TraceReason {
+    /** The user's roles grant the key. */
+    ALLOWED,
+    /** The key is known but none of the user's roles grants it, or one denies it. */
+    NOT_GRANTED,
+    /** No role defines the key at all (typo, or a key from another policy). */
+    UNKNOWN_KEY,
+    /** The user is not in the registry. */
+    UNKNOWN_USER,
+    /** The user exists but is deactivated. */
+    INACTIVE_USER,
+    /** The user names no role, or a role missing from the matrix. */
+    INVALID_ROLE,
+    /** The session was revoked after the context was built. */
+    SESSION_REVOKED;
+
+    private static final TraceReason[] VALUES = values();
+
+    /**
+     * @param code a code read from a trace file
+     * @return the reason with that code
+     * @throws IllegalArgumentException for an unknown code
+     */
+    public static TraceReason fromCode(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown trace reason code: " + code);
+        }
+        return VALUES[code];
+    }
+}
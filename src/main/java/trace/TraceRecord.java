@@ -0,0 +1,72 @@
+// === src/main/java/trace/TraceRecord.java ===
+
+package trace;
+
+import java.time.Instant;
+
+/**
+ * TraceRecord is one traced decision: when, under which policy version,
+ * who asked for what, and the reason code of the outcome.
+ */
+public final class TraceRecord {
+
+    private final long timeMillis;
+    private final long matrixVersion;
+    private final long registryVersion;
+    private final TraceReason reason;
+    private final String userId;
+    private final String key;
+
+    public TraceRecord(long timeMillis, long matrixVersion, long registryVersion,
+                       TraceReason reason, String userId, String key) {
+        this.timeMillis = timeMillis;
+        this.matrixVersion = matrixVersion;
+        this.registryVersion = registryVersion;
+        this.reason = reason;
+        this.userId = userId;
+        this.key = key;
+    }
+
+    public Instant getTime() {
+        return Instant.ofEpochMilli(timeMillis);
+    }
+
+    long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return {@link core.PermissionsManager#getVersion()} at decision time
+     */
+    public long getMatrixVersion() {
+        return matrixVersion;
+    }
+
+    /**
+     * @return {@link users.UserRegistryManager#getVersion()} at decision time
+     */
+    public long getRegistryVersion() {
+        return registryVersion;
+    }
+
+    public TraceReason getReason() {
+        return reason;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the permission key, or null when the user could not be resolved at all
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return getTime() + " v" + matrixVersion + "/" + registryVersion + " " + reason + " "
+                + userId + (key != null ? " " + key : "");
+    }
+}
@@ -0,0 +1,108 @@
+// === src/main/java/users/UserChange.java ===
+
+package users;
+
+import java.util.List;
+
+/**
+ * UserChange is a single staged edit to the user registry.
+ *
+ * Two kinds of change are supported:
+ *   - ADD:    create or replace a user record (roles, client_id, active)
+ *   - TOGGLE: flip the active flag of an existing user
+ *
+ * Instances are immutable so they can be queued and validated before
+ * being applied as part of a batch.
+ */
+public final class UserChange {
+
+    public enum Kind { ADD, TOGGLE }
+
+    private final Kind kind;
+    private final String userId;
+    private final List<String> roles;
+    private final String clientId;
+    private final boolean active;
+
+    private UserChange(Kind kind, String userId, List<String> roles, String clientId, boolean active) {
+        this.kind = kind;
+        this.userId = userId;
+        this.roles = roles;
+        this.clientId = clientId;
+        this.active = active;
+    }
+
+    /**
+     * Creates an add/update change.
+     *
+     * @param userId   user ID
+     * @param role     assigned role
+     * @param clientId associated client (optional)
+     * @param active   account status
+     * @return the staged change
+     */
+    public static UserChange add(String userId, String role, String clientId, boolean active) {
+        return new UserChange(Kind.ADD, userId, role != null ? List.of(role) : List.of(), clientId, active);
+    }
+
+    /**
+     * Creates an add/update change for a user holding several roles.
+     *
+     * @param userId   user ID
+     * @param roles    assigned roles, in declared order
+     * @param clientId associated client (optional)
+     * @param active   account status
+     * @return the staged change
+     */
+    public static UserChange add(String userId, List<String> roles, String clientId, boolean active) {
+        return new UserChange(Kind.ADD, userId, List.copyOf(roles), clientId, active);
+    }
+
+    /**
+     * Creates an active-flag toggle change.
+     *
+     * @param userId the user to update
+     * @param active new active status
+     * @return the staged change
+     */
+    public static UserChange toggle(String userId, boolean active) {
+        return new UserChange(Kind.TOGGLE, userId, List.of(), null, active);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the first assigned role (null for TOGGLE)
+     */
+    public String getRole() {
+        return roles.isEmpty() ? null : roles.get(0);
+    }
+
+    /**
+     * @return all assigned roles (empty for TOGGLE)
+     */
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.ADD
+                ? "adduser " + userId + " " + String.join(",", roles) + " " + clientId + " " + active
+                : "toggle " + userId + " " + active;
+    }
+}
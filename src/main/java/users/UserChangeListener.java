@@ -0,0 +1,35 @@
+// === src/main/java/users/UserChangeListener.java ===
+
+package users;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserChangeListener is notified after UserRegistryManager publishes a
+ * new version of the user registry.
+ *
+ * Callbacks run on the writer thread, after the new registry is visible
+ * to readers, so implementations must be quick and must not call back
+ * into the manager's mutating methods.
+ *
+ * Components that need more time should subscribe through
+ * {@link core.PolicyEvents} instead, which delivers off the writer thread.
+ */
+public interface UserChangeListener {
+
+    /**
+     * Called after one or more users were added, updated or toggled.
+     * Toggles of unknown users are not reported.
+     *
+     * @param changes the applied changes, in order
+     */
+    void onUsersChanged(List<UserChange> changes);
+
+    /**
+     * Called after the whole registry was replaced (load or reload).
+     *
+     * @param registry the new registry (read-only)
+     */
+    void onRegistryReloaded(Map<String, Map<String, Object>> registry);
+}
@@ -2,22 +2,37 @@
 
 package users;
 
+import audit.AuditLog;
+import audit.AuditRecord;
+import core.Published;
+import core.RoleSets;
+import utils.PersistentMap;
+import utils.PolicyDirectoryLoader;
 import utils.YamlLoader;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 /**
  * UserRegistryManager is responsible for loading and managing user records
  * from the user registry YAML file (UserRegistry.yaml).
  *
  * Each user entry includes:
- *   - role: assigned role name
+ *   - role: assigned role name, or roles: a list of them (see core.RoleSets)
  *   - client_id: associated account or client scope (optional)
  *   - active: whether the account is enabled
  *
@@ -26,24 +41,69 @@ import java.util.Set;
  *     role: admin
  *     client_id: A001
  *     active: true
+ *
+ * The path may also be a directory of *.users.yaml shards (see
+ * {@link PolicyDirectoryLoader}); each user is then written back to the
+ * shard it was loaded from, and new users go to local.users.yaml.
+ *
+ * Concurrency: the registry is an immutable {@link PersistentMap} of
+ * immutable user records, replaced with one volatile write per version.
+ * Readers never lock, and {@link #getAllUsers()} hands out a read-only
+ * view of one version that can be iterated while writers carry on.
+ *
+ * Writers queue their changes and then commit as a group: whichever
+ * writer holds the lock applies everything queued so far to a new
+ * version (copying only the touched paths of the trie), swaps it in and
+ * notifies listeners once. Saving is a second stage with its own lock:
+ * a writer waits until some save has covered its version, and whichever
+ * writer saves next writes every version applied while the previous
+ * save was running. Many provisioning threads therefore share one
+ * notification and one file write instead of queuing for one each.
+ * Every change is applied and persisted by the time its call returns,
+ * and a batch is still applied as a unit.
+ *
+ * Saved files list users sorted by ID.
  */
 public class UserRegistryManager {
 
+    /**
+     * Changes queued by one call, and what became of them.
+     */
+    private static final class Commit {
+        final List<UserChange> changes;
+        final boolean[] applied;
+        boolean done;                 // written under the manager lock
+        long version;                 // written under the manager lock; 0 if nothing applied
+        RuntimeException failure;     // written under the manager lock
+
+        Commit(List<UserChange> changes) {
+            this.changes = changes;
+            this.applied = new boolean[changes.size()];
+        }
+    }
+
     private final String path;
-    private final String logPath = "rbac.log";
-    private Map<String, Map<String, Object>> registry;
+    private volatile AuditLog auditLog = AuditLog.getDefault();
+    private volatile PersistentMap<String, Map<String, Object>> registry = PersistentMap.empty();
+    private volatile long version;   // bumped on every swap; written under this
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<Commit> queued = new ConcurrentLinkedQueue<>();
+    private final Object saveLock = new Object();   // taken before this, never after
+    private long savedVersion;                      // guarded by saveLock
+    private Map<String, String> shardOrigins;   // non-null in directory mode
 
     /**
-     * Constructs with default file path: config/UserRegistry.yaml
+     * Constructs with default file path: the value of the rbac.users
+     * system property, or config/UserRegistry.yaml
      */
     public UserRegistryManager() {
-        this("config/UserRegistry.yaml");
+        this(System.getProperty("rbac.users", "config/UserRegistry.yaml"));
     }
 
     /**
      * Constructs with custom path to the user registry file.
      *
-     * @param path location of the YAML file
+     * @param path location of the YAML file or shard directory
      */
     public UserRegistryManager(String path) {
         this.path = path;
@@ -53,12 +113,76 @@ public class UserRegistryManager {
     /**
      * Loads user registry from disk into memory.
      * Overwrites any existing in-memory data.
+     *
+     * @throws core.PolicyValidationException if a shard directory has
+     *         unreadable files or duplicate users; the current registry is kept
      */
-    public void load() {
-        registry = YamlLoader.load(path, Map.class);
-        if (registry == null) {
-            registry = new HashMap<>();
+    public synchronized void load() {
+        Path dir = Paths.get(path);
+        if (Files.isDirectory(dir)) {
+            PolicyDirectoryLoader.Loaded<Map<String, Object>> loaded =
+                    PolicyDirectoryLoader.loadUsers(dir, ForkJoinPool.commonPool());
+            replace(loaded.getMerged());
+            shardOrigins = loaded.getOrigins();
+            return;
         }
+        Map<String, Map<String, Object>> data = YamlLoader.load(path, Map.class);
+        replace(data != null ? data : new HashMap<>());
+    }
+
+    /**
+     * Publishes the registry another manager loaded from the same path, so
+     * a reload can be validated before it goes live. Listeners see a reload.
+     *
+     * @param candidate a manager freshly loaded from {@link #getPath()}
+     */
+    public synchronized void reloadFrom(UserRegistryManager candidate) {
+        swap(candidate.registry);
+        shardOrigins = candidate.shardOrigins;
+    }
+
+    /**
+     * @return the YAML file or shard directory this manager loads and saves
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return a counter that changes whenever the registry does (for
+     *         tagging decisions with the policy they were made under)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener that is told about every published change.
+     *
+     * @param listener the listener to add
+     */
+    public void addChangeListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener and returns the version it starts from, both
+     * under the publish lock: the listener is told about every change
+     * after the returned version and about none already in it.
+     *
+     * @param listener the listener to add
+     * @return the registry the listener's changes apply on top of
+     */
+    public synchronized Published<PersistentMap<String, Map<String, Object>>> subscribe(UserChangeListener listener) {
+        listeners.add(listener);
+        return published();
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeChangeListener(UserChangeListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -72,14 +196,16 @@ public class UserRegistryManager {
      * Persists the current in-memory user registry to YAML.
      */
     public void save() {
-        YamlLoader.save(path, registry);
+        synchronized (saveLock) {
+            write();
+        }
     }
 
     /**
      * Returns metadata map for a specific user ID.
      *
      * @param userId the user to look up
-     * @return map of fields like role, client_id, active
+     * @return read-only map of fields like role, client_id, active; null if unknown
      */
     public Map<String, Object> getUser(String userId) {
         return registry.get(userId);
@@ -95,31 +221,63 @@ public class UserRegistryManager {
      * @param operator actor who made the change
      */
     public void addUser(String userId, String role, String clientId, boolean active, String operator) {
-        Map<String, Object> user = new HashMap<>();
-        user.put("role", role);
-        user.put("client_id", clientId);
-        user.put("active", active);
-        registry.put(userId, user);
-        save();
+        submit(List.of(UserChange.add(userId, role, clientId, active)));
         logUserAdd(userId, role, clientId, active, operator);
     }
 
     /**
-     * Returns all user records.
+     * Adds or updates a user holding several roles.
+     *
+     * @param userId   user ID
+     * @param roles    assigned roles, in declared order
+     * @param clientId associated client (optional)
+     * @param active   account status
+     * @param operator actor who made the change
+     */
+    public void addUser(String userId, List<String> roles, String clientId, boolean active, String operator) {
+        submit(List.of(UserChange.add(userId, roles, clientId, active)));
+        logUserAdd(userId, String.join(",", roles), clientId, active, operator);
+    }
+
+    /**
+     * Returns all user records of the current version. The view is
+     * read-only and never changes, so it can be iterated or held while
+     * the registry moves on.
      *
      * @return user ID → metadata map
      */
     public Map<String, Map<String, Object>> getAllUsers() {
+        return registry.asMap();
+    }
+
+    /**
+     * Returns the current version itself, for callers that walk it in
+     * parts (see {@link PersistentMap#iterator(int, int)}).
+     *
+     * @return the immutable registry of the current version
+     */
+    public PersistentMap<String, Map<String, Object>> snapshot() {
         return registry;
     }
 
     /**
-     * Returns all user IDs from the registry.
+     * Returns the current version together with its version number. Both
+     * are read under the lock they are published under, so the number is
+     * exactly the one {@link #getVersion()} reported for this registry.
+     *
+     * @return the published registry and its version
+     */
+    public synchronized Published<PersistentMap<String, Map<String, Object>>> published() {
+        return new Published<>(version, registry);
+    }
+
+    /**
+     * Returns all user IDs of the current version.
      *
-     * @return a set of user IDs
+     * @return a read-only set of user IDs
      */
     public Set<String> getAllUserIds() {
-        return registry.keySet();
+        return registry.asMap().keySet();
     }
 
     /**
@@ -142,40 +300,249 @@ public class UserRegistryManager {
      * @param operator actor who made the change
      */
     public void toggleActive(String userId, boolean active, String operator) {
-        Map<String, Object> user = registry.get(userId);
-        if (user != null) {
-            user.put("active", active);
-            save();
+        if (submit(List.of(UserChange.toggle(userId, active))).applied[0]) {
             logToggleStatus(userId, active, operator);
         }
     }
 
+    /**
+     * Toggles a user's active status only if a condition holds. The
+     * condition is checked under the registry lock after every change
+     * queued before it has been published, so no other change comes
+     * between the check and this one.
+     *
+     * @param condition checked just before the change; must not call back into this manager's writers
+     * @param userId    user ID
+     * @param active    new status
+     * @param operator  actor who made the change
+     * @return true if the condition held and the user exists
+     */
+    public boolean toggleActiveIf(BooleanSupplier condition, String userId, boolean active, String operator) {
+        boolean applied = submit(List.of(UserChange.toggle(userId, active)), condition).applied[0];
+        if (applied) logToggleStatus(userId, active, operator);
+        return applied;
+    }
+
+    /**
+     * Replaces the whole registry (e.g. with a replicated snapshot) and
+     * persists it. Listeners see it as a reload.
+     *
+     * @param newData the new user records
+     */
+    public void importRegistry(Map<String, Map<String, Object>> newData) {
+        synchronized (this) {
+            replace(newData);
+        }
+        save();
+    }
+
+    /**
+     * Puts users back the way they were, e.g. to undo a batch whose other
+     * half could not be applied. Listeners see it as a reload.
+     *
+     * @param previous user ID → its earlier record, or null if the user did not exist
+     * @throws IllegalStateException if the restored registry could not be saved
+     */
+    public void restoreUsers(Map<String, Map<String, Object>> previous) {
+        synchronized (this) {
+            PersistentMap<String, Map<String, Object>> next = registry;
+            for (Map.Entry<String, Map<String, Object>> e : previous.entrySet()) {
+                next = e.getValue() == null
+                        ? next.without(e.getKey())
+                        : next.with(e.getKey(), Collections.unmodifiableMap(new LinkedHashMap<>(e.getValue())));
+            }
+            swap(next);
+        }
+        synchronized (saveLock) {
+            if (!write()) {
+                throw new IllegalStateException("Failed to save user registry: " + path);
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of user changes as one atomic update.
+     *
+     * The new registry is built off to the side, published with a single
+     * reference swap and persisted with one file write (shared with any
+     * other changes committed in the same group). Readers see either
+     * the old or the new registry, never a half-applied batch. Audit logging is
+     * left to the caller so the batch can be recorded as one group.
+     * TOGGLE changes for users that do not exist are ignored, matching
+     * {@link #toggleActive}.
+     *
+     * @param changes the staged changes, applied in order
+     * @throws IllegalStateException if the registry could not be saved;
+     *         the changes stay applied (see {@link #restoreUsers} to undo them)
+     */
+    public void applyBatch(List<UserChange> changes) {
+        if (changes.isEmpty()) return;
+        submit(List.copyOf(changes));
+    }
+
+    /**
+     * Queues changes and returns once they are applied and saved, either
+     * by this thread or by ones that committed or saved them as part of
+     * a group.
+     *
+     * @throws RuntimeException a listener's failure, or an
+     *         IllegalStateException if the save failed (the changes stay applied)
+     */
+    private Commit submit(List<UserChange> changes) {
+        return submit(changes, null);
+    }
+
+    /**
+     * @param condition null, or checked under the lock once everything queued
+     *                  earlier is published; if false nothing is applied
+     */
+    private Commit submit(List<UserChange> changes, BooleanSupplier condition) {
+        Commit commit = new Commit(changes);
+        if (condition == null) queued.add(commit);
+        synchronized (this) {
+            if (condition != null) {
+                if (!queued.isEmpty()) commitQueued();
+                if (!condition.getAsBoolean()) return commit;
+                queued.add(commit);
+            }
+            if (!commit.done) commitQueued();
+        }
+        if (commit.failure != null) throw commit.failure;
+        if (commit.version > 0) {
+            synchronized (saveLock) {
+                if (savedVersion < commit.version && !write()) {
+                    throw new IllegalStateException("Failed to save user registry: " + path);
+                }
+            }
+        }
+        return commit;
+    }
+
+    /**
+     * Applies every queued commit to the next version copy-on-write,
+     * swaps it in and notifies listeners of the changes that actually
+     * applied.
+     */
+    private void commitQueued() {
+        List<Commit> group = new ArrayList<>();
+        for (Commit commit; (commit = queued.poll()) != null; ) {
+            group.add(commit);
+        }
+        PersistentMap<String, Map<String, Object>> next = registry;
+        List<UserChange> applied = new ArrayList<>();
+        for (Commit commit : group) {
+            for (int i = 0; i < commit.changes.size(); i++) {
+                UserChange change = commit.changes.get(i);
+                if (change.getKind() == UserChange.Kind.ADD) {
+                    Map<String, Object> user = new LinkedHashMap<>();
+                    RoleSets.put(user, change.getRoles());
+                    user.put("client_id", change.getClientId());
+                    user.put("active", change.isActive());
+                    next = next.with(change.getUserId(), Collections.unmodifiableMap(user));
+                } else {
+                    Map<String, Object> current = next.get(change.getUserId());
+                    if (current == null) continue;
+                    Map<String, Object> user = new LinkedHashMap<>(current);
+                    user.put("active", change.isActive());
+                    next = next.with(change.getUserId(), Collections.unmodifiableMap(user));
+                }
+                commit.applied[i] = true;
+                applied.add(change);
+            }
+        }
+        try {
+            if (applied.isEmpty()) return;
+            registry = next;
+            version++;
+            List<UserChange> published = List.copyOf(applied);
+            for (Commit commit : group) commit.version = version;
+            for (UserChangeListener l : listeners) {
+                l.onUsersChanged(published);
+            }
+        } catch (RuntimeException e) {
+            for (Commit commit : group) commit.failure = e;
+        } finally {
+            for (Commit commit : group) commit.done = true;
+        }
+    }
+
+    /**
+     * Writes the current version to disk. Called under saveLock; the
+     * version is read under this, so it matches what is written.
+     *
+     * @return true if saved; on failure the version stays unsaved, so the
+     *         next writer tries again
+     */
+    private boolean write() {
+        PersistentMap<String, Map<String, Object>> snapshot;
+        Map<String, String> origins;
+        long current;
+        synchronized (this) {
+            snapshot = registry;
+            origins = shardOrigins;
+            current = version;
+        }
+        Map<String, Map<String, Object>> sorted = new TreeMap<>(snapshot.asMap());
+        boolean saved = origins != null
+                ? PolicyDirectoryLoader.saveUsers(Paths.get(path), sorted, origins)
+                : YamlLoader.saveAtomically(path, sorted);
+        if (saved) savedVersion = current;
+        return saved;
+    }
+
+    /**
+     * Swaps in a whole new registry (load, reload, import) and notifies
+     * listeners. Records are copied into read-only maps.
+     */
+    private void replace(Map<String, Map<String, Object>> data) {
+        PersistentMap<String, Map<String, Object>> next = PersistentMap.empty();
+        for (Map.Entry<String, Map<String, Object>> e : data.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null) continue;
+            next = next.with(e.getKey(), Collections.unmodifiableMap(new LinkedHashMap<>(e.getValue())));
+        }
+        swap(next);
+    }
+
+    /**
+     * Publishes a whole new version and notifies listeners of a reload.
+     */
+    private void swap(PersistentMap<String, Map<String, Object>> next) {
+        registry = next;
+        version++;
+        Map<String, Map<String, Object>> view = next.asMap();
+        for (UserChangeListener l : listeners) {
+            l.onRegistryReloaded(view);
+        }
+    }
+
+
     /**
      * Logs user creation or update with metadata.
      */
     private void logUserAdd(String userId, String role, String clientId, boolean active, String operator) {
-        try (FileWriter fw = new FileWriter(logPath, true)) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            String msg = String.format("[%s] USER ADD: user=%s role=%s client_id=%s active=%s operator=%s\n",
-                    timestamp, userId, role, clientId, active, operator);
-            fw.write(msg);
-        } catch (IOException e) {
-            System.err.println("Failed to write user add log: " + e.getMessage());
-        }
+        auditLog.record(AuditRecord.userAdd(userId, role, clientId, active, operator, null));
     }
 
     /**
      * Logs active status toggle with metadata.
      */
     private void logToggleStatus(String userId, boolean active, String operator) {
-        try (FileWriter fw = new FileWriter(logPath, true)) {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            String msg = String.format("[%s] USER STATUS TOGGLE: user=%s active=%s operator=%s\n",
-                    timestamp, userId, active, operator);
-            fw.write(msg);
-        } catch (IOException e) {
-            System.err.println("Failed to write status toggle log: " + e.getMessage());
-        }
+        auditLog.record(AuditRecord.userToggle(userId, active, operator, null));
+    }
+
+    /**
+     * Redirects audit records (e.g. to a test or tenant-specific log).
+     *
+     * @param auditLog the audit log to write to
+     */
+    public void setAuditLog(AuditLog auditLog) {
+        this.auditLog = auditLog;
     }
-}
 
+    /**
+     * @return the audit log changes are recorded in
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+}
@@ -0,0 +1,152 @@
+// === src/main/java/utils/BloomFilter.java ===
+
+package utils;
+
+import java.util.Collection;
+
+/**
+ * BloomFilter is a compact set of strings that answers "maybe present" or
+ * "definitely absent". It never reports a member as absent; a non-member
+ * is reported present with about the configured false positive rate, as
+ * long as the filter holds no more than its {@link #capacity()}.
+ *
+ * Members can be added after building, by one writer at a time. Adding
+ * only ever sets bits, so readers may keep querying: a member being added
+ * reads as absent until it is in, and never again after. Readers on other
+ * threads must obtain the filter through a volatile read or a lock taken
+ * after the add to be sure of seeing it.
+ *
+ * Each string is hashed once (64-bit FNV-1a plus a final mix); the two
+ * halves of the hash give the k probe positions by double hashing. The bit
+ * array is a power of two, so a probe is a multiply, a shift and a mask.
+ *
+ * Usage:
+ *   BloomFilter users = BloomFilter.of(registry.keySet(), 0.01);
+ *   if (!users.mightContain(userId)) ... // certainly unknown
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final int mask;
+    private final int hashes;
+    private final int capacity;
+    private int count;
+
+    private BloomFilter(long[] bits, int hashes, int capacity) {
+        this.bits = bits;
+        this.mask = bits.length * 64 - 1;
+        this.hashes = hashes;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Builds a filter holding the given strings.
+     *
+     * @param members           the strings to hold (nulls are skipped)
+     * @param falsePositiveRate target rate for non-members, in (0, 1)
+     * @return the filter
+     */
+    public static BloomFilter of(Collection<String> members, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1): " + falsePositiveRate);
+        }
+        int n = Math.max(1, members.size());
+        double ln2 = Math.log(2);
+        long wanted = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int size = 64;
+        while (size < wanted && size < (1 << 30)) size <<= 1;
+        int hashes = Math.max(1, Math.min(16, (int) Math.round((double) size / n * ln2)));
+        // The array is rounded up to a power of two, so it usually has room to spare.
+        int capacity = (int) Math.max(n, Math.min(Integer.MAX_VALUE,
+                (long) (size * ln2 * ln2 / -Math.log(falsePositiveRate))));
+
+        BloomFilter filter = new BloomFilter(new long[size / 64], hashes, capacity);
+        for (String member : members) {
+            if (member != null) filter.set(hash(member));
+        }
+        filter.count = members.size();
+        return filter;
+    }
+
+    /**
+     * Adds a string. Once {@link #size()} exceeds {@link #capacity()} the
+     * false positive rate climbs; callers should build a new filter instead.
+     *
+     * @param value the string to add (null is ignored)
+     * @return false if the value already read as present (nothing changed)
+     */
+    public boolean add(String value) {
+        if (value == null || mightContain(value)) return false;
+        set(hash(value));
+        count++;
+        return true;
+    }
+
+    /**
+     * @param value the string to test (null is never present)
+     * @return false if the value is certainly not a member
+     */
+    public boolean mightContain(String value) {
+        if (value == null) return false;
+        long h = hash(value);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of strings the filter was built from, plus those added since
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return number of strings the filter holds at its configured false positive rate
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return size of the bit array in bits
+     */
+    public int bitCount() {
+        return mask + 1;
+    }
+
+    /**
+     * @return number of probes per lookup
+     */
+    public int hashCount() {
+        return hashes;
+    }
+
+    private void set(long h) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        // fmix64 from MurmurHash3, so both halves depend on every char
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
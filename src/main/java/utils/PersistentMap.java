@@ -0,0 +1,480 @@
+// === src/main/java/utils/PersistentMap.java ===
+
+package utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * PersistentMap is an immutable hash map that shares structure between
+ * versions (a hash array mapped trie).
+ *
+ * Every update returns a new map and leaves the old one untouched. Only
+ * the path from the root to the changed entry is copied, so an update
+ * costs O(log32 n) time and memory no matter how large the map is.
+ * This makes it cheap to keep many historical versions alive at once.
+ *
+ * Keys must have stable equals/hashCode; null keys and values are not allowed.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class PersistentMap<K, V> {
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+    private static final Object NOT_FOUND = new Object();
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the shared empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Builds a persistent map with the same entries as a regular map.
+     *
+     * @param source entries to copy (null values are skipped)
+     * @return a new persistent map
+     */
+    public static <K, V> PersistentMap<K, V> copyOf(Map<K, V> source) {
+        PersistentMap<K, V> result = empty();
+        for (Map.Entry<K, V> e : source.entrySet()) {
+            if (e.getKey() != null && e.getValue() != null) {
+                result = result.with(e.getKey(), e.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) return null;
+        Object v = root.find(0, key.hashCode(), key);
+        return v == NOT_FOUND ? null : (V) v;
+    }
+
+    /**
+     * @param key          the key to look up
+     * @param defaultValue returned when the key is absent
+     * @return the value or the default
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v = get(key);
+        return v != null ? v : defaultValue;
+    }
+
+    /**
+     * @return true if the key is present
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the key set to the value.
+     *
+     * @return a new map, or this map if nothing changed
+     */
+    public PersistentMap<K, V> with(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("null key or value");
+        boolean[] added = new boolean[1];
+        Node base = root != null ? root : BitmapNode.EMPTY;
+        Node next = base.assoc(0, key.hashCode(), key, value, added);
+        if (next == root) return this;
+        return new PersistentMap<>(next, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the key.
+     *
+     * @return a new map, or this map if the key was absent
+     */
+    public PersistentMap<K, V> without(Object key) {
+        if (root == null || key == null) return this;
+        Node next = root.without(0, key.hashCode(), key);
+        if (next == root) return this;
+        return next == null ? empty() : new PersistentMap<>(next, size - 1);
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits every entry (in hash order, not insertion order).
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * Returns a read-only {@link Map} view of this version. Lookups go
+     * straight to the trie; iteration walks it without copying. Since the
+     * map never changes, the view is a stable snapshot, safe to iterate
+     * from any thread while newer versions are built.
+     *
+     * @return an unmodifiable map backed by this version
+     */
+    public Map<K, V> asMap() {
+        return new MapView<>(this);
+    }
+
+    /**
+     * Iterates the entries (in hash order, not insertion order).
+     */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(root == null ? null : arrayOf(root));
+    }
+
+    /**
+     * Iterates one of several disjoint parts of the map, so the parts can
+     * be walked in parallel. The parts are slices of the root node (keys
+     * are placed by the low 5 bits of their hash), so they cover every
+     * entry exactly once and no part copies or scans the others.
+     *
+     * @param part  which part, 0 ≤ part &lt; parts
+     * @param parts number of parts, 1 to 32
+     */
+    public Iterator<Map.Entry<K, V>> iterator(int part, int parts) {
+        if (parts < 1 || parts > 32 || part < 0 || part >= parts) {
+            throw new IllegalArgumentException("part " + part + " of " + parts + " (parts must be 1-32)");
+        }
+        if (root == null) return new EntryIterator<>(null);
+        int from = 32 * part / parts;
+        int to = 32 * (part + 1) / parts;
+        if (root instanceof CollisionNode) {
+            int slot = mask(((CollisionNode) root).hash, 0);
+            return new EntryIterator<>(slot >= from && slot < to ? arrayOf(root) : null);
+        }
+        BitmapNode node = (BitmapNode) root;
+        int start = 2 * Integer.bitCount(node.bitmap & (int) ((1L << from) - 1));
+        int end = 2 * Integer.bitCount(node.bitmap & (int) ((1L << to) - 1));
+        return new EntryIterator<>(Arrays.copyOfRange(node.array, start, end));
+    }
+
+    private static Object[] arrayOf(Node node) {
+        return node instanceof BitmapNode ? ((BitmapNode) node).array : ((CollisionNode) node).array;
+    }
+
+    private static final class MapView<K, V> extends AbstractMap<K, V> {
+        private final PersistentMap<K, V> map;
+
+        MapView(PersistentMap<K, V> map) {
+            this.map = map;
+        }
+
+        @Override
+        public V get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size;
+        }
+
+        @Override
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            map.forEach(action);
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return map.iterator();
+                }
+
+                @Override
+                public int size() {
+                    return map.size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Depth-first walk over the node arrays with an explicit stack.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Map.Entry<K, V> next;
+
+        EntryIterator(Object[] root) {
+            if (root != null) push(root);
+            advance();
+        }
+
+        private void push(Object[] array) {
+            arrays.push(array);
+            positions.push(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int i = positions.pop();
+                if (i >= array.length) {
+                    arrays.pop();
+                    continue;
+                }
+                positions.push(i + 2);
+                if (array[i] == null) {
+                    push(arrayOf((Node) array[i + 1]));
+                } else {
+                    next = new AbstractMap.SimpleImmutableEntry<>((K) array[i], (V) array[i + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<K, V> current = next;
+            advance();
+            return current;
+        }
+    }
+
+    // === Trie nodes ===
+
+    private static int mask(int hash, int shift) {
+        return (hash >>> shift) & 0x1f;
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /** @return the new node, this if unchanged, or null if it became empty */
+        Node without(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    private static Node pair(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+        int h1 = k1.hashCode();
+        if (h1 == h2) {
+            return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+        }
+        boolean[] ignored = new boolean[1];
+        return BitmapNode.EMPTY
+                .assoc(shift, h1, k1, v1, ignored)
+                .assoc(shift, h2, k2, v2, ignored);
+    }
+
+    /**
+     * Up to 32 slots indexed by 5 hash bits. Each slot holds either a
+     * key/value pair or (null, child node).
+     */
+    private static final class BitmapNode implements Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = 1 << mask(hash, shift);
+            if ((bitmap & bit) == 0) return NOT_FOUND;
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) return ((Node) v).find(shift + 5, hash, key);
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << mask(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[2 * i];
+                Object v = array[2 * i + 1];
+                if (k == null) {
+                    Node child = ((Node) v).assoc(shift + 5, hash, key, value, added);
+                    return child == v ? this : withSlot(2 * i + 1, child);
+                }
+                if (key.equals(k)) {
+                    return v.equals(value) ? this : withSlot(2 * i + 1, value);
+                }
+                added[0] = true;
+                Object[] copy = array.clone();
+                copy[2 * i] = null;
+                copy[2 * i + 1] = pair(shift + 5, k, v, hash, key, value);
+                return new BitmapNode(bitmap, copy);
+            }
+            added[0] = true;
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, 2 * i);
+            copy[2 * i] = key;
+            copy[2 * i + 1] = value;
+            System.arraycopy(array, 2 * i, copy, 2 * i + 2, array.length - 2 * i);
+            return new BitmapNode(bitmap | bit, copy);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int bit = 1 << mask(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            int i = index(bit);
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            if (k == null) {
+                Node child = ((Node) v).without(shift + 5, hash, key);
+                if (child == v) return this;
+                if (child != null) return withSlot(2 * i + 1, child);
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, 2 * i);
+            System.arraycopy(array, 2 * i + 2, copy, 2 * i, copy.length - 2 * i);
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+
+        private BitmapNode withSlot(int slot, Object value) {
+            Object[] copy = array.clone();
+            copy[slot] = value;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds keys whose full 32-bit hashes are equal.
+     */
+    private static final class CollisionNode implements Node {
+
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        public Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this bucket one level down and insert beside it.
+                Node wrapper = new BitmapNode(1 << mask(this.hash, shift), new Object[]{null, this});
+                return wrapper.assoc(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1].equals(value)) return this;
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            added[0] = true;
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, copy.length - i);
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// === src/main/java/utils/PolicyDirectoryLoader.java ===
+
+package utils;
+
+import core.PolicyValidationException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * PolicyDirectoryLoader loads policy that is split across many YAML files
+ * in one directory (for example one file per module or per tenant).
+ *
+ * Layout:
+ *   config/policy.d/
+ *     admin.roles.yaml      role → { permission_key → boolean }
+ *     trading.roles.yaml    role → { permission_key → boolean }
+ *     desk-a.users.yaml     user_id → { role, client_id, active }
+ *     desk-b.users.yaml     user_id → { role, client_id, active }
+ *
+ * Files are parsed in parallel on a fork/join pool and merged in file-name
+ * order, so the result does not depend on thread timing. A role may span
+ * several files (e.g. one file per permission module); the same role/key
+ * with different values in two files is a conflict. A user may appear in
+ * only one file. Parse errors and conflicts are collected and thrown
+ * together as one {@link PolicyValidationException}.
+ *
+ * The loader also remembers which file each entry came from, so changes
+ * can be written back to the shard that owns them.
+ */
+public final class PolicyDirectoryLoader {
+
+    public static final String ROLE_SUFFIX = ".roles.yaml";
+    public static final String USER_SUFFIX = ".users.yaml";
+    public static final String LOCAL_USERS = "local" + USER_SUFFIX;
+    public static final String LOCAL_ROLES = "local" + ROLE_SUFFIX;
+
+    /**
+     * Merged content of a set of shards plus the owning file of each entry.
+     *
+     * @param <V> the per-entry value type
+     */
+    public static final class Loaded<V> {
+        private final Map<String, V> merged;
+        private final Map<String, String> origins;
+
+        Loaded(Map<String, V> merged, Map<String, String> origins) {
+            this.merged = merged;
+            this.origins = origins;
+        }
+
+        /**
+         * @return merged entries, in file-name then file order
+         */
+        public Map<String, V> getMerged() {
+            return merged;
+        }
+
+        /**
+         * @return entry ID → owning file name (see {@link #roleKeyId})
+         */
+        public Map<String, String> getOrigins() {
+            return origins;
+        }
+    }
+
+    /**
+     * One parsed file.
+     */
+    private static final class Shard {
+        final String name;
+        final Map<String, Object> data;
+        final String error;
+
+        Shard(String name, Map<String, Object> data, String error) {
+            this.name = name;
+            this.data = data;
+            this.error = error;
+        }
+    }
+
+    private PolicyDirectoryLoader() {
+    }
+
+    /**
+     * @return the origin ID used for a single role/key entry
+     */
+    public static String roleKeyId(String role, String key) {
+        return role + " " + key;
+    }
+
+    /**
+     * Loads and merges all *.roles.yaml files in a directory.
+     *
+     * @param dir  the policy directory
+     * @param pool the fork/join pool to parse on
+     * @return merged matrix with per-entry origins
+     * @throws PolicyValidationException on parse errors or conflicting values
+     */
+    @SuppressWarnings("unchecked")
+    public static Loaded<Map<String, Boolean>> loadRoles(Path dir, ForkJoinPool pool) {
+        List<String> errors = new ArrayList<>();
+        // Values stay Object until validation, so non-boolean entries can be reported.
+        Map<String, Map<String, Object>> merged = new LinkedHashMap<>();
+        Map<String, String> origins = new HashMap<>();
+
+        for (Shard shard : parseAll(dir, ROLE_SUFFIX, pool, errors)) {
+            for (Map.Entry<String, Object> roleEntry : shard.data.entrySet()) {
+                String role = roleEntry.getKey();
+                Object value = roleEntry.getValue();
+                if (value != null && !(value instanceof Map)) {
+                    errors.add(shard.name + ": role " + role + " is not a map");
+                    continue;
+                }
+                Map<String, Object> target = merged.computeIfAbsent(role, r -> new LinkedHashMap<>());
+                origins.putIfAbsent(role, shard.name);
+                if (value == null) continue;
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+                    String id = roleKeyId(role, e.getKey());
+                    if (target.containsKey(e.getKey())) {
+                        if (!Objects.equals(target.get(e.getKey()), e.getValue())) {
+                            errors.add(String.format("role %s key %s: %s in %s but %s in %s",
+                                    role, e.getKey(), target.get(e.getKey()), origins.get(id),
+                                    e.getValue(), shard.name));
+                        }
+                        continue;
+                    }
+                    target.put(e.getKey(), e.getValue());
+                    origins.put(id, shard.name);
+                }
+            }
+        }
+        if (!errors.isEmpty()) throw new PolicyValidationException(errors);
+        return new Loaded<>((Map<String, Map<String, Boolean>>) (Map<String, ?>) merged, origins);
+    }
+
+    /**
+     * Loads and merges all *.users.yaml files in a directory.
+     *
+     * @param dir  the policy directory
+     * @param pool the fork/join pool to parse on
+     * @return merged registry with per-user origins
+     * @throws PolicyValidationException on parse errors or duplicate users
+     */
+    @SuppressWarnings("unchecked")
+    public static Loaded<Map<String, Object>> loadUsers(Path dir, ForkJoinPool pool) {
+        List<String> errors = new ArrayList<>();
+        Map<String, Map<String, Object>> merged = new LinkedHashMap<>();
+        Map<String, String> origins = new HashMap<>();
+
+        for (Shard shard : parseAll(dir, USER_SUFFIX, pool, errors)) {
+            for (Map.Entry<String, Object> e : shard.data.entrySet()) {
+                String userId = e.getKey();
+                if (!(e.getValue() instanceof Map)) {
+                    errors.add(shard.name + ": user " + userId + " is not a map");
+                    continue;
+                }
+                if (merged.containsKey(userId)) {
+                    errors.add("user " + userId + ": defined in both " + origins.get(userId) + " and " + shard.name);
+                    continue;
+                }
+                merged.put(userId, (Map<String, Object>) e.getValue());
+                origins.put(userId, shard.name);
+            }
+        }
+        if (!errors.isEmpty()) throw new PolicyValidationException(errors);
+        return new Loaded<>(merged, origins);
+    }
+
+    /**
+     * Writes a matrix back to its shards. Entries go to the file they were
+     * loaded from; new keys go to "&lt;module&gt;.roles.yaml" (module = key
+     * prefix). Each touched file is replaced atomically.
+     *
+     * @param dir     the policy directory
+     * @param matrix  the matrix to write
+     * @param origins origins from {@link #loadRoles}; updated with new assignments
+     * @return true if every file was replaced; false if any failed
+     */
+    public static boolean saveRoles(Path dir, Map<String, Map<String, Boolean>> matrix, Map<String, String> origins) {
+        Map<String, Map<String, Map<String, Boolean>>> files = new TreeMap<>();
+        for (String file : origins.values()) {
+            files.put(file, new LinkedHashMap<>());
+        }
+        for (Map.Entry<String, Map<String, Boolean>> roleEntry : matrix.entrySet()) {
+            String role = roleEntry.getKey();
+            String roleFile = origins.computeIfAbsent(role, r -> LOCAL_ROLES);
+            files.computeIfAbsent(roleFile, f -> new LinkedHashMap<>()).computeIfAbsent(role, r -> new LinkedHashMap<>());
+            for (Map.Entry<String, Boolean> e : roleEntry.getValue().entrySet()) {
+                String file = origins.computeIfAbsent(roleKeyId(role, e.getKey()), id -> moduleFile(e.getKey()));
+                files.computeIfAbsent(file, f -> new LinkedHashMap<>())
+                        .computeIfAbsent(role, r -> new LinkedHashMap<>())
+                        .put(e.getKey(), e.getValue());
+            }
+        }
+        return saveAll(dir, files);
+    }
+
+    /**
+     * Writes a registry back to its shards. New users go to local.users.yaml.
+     *
+     * @param dir      the policy directory
+     * @param registry the registry to write
+     * @param origins  origins from {@link #loadUsers}; updated with new assignments
+     * @return true if every file was replaced; false if any failed
+     */
+    public static boolean saveUsers(Path dir, Map<String, Map<String, Object>> registry, Map<String, String> origins) {
+        Map<String, Map<String, Map<String, Object>>> files = new TreeMap<>();
+        for (String file : origins.values()) {
+            files.put(file, new LinkedHashMap<>());
+        }
+        for (Map.Entry<String, Map<String, Object>> e : registry.entrySet()) {
+            String file = origins.computeIfAbsent(e.getKey(), id -> LOCAL_USERS);
+            files.computeIfAbsent(file, f -> new LinkedHashMap<>()).put(e.getKey(), e.getValue());
+        }
+        return saveAll(dir, files);
+    }
+
+    /**
+     * Replaces each file atomically, carrying on past failures so that as
+     * many shards as possible are current.
+     */
+    private static boolean saveAll(Path dir, Map<String, ?> files) {
+        boolean saved = true;
+        for (Map.Entry<String, ?> e : files.entrySet()) {
+            saved &= YamlLoader.saveAtomically(dir.resolve(e.getKey()).toString(), e.getValue());
+        }
+        return saved;
+    }
+
+    private static String moduleFile(String key) {
+        int dot = key.indexOf('.');
+        return dot > 0 ? key.substring(0, dot) + ROLE_SUFFIX : LOCAL_ROLES;
+    }
+
+    /**
+     * Parses every file with the suffix in parallel, returning shards in
+     * file-name order. Unreadable files are reported in errors.
+     */
+    private static List<Shard> parseAll(Path dir, String suffix, ForkJoinPool pool, List<String> errors) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + suffix)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            errors.add(dir + ": cannot list policy directory: " + e.getMessage());
+            return Collections.emptyList();
+        }
+        files.sort(null);
+
+        List<Shard> shards;
+        try {
+            shards = pool.submit(() -> files.parallelStream()
+                    .map(PolicyDirectoryLoader::parse)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Policy load interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Policy load failed: " + e.getCause(), e.getCause());
+        }
+
+        List<Shard> ok = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            if (shard.error != null) {
+                errors.add(shard.name + ": " + shard.error);
+            } else {
+                ok.add(shard);
+            }
+        }
+        return ok;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Shard parse(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            Object data = YamlLoader.parse(file);
+            if (data == null) return new Shard(name, Collections.emptyMap(), null);
+            if (!(data instanceof Map)) return new Shard(name, null, "top level is not a map");
+            return new Shard(name, (Map<String, Object>) data, null);
+        } catch (IOException | RuntimeException e) {
+            return new Shard(name, null, "cannot parse: " + e.getMessage());
+        }
+    }
+}
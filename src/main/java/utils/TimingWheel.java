@@ -0,0 +1,202 @@
+// === src/main/java/utils/TimingWheel.java ===
+
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * TimingWheel is a hierarchical timing wheel: a set of deadlines that can
+ * be scheduled, cancelled and expired in O(1) per entry, no matter how
+ * many are pending or how far apart they are.
+ *
+ * Time is cut into ticks. Level 0 has one slot per tick for the next 64
+ * ticks; each higher level has 64 slots that are 64 times wider. An entry
+ * is filed in the lowest level whose range covers its deadline. Whenever
+ * the current tick crosses a slot boundary of a higher level, that slot's
+ * entries are re-filed one level down (a cascade), so each entry moves at
+ * most once per level before it lands in level 0 and fires. Advancing
+ * never scans entries that are not due.
+ *
+ * An entry fires at the first tick at or after its deadline, never
+ * earlier. Deadlines beyond the top level's range are parked in its
+ * farthest slot and re-filed when it comes round.
+ *
+ * Not thread-safe: the owner serializes schedule/cancel/advance.
+ *
+ * Usage:
+ *   TimingWheel<String> wheel = new TimingWheel<>(1000, System.currentTimeMillis());
+ *   TimingWheel.Timeout<String> t = wheel.schedule("x", deadlineMillis);
+ *   wheel.advance(System.currentTimeMillis(), item -> ...);
+ *
+ * @param <T> item type
+ */
+public final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 6;   // 64^6 ticks: ~2000 years at one-second ticks
+
+    /**
+     * Handle for one scheduled entry.
+     *
+     * @param <T> item type
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private boolean cancelled;
+        private boolean fired;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * @return true if the entry has neither fired nor been cancelled
+         */
+        public boolean isPending() {
+            return !cancelled && !fired;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private long currentTick;
+    private int pending;
+
+    /**
+     * @param tickMillis resolution of the wheel
+     * @param nowMillis  the current time
+     */
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules an item. A deadline that has already passed fires on the next tick.
+     *
+     * @param item           the item handed back on expiry
+     * @param deadlineMillis when it is due
+     * @return a handle that can cancel it
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        long tick = Math.max(ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(item, tick);
+        file(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending entry. Its slot is not searched; the entry is
+     * dropped when the slot is next visited.
+     *
+     * @param timeout the handle from {@link #schedule}
+     * @return true if it was still pending
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending()) return false;
+        timeout.cancelled = true;
+        pending--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward, handing every entry that has come due to
+     * the action in deadline order (tick by tick).
+     *
+     * @param nowMillis the current time; going backwards is a no-op
+     * @param expired   receives each expired item
+     * @return number of items expired
+     */
+    public int advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        int fired = 0;
+        while (currentTick < target) {
+            if (pending == 0) {
+                currentTick = target;   // nothing to cascade or fire
+                break;
+            }
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) break;
+                List<Timeout<T>> slot = slot(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                List<Timeout<T>> moving = new ArrayList<>(slot);
+                slot.clear();
+                for (Timeout<T> t : moving) {
+                    if (!t.cancelled) file(t);
+                }
+            }
+            List<Timeout<T>> due = slot(0, (int) (currentTick & MASK));
+            List<Timeout<T>> firing = new ArrayList<>(due);
+            due.clear();
+            for (Timeout<T> t : firing) {
+                if (t.cancelled) continue;
+                t.fired = true;
+                pending--;
+                fired++;
+                expired.accept(t.item);
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * @return number of entries that have neither fired nor been cancelled
+     */
+    public int size() {
+        return pending;
+    }
+
+    /**
+     * @return resolution of the wheel in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return the time up to which the wheel has advanced
+     */
+    public long currentMillis() {
+        return currentTick * tickMillis;
+    }
+
+    // === Internals ===
+
+    private void file(Timeout<T> t) {
+        long delta = t.deadlineTick - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (BITS * (level + 1))) {
+                slot(level, (int) ((t.deadlineTick >>> (BITS * level)) & MASK)).add(t);
+                return;
+            }
+        }
+        // Beyond the top level: park in its farthest slot and re-file from there.
+        int top = LEVELS - 1;
+        slot(top, (int) (((currentTick >>> (BITS * top)) - 1) & MASK)).add(t);
+    }
+
+    private List<Timeout<T>> slot(int level, int index) {
+        return slots.get(level * SLOTS + index);
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
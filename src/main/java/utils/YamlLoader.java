@@ -4,8 +4,14 @@ package utils;
 
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
@@ -29,7 +35,9 @@ public class YamlLoader {
         OPTIONS.setIndent(2);
     }
 
-    private static final Yaml yaml = new Yaml(OPTIONS);
+    // SnakeYAML instances are not thread-safe, and the two managers save and
+    // reload under different locks, so each thread gets its own instance.
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(() -> new Yaml(OPTIONS));
 
     /**
      * Loads a YAML file and casts the result to the specified class type.
@@ -42,7 +50,7 @@ public class YamlLoader {
     @SuppressWarnings("unchecked")
     public static <T> T load(String path, Class<T> clazz) {
         try (InputStream input = new FileInputStream(path)) {
-            Object data = yaml.load(input);
+            Object data = YAML.get().load(input);
             return (T) data;
         } catch (IOException e) {
             System.err.println("❌ Failed to load YAML: " + path);
@@ -51,6 +59,36 @@ public class YamlLoader {
         }
     }
 
+    /**
+     * Parses a YAML file with its own parser instance, so it is safe to
+     * call from several threads at once (SnakeYAML instances are not).
+     *
+     * @param file file to parse
+     * @return the parsed document (may be null for an empty file)
+     * @throws IOException if the file cannot be read
+     */
+    public static Object parse(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return new Yaml().load(input);
+        }
+    }
+
+    /**
+     * Parses one document held in memory with this thread's parser, e.g.
+     * one line of a JSONL file (JSON objects are YAML flow mappings).
+     *
+     * @param text the document
+     * @return the parsed document (may be null for blank text)
+     * @throws IllegalArgumentException if the text is not well-formed
+     */
+    public static Object parseText(String text) {
+        try {
+            return YAML.get().load(text);
+        } catch (YAMLException e) {
+            throw new IllegalArgumentException("malformed document: " + e.getMessage().split("\n", 2)[0], e);
+        }
+    }
+
     /**
      * Saves an object (Map or List) to a YAML file.
      *
@@ -59,13 +97,46 @@ public class YamlLoader {
      */
     public static void save(String path, Object data) {
         try (Writer writer = new FileWriter(path)) {
-            yaml.dump(data, writer);
+            YAML.get().dump(data, writer);
         } catch (IOException e) {
             System.err.println("❌ Failed to save YAML: " + path);
             e.printStackTrace();
         }
     }
 
+    /**
+     * Saves an object to a YAML file with a single atomic replace.
+     * The data is written to a sibling temp file first and then moved over
+     * the target, so a crash never leaves a half-written file behind.
+     *
+     * @param path file path to write
+     * @param data any serializable structure
+     * @return true if the file was replaced; false on failure
+     */
+    public static boolean saveAtomically(String path, Object data) {
+        Path target = Paths.get(path);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp)) {
+            YAML.get().dump(data, writer);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to save YAML: " + path);
+            e.printStackTrace();
+            return false;
+        }
+        try {
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Failed to replace YAML: " + path);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Loads a permission matrix: Map<role, Map<permission, Boolean>>
      *
@@ -75,7 +146,7 @@ public class YamlLoader {
     @SuppressWarnings("unchecked")
     public static Map<String, Map<String, Boolean>> loadPermissionMatrix(String path) {
         try (InputStream input = new FileInputStream(path)) {
-            return (Map<String, Map<String, Boolean>>) yaml.load(input);
+            return (Map<String, Map<String, Boolean>>) YAML.get().load(input);
         } catch (IOException e) {
             System.err.println("❌ Failed to load permission matrix: " + path);
             e.printStackTrace();
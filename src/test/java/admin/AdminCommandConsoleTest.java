@@ -0,0 +1,170 @@
+// === src/test/java/admin/AdminCommandConsoleTest.java ===
+
+package admin;
+
+import audit.AuditLog;
+import audit.AuditQuery;
+import audit.AuditRecord;
+import core.PermissionsManager;
+import daemon.DaemonClient;
+import daemon.PolicyDaemon;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdminCommandConsoleTest validates the begin/commit/rollback commands
+ * and scripts run with run, which apply all of their lines or none.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class AdminCommandConsoleTest {
+
+    @TempDir
+    Path dir;
+    private PolicyFixture fixture;
+    private AuditLog audit;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private AdminCommandConsole console;
+
+    /**
+     * Loads fresh copies of the config and opens a console on them.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        fixture = PolicyFixture.copyConfig(dir);
+        audit = fixture.getAuditLog();
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        console = new AdminCommandConsole("ops", pm, urm, null);
+    }
+
+    /**
+     * Stops the console's expiry thread.
+     */
+    @AfterEach
+    public void tearDown() {
+        console.close();
+    }
+
+    /**
+     * Grants between begin and commit are staged, rollback drops them and
+     * commit applies them; commit and rollback need an open transaction.
+     */
+    @Test
+    public void testBeginCommitRollback() {
+        assertFalse(console.handle("commit"));
+        assertFalse(console.handle("rollback"));
+
+        assertTrue(console.handle("begin"));
+        assertTrue(console.handle("grant auditor trader.view_portfolio true"));
+        assertEquals(1, console.getTransaction().size());
+        assertFalse(pm.hasPermission("auditor", "trader.view_portfolio"));
+        assertTrue(console.handle("rollback"));
+        assertNull(console.getTransaction());
+        assertFalse(pm.hasPermission("auditor", "trader.view_portfolio"));
+
+        assertTrue(console.handle("begin"));
+        assertTrue(console.handle("grant auditor trader.view_portfolio true"));
+        assertTrue(console.handle("toggle bob false"));
+        assertTrue(console.handle("commit"));
+        assertNull(console.getTransaction());
+        assertTrue(pm.hasPermission("auditor", "trader.view_portfolio"));
+        assertFalse(urm.isActive("bob"));
+        assertEquals(1, audit.query(new AuditQuery().action(AuditRecord.Action.BATCH_COMMIT)).size());
+    }
+
+    /**
+     * A script is one batch: it applies in full, or, if any line fails
+     * (including a transaction command), not at all.
+     */
+    @Test
+    public void testScriptAppliesAllOrNothing() throws IOException {
+        Path good = Files.write(dir.resolve("good.rbac"), List.of(
+                "# onboarding",
+                "grant auditor trader.view_portfolio true",
+                "adduser zoe auditor Z001 true"));
+        Path broken = Files.write(dir.resolve("broken.rbac"), List.of(
+                "grant auditor risker.approve_trade true",
+                "adduser yan auditor Y001 true",
+                "grant auditor",
+                "toggle bob false"));
+        Path committing = Files.write(dir.resolve("committing.rbac"), List.of(
+                "grant auditor risker.approve_trade true",
+                "commit",
+                "toggle bob false"));
+
+        assertFalse(console.handle("run " + broken));
+        assertFalse(console.handle("run " + committing));
+        assertNull(console.getTransaction());
+        assertFalse(pm.hasPermission("auditor", "risker.approve_trade"));
+        assertNull(urm.getUser("yan"));
+        assertTrue(urm.isActive("bob"));
+
+        assertTrue(console.handle("run " + good));
+        assertNull(console.getTransaction());
+        assertTrue(pm.hasPermission("auditor", "trader.view_portfolio"));
+        assertTrue(urm.isActive("zoe"));
+        assertEquals(1, audit.query(new AuditQuery().action(AuditRecord.Action.BATCH_COMMIT)).size());
+    }
+
+    /**
+     * Inside an operator's transaction a script cannot end it: the
+     * rollback line is refused and the transaction stays open.
+     */
+    @Test
+    public void testScriptCannotEndOpenTransaction() throws IOException {
+        Path script = Files.write(dir.resolve("rollback.rbac"), List.of(
+                "grant auditor risker.approve_trade true",
+                "rollback"));
+
+        assertTrue(console.handle("begin"));
+        assertTrue(console.handle("grant auditor trader.view_portfolio true"));
+        assertFalse(console.handle("run " + script));
+
+        assertNotNull(console.getTransaction());
+        assertTrue(console.handle("commit"));
+        assertTrue(pm.hasPermission("auditor", "trader.view_portfolio"));
+    }
+
+    /**
+     * Next to a daemon, a committed change reaches the daemon right away,
+     * and staged changes only once committed.
+     */
+    @Test
+    public void testCommittedChangesReachDaemon() {
+        PolicyDaemon daemon = new PolicyDaemon(fixture.newPermissionsManager(), fixture.newUserRegistryManager(),
+                dir.resolve("d.sock"));
+        try (DaemonClient client = DaemonClient.connect(daemon.getSocketPath())) {
+            AdminCommandConsole remote = new AdminCommandConsole("ops", pm, urm, null,
+                    DaemonClient.connect(daemon.getSocketPath()));
+            try {
+                assertTrue(remote.handle("grant auditor trader.view_portfolio true"));
+                assertEquals(List.of("ALLOWED"), client.request("CHECK bob trader.view_portfolio"));
+
+                assertTrue(remote.handle("begin"));
+                assertTrue(remote.handle("toggle bob false"));
+                assertEquals(List.of("ALLOWED"), client.request("CHECK bob trader.view_portfolio"));
+                assertTrue(remote.handle("commit"));
+                assertNotEquals(List.of("ALLOWED"), client.request("CHECK bob trader.view_portfolio"));
+            } finally {
+                remote.close();
+            }
+        } finally {
+            daemon.close();
+        }
+    }
+}
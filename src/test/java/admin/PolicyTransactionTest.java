@@ -0,0 +1,135 @@
+// === src/test/java/admin/PolicyTransactionTest.java ===
+
+package admin;
+
+import audit.AuditLog;
+import audit.AuditQuery;
+import audit.AuditRecord;
+import core.PermissionsManager;
+import core.PolicyValidationException;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyTransactionTest validates staged commits: nothing is visible
+ * before commit, validation rejects the whole batch, and a batch whose
+ * second half cannot be saved is undone.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class PolicyTransactionTest {
+
+    @TempDir
+    Path dir;
+    private PolicyFixture fixture;
+    private AuditLog audit;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads fresh copies of the config.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        fixture = PolicyFixture.copyConfig(dir);
+        audit = fixture.getAuditLog();
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Staged changes stay invisible until commit, which applies and saves
+     * them together and logs one batch.
+     */
+    @Test
+    public void testCommitAppliesStagedChanges() {
+        PolicyTransaction tx = new PolicyTransaction(pm, urm, "ops");
+        tx.grant("desk", "trader.view_portfolio", true);
+        tx.addUser("zoe", "desk", "Z001", true);
+        tx.toggleActive("bob", false);
+
+        assertEquals(3, tx.size());
+        assertFalse(pm.hasPermission("desk", "trader.view_portfolio"));
+        assertNull(urm.getUser("zoe"));
+        assertTrue(urm.isActive("bob"));
+
+        tx.commit();
+
+        assertTrue(tx.isEmpty());
+        assertTrue(pm.hasPermission("desk", "trader.view_portfolio"));
+        assertTrue(urm.isActive("zoe"));
+        assertFalse(urm.isActive("bob"));
+        assertTrue(fixture.newPermissionsManager().hasPermission("desk", "trader.view_portfolio"));
+        assertNotNull(fixture.newUserRegistryManager().getUser("zoe"));
+        assertEquals(1, audit.query(new AuditQuery().action(AuditRecord.Action.BATCH_COMMIT)).size());
+        assertEquals(5, audit.query(new AuditQuery().operator("ops")).size());
+    }
+
+    /**
+     * One invalid change rejects the whole batch with every error listed;
+     * nothing is applied and the changes stay staged.
+     */
+    @Test
+    public void testValidationRejectsWholeBatch() {
+        long matrixVersion = pm.getVersion();
+        long registryVersion = urm.getVersion();
+        PolicyTransaction tx = new PolicyTransaction(pm, urm, "ops");
+        tx.grant("auditor", "trader.view_portfolio", true);
+        tx.addUser("zoe", "wizard", "Z001", true);
+        tx.toggleActive("nobody", true);
+
+        PolicyValidationException e = assertThrows(PolicyValidationException.class, tx::commit);
+
+        assertEquals(2, e.getErrors().size(), e.getErrors().toString());
+        assertEquals(3, tx.size());
+        assertEquals(matrixVersion, pm.getVersion());
+        assertEquals(registryVersion, urm.getVersion());
+        assertFalse(pm.hasPermission("auditor", "trader.view_portfolio"));
+
+        tx.rollback();
+        assertTrue(tx.isEmpty());
+    }
+
+    /**
+     * If the registry cannot be saved after the matrix was, the matrix
+     * half is put back in memory and on disk, and the batch can be
+     * retried once the problem is gone.
+     */
+    @Test
+    public void testFailedSaveUndoesBatch() throws IOException {
+        Path blocker = Files.createDirectory(dir.resolve("UserRegistry.yaml.tmp"));
+        PolicyTransaction tx = new PolicyTransaction(pm, urm, "ops");
+        tx.grant("auditor", "trader.view_portfolio", true);
+        tx.grant("desk", "trader.view_portfolio", true);
+        tx.addUser("zoe", "desk", "Z001", true);
+        tx.toggleActive("bob", false);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, tx::commit);
+
+        assertTrue(e.getMessage().contains("undone"), e.getMessage());
+        assertEquals(4, tx.size());
+        assertFalse(pm.hasPermission("auditor", "trader.view_portfolio"));
+        assertFalse(pm.getAllRoles().contains("desk"));
+        assertNull(urm.getUser("zoe"));
+        assertTrue(urm.isActive("bob"));
+        assertFalse(fixture.newPermissionsManager().hasPermission("auditor", "trader.view_portfolio"));
+        assertTrue(audit.query(new AuditQuery().action(AuditRecord.Action.BATCH_COMMIT)).isEmpty());
+
+        Files.delete(blocker);
+        tx.commit();
+
+        assertTrue(pm.hasPermission("desk", "trader.view_portfolio"));
+        assertNotNull(fixture.newUserRegistryManager().getUser("zoe"));
+    }
+}
@@ -0,0 +1,237 @@
+// === src/test/java/audit/AuditStoreTest.java ===
+
+package audit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditStoreTest validates the indexed audit store: per-field indexes,
+ * limits and newest-first ordering, time-range streaming, the per-segment
+ * index files, the legacy rbac.log import, and eviction of records whose
+ * segment was pruned.
+ */
+public class AuditStoreTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @TempDir
+    Path dir;
+    private long base;
+    private SegmentedLog log;
+    private AuditStore store;
+
+    @BeforeEach
+    public void setUp() {
+        base = System.currentTimeMillis() - Duration.ofDays(7).toMillis();
+        log = open(Duration.ofDays(30));
+        store = new AuditStore(log);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        log.close();
+    }
+
+    private SegmentedLog open(Duration retention) {
+        return new SegmentedLog(dir.resolve("segments"), 4096, Duration.ofDays(1), retention, Clock.systemUTC());
+    }
+
+    private AuditRecord record(int minute, String operator, String role, String userId, String key) {
+        AuditRecord.Action action = userId != null ? AuditRecord.Action.USER_TOGGLE : AuditRecord.Action.PERMISSION_CHANGE;
+        return new AuditRecord(Instant.ofEpochMilli(base + minute * MINUTE), action, operator, role, userId,
+                key, "true", null, null);
+    }
+
+    /**
+     * Each field has its own index, criteria combine with AND, and an
+     * unknown value matches nothing.
+     */
+    @Test
+    public void testIndexesEachField() {
+        store.append(List.of(
+                record(0, "alice", "trader", null, "trader.view_portfolio"),
+                record(1, "alice", "auditor", null, "auditor.trace_intent"),
+                record(2, "bob", "trader", null, "trader.submit_manual_trade"),
+                record(3, "bob", null, "carol", null),
+                record(4, "alice", null, "carol", null)));
+
+        assertEquals(3, store.query(new AuditQuery().operator("alice")).size());
+        assertEquals(2, store.query(new AuditQuery().role("trader")).size());
+        assertEquals(2, store.query(new AuditQuery().user("carol")).size());
+        assertEquals(1, store.query(new AuditQuery().key("auditor.trace_intent")).size());
+        assertEquals(2, store.query(new AuditQuery().action(AuditRecord.Action.USER_TOGGLE)).size());
+        List<AuditRecord> both = store.query(new AuditQuery().operator("bob").role("trader"));
+        assertEquals(1, both.size());
+        assertEquals("trader.submit_manual_trade", both.get(0).getKey());
+        assertTrue(store.query(new AuditQuery().operator("mallory")).isEmpty());
+        assertEquals(5, store.size());
+    }
+
+    /**
+     * Results come newest first, stop at the limit, and respect the
+     * [from, to) window with or without an index.
+     */
+    @Test
+    public void testLimitAndOrdering() {
+        List<AuditRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(record(i, i % 2 == 0 ? "alice" : "bob", "trader", null, "trader.key_" + i));
+        }
+        store.append(batch);
+
+        List<AuditRecord> newest = store.query(new AuditQuery().limit(5));
+        assertEquals(5, newest.size());
+        assertEquals("trader.key_49", newest.get(0).getKey());
+        assertEquals("trader.key_45", newest.get(4).getKey());
+
+        Instant from = Instant.ofEpochMilli(base + 10 * MINUTE);
+        Instant to = Instant.ofEpochMilli(base + 20 * MINUTE);
+        List<AuditRecord> window = store.query(new AuditQuery().from(from).to(to));
+        assertEquals(10, window.size());
+        assertEquals("trader.key_19", window.get(0).getKey());
+        assertEquals("trader.key_10", window.get(9).getKey());
+
+        List<AuditRecord> alice = store.query(new AuditQuery().operator("alice").from(from).to(to).limit(3));
+        assertEquals(List.of("trader.key_18", "trader.key_16", "trader.key_14"),
+                alice.stream().map(AuditRecord::getKey).toList());
+    }
+
+    /**
+     * readRange streams a time range from the segments in append order,
+     * and a reopened store rebuilds the same indexes.
+     */
+    @Test
+    public void testReadRangeAndReopen() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            store.append(List.of(record(i, "alice", "trader", null, "trader.key_" + i)));
+        }
+        log.awaitMaintenance();
+
+        List<AuditRecord> range = new ArrayList<>();
+        store.readRange(Instant.ofEpochMilli(base + 100 * MINUTE), Instant.ofEpochMilli(base + 200 * MINUTE), range::add);
+        assertEquals(100, range.size());
+        assertEquals("trader.key_100", range.get(0).getKey());
+        assertEquals("trader.key_199", range.get(99).getKey());
+
+        log.close();
+        log = open(Duration.ofDays(30));
+        AuditStore reopened = new AuditStore(log);
+        assertEquals(500, reopened.size());
+        assertEquals(1, reopened.query(new AuditQuery().key("trader.key_250")).size());
+    }
+
+    /**
+     * Sealed segments get an index file, and a store opened without them
+     * rebuilds each one from its segment when a query first reaches it.
+     */
+    @Test
+    public void testSegmentIndexesArePersistedAndRebuilt() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            store.append(List.of(record(i, "alice", "trader", null, "trader.key_" + i)));
+        }
+        log.awaitMaintenance();
+        assertTrue(log.closedSegmentCount() > 1);
+        assertEquals(log.closedSegmentCount(), indexFiles().size());
+
+        log.close();
+        for (Path index : indexFiles()) {
+            Files.delete(index);
+        }
+        log = open(Duration.ofDays(30));
+        AuditStore reopened = new AuditStore(log);
+        assertTrue(indexFiles().isEmpty());
+        List<AuditRecord> found = reopened.query(new AuditQuery().key("trader.key_3"));
+        assertEquals(1, found.size());
+        assertEquals("trader.key_3", found.get(0).getKey());
+        assertEquals(log.closedSegmentCount(), indexFiles().size());
+        assertEquals(250, reopened.query(new AuditQuery().operator("alice").limit(250)).size());
+    }
+
+    private List<Path> indexFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("segments"))) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".idx")).toList();
+        }
+    }
+
+    /**
+     * Legacy rbac.log lines are imported once into an empty store.
+     */
+    @Test
+    public void testImportsLegacyLog() throws IOException {
+        Path legacy = dir.resolve("rbac.log");
+        Instant time = Instant.ofEpochMilli(base).truncatedTo(ChronoUnit.SECONDS);
+        Files.writeString(legacy,
+                new AuditRecord(time, AuditRecord.Action.PERMISSION_CHANGE, "alice", "trader", null,
+                        "trader.view_portfolio", "true", null, null).toLogLine()
+                + "not an audit line\n"
+                + new AuditRecord(time, AuditRecord.Action.USER_ADD, "alice", "auditor", "dave",
+                        null, "true", "D001", "b1").toLogLine());
+
+        assertEquals(2, store.importLegacyLog(legacy.toString()));
+        AuditRecord dave = store.query(new AuditQuery().user("dave")).get(0);
+        assertEquals(AuditRecord.Action.USER_ADD, dave.getAction());
+        assertEquals("D001", dave.getClientId());
+        assertEquals("b1", dave.getBatchId());
+        assertEquals(time, dave.getTime());
+        assertEquals(0, store.importLegacyLog(legacy.toString()));
+        assertEquals(2, store.size());
+    }
+
+    /**
+     * AuditLog writes only the store unless the text mirror is asked for.
+     */
+    @Test
+    public void testTextMirrorIsOptIn() throws IOException {
+        AuditRecord r = record(0, "alice", "trader", null, "trader.view_portfolio");
+        Path text = dir.resolve("rbac.log");
+        AuditLog plain = new AuditLog(text.toString(), dir.resolve("plain").toString());
+        plain.record(r);
+        assertFalse(Files.exists(text));
+        assertEquals(1, plain.query(new AuditQuery()).size());
+
+        AuditLog mirrored = new AuditLog(text.toString(), dir.resolve("mirrored").toString(), true);
+        mirrored.record(r);
+        assertTrue(Files.exists(text));
+        plain.getStore().getLog().close();
+        mirrored.getStore().getLog().close();
+    }
+
+    /**
+     * When retention deletes a segment, its records leave the indexes too.
+     */
+    @Test
+    public void testPrunedSegmentsAreEvicted() throws IOException {
+        base = System.currentTimeMillis() - Duration.ofDays(60).toMillis();
+        for (int i = 0; i < 300; i++) {
+            store.append(List.of(record(i, "alice", "trader", null, "trader.key_" + i)));
+        }
+        log.rotate();
+        base = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            store.append(List.of(record(i, "alice", "trader", null, "trader.recent_" + i)));
+        }
+        log.awaitMaintenance();
+
+        assertEquals(10, store.size());
+        assertEquals(10, store.query(new AuditQuery().operator("alice")).size());
+        assertTrue(store.query(new AuditQuery().key("trader.key_0")).isEmpty());
+        store.append(List.of(record(11, "bob", "trader", null, "trader.recent_11")));
+        assertEquals("trader.recent_11", store.query(new AuditQuery().limit(1)).get(0).getKey());
+    }
+}
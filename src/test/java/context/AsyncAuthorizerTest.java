@@ -0,0 +1,192 @@
+// === src/test/java/context/AsyncAuthorizerTest.java ===
+
+package context;
+
+import core.PermissionsManager;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncAuthorizerTest validates typed decisions and the backpressure and
+ * ordering of the Flow processor.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class AsyncAuthorizerTest {
+
+    @TempDir
+    Path dir;
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private AsyncAuthorizer authz;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        authz = new AsyncAuthorizer(pm, urm);
+    }
+
+    /**
+     * Every case ContextBuilder throws for comes back as a typed outcome.
+     */
+    @Test
+    public void testTypedOutcomes() {
+        assertTrue(authz.check("alice", "admin.manage_users").isDone());
+        assertEquals(Decision.Outcome.ALLOWED, authz.check("alice", "admin.manage_users").join().getOutcome());
+        assertEquals(Decision.Outcome.DENIED, authz.decide("bob", "admin.manage_users").getOutcome());
+        assertEquals(Decision.Outcome.UNKNOWN_USER, authz.decide("nobody", "admin.manage_users").getOutcome());
+
+        urm.toggleActive("bob", false, "test");
+        assertEquals(Decision.Outcome.INACTIVE_USER, authz.decide("bob", "auditor.view_logs").getOutcome());
+
+        urm.addUser("zoe", "ghost", "Z001", true, "test");
+        assertEquals(Decision.Outcome.INVALID_ROLE, authz.decide("zoe", "auditor.view_logs").getOutcome());
+    }
+
+    /**
+     * A batch gives the same answers as single checks, including for
+     * multi-role users and explicit denies.
+     */
+    @Test
+    public void testBatchMatchesSingleChecks() {
+        urm.addUser("zoe", List.of("trader", "auditor"), "Z001", true, "test");
+        pm.grant("auditor", "!trader.submit_manual_trade", true, "test");
+        List<String> keys = List.of("trader.submit_manual_trade", "trader.view_portfolio",
+                "auditor.view_logs", "admin.manage_users", "no.such_key");
+        List<CheckRequest> requests = new ArrayList<>();
+        for (String userId : urm.getAllUserIds()) {
+            for (String key : keys) requests.add(CheckRequest.of(userId, key));
+        }
+        requests.add(CheckRequest.of("nobody", "auditor.view_logs"));
+
+        List<Decision> batch = authz.decideAll(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            CheckRequest request = requests.get(i);
+            assertEquals(authz.decide(request.getUserId(), request.getKey()).getOutcome(),
+                    batch.get(i).getOutcome(), request.getUserId() + " " + request.getKey());
+        }
+        assertEquals(Decision.Outcome.DENIED, authz.decideAll(
+                List.of(CheckRequest.of("zoe", "trader.submit_manual_trade"))).get(0).getOutcome());
+    }
+
+    /**
+     * Upstream is asked for exactly what the subscriber requested.
+     */
+    @Test
+    public void testProcessorHonoursDemand() {
+        List<CheckRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(CheckRequest.of(i % 2 == 0 ? "alice" : "nobody", "admin.manage_users"));
+        }
+        ListPublisher source = new ListPublisher(requests);
+        Flow.Processor<CheckRequest, Decision> processor = authz.processor(Runnable::run, 4);
+        source.subscribe(processor);
+
+        List<Decision> received = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        boolean[] completed = new boolean[1];
+        processor.subscribe(new Flow.Subscriber<>() {
+            public void onSubscribe(Flow.Subscription s) { subscription[0] = s; }
+            public void onNext(Decision d) { received.add(d); }
+            public void onError(Throwable t) { fail(t); }
+            public void onComplete() { completed[0] = true; }
+        });
+
+        subscription[0].request(3);
+        assertEquals(3, source.requested);
+        assertEquals(3, received.size());
+        assertFalse(completed[0]);
+
+        subscription[0].request(Long.MAX_VALUE);
+        assertEquals(10, received.size());
+        assertTrue(completed[0]);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 2 == 0 ? Decision.Outcome.ALLOWED : Decision.Outcome.UNKNOWN_USER,
+                    received.get(i).getOutcome());
+            assertSame(requests.get(i), received.get(i).getRequest());
+        }
+    }
+
+    /**
+     * A large asynchronous stream is answered completely and in order.
+     */
+    @Test
+    public void testProcessorStreamsInOrder() throws InterruptedException {
+        int n = 20_000;
+        Flow.Processor<CheckRequest, Decision> processor = authz.processor();
+        List<Decision> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch completed = new CountDownLatch(1);
+        processor.subscribe(new Flow.Subscriber<>() {
+            Flow.Subscription s;
+            public void onSubscribe(Flow.Subscription s) { this.s = s; s.request(64); }
+            public void onNext(Decision d) { received.add(d); if (received.size() % 64 == 0) s.request(64); }
+            public void onError(Throwable t) { completed.countDown(); }
+            public void onComplete() { completed.countDown(); }
+        });
+        try (SubmissionPublisher<CheckRequest> source = new SubmissionPublisher<>()) {
+            source.subscribe(processor);
+            for (int i = 0; i < n; i++) {
+                source.submit(CheckRequest.of("user" + i, "k"));
+            }
+        }
+        assertTrue(completed.await(30, TimeUnit.SECONDS));
+        assertEquals(n, received.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals("user" + i, received.get(i).getRequest().getUserId());
+        }
+    }
+
+    /**
+     * Synchronous publisher that emits only what was requested.
+     */
+    private static final class ListPublisher implements Flow.Publisher<CheckRequest> {
+        private final List<CheckRequest> items;
+        private int next;
+        private boolean completed;
+        long requested;
+
+        ListPublisher(List<CheckRequest> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super CheckRequest> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    for (long i = 0; i < n && next < items.size(); i++) {
+                        subscriber.onNext(items.get(next++));
+                    }
+                    if (next == items.size() && !completed) {
+                        completed = true;
+                        subscriber.onComplete();
+                    }
+                }
+                public void cancel() { }
+            });
+        }
+    }
+}
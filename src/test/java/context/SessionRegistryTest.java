@@ -0,0 +1,84 @@
+// === src/test/java/context/SessionRegistryTest.java ===
+
+package context;
+
+import core.PermissionsManager;
+import fixtures.PolicyFixture;
+import model.UserContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SessionRegistryTest validates that registered sessions follow grants,
+ * revocations and user deactivation without being rebuilt.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class SessionRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private ContextBuilder builder;
+    private SessionRegistry sessions;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        builder = new ContextBuilder(pm, urm);
+        sessions = new SessionRegistry(pm, urm);
+    }
+
+    /**
+     * A grant or revoke on the session's role is visible on the next check.
+     */
+    @Test
+    public void testRoleChangesArePushed() {
+        UserContext bob = sessions.register(builder.buildUserContext("bob"));
+        UserContext alice = sessions.register(builder.buildUserContext("alice"));
+        boolean aliceBefore = alice.hasPermission("trader.view_portfolio");
+
+        pm.grant("auditor", "trader.view_portfolio", true, "test");
+        assertTrue(bob.hasPermission("trader.view_portfolio"));
+        assertEquals(aliceBefore, alice.hasPermission("trader.view_portfolio"));
+
+        pm.grant("auditor", "trader.view_portfolio", false, "test");
+        assertFalse(bob.hasPermission("trader.view_portfolio"));
+    }
+
+    /**
+     * Deactivation revokes live sessions; unregistered sessions keep their snapshot.
+     */
+    @Test
+    public void testDeactivationRevokes() {
+        UserContext live = sessions.register(builder.buildUserContext("alice"));
+        UserContext detached = sessions.register(builder.buildUserContext("alice"));
+        sessions.unregister(detached);
+        assertTrue(live.hasPermission("admin.manage_users"));
+
+        urm.toggleActive("alice", false, "test");
+        assertTrue(live.isRevoked());
+        assertFalse(live.hasPermission("admin.manage_users"));
+        assertTrue(detached.hasPermission("admin.manage_users"));
+        assertEquals(0, sessions.size());
+
+        urm.toggleActive("alice", true, "test");
+        assertTrue(live.isRevoked());
+    }
+}
@@ -0,0 +1,95 @@
+// === src/test/java/core/EffectivePermissionViewTest.java ===
+
+package core;
+
+import context.ContextBuilder;
+import fixtures.PolicyFixture;
+import model.UserContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EffectivePermissionViewTest validates that the materialized view agrees
+ * with ContextBuilder and follows grants, user changes and reloads.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class EffectivePermissionViewTest {
+
+    @TempDir
+    Path dir;
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private EffectivePermissionView view;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        view = new EffectivePermissionView(pm, urm, new PermissionIndex());
+    }
+
+    /**
+     * Every key answers the same as a freshly built UserContext.
+     */
+    @Test
+    public void testMatchesContextBuilder() {
+        ContextBuilder builder = new ContextBuilder(pm, urm);
+        UserContext ctx = builder.buildUserContext("alice");
+        for (String key : pm.getRolePermissions("admin").keySet()) {
+            assertEquals(ctx.hasPermission(key), view.hasPermission("alice", key), key);
+        }
+        assertFalse(view.hasPermission("alice", "no.such_key"));
+        assertFalse(view.hasPermission("nobody", "admin.manage_users"));
+    }
+
+    /**
+     * Grants reach every holder of the role; toggling removes and restores a user.
+     */
+    @Test
+    public void testIncrementalUpdates() {
+        assertFalse(view.hasPermission("bob", "trader.view_portfolio"));
+        pm.grant("auditor", "trader.view_portfolio", true, "test");
+        assertTrue(view.hasPermission("bob", "trader.view_portfolio"));
+        assertTrue(view.hasPermission("charlie", "trader.view_portfolio"));
+
+        urm.toggleActive("bob", false, "test");
+        assertNull(view.get("bob"));
+        urm.toggleActive("bob", true, "test");
+        assertTrue(view.hasPermission("bob", "trader.view_portfolio"));
+
+        pm.deletePermission("auditor", "trader.view_portfolio");
+        assertFalse(view.hasPermission("charlie", "trader.view_portfolio"));
+    }
+
+    /**
+     * A user whose role appears later is materialized once the role exists,
+     * and a reload discards unsaved in-memory changes.
+     */
+    @Test
+    public void testNewRoleAndReload() {
+        urm.addUser("zoe", "night_desk", "Z1", true, "test");
+        assertNull(view.get("zoe"));
+        pm.grant("night_desk", "trader.view_portfolio", true, "test");
+        assertTrue(view.hasPermission("zoe", "trader.view_portfolio"));
+
+        pm.updatePermission("auditor", "trader.view_portfolio", true);
+        assertTrue(view.hasPermission("bob", "trader.view_portfolio"));
+        pm.reload();
+        assertFalse(view.hasPermission("bob", "trader.view_portfolio"));
+    }
+}
@@ -0,0 +1,127 @@
+// === src/test/java/core/FastRejectFilterTest.java ===
+
+package core;
+
+import context.AccessDeniedException;
+import context.AsyncAuthorizer;
+import context.ContextBuilder;
+import context.Decision;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import trace.TraceReason;
+import users.UserRegistryManager;
+import utils.BloomFilter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FastRejectFilterTest validates the fast-reject path for unknown users
+ * and keys, and that it follows both managers.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class FastRejectFilterTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String TRADE = "trader.submit_manual_trade";
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads fresh copies of the config.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Known users and keys are never rejected, unknown ones are, and new
+     * users and keys are let through as soon as they are published.
+     */
+    @Test
+    public void testFollowsManagers() {
+        try (FastRejectFilter filter = new FastRejectFilter(pm, urm)) {
+            for (String userId : urm.getAllUserIds()) assertFalse(filter.rejectsUser(userId), userId);
+            for (String key : pm.getRolePermissions("admin").keySet()) assertFalse(filter.rejectsKey(key), key);
+            assertTrue(filter.rejectsUser("scanner-0001"));
+            assertTrue(filter.rejectsKey("../../etc/passwd"));
+            assertEquals(TraceReason.UNKNOWN_USER, filter.reject("scanner-0001", TRADE));
+            assertEquals(TraceReason.UNKNOWN_KEY, filter.reject("alice", "no.such_key"));
+            assertNull(filter.reject("alice", TRADE));
+
+            urm.addUser("scanner-0001", "trader", "S001", true, "test");
+            pm.grant("trader", "trader.new_key", true, "test");
+            assertFalse(filter.rejectsUser("scanner-0001"));
+            assertFalse(filter.rejectsKey("trader.new_key"));
+
+            urm.reload();   // the user was persisted, so it survives the reload
+            assertFalse(filter.rejectsUser("scanner-0001"));
+        }
+    }
+
+    /**
+     * Adds and grants extend the current filters in place; a reload or a
+     * removed key builds new ones.
+     */
+    @Test
+    public void testExtendsUntilReload() {
+        try (FastRejectFilter filter = new FastRejectFilter(pm, urm)) {
+            BloomFilter userFilter = filter.getUserFilter();
+            BloomFilter keyFilter = filter.getKeyFilter();
+
+            urm.addUser("zoe", "trader", "Z001", true, "test");
+            urm.toggleActive("zoe", false, "test");
+            pm.grant("trader", "trader.new_key", true, "test");
+            assertSame(userFilter, filter.getUserFilter());
+            assertSame(keyFilter, filter.getKeyFilter());
+            assertFalse(filter.rejectsUser("zoe"));
+            assertFalse(filter.rejectsKey("trader.new_key"));
+
+            pm.applyBatch(List.of(PermissionChange.remove("trader", "trader.new_key")));
+            assertNotSame(keyFilter, filter.getKeyFilter());
+            assertTrue(filter.rejectsKey("trader.new_key"));
+
+            urm.reload();
+            assertNotSame(userFilter, filter.getUserFilter());
+            assertFalse(filter.rejectsUser("zoe"));
+        }
+    }
+
+    /**
+     * ContextBuilder and AsyncAuthorizer answer from the filter with a
+     * stackless exception and a plain decision.
+     */
+    @Test
+    public void testStacklessRejects() {
+        try (FastRejectFilter filter = new FastRejectFilter(pm, urm)) {
+            ContextBuilder builder = new ContextBuilder(pm, urm);
+            builder.setFastReject(filter);
+            AccessDeniedException e = assertThrows(AccessDeniedException.class,
+                    () -> builder.buildUserContext("nobody"));
+            assertEquals("User not found: nobody", e.getMessage());
+            assertEquals(TraceReason.UNKNOWN_USER, e.getReason());
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals(List.of("admin"), builder.buildUserContext("alice").getRoles());
+
+            AsyncAuthorizer authz = new AsyncAuthorizer(pm, urm);
+            authz.setFastReject(filter);
+            assertEquals(Decision.Outcome.UNKNOWN_USER, authz.decide("nobody", TRADE).getOutcome());
+            assertEquals(Decision.Outcome.DENIED, authz.decide("alice", "no.such_key").getOutcome());
+            assertEquals(pm.hasPermission("admin", TRADE), authz.decide("alice", TRADE).isAllowed());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+// === src/test/java/core/MultiRoleTest.java ===
+
+package core;
+
+import context.AsyncAuthorizer;
+import context.ContextBuilder;
+import context.Decision;
+import fixtures.PolicyFixture;
+import model.UserContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MultiRoleTest validates users holding several roles: union of grants,
+ * explicit denies winning, per-combination memoization, and agreement
+ * between every checker that resolves users.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class MultiRoleTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String TRADE = "trader.submit_manual_trade";
+    private static final String DAILY = "reporter.view_daily";
+    private static final String PORTFOLIO = "trader.view_portfolio";
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private ContextBuilder builder;
+
+    /**
+     * Loads fresh copies of the config and adds two trader+reporter users.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        builder = new ContextBuilder(pm, urm);
+        pm.grant("trader", TRADE, true, "test");
+        pm.grant("trader", PORTFOLIO, true, "test");
+        pm.grant("reporter", DAILY, true, "test");
+        urm.addUser("mia", List.of("trader", "reporter"), "M001", true, "test");
+        urm.addUser("ned", List.of("reporter", "trader"), "N001", true, "test");
+    }
+
+    /**
+     * Effective permissions are the union of the roles minus explicit
+     * denies, and are computed once per combination.
+     */
+    @Test
+    public void testUnionMinusDeny() {
+        UserContext mia = builder.buildUserContext("mia");
+        assertEquals(List.of("trader", "reporter"), mia.getRoles());
+        assertEquals("trader", mia.getRole());
+        assertTrue(mia.hasPermission(TRADE));
+        assertTrue(mia.hasPermission(DAILY));
+        assertTrue(mia.hasPermission(Permissions.REPORTER_VIEW_DAILY));
+        assertFalse(mia.hasPermission("admin.manage_users"));
+
+        // Same combination in another order shares the memoized map.
+        assertSame(mia.getPermissions(), builder.buildUserContext("ned").getPermissions());
+
+        // A deny on one role beats a grant on another, and refreshes the memo.
+        pm.grant("reporter", RoleSets.DENY_PREFIX + TRADE, true, "test");
+        UserContext after = builder.buildUserContext("mia");
+        assertFalse(after.hasPermission(TRADE));
+        assertFalse(after.hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE));
+        assertTrue(after.hasPermission(PORTFOLIO));
+        assertNotSame(mia.getPermissions(), after.getPermissions());
+
+        urm.addUser("olga", List.of("trader", "ghost"), null, true, "test");
+        assertThrows(RuntimeException.class, () -> builder.buildUserContext("olga"));
+    }
+
+    /**
+     * Views, indexes, stores and history agree with ContextBuilder for
+     * every user and key.
+     */
+    @Test
+    public void testCheckersAgree() {
+        pm.grant("reporter", RoleSets.DENY_PREFIX + TRADE, true, "test");
+        EffectivePermissionView view = new EffectivePermissionView(pm, urm);
+        PermissionHolderIndex holders = new PermissionHolderIndex(pm, urm);
+        OffHeapPolicyStore store = OffHeapPolicyStore.follow(pm, urm, null);
+        PolicyHistory history = new PolicyHistory(pm, urm, Duration.ofDays(1));
+        AsyncAuthorizer authz = new AsyncAuthorizer(pm, urm);
+        try {
+            // Incremental paths: a new combination and a grant on a combined role.
+            urm.addUser("pia", List.of("auditor", "reporter"), null, true, "test");
+            pm.grant("auditor", PORTFOLIO, true, "test");
+
+            List<String> keys = List.of(TRADE, DAILY, PORTFOLIO, "auditor.view_logs", "admin.manage_users");
+            for (String key : keys) {
+                int holding = 0;
+                for (String userId : urm.getAllUserIds()) {
+                    boolean expected;
+                    try {
+                        expected = builder.buildUserContext(userId).hasPermission(key);
+                    } catch (RuntimeException e) {
+                        expected = false;
+                    }
+                    if (expected) holding++;
+                    String at = userId + " " + key;
+                    assertEquals(expected, view.hasPermission(userId, key), "view " + at);
+                    assertEquals(expected, store.hasPermission(userId, key), "store " + at);
+                    assertEquals(expected, history.hasPermissionAt(userId, key, Instant.now()), "history " + at);
+                    assertEquals(expected, authz.decide(userId, key).getOutcome() == Decision.Outcome.ALLOWED,
+                            "async " + at);
+                }
+                assertEquals(holding, holders.count(key), "holders " + key);
+            }
+            assertEquals("reporter+trader", store.getRole("mia"));
+            assertEquals(List.of("trader", "reporter"), view.get("mia").getRoles());
+        } finally {
+            view.close();
+            holders.close();
+            store.close();
+        }
+    }
+
+    /**
+     * What-if analysis and validation understand combinations and denies.
+     */
+    @Test
+    public void testWhatIfAndValidation() {
+        Map<String, Map<String, Boolean>> candidate = new HashMap<>(pm.export());
+        Map<String, Boolean> reporter = new HashMap<>(candidate.get("reporter"));
+        reporter.put(RoleSets.DENY_PREFIX + TRADE, true);
+        candidate.put("reporter", reporter);
+
+        PolicyWhatIf whatIf = new PolicyWhatIf(pm.export(), candidate);
+        assertEquals(List.of(), whatIf.getChangedRoles());   // reporter never had the key
+        Map<String, PolicyWhatIf.UserDelta> seen = new ConcurrentHashMap<>();
+        whatIf.run(urm.getAllUsers(), urm.getAllUsers(), ForkJoinPool.commonPool(), d -> seen.put(d.getUserId(), d));
+        assertEquals(Set.of("mia", "ned"), seen.keySet());
+        assertEquals(List.of(TRADE), seen.get("mia").getLost());
+
+        assertTrue(PolicyValidator.validate(pm.export(), urm.getAllUsers(), ForkJoinPool.commonPool()).isEmpty());
+        reporter.put(RoleSets.DENY_PREFIX + DAILY, true);   // grants and denies view_daily
+        urm.addUser("olga", List.of("trader", "ghost"), null, true, "test");
+        List<String> errors = PolicyValidator.validate(candidate, urm.getAllUsers(), ForkJoinPool.commonPool());
+        assertEquals(List.of(
+                "role reporter: both grants and denies '" + DAILY + "'",
+                "user olga: role 'ghost' is not defined in the permission matrix"), errors);
+    }
+}
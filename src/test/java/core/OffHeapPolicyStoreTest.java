@@ -0,0 +1,118 @@
+// === src/test/java/core/OffHeapPolicyStoreTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserChange;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OffHeapPolicyStoreTest validates that the off-heap backend answers like
+ * the on-heap view and follows patched and structural changes.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class OffHeapPolicyStoreTest {
+
+    @TempDir
+    Path dir;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Every user/key pair matches the on-heap view, in direct and mapped mode.
+     */
+    @Test
+    public void testMatchesView() throws IOException {
+        EffectivePermissionView view = new EffectivePermissionView(pm, urm, new PermissionIndex());
+        OffHeapPolicyStore direct = OffHeapPolicyStore.build(pm.export(), urm.getAllUsers());
+        OffHeapPolicyStore mapped = OffHeapPolicyStore.build(pm.export(), urm.getAllUsers(),
+                Files.createDirectory(dir.resolve("spill")));
+        for (String userId : urm.getAllUserIds()) {
+            for (String key : pm.getRolePermissions("admin").keySet()) {
+                assertEquals(view.hasPermission(userId, key), direct.hasPermission(userId, key), userId + " " + key);
+                assertEquals(view.hasPermission(userId, key), mapped.hasPermission(userId, key), userId + " " + key);
+            }
+        }
+        assertFalse(direct.hasPermission("nobody", "admin.manage_users"));
+        assertFalse(direct.hasPermission("alice", "no.such_key"));
+        assertEquals("admin", direct.getRole("alice"));
+    }
+
+    /**
+     * Patched copies and changes that need a recompile are both visible.
+     */
+    @Test
+    public void testFollowsChanges() {
+        OffHeapPolicyStore store = OffHeapPolicyStore.follow(pm, urm, null);
+        assertFalse(store.hasPermission("bob", "trader.view_portfolio"));
+        pm.grant("auditor", "trader.view_portfolio", true, "test");       // patched copy
+        assertTrue(store.hasPermission("bob", "trader.view_portfolio"));
+
+        urm.toggleActive("bob", false, "test");                           // patched copy
+        assertFalse(store.hasPermission("bob", "trader.view_portfolio"));
+
+        pm.grant("auditor", "auditor.brand_new_key", true, "test");       // new key → recompile
+        assertTrue(store.hasPermission("charlie", "auditor.brand_new_key"));
+
+        urm.addUser("zoe", "auditor", "Z1", true, "test");                // new user → headroom
+        assertTrue(store.hasPermission("zoe", "auditor.brand_new_key"));
+        store.close();
+    }
+
+    /**
+     * New users go into the buffer's headroom without a recompile (the
+     * buffer keeps its size); once it is used up a recompile makes room.
+     */
+    @Test
+    public void testAddsUsersIntoHeadroom() {
+        OffHeapPolicyStore store = OffHeapPolicyStore.follow(pm, urm, null);
+        long bytes = store.offHeapBytes();
+        int users = store.size();
+
+        urm.applyBatch(List.of(
+                UserChange.add("zoe", "auditor", "Z1", true),
+                UserChange.add("yan", "trader", "Y1", true),
+                UserChange.toggle("zoe", false),
+                UserChange.toggle("bob", false)));
+        assertEquals(bytes, store.offHeapBytes());
+        assertEquals(users + 2, store.size());
+        assertFalse(store.isActive("zoe"));
+        assertFalse(store.isActive("bob"));
+        assertEquals("trader", store.getRole("yan"));
+        assertTrue(store.hasPermission("yan", "trader.view_portfolio"));
+
+        for (int i = 0; i < 40; i++) {
+            urm.addUser("user" + i, "auditor", "C" + i, true, "test");
+        }
+        assertNotEquals(bytes, store.offHeapBytes());
+        assertEquals(users + 42, store.size());
+        assertEquals("trader", store.getRole("yan"));
+        for (int i = 0; i < 40; i++) {
+            assertEquals("auditor", store.getRole("user" + i), "user" + i);
+        }
+        store.close();
+    }
+}
@@ -0,0 +1,41 @@
+// === src/test/java/core/PermissionHandleTest.java ===
+
+package core;
+
+import model.UserContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PermissionHandleTest validates that the generated handles agree with the
+ * default index and with string-keyed checks.
+ */
+public class PermissionHandleTest {
+
+    /**
+     * The default index reserves exactly the generated IDs.
+     */
+    @Test
+    public void testIdsMatchDefaultIndex() {
+        PermissionIndex index = PermissionIndex.getDefault();
+        for (int id = 0; id < Permissions.KEYS.length; id++) {
+            assertEquals(id, index.lookup(Permissions.KEYS[id]));
+        }
+        assertEquals(Permissions.ADMIN_MANAGE_USERS.getId(), index.lookup("admin.manage_users"));
+    }
+
+    /**
+     * Handle checks answer the same as string checks.
+     */
+    @Test
+    public void testUserContextHandleCheck() {
+        UserContext ctx = new UserContext("alice", "admin",
+                Map.of("admin.manage_users", true, "admin.create_client", false), null);
+        assertTrue(ctx.hasPermission(Permissions.ADMIN_MANAGE_USERS));
+        assertFalse(ctx.hasPermission(Permissions.ADMIN_CREATE_CLIENT));
+        assertFalse(ctx.hasPermission(Permissions.TRADER_VIEW_PORTFOLIO));
+    }
+}
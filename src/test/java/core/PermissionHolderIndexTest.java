@@ -0,0 +1,82 @@
+// === src/test/java/core/PermissionHolderIndexTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PermissionHolderIndexTest validates "who can do X" counts and paging
+ * as grants and user changes are applied.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class PermissionHolderIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private PermissionHolderIndex index;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        index = new PermissionHolderIndex(pm, urm);
+    }
+
+    /**
+     * Holders follow grants, revokes and deactivation.
+     */
+    @Test
+    public void testFollowsChanges() {
+        assertEquals(2, index.count("auditor.view_audit_decisions"));
+        pm.grant("risker", "auditor.view_audit_decisions", true, "test");
+        assertEquals(List.of("auditor", "risker"), index.rolesWith("auditor.view_audit_decisions"));
+        assertEquals(3, index.count("auditor.view_audit_decisions"));
+
+        urm.toggleActive("bob", false, "test");
+        assertEquals(2, index.count("auditor.view_audit_decisions"));
+
+        pm.grant("risker", "auditor.view_audit_decisions", false, "test");
+        assertEquals(List.of("auditor"), index.rolesWith("auditor.view_audit_decisions"));
+        assertEquals(1, index.count("auditor.view_audit_decisions"));
+    }
+
+    /**
+     * Pages span role boundaries and report the overall total.
+     */
+    @Test
+    public void testPaging() {
+        for (int i = 0; i < 5; i++) {
+            urm.addUser("aud" + i, "auditor", "T", true, "test");
+        }
+        pm.grant("risker", "auditor.view_audit_decisions", true, "test");
+
+        PermissionHolderIndex.Page first = index.holders("auditor.view_audit_decisions", 0, 4);
+        assertEquals(8, first.getTotal());
+        assertEquals(List.of("aud0", "aud1", "aud2", "aud3"), first.getUserIds());
+        assertTrue(first.hasMore());
+
+        PermissionHolderIndex.Page last = index.holders("auditor.view_audit_decisions", 6, 4);
+        assertEquals(List.of("charlie", "diana"), last.getUserIds());
+        assertFalse(last.hasMore());
+    }
+}
@@ -0,0 +1,135 @@
+// === src/test/java/core/PolicyEventsTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyEventsTest validates subscriptions: typed events, deltas that
+ * coalesce versions behind a slow subscriber, and reload diffs.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class PolicyEventsTest {
+
+    @TempDir
+    Path dir;
+
+    private Path perms;
+    private Path users;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads fresh copies of the config.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        perms = fixture.getRolesFile();
+        users = fixture.getUsersFile();
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Writers are not held up by a blocked subscriber, and everything
+     * published meanwhile arrives as one net delta.
+     */
+    @Test
+    public void testSlowSubscriberGetsCoalescedDelta() throws Exception {
+        BlockingQueue<PolicyDelta> deltas = new LinkedBlockingQueue<>();
+        CountDownLatch release = new CountDownLatch(1);
+        try (PolicyEvents events = new PolicyEvents(pm, urm)) {
+            events.subscribe(delta -> {
+                deltas.add(delta);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            pm.grant("trader", "admin.manage_users", true, "test");
+            PolicyDelta first = deltas.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals(List.of(PolicyEvent.Kind.ROLE_KEY_CHANGED),
+                    first.getEvents().stream().map(PolicyEvent::getKind).toList());
+            assertEquals(false, first.getEvents().get(0).getOldValue());
+            assertEquals(true, first.getEvents().get(0).getNewValue());
+
+            // The subscriber is stuck; these must still complete.
+            pm.grant("trader", "admin.create_client", true, "test");
+            pm.grant("trader", "admin.create_client", false, "test");
+            pm.grant("trader", "trader.view_portfolio", false, "test");
+            urm.addUser("zoe", "trader", "Z001", true, "test");
+            urm.toggleActive("zoe", false, "test");
+            urm.toggleActive("bob", false, "test");
+            assertTrue(deltas.isEmpty());
+            release.countDown();
+
+            PolicyDelta second = deltas.poll(5, TimeUnit.SECONDS);
+            assertNotNull(second);
+            assertEquals(6, second.getVersions());
+            assertEquals(pm.getVersion(), second.getMatrixVersion());
+            assertEquals(urm.getVersion(), second.getRegistryVersion());
+            assertEquals(List.of("role trader trader.view_portfolio: true → false",
+                            "add user zoe [trader] active=false",
+                            "toggle user bob active=false"),
+                    second.getEvents().stream().map(PolicyEvent::toString).toList());
+            assertNull(deltas.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Reloads deliver a full diff, and closed subscriptions get nothing.
+     */
+    @Test
+    public void testReloadDiff() throws Exception {
+        BlockingQueue<PolicyDelta> deltas = new LinkedBlockingQueue<>();
+        try (PolicyEvents events = new PolicyEvents(pm, urm)) {
+            PolicyEvents.Subscription subscription = events.subscribe(deltas::add);
+
+            Files.writeString(users, "alice:\n  role: admin\n  client_id: A001\n  active: false\n"
+                    + "zed:\n  role: trader\n  active: true\n");
+            urm.load();
+            PolicyDelta delta = deltas.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertTrue(delta.isReloaded());
+            List<String> seen = delta.getEvents().stream().map(PolicyEvent::toString).toList();
+            assertTrue(seen.contains("toggle user alice active=false"), seen.toString());
+            assertTrue(seen.contains("add user zed [trader] active=true"), seen.toString());
+            assertTrue(seen.contains("remove user bob"), seen.toString());
+
+            Files.writeString(perms, Files.readString(perms).replace(
+                    "  trader.submit_manual_trade: true", "  trader.submit_manual_trade: false"));
+            pm.load();
+            delta = deltas.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertEquals(List.of("role trader trader.submit_manual_trade: true → false"),
+                    delta.getEvents().stream().map(PolicyEvent::toString).toList());
+
+            subscription.close();
+            assertEquals(0, events.getSubscriberCount());
+            pm.grant("trader", "admin.manage_users", true, "test");
+            assertNull(deltas.poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+}
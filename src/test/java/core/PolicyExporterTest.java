@@ -0,0 +1,127 @@
+// === src/test/java/core/PolicyExporterTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyExporterTest validates streaming exports: sharded files that
+ * cover every user once from one captured version, the binary layout,
+ * and copying a spilled off-heap policy.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class PolicyExporterTest {
+
+    @TempDir
+    Path dir;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads fresh copies of the config.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Shards are disjoint and together hold every user of the captured
+     * version; changes made after the capture are not exported.
+     */
+    @Test
+    public void testShardedExportOfCapturedVersion() throws IOException {
+        for (int i = 0; i < 300; i++) urm.addUser("u" + i, "trader", "C" + i, i % 2 == 0, "test");
+        PolicyExporter exporter = PolicyExporter.capture(pm, urm);
+        Set<String> expected = new HashSet<>(urm.getAllUserIds());
+        int entries = pm.snapshot().values().stream().mapToInt(Map::size).sum();
+
+        urm.addUser("late", "trader", "L001", true, "test");
+        pm.grant("trader", "admin.manage_users", true, "test");
+
+        List<Path> files = exporter.exportTo(dir.resolve("out"), PolicyExporter.Format.CSV, 7, ForkJoinPool.commonPool());
+        assertEquals(8, files.size());
+        List<String> matrix = Files.readAllLines(files.get(0));
+        assertEquals(entries + 1, matrix.size());
+        assertTrue(matrix.contains("trader,admin.manage_users,false"));
+
+        Set<String> exported = new HashSet<>();
+        for (Path shard : files.subList(1, files.size())) {
+            List<String> lines = Files.readAllLines(shard);
+            assertEquals("user_id,roles,client_id,active", lines.get(0));
+            for (String line : lines.subList(1, lines.size())) {
+                assertTrue(exported.add(line.split(",")[0]), line);
+            }
+        }
+        assertEquals(expected, exported);
+
+        List<String> manifest = Files.readAllLines(dir.resolve("out/export.manifest"));
+        assertTrue(manifest.contains("registry_version=" + exporter.getRegistryVersion()));
+        assertTrue(manifest.contains("matrix.csv=" + entries));
+    }
+
+    /**
+     * Binary user rows decode to the registry, and a spilled off-heap
+     * policy is copied byte for byte.
+     */
+    @Test
+    public void testBinaryAndOffHeapCopy() throws IOException {
+        urm.addUser("multi", List.of("trader", "reporter"), null, false, "test");
+        PolicyExporter exporter = PolicyExporter.capture(pm, urm);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = exporter.writeUsers(out, PolicyExporter.Format.BINARY);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(PolicyExporter.MAGIC, in.readInt());
+        assertEquals('U', in.readByte());
+        assertEquals(exporter.getRegistryVersion(), in.readLong());
+        int decoded = 0;
+        while (in.readByte() == 1) {
+            String userId = in.readUTF();
+            int roles = in.readUnsignedShort();
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < roles; i++) joined.append(i > 0 ? "," : "").append(in.readUTF());
+            String clientId = in.readBoolean() ? in.readUTF() : null;
+            boolean active = in.readBoolean();
+            Map<String, Object> user = urm.getUser(userId);
+            assertEquals(String.join(",", RoleSets.of(user)), joined.toString());
+            assertEquals(user.get("client_id"), clientId);
+            assertEquals(Boolean.TRUE.equals(user.get("active")), active);
+            decoded++;
+        }
+        assertEquals(rows, in.readLong());
+        assertEquals(urm.getAllUsers().size(), decoded);
+
+        Path spill = Files.createDirectory(dir.resolve("spill"));
+        OffHeapPolicyStore store = OffHeapPolicyStore.build(pm.snapshot(), urm.getAllUsers(), spill);
+        Path copy = dir.resolve("policy.bin");
+        assertEquals(store.offHeapBytes(), store.writeTo(copy));
+        try (var files = Files.list(spill)) {
+            assertArrayEquals(Files.readAllBytes(files.findFirst().orElseThrow()), Files.readAllBytes(copy));
+        }
+        store.close();
+    }
+}
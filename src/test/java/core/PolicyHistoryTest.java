@@ -0,0 +1,158 @@
+// === src/test/java/core/PolicyHistoryTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyHistoryTest validates time-travel permission queries and
+ * retention-based compaction.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class PolicyHistoryTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * A clock the test can move forward by hand.
+     */
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.parse("2025-06-18T12:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private ManualClock clock;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private PolicyHistory history;
+
+    /**
+     * Loads fresh copies of the config so tests never touch the real files.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        clock = new ManualClock();
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        history = new PolicyHistory(pm, urm, Duration.ofDays(30), clock);
+    }
+
+    /**
+     * A grant followed by a revoke is visible only in the window between them.
+     */
+    @Test
+    public void testGrantIsVisibleOnlyWhileInForce() {
+        Instant before = clock.instant();
+        clock.advance(Duration.ofHours(1));
+        pm.updatePermission("auditor", "admin.manage_users", true);
+        Instant during = clock.instant();
+        clock.advance(Duration.ofHours(1));
+        pm.updatePermission("auditor", "admin.manage_users", false);
+
+        assertFalse(history.hasPermissionAt("bob", "admin.manage_users", before));
+        assertTrue(history.hasPermissionAt("bob", "admin.manage_users", during));
+        assertFalse(history.hasPermissionAt("bob", "admin.manage_users", clock.instant()));
+    }
+
+    /**
+     * Deactivating a user removes access from that point on only.
+     */
+    @Test
+    public void testDeactivationIsTimeBound() {
+        Instant active = clock.instant();
+        clock.advance(Duration.ofMinutes(5));
+        urm.toggleActive("alice", false, "test");
+
+        assertTrue(history.hasPermissionAt("alice", "admin.manage_users", active));
+        assertFalse(history.hasPermissionAt("alice", "admin.manage_users", clock.instant()));
+    }
+
+    /**
+     * Queries before recorded history are denied.
+     */
+    @Test
+    public void testBeforeHistoryIsDenied() {
+        assertFalse(history.hasPermissionAt("alice", "admin.manage_users", clock.instant().minusSeconds(1)));
+    }
+
+    /**
+     * Versions superseded before the retention window are dropped, but the
+     * version in force at the cutoff survives.
+     */
+    @Test
+    public void testCompactionKeepsVersionAtCutoff() {
+        for (int i = 0; i < 5; i++) {
+            clock.advance(Duration.ofDays(1));
+            pm.updatePermission("observer", "reporter.view_daily", i % 2 == 0);
+        }
+        assertEquals(6, history.size());
+
+        history.setRetention(Duration.ofHours(36));
+        assertEquals(3, history.size());
+        assertNotNull(history.versionAt(clock.instant().minus(Duration.ofHours(36))));
+    }
+
+    /**
+     * A history started while the matrix is changing ends on the same
+     * matrix as the manager: no change falls between its first version
+     * and its listener.
+     */
+    @Test
+    public void testHistoryStartedDuringWritesStaysInSync() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                pm.updatePermission("observer", "reporter.view_daily", i % 2 == 0);
+            }
+        });
+        List<PolicyHistory> started = new ArrayList<>();
+        writer.start();
+        while (writer.isAlive()) {
+            started.add(new PolicyHistory(pm, urm, Duration.ofDays(30), clock));
+        }
+        writer.join();
+
+        for (PolicyHistory h : started) {
+            assertEquals(pm.hasPermission("observer", "reporter.view_daily"),
+                    h.current().matrix.get("observer").get("reporter.view_daily"));
+        }
+    }
+}
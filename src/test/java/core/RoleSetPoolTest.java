@@ -0,0 +1,87 @@
+// === src/test/java/core/RoleSetPoolTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RoleSetPoolTest validates hash-consing of role permission sets: equal
+ * roles share one map, a change copies only the changed role, and
+ * equivalence classes are reported.
+ *
+ * Works on a temporary copy of config/RolePermissions.yaml.
+ */
+public class RoleSetPoolTest {
+
+    @TempDir
+    Path dir;
+
+    private PermissionsManager pm;
+
+    /**
+     * Loads a fresh copy of the matrix and adds two clones of trader.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        pm = PolicyFixture.copyConfig(dir).newPermissionsManager();
+        Map<String, Map<String, Boolean>> matrix = new HashMap<>(pm.export());
+        matrix.put("desk_a", new HashMap<>(matrix.get("trader")));
+        matrix.put("desk_b", new HashMap<>(matrix.get("trader")));
+        pm.importPermissions(matrix);
+    }
+
+    /**
+     * Clones share one read-only map and are reported as one class.
+     */
+    @Test
+    public void testClonesShareOneSet() {
+        Map<String, Map<String, Boolean>> matrix = pm.snapshot();
+        assertSame(matrix.get("trader"), matrix.get("desk_a"));
+        assertSame(matrix.get("trader"), matrix.get("desk_b"));
+        assertThrows(UnsupportedOperationException.class, () -> matrix.get("trader").put("x", true));
+
+        assertTrue(pm.getEquivalentRoles().contains(List.of("desk_a", "desk_b", "trader")));
+        assertTrue(pm.getDistinctRoleSets() <= matrix.size() - 2);
+
+        // Effective maps are shared too: the single role reuses its own map,
+        // and a combination with the same result reuses that.
+        assertSame(matrix.get("trader"), pm.getEffectivePermissions(List.of("desk_a")));
+        assertSame(pm.getEffectivePermissions(List.of("desk_a")),
+                pm.getEffectivePermissions(List.of("desk_a", "desk_b")));
+    }
+
+    /**
+     * Changing one clone copies only that role; changing it back rejoins the class.
+     */
+    @Test
+    public void testChangeCopiesOnlyThatRole() {
+        int distinct = pm.getDistinctRoleSets();
+        Map<String, Boolean> shared = pm.snapshot().get("trader");
+        Map<String, Boolean> admin = pm.snapshot().get("admin");
+
+        pm.grant("desk_a", "reporter.view_daily", true, "test");
+        Map<String, Map<String, Boolean>> after = pm.snapshot();
+        assertNotSame(shared, after.get("desk_a"));
+        assertSame(shared, after.get("desk_b"));
+        assertSame(admin, after.get("admin"));
+        assertTrue(after.get("desk_a").get("reporter.view_daily"));
+        assertFalse(shared.get("reporter.view_daily"));
+        assertEquals(distinct + 1, pm.getDistinctRoleSets());
+        assertTrue(pm.getEquivalentRoles().contains(List.of("desk_b", "trader")));
+
+        pm.grant("desk_a", "reporter.view_daily", false, "test");
+        assertSame(shared, pm.snapshot().get("desk_a"));
+        assertEquals(distinct, pm.getDistinctRoleSets());
+    }
+}
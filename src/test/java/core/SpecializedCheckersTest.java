@@ -0,0 +1,95 @@
+// === src/test/java/core/SpecializedCheckersTest.java ===
+
+package core;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SpecializedCheckersTest validates the generated per-role checkers
+ * against the manager and their regeneration on changes.
+ *
+ * Works on a temporary copy of config/RolePermissions.yaml.
+ */
+public class SpecializedCheckersTest {
+
+    @TempDir
+    Path dir;
+
+    private static final String TRADE = "trader.submit_manual_trade";
+
+    private PermissionsManager pm;
+
+    /**
+     * Loads a fresh copy of the matrix.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        pm = PolicyFixture.copyConfig(dir).newPermissionsManager();
+    }
+
+    /**
+     * Every role's generated checker agrees with the manager for every
+     * indexed key, including denies and IDs past the last word.
+     */
+    @Test
+    public void testAgreesWithManager() {
+        pm.grant("reporter", TRADE, true, "test");
+        pm.grant("reporter", RoleSets.DENY_PREFIX + TRADE, true, "test");
+        try (SpecializedCheckers checkers = new SpecializedCheckers(pm)) {
+            PermissionIndex index = PermissionIndex.getDefault();
+            for (String role : pm.getAllRoles()) {
+                SpecializedCheckers.Cell cell = checkers.forRole(role);
+                Map<String, Boolean> effective = pm.getEffectivePermissions(List.of(role));
+                for (int id = 0; id < index.size(); id++) {
+                    String key = index.keyOf(id);
+                    boolean expected = Boolean.TRUE.equals(effective.get(key));
+                    assertEquals(expected, cell.getChecker().test(id), role + " " + key);
+                    assertEquals(expected, cell.hasPermission(key), role + " " + key);
+                }
+                assertFalse(cell.getChecker().test(index.size() + 1000));
+                assertFalse(cell.hasPermission("no.such_key"));
+                assertTrue(cell.getChecker().getClass().isHidden());
+            }
+            assertFalse(checkers.forRole("ghost").hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE));
+            assertTrue(checkers.getLiveClassCount() <= pm.getAllRoles().size());
+        }
+    }
+
+    /**
+     * A grant regenerates only the touched role and swaps its checker in
+     * place; roles with equal permissions share a class.
+     */
+    @Test
+    public void testRegeneratesOnChange() {
+        pm.setRolePermissions("clone_a", Map.of(TRADE, false));
+        pm.setRolePermissions("clone_b", Map.of(TRADE, false));
+        try (SpecializedCheckers checkers = new SpecializedCheckers(pm)) {
+            SpecializedCheckers.Cell a = checkers.forRole("clone_a");
+            SpecializedCheckers.Cell b = checkers.forRole("clone_b");
+            SpecializedCheckers.Cell trader = checkers.forRole("trader");
+            assertSame(a.getChecker(), b.getChecker());
+            RoleChecker traderBefore = trader.getChecker();
+
+            pm.grant("clone_a", TRADE, true, "test");
+            assertTrue(a.hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE));
+            assertFalse(b.hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE));
+            assertNotSame(a.getChecker(), b.getChecker());
+            assertSame(traderBefore, trader.getChecker());
+            assertSame(a, checkers.forRole("clone_a"));
+
+            pm.grant("clone_a", TRADE, false, "test");
+            assertFalse(a.hasPermission(Permissions.TRADER_SUBMIT_MANUAL_TRADE));
+            assertSame(a.getChecker(), b.getChecker());
+        }
+    }
+}
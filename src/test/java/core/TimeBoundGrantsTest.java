@@ -0,0 +1,266 @@
+// === src/test/java/core/TimeBoundGrantsTest.java ===
+
+package core;
+
+import audit.AuditQuery;
+import audit.AuditRecord;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserChange;
+import users.UserChangeListener;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TimeBoundGrantsTest validates temporary grants and activations: they are
+ * undone when due, audited as "expiry", survive a restart, and give way to
+ * explicit changes.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ * and drives expiry with a controlled clock.
+ */
+public class TimeBoundGrantsTest {
+
+    private static final String KEY = "reporter.view_daily";
+
+    @TempDir
+    Path dir;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private MutableClock clock;
+
+    /**
+     * Clock moved by hand.
+     */
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2026-01-05T08:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    /**
+     * Loads fresh copies of the config with a temporary audit log.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        clock = new MutableClock();
+    }
+
+    private TimeBoundGrants open() {
+        return new TimeBoundGrants(pm, urm, dir.resolve("Expiries.yaml").toString(), clock, 1_000);
+    }
+
+    /**
+     * A grant holds until its deadline, then is revoked and audited.
+     */
+    @Test
+    public void testGrantExpires() {
+        TimeBoundGrants grants = open();
+        try {
+            grants.grantUntil("auditor", KEY, clock.instant().plus(Duration.ofMinutes(1)), "alice");
+            assertTrue(pm.hasPermission("auditor", KEY));
+            assertEquals(1, grants.list().size());
+
+            clock.advance(Duration.ofSeconds(59));
+            assertEquals(0, grants.expireDue());
+            assertTrue(pm.hasPermission("auditor", KEY));
+
+            clock.advance(Duration.ofSeconds(1));
+            grants.expireDue();
+            assertFalse(pm.hasPermission("auditor", KEY));
+            assertTrue(grants.list().isEmpty());
+
+            List<AuditRecord> records = pm.getAuditLog().query(new AuditQuery().operator(TimeBoundGrants.OPERATOR));
+            assertEquals(1, records.size());
+            assertEquals(AuditRecord.Action.PERMISSION_CHANGE, records.get(0).getAction());
+            assertEquals(KEY, records.get(0).getKey());
+        } finally {
+            grants.close();
+        }
+    }
+
+    /**
+     * Pending expiries are reloaded by a new instance; those overdue are
+     * applied on its first tick.
+     */
+    @Test
+    public void testSurvivesRestart() {
+        urm.toggleActive("grace", false, "test");
+        TimeBoundGrants first = open();
+        first.grantUntil("auditor", KEY, clock.instant().plus(Duration.ofHours(1)), "alice");
+        first.activateUntil("grace", clock.instant().plus(Duration.ofHours(2)), "alice");
+        assertTrue(urm.isActive("grace"));
+        first.close();
+
+        clock.advance(Duration.ofMinutes(90));
+        TimeBoundGrants second = open();
+        try {
+            assertEquals(2, second.list().size());
+            clock.advance(Duration.ofSeconds(1));
+            second.expireDue();
+            assertFalse(pm.hasPermission("auditor", KEY));
+            assertTrue(urm.isActive("grace"));
+
+            clock.advance(Duration.ofHours(1));
+            second.expireDue();
+            assertFalse(urm.isActive("grace"));
+        } finally {
+            second.close();
+        }
+    }
+
+    /**
+     * A tool that loads the policy without a worker running applies what
+     * came due from the file; a scheduler without a worker sees what
+     * another process wrote once it reloads.
+     */
+    @Test
+    public void testOverdueAppliedOnLoadAndReload() {
+        String path = dir.resolve("Expiries.yaml").toString();
+        TimeBoundGrants scheduler = TimeBoundGrants.scheduleOnly(pm, urm, path);
+        try {
+            TimeBoundGrants other = open();   // the mutable clock is months behind the system clock
+            other.grantUntil("auditor", KEY, clock.instant().plus(Duration.ofHours(1)), "alice");
+            other.close();
+            assertTrue(scheduler.list().isEmpty());
+            scheduler.reload();
+            assertEquals(1, scheduler.list().size());
+        } finally {
+            scheduler.close();
+        }
+        assertTrue(pm.hasPermission("auditor", KEY));
+
+        System.setProperty("rbac.expiries", path);
+        try {
+            assertEquals(1, TimeBoundGrants.expireOverdue(pm, urm));
+        } finally {
+            System.clearProperty("rbac.expiries");
+        }
+        assertFalse(pm.hasPermission("auditor", KEY));
+        assertTrue(open().list().isEmpty());
+    }
+
+    /**
+     * Explicit changes supersede an expiry; permanent access and past
+     * deadlines are refused.
+     */
+    @Test
+    public void testExplicitChangeSupersedes() {
+        TimeBoundGrants grants = open();
+        try {
+            Instant later = clock.instant().plus(Duration.ofMinutes(5));
+            grants.grantUntil("auditor", KEY, later, "alice");
+            pm.grant("auditor", KEY, true, "alice");   // now permanent
+            assertTrue(grants.list().isEmpty());
+            clock.advance(Duration.ofMinutes(10));
+            assertEquals(0, grants.expireDue());
+            assertTrue(pm.hasPermission("auditor", KEY));
+
+            Instant soon = clock.instant().plus(Duration.ofMinutes(5));
+            assertThrows(IllegalStateException.class, () -> grants.grantUntil("auditor", KEY, soon, "alice"));
+            assertThrows(IllegalStateException.class, () -> grants.activateUntil("alice", soon, "alice"));
+            assertThrows(IllegalArgumentException.class, () -> grants.activateUntil("nobody", soon, "alice"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> grants.grantUntil("trader", KEY, clock.instant(), "alice"));
+        } finally {
+            grants.close();
+        }
+    }
+
+    /**
+     * A permanent grant published while an expiry batch is running
+     * supersedes that batch's revoke of the same key.
+     */
+    @Test
+    public void testRegrantDuringExpiryWins() {
+        urm.toggleActive("grace", false, "test");
+        TimeBoundGrants grants = open();
+        try {
+            grants.activateUntil("grace", clock.instant().plus(Duration.ofMinutes(1)), "alice");
+            grants.grantUntil("auditor", KEY, clock.instant().plus(Duration.ofMinutes(2)), "alice");
+            // When the activation expires, another operator makes the grant permanent.
+            urm.addChangeListener(new UserChangeListener() {
+                @Override
+                public void onUsersChanged(List<UserChange> changes) {
+                    if (!changes.get(0).getUserId().equals("grace")) return;
+                    Thread operator = new Thread(() -> pm.grant("auditor", KEY, true, "bob"));
+                    operator.start();
+                    try {
+                        operator.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+                }
+            });
+
+            clock.advance(Duration.ofMinutes(3));
+            assertEquals(1, grants.expireDue());
+            assertFalse(urm.isActive("grace"));
+            assertTrue(pm.hasPermission("auditor", KEY));
+            assertTrue(grants.list().isEmpty());
+        } finally {
+            grants.close();
+        }
+    }
+
+    /**
+     * An expiry whose role a reload removed is dropped without bringing
+     * the role back.
+     */
+    @Test
+    public void testExpiryAfterRoleRemoved() {
+        TimeBoundGrants grants = open();
+        try {
+            grants.grantUntil("auditor", KEY, clock.instant().plus(Duration.ofMinutes(1)), "alice");
+            Map<String, Map<String, Boolean>> matrix = pm.export();
+            matrix.remove("auditor");
+            pm.importPermissions(matrix);
+
+            clock.advance(Duration.ofMinutes(2));
+            assertEquals(0, grants.expireDue());
+            assertFalse(pm.getAllRoles().contains("auditor"));
+            assertTrue(grants.list().isEmpty());
+        } finally {
+            grants.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// === src/test/java/daemon/PolicyDaemonTest.java ===
+
+package daemon;
+
+import core.PermissionsManager;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+import utils.YamlLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyDaemonTest serves temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ * on a socket in a temporary directory and talks to it with DaemonClient.
+ */
+public class PolicyDaemonTest {
+
+    @TempDir
+    Path dir;
+    private Path perms;
+    private PolicyDaemon daemon;
+
+    /**
+     * Starts a daemon on fresh copies of the config.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        perms = fixture.getRolesFile();
+        PermissionsManager pm = fixture.newPermissionsManager();
+        UserRegistryManager urm = fixture.newUserRegistryManager();
+        daemon = new PolicyDaemon(pm, urm, dir.resolve("d.sock"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        daemon.close();
+    }
+
+    /**
+     * Checks, contexts and errors over one connection.
+     */
+    @Test
+    public void testRequests() {
+        try (DaemonClient client = DaemonClient.connect(daemon.getSocketPath())) {
+            assertEquals(List.of(), client.request("PING"));
+            assertEquals(List.of("ALLOWED"), client.request("CHECK alice admin.manage_users"));
+            assertEquals(List.of("DENIED"), client.request("CHECK bob admin.manage_users"));
+            assertEquals(List.of("UNKNOWN_USER"), client.request("CHECK nobody admin.manage_users"));
+
+            List<String> context = client.request("CONTEXT alice");
+            assertEquals("roles admin", context.get(0));
+            assertEquals("client_id A001", context.get(1));
+            assertTrue(context.contains("+ admin.manage_users"));
+
+            IllegalStateException error = assertThrows(IllegalStateException.class,
+                    () -> client.request("CONTEXT nobody"));
+            assertEquals("User not found: nobody", error.getMessage());
+            assertThrows(IllegalStateException.class, () -> client.request("BOGUS"));
+
+            List<String> matrix = client.request("MATRIX");
+            assertTrue(matrix.contains("U alice"));
+            assertTrue(matrix.contains("+ admin.manage_users"));
+        }
+    }
+
+    /**
+     * RELOAD applies an edited file in place; STOP removes the socket and a
+     * second daemon refuses a live socket.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReloadAndStop() {
+        Path socket = daemon.getSocketPath();
+        try (DaemonClient client = DaemonClient.connect(socket)) {
+            assertEquals(List.of("DENIED"), client.request("CHECK bob reporter.view_daily"));
+
+            Map<String, Map<String, Boolean>> matrix = YamlLoader.load(perms.toString(), Map.class);
+            matrix.get("auditor").put("reporter.view_daily", true);
+            YamlLoader.save(perms.toString(), matrix);
+
+            assertEquals(List.of(), client.request("RELOAD"));
+            assertEquals(List.of("ALLOWED"), client.request("CHECK bob reporter.view_daily"));
+
+            assertThrows(IllegalStateException.class, () -> new PolicyDaemon(
+                    new PermissionsManager(perms.toString()),
+                    new UserRegistryManager(dir.resolve("UserRegistry.yaml").toString()), socket));
+
+            client.request("STOP");
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    /**
+     * RELOAD of a file that does not validate answers ERR with the errors
+     * and keeps serving the previous policy.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidReloadIsRejected() {
+        try (DaemonClient client = DaemonClient.connect(daemon.getSocketPath())) {
+            Map<String, Map<String, Boolean>> matrix = YamlLoader.load(perms.toString(), Map.class);
+            matrix.get("auditor").put("reporter.view_daily", true);
+            matrix.get("auditor").put("not a key", true);
+            YamlLoader.save(perms.toString(), matrix);
+
+            IllegalStateException error = assertThrows(IllegalStateException.class,
+                    () -> client.request("RELOAD"));
+            assertTrue(error.getMessage().contains("not a key"), error.getMessage());
+            assertEquals(List.of("DENIED"), client.request("CHECK bob reporter.view_daily"));
+        }
+    }
+
+    /**
+     * The daemon hosts the replication leader: REPLICATION reports it, and
+     * it stops with the daemon.
+     */
+    @Test
+    public void testReplicationLeaderLivesInDaemon() {
+        try (DaemonClient client = DaemonClient.connect(daemon.getSocketPath())) {
+            assertEquals(List.of("off"), client.request("REPLICATION"));
+
+            System.setProperty("rbac.replication.listen", "0");
+            try {
+                daemon.startReplication();
+            } finally {
+                System.clearProperty("rbac.replication.listen");
+            }
+            List<String> status = client.request("REPLICATION");
+            assertEquals(1, status.size());
+            assertTrue(status.get(0).matches("leader \\d+ 0"), status.get(0));
+        }
+    }
+}
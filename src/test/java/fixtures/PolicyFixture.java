@@ -0,0 +1,84 @@
+// === src/test/java/fixtures/PolicyFixture.java ===
+
+package fixtures;
+
+import audit.AuditLog;
+import core.PermissionsManager;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PolicyFixture is the shared test setup: a copy of
+ *   - config/RolePermissions.yaml
+ *   - config/UserRegistry.yaml
+ * in a test's temporary directory, plus an audit log there, so tests
+ * never touch the real config or logs.
+ *
+ * Usage (the directory is a JUnit {@code @TempDir}, removed after the test):
+ *   PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+ *   PermissionsManager pm = fixture.newPermissionsManager();
+ *   UserRegistryManager urm = fixture.newUserRegistryManager();
+ */
+public final class PolicyFixture {
+
+    private final Path dir;
+    private final Path rolesFile;
+    private final Path usersFile;
+    private final AuditLog auditLog;
+
+    private PolicyFixture(Path dir, Path rolesFile, Path usersFile) {
+        this.dir = dir;
+        this.rolesFile = rolesFile;
+        this.usersFile = usersFile;
+        this.auditLog = new AuditLog(dir.resolve("rbac.log").toString(), dir.resolve("rbac-audit").toString());
+    }
+
+    /**
+     * Copies the sample config into a directory.
+     *
+     * @param dir the test's temporary directory
+     * @return the fixture
+     */
+    public static PolicyFixture copyConfig(Path dir) throws IOException {
+        Path roles = Files.copy(Path.of("config/RolePermissions.yaml"), dir.resolve("RolePermissions.yaml"));
+        Path users = Files.copy(Path.of("config/UserRegistry.yaml"), dir.resolve("UserRegistry.yaml"));
+        return new PolicyFixture(dir, roles, users);
+    }
+
+    /**
+     * @return a manager over the copied matrix, auditing to this fixture
+     */
+    public PermissionsManager newPermissionsManager() {
+        PermissionsManager pm = new PermissionsManager(rolesFile.toString());
+        pm.setAuditLog(auditLog);
+        return pm;
+    }
+
+    /**
+     * @return a manager over the copied registry, auditing to this fixture
+     */
+    public UserRegistryManager newUserRegistryManager() {
+        UserRegistryManager urm = new UserRegistryManager(usersFile.toString());
+        urm.setAuditLog(auditLog);
+        return urm;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public Path getRolesFile() {
+        return rolesFile;
+    }
+
+    public Path getUsersFile() {
+        return usersFile;
+    }
+
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+}
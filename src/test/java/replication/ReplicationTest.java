@@ -0,0 +1,153 @@
+// === src/test/java/replication/ReplicationTest.java ===
+
+package replication;
+
+import core.PermissionsManager;
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReplicationTest runs a leader and several followers on localhost, each
+ * with its own temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class ReplicationTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path dir;
+
+    private final List<AutoCloseable> open = new ArrayList<>();
+
+    /**
+     * Shuts down every leader and follower started by the test.
+     */
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (AutoCloseable c : open) {
+            c.close();
+        }
+    }
+
+    /**
+     * Grants and user changes on the leader reach every follower, and the
+     * leader sees their acknowledged versions.
+     */
+    @Test
+    public void testDeltasReachFollowers() throws Exception {
+        Node primary = new Node();
+        ReplicationLeader leader = track(new ReplicationLeader(primary.pm, primary.urm, 0));
+        Node n1 = new Node();
+        Node n2 = new Node();
+        ReplicationFollower f1 = track(new ReplicationFollower(n1.pm, n1.urm, "localhost", leader.getPort()));
+        ReplicationFollower f2 = track(new ReplicationFollower(n2.pm, n2.urm, "localhost", leader.getPort()));
+
+        primary.pm.grant("auditor", "trader.view_portfolio", true, "test");
+        primary.urm.toggleActive("bob", false, "test");
+        long version = leader.getVersion();
+        assertEquals(2, version);
+
+        assertTrue(f1.awaitVersion(version, TIMEOUT_MILLIS));
+        assertTrue(f2.awaitVersion(version, TIMEOUT_MILLIS));
+        for (Node node : List.of(n1, n2)) {
+            assertTrue(node.pm.hasPermission("auditor", "trader.view_portfolio"));
+            assertFalse(node.urm.isActive("bob"));
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!new ArrayList<>(leader.getFollowerVersions().values()).equals(List.of(version, version))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(version, version), new ArrayList<>(leader.getFollowerVersions().values()));
+    }
+
+    /**
+     * A follower that joins after the leader's log has wrapped, and whose
+     * local files differ, converges through a snapshot.
+     */
+    @Test
+    public void testLateFollowerCatchesUpFromSnapshot() throws Exception {
+        Node primary = new Node();
+        ReplicationLeader leader = track(new ReplicationLeader(primary.pm, primary.urm, 0, 2));
+        for (int i = 0; i < 5; i++) {
+            primary.pm.grant("auditor", "extra.key_" + i, true, "test");
+        }
+        primary.urm.addUser("zoe", "auditor", "Z001", true, "test");
+
+        Node late = new Node();
+        late.pm.grant("admin", "local.only", true, "test");
+        ReplicationFollower follower = track(new ReplicationFollower(late.pm, late.urm, "localhost", leader.getPort()));
+
+        assertTrue(follower.awaitVersion(leader.getVersion(), TIMEOUT_MILLIS));
+        assertEquals(primary.pm.export(), late.pm.export());
+        assertEquals(primary.urm.getAllUsers(), late.urm.getAllUsers());
+        assertFalse(late.pm.hasPermission("admin", "local.only"));
+
+        primary.pm.grant("auditor", "extra.key_0", false, "test");
+        assertTrue(follower.awaitVersion(leader.getVersion(), TIMEOUT_MILLIS));
+        assertFalse(late.pm.hasPermission("auditor", "extra.key_0"));
+    }
+
+    /**
+     * A follower with the wrong secret is turned away before it receives
+     * anything, and a leader refuses to listen beyond loopback without one.
+     */
+    @Test
+    public void testFollowersMustProveSecret() throws Exception {
+        Node primary = new Node();
+        ReplicationLeader leader = track(new ReplicationLeader(primary.pm, primary.urm,
+                InetAddress.getLoopbackAddress(), 0, ReplicationLeader.DEFAULT_LOG_CAPACITY, "s3cret"));
+        primary.pm.grant("auditor", "trader.view_portfolio", true, "test");
+
+        Node intruder = new Node();
+        ReplicationFollower wrong = track(new ReplicationFollower(intruder.pm, intruder.urm,
+                "localhost", leader.getPort(), "guess"));
+        Node member = new Node();
+        ReplicationFollower right = track(new ReplicationFollower(member.pm, member.urm,
+                "localhost", leader.getPort(), "s3cret"));
+
+        assertTrue(right.awaitVersion(leader.getVersion(), TIMEOUT_MILLIS));
+        assertTrue(member.pm.hasPermission("auditor", "trader.view_portfolio"));
+        assertFalse(wrong.awaitVersion(leader.getVersion(), 500));
+        assertFalse(intruder.pm.hasPermission("auditor", "trader.view_portfolio"));
+
+        assertThrows(IllegalArgumentException.class, () -> new ReplicationLeader(primary.pm, primary.urm,
+                InetAddress.getByName("0.0.0.0"), 0, ReplicationLeader.DEFAULT_LOG_CAPACITY, null));
+    }
+
+    // === Helpers ===
+
+    /**
+     * One instance's managers over its own copy of the config.
+     */
+    private final class Node {
+        final PermissionsManager pm;
+        final UserRegistryManager urm;
+
+        Node() throws IOException {
+            PolicyFixture fixture = PolicyFixture.copyConfig(Files.createTempDirectory(dir, "node"));
+            pm = fixture.newPermissionsManager();
+            urm = fixture.newUserRegistryManager();
+        }
+    }
+
+    private <T extends AutoCloseable> T track(T closeable) {
+        open.add(closeable);
+        return closeable;
+    }
+}
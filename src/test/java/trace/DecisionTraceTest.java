@@ -0,0 +1,148 @@
+// === src/test/java/trace/DecisionTraceTest.java ===
+
+package trace;
+
+import context.AsyncAuthorizer;
+import context.ContextBuilder;
+import context.Explanation;
+import core.Permissions;
+import core.PermissionsManager;
+import core.RoleSets;
+import fixtures.PolicyFixture;
+import model.UserContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import users.UserRegistryManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DecisionTraceTest validates decision tracing (reason codes, policy
+ * versions, allow sampling, the binary file, lock-free enqueueing under
+ * contention) and the explain API.
+ *
+ * Works on temporary copies of:
+ *   - config/UserRegistry.yaml
+ *   - config/RolePermissions.yaml
+ */
+public class DecisionTraceTest {
+
+    @TempDir
+    Path dir;
+    private PermissionsManager pm;
+    private UserRegistryManager urm;
+    private ContextBuilder builder;
+    private DecisionTrace trace;
+
+    /**
+     * Loads fresh copies of the config with a temporary audit log.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        pm = fixture.newPermissionsManager();
+        urm = fixture.newUserRegistryManager();
+        builder = new ContextBuilder(pm, urm);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (trace != null) trace.close();
+    }
+
+    /**
+     * Denies from every checker are recorded with their reason and the
+     * policy versions; allows only when sampled.
+     */
+    @Test
+    public void testRecordsDeniesWithReasons() {
+        Path file = dir.resolve("none.trace");
+        trace = DecisionTrace.install(new DecisionTrace(file, pm, urm, 0));
+        UserContext bob = builder.buildUserContext("bob");
+        assertFalse(bob.hasPermission(Permissions.ADMIN_MANAGE_USERS));
+        assertFalse(bob.hasPermission("no.such_key"));
+        urm.toggleActive("bob", false, "test");
+        AsyncAuthorizer authz = new AsyncAuthorizer(pm, urm);
+        authz.decide("bob", "auditor.view_daily_summary");
+        authz.decide("ghost", "auditor.view_daily_summary");
+        assertThrows(RuntimeException.class, () -> builder.buildUserContext("ghost"));
+        trace.close();
+
+        List<TraceRecord> records = DecisionTrace.read(file);
+        List<TraceReason> reasons = new ArrayList<>();
+        for (TraceRecord r : records) reasons.add(r.getReason());
+        assertEquals(List.of(TraceReason.NOT_GRANTED, TraceReason.UNKNOWN_KEY,
+                TraceReason.INACTIVE_USER, TraceReason.UNKNOWN_USER, TraceReason.UNKNOWN_USER), reasons);
+        assertEquals("admin.manage_users", records.get(0).getKey());
+        assertEquals(records.get(0).getRegistryVersion() + 1, records.get(2).getRegistryVersion());
+        assertEquals(pm.getVersion(), records.get(2).getMatrixVersion());
+        assertNull(records.get(4).getKey());
+
+        // Sampling every allow, appended to a second file.
+        Path all = dir.resolve("all.trace");
+        trace = DecisionTrace.install(new DecisionTrace(all, pm, urm, 1));
+        assertTrue(builder.buildUserContext("alice").hasPermission(Permissions.ADMIN_MANAGE_USERS));
+        trace.close();
+        assertNull(DecisionTrace.current());
+        assertEquals(TraceReason.ALLOWED, DecisionTrace.read(all).get(0).getReason());
+    }
+
+    /**
+     * Concurrent producers never block: every offer is either written or
+     * counted as dropped, and a large enough ring drops nothing.
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        for (int capacity : new int[]{64, 1 << 16}) {
+            Path file = dir.resolve("load-" + capacity + ".trace");
+            trace = new DecisionTrace(file, () -> 1, () -> 2, 0, capacity);
+            int threads = 4;
+            int each = 5_000;
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String user = "u" + t;
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < each; i++) trace.offer(TraceReason.NOT_GRANTED, user, "k" + i);
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) worker.join();
+            trace.close();
+            long written = DecisionTrace.read(file).size();
+            assertEquals(threads * each, written + trace.getDropped(), "capacity " + capacity);
+            if (capacity > threads * each) assertEquals(0, trace.getDropped());
+        }
+        trace = null;
+    }
+
+    /**
+     * explain gives the reason code and the role-by-role path.
+     */
+    @Test
+    public void testExplain() {
+        urm.addUser("mia", List.of("trader", "reporter"), "M001", true, "test");
+        pm.grant("reporter", RoleSets.DENY_PREFIX + "trader.submit_manual_trade", true, "test");
+
+        Explanation denied = builder.explain("mia", "trader.submit_manual_trade");
+        assertEquals(TraceReason.NOT_GRANTED, denied.getReason());
+        assertTrue(denied.getSteps().contains("role 'trader' grants it"));
+        assertTrue(denied.getSteps().contains("role 'reporter' explicitly denies it"));
+        assertEquals(pm.getVersion(), denied.getMatrixVersion());
+
+        assertTrue(builder.explain("alice", "admin.manage_users").isAllowed());
+        assertEquals(TraceReason.UNKNOWN_KEY, builder.explain("alice", "no.such_key").getReason());
+        assertEquals(TraceReason.UNKNOWN_USER, builder.explain("ghost", "admin.manage_users").getReason());
+        urm.addUser("olga", List.of("trader", "nope"), null, true, "test");
+        assertEquals(TraceReason.INVALID_ROLE, builder.explain("olga", "admin.manage_users").getReason());
+        urm.toggleActive("alice", false, "test");
+        assertEquals(TraceReason.INACTIVE_USER, builder.explain("alice", "admin.manage_users").getReason());
+    }
+}
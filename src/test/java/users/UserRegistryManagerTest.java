@@ -0,0 +1,140 @@
+// === src/test/java/users/UserRegistryManagerTest.java ===
+
+package users;
+
+import fixtures.PolicyFixture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserRegistryManagerTest validates concurrent provisioning: group
+ * commits, read-only snapshot views and listener delivery.
+ *
+ * Works on a temporary copy of config/UserRegistry.yaml.
+ */
+public class UserRegistryManagerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private UserRegistryManager urm;
+
+    /**
+     * Loads a fresh copy of the registry.
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        PolicyFixture fixture = PolicyFixture.copyConfig(dir);
+        file = fixture.getUsersFile();
+        urm = fixture.newUserRegistryManager();
+    }
+
+    /**
+     * Users added from many threads while another iterates all end up in
+     * memory, on disk and in the listener's stream exactly once.
+     */
+    @Test
+    public void testConcurrentProvisioning() throws Exception {
+        int threads = 4;
+        int perThread = 50;
+        int before = urm.getAllUsers().size();
+        Map<String, Integer> notified = new ConcurrentHashMap<>();
+        urm.addChangeListener(new UserChangeListener() {
+            @Override
+            public void onUsersChanged(List<UserChange> changes) {
+                changes.forEach(c -> notified.merge(c.getUserId(), 1, Integer::sum));
+            }
+
+            @Override
+            public void onRegistryReloaded(Map<String, Map<String, Object>> registry) {
+            }
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    urm.addUser("p" + id + "_" + i, "trader", "P" + id, true, "test");
+                }
+                return null;
+            }));
+        }
+        Future<Integer> reader = pool.submit(() -> {
+            start.await();
+            int scans = 0;
+            while (writing.get()) {
+                int counted = 0;
+                for (Map.Entry<String, Map<String, Object>> e : urm.getAllUsers().entrySet()) {
+                    assertNotNull(e.getValue().get("active"));
+                    counted++;
+                }
+                assertTrue(counted >= before);
+                scans++;
+            }
+            return scans;
+        });
+        long version = urm.getVersion();
+        start.countDown();
+        for (Future<?> w : writers) w.get(60, TimeUnit.SECONDS);
+        writing.set(false);
+        assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+        pool.shutdown();
+
+        int total = threads * perThread;
+        assertEquals(before + total, urm.getAllUsers().size());
+        assertEquals(total, notified.size());
+        assertTrue(notified.values().stream().allMatch(n -> n == 1));
+        assertTrue(urm.getVersion() - version <= total);
+
+        UserRegistryManager reloaded = new UserRegistryManager(file.toString());
+        assertEquals(new HashMap<>(urm.getAllUsers()), new HashMap<>(reloaded.getAllUsers()));
+    }
+
+    /**
+     * Views are read-only snapshots of one version, and batches and
+     * toggles of unknown users behave as before.
+     */
+    @Test
+    public void testReadOnlySnapshots() {
+        Map<String, Map<String, Object>> snapshot = urm.getAllUsers();
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.put("x", Map.of()));
+        assertThrows(UnsupportedOperationException.class, () -> urm.getAllUserIds().remove("alice"));
+        assertThrows(UnsupportedOperationException.class, () -> urm.getUser("alice").put("active", false));
+
+        urm.applyBatch(List.of(
+                UserChange.add("kim", "trader", "K001", true),
+                UserChange.toggle("alice", false)));
+        assertNull(snapshot.get("kim"));
+        assertEquals(true, snapshot.get("alice").get("active"));
+        assertEquals(false, urm.getUser("alice").get("active"));
+        assertTrue(urm.getAllUserIds().contains("kim"));
+
+        long version = urm.getVersion();
+        urm.toggleActive("nobody", false, "test");
+        assertEquals(version, urm.getVersion());
+        assertFalse(urm.getAllUserIds().contains("nobody"));
+    }
+}
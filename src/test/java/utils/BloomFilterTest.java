@@ -0,0 +1,59 @@
+// === src/test/java/utils/BloomFilterTest.java ===
+
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BloomFilterTest validates membership answers and the false positive rate.
+ */
+public class BloomFilterTest {
+
+    /**
+     * Members are always found, and non-members are reported present at
+     * about the configured rate.
+     */
+    @Test
+    public void testMembershipAndFalsePositiveRate() {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) members.add("user" + i);
+        BloomFilter filter = BloomFilter.of(members, 0.01);
+
+        for (String member : members) assertTrue(filter.mightContain(member), member);
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("scanner-" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        assertFalse(filter.mightContain(null));
+        assertEquals(10_000, filter.size());
+
+        BloomFilter empty = BloomFilter.of(List.of(), 0.01);
+        assertFalse(empty.mightContain("anyone"));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.of(members, 1.0));
+    }
+
+    /**
+     * Added strings are found at once, re-adding changes nothing, and the
+     * capacity covers at least the members the filter was built from.
+     */
+    @Test
+    public void testAdd() {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) members.add("user" + i);
+        BloomFilter filter = BloomFilter.of(members, 0.01);
+        assertTrue(filter.capacity() >= 1_000);
+
+        assertFalse(filter.mightContain("zoe"));
+        assertTrue(filter.add("zoe"));
+        assertTrue(filter.mightContain("zoe"));
+        assertFalse(filter.add("zoe"));
+        assertFalse(filter.add("user7"));
+        assertEquals(1_001, filter.size());
+    }
+}
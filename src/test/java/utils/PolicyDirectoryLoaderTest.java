@@ -0,0 +1,64 @@
+// === src/test/java/utils/PolicyDirectoryLoaderTest.java ===
+
+package utils;
+
+import core.PolicyValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PolicyDirectoryLoaderTest validates merging of sharded policy files,
+ * conflict reporting and write-back to the owning shard.
+ */
+public class PolicyDirectoryLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Files.writeString(dir.resolve("admin.roles.yaml"), "admin:\n  admin.manage_users: true\n");
+        Files.writeString(dir.resolve("trade.roles.yaml"), "trader:\n  trade.view: true\n");
+        Files.writeString(dir.resolve("desk.users.yaml"), "bob:\n  role: trader\n  active: true\n");
+    }
+
+    /**
+     * Roles from several shards are merged and new keys go to their module file.
+     */
+    @Test
+    public void testMergeAndWriteBack() throws IOException {
+        PolicyDirectoryLoader.Loaded<Map<String, Boolean>> loaded =
+                PolicyDirectoryLoader.loadRoles(dir, ForkJoinPool.commonPool());
+        assertEquals(Map.of("admin.manage_users", true), loaded.getMerged().get("admin"));
+        assertEquals("trade.roles.yaml", loaded.getOrigins().get("trader"));
+
+        loaded.getMerged().get("trader").put("risk.view", true);
+        PolicyDirectoryLoader.saveRoles(dir, loaded.getMerged(), loaded.getOrigins());
+        assertTrue(Files.readString(dir.resolve("risk.roles.yaml")).contains("risk.view: true"));
+        assertFalse(Files.readString(dir.resolve("trade.roles.yaml")).contains("risk.view"));
+    }
+
+    /**
+     * Conflicting values and duplicate users are reported together.
+     */
+    @Test
+    public void testConflictsAreRejected() throws IOException {
+        Files.writeString(dir.resolve("zz.roles.yaml"), "trader:\n  trade.view: false\n");
+        Files.writeString(dir.resolve("other.users.yaml"), "bob:\n  role: admin\n  active: true\n");
+
+        PolicyValidationException roles = assertThrows(PolicyValidationException.class,
+                () -> PolicyDirectoryLoader.loadRoles(dir, ForkJoinPool.commonPool()));
+        assertEquals(1, roles.getErrors().size());
+        assertThrows(PolicyValidationException.class,
+                () -> PolicyDirectoryLoader.loadUsers(dir, ForkJoinPool.commonPool()));
+    }
+}
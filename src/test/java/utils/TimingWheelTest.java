@@ -0,0 +1,66 @@
+// === src/test/java/utils/TimingWheelTest.java ===
+
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TimingWheelTest validates that entries fire at the first tick at or after
+ * their deadline, across cascades between levels, and that cancelled
+ * entries never fire.
+ */
+public class TimingWheelTest {
+
+    /**
+     * Near, cascading and far deadlines fire in order, never early.
+     */
+    @Test
+    public void testFiresAtDeadlineAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 0);
+        long[] deadlines = {5, 10, 639, 640, 41_000, 2_621_450, 13, 41_000};
+        for (long d : deadlines) wheel.schedule(d, d);
+        assertEquals(deadlines.length, wheel.size());
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 2_700_000; now += 7) {
+            long at = now;
+            wheel.advance(now, d -> {
+                assertTrue(d <= at, "fired early: " + d + " at " + at);
+                assertTrue(at - d < 10 + 7, "fired late: " + d + " at " + at);
+                fired.add(d);
+            });
+        }
+        assertEquals(List.of(5L, 10L, 13L, 639L, 640L, 41_000L, 41_000L, 2_621_450L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Cancelled entries are dropped; a past deadline fires on the next tick;
+     * a jump over an empty wheel fires nothing.
+     */
+    @Test
+    public void testCancelAndOverdue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 5_000);
+        TimingWheel.Timeout<String> a = wheel.schedule("a", 9_000);
+        wheel.schedule("b", 12_000);
+        TimingWheel.Timeout<String> late = wheel.schedule("late", 1_000);
+        assertTrue(wheel.cancel(a));
+        assertFalse(wheel.cancel(a));
+        assertFalse(a.isPending());
+
+        List<String> fired = new ArrayList<>();
+        assertEquals(1, wheel.advance(6_000, fired::add));
+        assertEquals(List.of("late"), fired);
+        assertFalse(late.isPending());
+        assertEquals(1, wheel.advance(100_000, fired::add));
+        assertEquals(List.of("late", "b"), fired);
+
+        assertEquals(0, wheel.advance(10_000_000, fired::add));
+        assertEquals(10_000_000, wheel.currentMillis());
+    }
+}